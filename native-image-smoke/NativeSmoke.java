@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Properties;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.uw.cirg.truenth.oauth.TrueNTHOAuthService;
+import edu.uw.cirg.truenth.oauth.config.TrueNTHServiceLoader;
+import edu.uw.cirg.truenth.oauth.model.TrueNTHResult;
+import edu.uw.cirg.truenth.oauth.model.tokens.TrueNTHAccessToken;
+
+/**
+ * Native image smoke test.
+ *
+ * <p>
+ * Starts a stub SS on a local port, builds a service through
+ * {@link TrueNTHServiceLoader} and runs the usual login sequence against it:
+ * token exchange, token status, roles and demographics. Exits with status 1
+ * on the first failure. Meant to be compiled by native-image (see smoke.sh),
+ * but runs on a JVM as well.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public class NativeSmoke {
+
+    private static final String TOKEN	     = "{\"access_token\":\"smoke\",\"token_type\":\"Bearer\",\"expires_in\":3600,"
+	    + "\"refresh_token\":\"refresh\",\"scope\":\"email\"}";
+    private static final String ROLES	     = "{\"roles\":[{\"name\":\"patient\",\"description\":\"Patient\"}]}";
+    private static final String DEMOGRAPHICS = "{\"resourceType\":\"Patient\",\"gender\":\"female\",\"birthDate\":\"1970-01-01\","
+	    + "\"name\":{\"given\":\"Ada\",\"family\":\"Lovelace\"},\"identifier\":[{\"system\":"
+	    + "\"http://us.truenth.org/identity-codes/TrueNTH-identity\",\"value\":42}]}";
+
+    private static long start;
+
+    public static void main(final String[] args) throws IOException {
+
+	start = System.nanoTime();
+
+	final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+	server.createContext("/oauth/token", new Stub(TOKEN));
+	server.createContext("/oauth/token-status", new Stub(TOKEN));
+	server.createContext("/api/user/42/roles", new Stub(ROLES));
+	server.createContext("/api/demographics", new Stub(DEMOGRAPHICS));
+	server.start();
+
+	try {
+	    final String base = "http://127.0.0.1:" + server.getAddress().getPort();
+
+	    final Properties properties = new Properties();
+	    properties.setProperty("truenth.apiKey", "smoke");
+	    properties.setProperty("truenth.apiSecret", "smoke");
+	    properties.setProperty("truenth.callbackURL", "https://smoke.example.org/login");
+	    properties.setProperty("truenth.baseURL", base);
+	    properties.setProperty("truenth.baseAuthorizationURL", base + "/oauth/authorize");
+	    properties.setProperty("truenth.accessTokenEndpointURL", base + "/oauth/token");
+	    properties.setProperty("truenth.accessTokenStatusEndpointURL", base + "/oauth/token-status");
+	    properties.setProperty("truenth.resourceURL", base + "/api");
+	    properties.setProperty("truenth.rolesURL", base + "/api/user/#userId/roles");
+
+	    final Map<String, TrueNTHOAuthService> services = TrueNTHServiceLoader.load(properties, TrueNTHServiceLoader.PREFIX);
+	    final TrueNTHOAuthService service = services.get(TrueNTHServiceLoader.DEFAULT_TENANT);
+	    step("service built", service);
+
+	    final TrueNTHAccessToken token = service.getAccessToken("code");
+	    step("token exchange", (token == null) ? null : token.getToken());
+	    step("token status", check(service.fetchAccessTokenActive(token)));
+	    step("roles", check(service.fetchTrueNTHRoleSet(42, token)));
+	    step("demographics", check(service.fetchDemographics(token)).getTrueNTHID());
+
+	} catch (final RuntimeException e) {
+	    e.printStackTrace();
+	    System.exit(1);
+	} finally {
+	    server.stop(0);
+	}
+    }
+
+    private static <T> T check(final TrueNTHResult<T> result) {
+
+	if (!result.isSuccess()) { throw new IllegalStateException(result.toString()); }
+	return result.getValue();
+    }
+
+    private static void step(final String name, final Object value) {
+
+	if (value == null) { throw new IllegalStateException(name + " failed"); }
+	System.out.printf("%-16s %6.1f ms  %s%n", name, (System.nanoTime() - start) / 1e6, value);
+    }
+
+    private static final class Stub implements HttpHandler {
+
+	private final byte[] body;
+
+	Stub(final String body) {
+
+	    this.body = body.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void handle(final HttpExchange exchange) throws IOException {
+
+	    exchange.getResponseHeaders().set("Content-Type", "application/json");
+	    exchange.sendResponseHeaders(200, body.length);
+	    try (OutputStream stream = exchange.getResponseBody()) {
+		stream.write(body);
+	    }
+	}
+    }
+}
@@ -0,0 +1,39 @@
+#!/bin/sh
+#
+# Native image smoke test.
+#
+# Compiles the library and NativeSmoke, runs the sample on the JVM, builds a
+# native image of it with the metadata shipped under META-INF/native-image,
+# and runs the image against the same local stub SS.
+#
+# Usage:
+#   DEPS=scribe-1.3.0.jar:javax.json-1.0.4.jar:commons-codec-1.10.jar:jackson-core-2.9.10.jar ./smoke.sh
+#
+# jackson-core is needed to compile the library (TrueNTHJacksonBackend), even
+# though the sample uses the javax.json backend.
+#
+# Requires GraalVM's native-image in the PATH (or NATIVE_IMAGE).
+
+set -e
+
+: "${DEPS:?DEPS must list the dependency jars, separated by ':'}"
+NATIVE_IMAGE=${NATIVE_IMAGE:-native-image}
+
+HERE=$(cd "$(dirname "$0")" && pwd)
+ROOT=$(dirname "$HERE")
+OUT=${OUT:-$HERE/target}
+
+rm -rf "$OUT"
+mkdir -p "$OUT/classes"
+
+javac -nowarn -encoding UTF-8 -proc:none -cp "$DEPS" -d "$OUT/classes" $(find "$ROOT/src" -name '*.java') "$HERE/NativeSmoke.java"
+cp -R "$ROOT/src/META-INF" "$OUT/classes/"
+
+echo "== JVM"
+java -cp "$OUT/classes:$DEPS" NativeSmoke
+
+echo "== native-image"
+"$NATIVE_IMAGE" --no-fallback -cp "$OUT/classes:$DEPS" -o "$OUT/native-smoke" NativeSmoke
+
+echo "== native"
+"$OUT/native-smoke"
@@ -15,13 +15,28 @@
  *******************************************************************************/
 package edu.uw.cirg.truenth.oauth;
 
-import java.io.StringReader;
-import java.net.URL;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
-import javax.json.Json;
+import javax.json.JsonException;
 import javax.json.JsonObject;
+import javax.json.stream.JsonParsingException;
 
+import org.apache.commons.codec.binary.Base64;
+import org.scribe.exceptions.OAuthException;
 import org.scribe.model.OAuthConstants;
 import org.scribe.model.OAuthRequest;
 import org.scribe.model.ParameterList;
@@ -32,14 +47,31 @@ import org.scribe.model.Verifier;
 import org.scribe.oauth.OAuthService;
 
 import edu.uw.cirg.truenth.oauth.builder.TrueNTHServiceBuilder;
+import edu.uw.cirg.truenth.oauth.cache.TrueNTHCache;
+import edu.uw.cirg.truenth.oauth.discovery.TrueNTHDiscovery;
+import edu.uw.cirg.truenth.oauth.discovery.TrueNTHMetadata;
+import edu.uw.cirg.truenth.oauth.json.TrueNTHJsonBackend;
+import edu.uw.cirg.truenth.oauth.json.TrueNTHJsonBackends;
+import edu.uw.cirg.truenth.oauth.builder.api.TrueNTHAuthorizationUrl;
 import edu.uw.cirg.truenth.oauth.builder.api.TrueNTHOAuthProvider;
+import edu.uw.cirg.truenth.oauth.metrics.TrueNTHEndpoint;
+import edu.uw.cirg.truenth.oauth.metrics.TrueNTHMetrics;
+import edu.uw.cirg.truenth.oauth.metrics.TrueNTHMetricsRecorder;
 import edu.uw.cirg.truenth.oauth.model.TrueNTHOAuthConfig;
+import edu.uw.cirg.truenth.oauth.model.TrueNTHResult;
+import edu.uw.cirg.truenth.oauth.model.TrueNTHUriTemplate;
 import edu.uw.cirg.truenth.oauth.model.definitions.TrueNTHGrantType;
 import edu.uw.cirg.truenth.oauth.model.definitions.TrueNTHTokenType;
 import edu.uw.cirg.truenth.oauth.model.definitions.TrueNTHUrlPlaceHolders;
 import edu.uw.cirg.truenth.oauth.model.tokens.TrueNTHAccessToken;
+import edu.uw.cirg.truenth.oauth.state.TrueNTHAuthorizationState;
+import edu.uw.cirg.truenth.oauth.state.TrueNTHStateStore;
+import edu.uw.cirg.truenth.ss.demographics.SSDemographics;
+import edu.uw.cirg.truenth.ss.demographics.SSDemographicsExtractorJson;
 import edu.uw.cirg.truenth.ss.roles.SSRole;
+import edu.uw.cirg.truenth.ss.roles.SSRoleDiff;
 import edu.uw.cirg.truenth.ss.roles.SSRoleExtractorJson;
+import edu.uw.cirg.truenth.ss.roles.SSRoleSet;
 
 /**
  * OAuth service.
@@ -60,7 +92,8 @@ import edu.uw.cirg.truenth.ss.roles.SSRoleExtractorJson;
  * <li>Create authorization URLs;</li>
  * <li>Access configured SS' URLs;</li>
  * <li>Issue requests;</li>
- * <li>Sign requests.</li>
+ * <li>Sign requests;</li>
+ * <li>Cache users' roles and demographics (optional).</li>
  * </ul>
  *
  * <p>
@@ -77,8 +110,192 @@ public class TrueNTHOAuthService implements OAuthService {
      */
     private static final String	VERSION = "2.0";
 
+    /**
+     * Demographics resource path, relative to the resource URL.
+     */
+    private static final String	DEMOGRAPHICS_PATH = "/demographics";
+
+    /**
+     * Demographics resource path, for a specific user.
+     */
+    private static final TrueNTHUriTemplate USER_DEMOGRAPHICS_PATH = TrueNTHUriTemplate.compile(DEMOGRAPHICS_PATH + "/{userId}");
+
+    /**
+     * HTTP status reported for values served from caches.
+     */
+    private static final int	   HTTP_OK	   = 200;
+
+    /**
+     * Message of requests refused by the concurrency limit.
+     */
+    private static final String LIMIT_REACHED = "Too many concurrent requests towards SS";
+
+    /**
+     * Per thread SHA-256 digests, identifying grants.
+     */
+    private static final ThreadLocal<MessageDigest> GRANT_DIGESTS = new ThreadLocal<MessageDigest>() {
+
+	@Override
+	protected MessageDigest initialValue() {
+
+	    try {
+		return MessageDigest.getInstance("SHA-256");
+	    } catch (final NoSuchAlgorithmException e) {
+		// Every Java platform provides SHA-256.
+		throw new IllegalStateException(e);
+	    }
+	}
+    };
+
+    /**
+     * Completes the configuration again when discovered endpoints change.
+     * Services are referenced weakly: the binding unregisters itself once its
+     * service is collected.
+     */
+    private static final class DiscoveryBinding implements TrueNTHDiscovery.Listener {
+
+	private final TrueNTHDiscovery		       discovery;
+	private final WeakReference<TrueNTHOAuthService> service;
+
+	DiscoveryBinding(final TrueNTHDiscovery discovery, final TrueNTHOAuthService service) {
+
+	    this.discovery = discovery;
+	    this.service = new WeakReference<TrueNTHOAuthService>(service);
+	}
+
+	@Override
+	public void metadataChanged(final TrueNTHMetadata metadata) {
+
+	    final TrueNTHOAuthService target = service.get();
+	    if (target == null) {
+		discovery.removeListener(this);
+		return;
+	    }
+
+	    try {
+		target.rediscover(this);
+	    } catch (final RuntimeException e) {
+		// Invalid endpoints published: the current configuration is kept.
+	    }
+	}
+    }
+
+    /**
+     * Request issued on cache misses.
+     */
+    private interface Fetcher<V> {
+
+	TrueNTHResult<V> fetch(long key);
+    }
+
+    /**
+     * Consumes a response while its request permit is held.
+     */
+    private interface ResponseHandler<V> {
+
+	TrueNTHResult<V> handle(Response response, Body body);
+    }
+
+    /**
+     * Response body, counting the bytes read.
+     */
+    private static final class Body extends FilterInputStream {
+
+	private long bytes;
+
+	Body(final InputStream stream) {
+
+	    super((stream == null) ? new ByteArrayInputStream(new byte[0]) : stream);
+	}
+
+	/**
+	 * Counts a body read by {@link Response#getBody()}, bypassing this
+	 * stream.
+	 */
+	void consumed(final String body) {
+
+	    bytes += body.getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	@Override
+	public int read() throws IOException {
+
+	    final int read = super.read();
+	    if (read >= 0) {
+		bytes++;
+	    }
+	    return read;
+	}
+
+	@Override
+	public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+
+	    final int read = super.read(buffer, offset, length);
+	    if (read > 0) {
+		bytes += read;
+	    }
+	    return read;
+	}
+
+	@Override
+	public long skip(final long count) throws IOException {
+
+	    final long skipped = super.skip(count);
+	    bytes += skipped;
+	    return skipped;
+	}
+    }
+
+    /**
+     * Carries a failed result through a cache load, to every reader waiting
+     * for it.
+     */
+    private static final class FetchFailure extends Exception {
+
+	private static final long     serialVersionUID = 1L;
+
+	private final TrueNTHResult<?> result;
+
+	FetchFailure(final TrueNTHResult<?> result) {
+
+	    super(null, null, false, false);
+	    this.result = result;
+	}
+    }
+
+    /**
+     * Configuration, and the state compiled from it; replaced as a whole.
+     */
+    private static final class Snapshot {
+
+	final TrueNTHOAuthConfig      declared;
+	final TrueNTHOAuthConfig      config;
+	final TrueNTHAuthorizationUrl authorizationUrl;
+
+	Snapshot(final TrueNTHOAuthConfig declared, final TrueNTHOAuthConfig config, final TrueNTHAuthorizationUrl authorizationUrl) {
+
+	    this.declared = declared;
+	    this.config = config;
+	    this.authorizationUrl = authorizationUrl;
+	}
+    }
+
     private final TrueNTHOAuthProvider api;
-    private final TrueNTHOAuthConfig   config;
+
+    private volatile Snapshot snapshot;
+
+    private TrueNTHDiscovery discovery;
+    private DiscoveryBinding discoveryBinding;
+
+    private volatile TrueNTHJsonBackend	    jsonBackend = TrueNTHJsonBackends.getDefault();
+    private volatile TrueNTHCache<Long, SSRoleSet> roleCache;
+    private volatile TrueNTHCache<String, Boolean>  roleGrants;
+    private volatile TrueNTHCache<Long, SSDemographics> demographicsCache;
+    private volatile TrueNTHCache<String, Boolean>  demographicsGrants;
+    private volatile TrueNTHStateStore		  stateStore;
+    private volatile Semaphore			  requestPermits;
+    private volatile int				maxConcurrentRequests;
+    private volatile TrueNTHMetricsRecorder	    metrics;
 
     /**
      * Builds the service with a predefined configuration.
@@ -98,7 +315,7 @@ public class TrueNTHOAuthService implements OAuthService {
     public TrueNTHOAuthService(final TrueNTHOAuthProvider trueNTHOAuthProvider, final TrueNTHOAuthConfig config) {
 
 	api = trueNTHOAuthProvider;
-	this.config = config;
+	snapshot = new Snapshot(config, config, api.compileAuthorizationUrl(config));
     }
 
     /**
@@ -116,17 +333,7 @@ public class TrueNTHOAuthService implements OAuthService {
     @Override
     public TrueNTHAccessToken getAccessToken(final Token requestToken, final Verifier verifier) {
 
-	final OAuthRequest request = new OAuthRequest(api.getAccessTokenVerb(), api.getAccessTokenEndpoint(config));
-	request.addBodyParameter(OAuthConstants.CLIENT_ID, config.getApiKey());
-	request.addBodyParameter(OAuthConstants.CLIENT_SECRET, config.getApiSecret());
-	request.addBodyParameter(TrueNTHGrantType.PARAMETER, TrueNTHGrantType.CODE.toString());
-	request.addBodyParameter(OAuthConstants.CODE, verifier.getValue());
-	request.addBodyParameter(OAuthConstants.REDIRECT_URI, config.getCallback());
-	if (config.hasScope()) {
-	    request.addBodyParameter(OAuthConstants.SCOPE, config.getScope());
-	}
-	final Response response = request.send();
-	return api.getAccessTokenExtractor().extract(response.getBody());
+	return requestAccessToken(verifier.getValue(), null);
     }
 
     /**
@@ -143,6 +350,41 @@ public class TrueNTHOAuthService implements OAuthService {
 	return getAccessToken(null, verifierCode);
     }
 
+    /**
+     * Fetches an access token, after checking the authorization state
+     * returned to the callback.
+     *
+     * <p>
+     * The state is consumed from the state store: it is accepted once. If a
+     * PKCE code verifier was issued with it, the verifier is sent along with
+     * the Authorization Code.
+     * </p>
+     *
+     * @param code
+     *            Authorization Code to obtain an access token.
+     * @param state
+     *            State value, as received by the callback.
+     *
+     * @return access token.
+     *
+     * @throws IllegalStateException
+     *             If no state store is configured.
+     * @throws OAuthException
+     *             If the state is unknown, expired or was already used.
+     *
+     * @see #newAuthorizationState()
+     */
+    public TrueNTHAccessToken getAccessToken(final String code, final String state) {
+
+	final TrueNTHStateStore store = stateStore;
+	if (store == null) { throw new IllegalStateException("No authorization state store is configured."); }
+
+	final TrueNTHAuthorizationState issued = store.consume(state);
+	if (issued == null) { throw new OAuthException("Unknown, expired or reused authorization state."); }
+
+	return requestAccessToken(code, issued.getCodeVerifier());
+    }
+
     /**
      * Fetches an updated access token, via status, and returns as a new token
      * object.
@@ -150,19 +392,31 @@ public class TrueNTHOAuthService implements OAuthService {
      * @param accessToken
      *            Token that will be updated, if valid.
      * @return Updated access token, or null if an error has occurred.
+     * @see #fetchAccessTokenStatus(Token)
      */
     public TrueNTHAccessToken getAccessTokenStatus(final Token accessToken) {
 
-	try {
-
-	    final URL url = new URL(api.getAccessTokenStatusEndpoint(config));
+	return fetchAccessTokenStatus(accessToken).getValue();
+    }
 
-	    final String json = getResource(url, accessToken).getBody();
+    /**
+     * Fetches an updated access token, via status.
+     *
+     * @param accessToken
+     *            Token that will be updated, if valid.
+     * @return Result: updated access token, or the reason it could not be
+     *         obtained.
+     */
+    public TrueNTHResult<TrueNTHAccessToken> fetchAccessTokenStatus(final Token accessToken) {
 
-	    return api.getAccessTokenExtractor().extract(json);
+	final TrueNTHResult<JsonObject> json = fetchJson(TrueNTHEndpoint.ACCESS_TOKEN_STATUS, api.getAccessTokenStatusEndpoint(getConfig()), accessToken,
+		false);
+	if (!json.isSuccess()) { return TrueNTHResult.failure(json); }
 
-	} catch (final Exception ex) {
-	    return null;
+	try {
+	    return TrueNTHResult.success(api.getAccessTokenExtractor(jsonBackend).extract(json.getValue()), json.getHttpStatus());
+	} catch (final IllegalArgumentException e) {
+	    return TrueNTHResult.parseFailure(json.getHttpStatus(), e);
 	}
     }
 
@@ -177,20 +431,52 @@ public class TrueNTHOAuthService implements OAuthService {
      *         <li>False, if the token is invalid or expired;</li>
      *         <li>False, if the verification is not possible.</li>
      *         </ul>
+     * @see #fetchAccessTokenActive(Token)
      */
     public boolean isAccessTokenActive(final Token accessToken) {
 
-	try {
-
-	    final URL url = new URL(api.getAccessTokenStatusEndpoint(config));
-
-	    final int responseCode = getResource(url, accessToken).getCode();
-
-	    return responseCode == 200;
+	return Boolean.TRUE.equals(fetchAccessTokenActive(accessToken).getValue());
+    }
 
-	} catch (final Exception ex) {
-	    return false;
-	}
+    /**
+     * Checks if the access token is active in the SS instance.
+     *
+     * <p>
+     * Unlike {@link #isAccessTokenActive(Token)}, distinguishes rejected
+     * tokens from failed verifications.
+     * </p>
+     *
+     * @param accessToken
+     *            Token that will be verified.
+     *
+     * @return <ul>
+     *         <li>Success, holding true, if the token is still valid (HTTP
+     *         200);</li>
+     *         <li>Success, holding false, if SS rejected the token (HTTP
+     *         401);</li>
+     *         <li>Failure, if the verification was not possible.</li>
+     *         </ul>
+     */
+    public TrueNTHResult<Boolean> fetchAccessTokenActive(final Token accessToken) {
+
+	return send(TrueNTHEndpoint.ACCESS_TOKEN_STATUS, api.getAccessTokenStatusEndpoint(getConfig()), accessToken,
+		new ResponseHandler<Boolean>() {
+
+		    @Override
+		    public TrueNTHResult<Boolean> handle(final Response response, final Body body) {
+
+			discard(response);
+
+			switch (response.getCode()) {
+			    case 200:
+				return TrueNTHResult.success(Boolean.TRUE, 200);
+			    case 401:
+				return TrueNTHResult.success(Boolean.FALSE, 401);
+			    default:
+				return TrueNTHResult.httpError(response.getCode());
+			}
+		    }
+		});
     }
 
     /**
@@ -218,7 +504,7 @@ public class TrueNTHOAuthService implements OAuthService {
      */
     public String getAuthorizationUrl() {
 
-	return api.getAuthorizationUrl(config);
+	return snapshot.authorizationUrl.getUrl();
     }
 
     /**
@@ -307,7 +593,62 @@ public class TrueNTHOAuthService implements OAuthService {
      */
     public String getAuthorizationUrl(final int numberEncodings, final ParameterList callbackParameters, final ParameterList parameters) {
 
-	return api.getAuthorizationUrl(config, numberEncodings, callbackParameters, parameters);
+	return snapshot.authorizationUrl.getUrl(numberEncodings, callbackParameters, parameters);
+    }
+
+    /**
+     * Returns the URL where users authenticate and authorize clients, carrying
+     * authorization state.
+     *
+     * <p>
+     * Same as {@link #getAuthorizationUrl()}, with the state and, when present,
+     * the PKCE code challenge appended.
+     * </p>
+     *
+     * @param state
+     *            Authorization state.
+     *
+     * @return The URL where users should be redirected.
+     *
+     * @see #newAuthorizationState()
+     */
+    public String getAuthorizationUrl(final TrueNTHAuthorizationState state) {
+
+	return snapshot.authorizationUrl.getUrl(1, null, state.toParameters());
+    }
+
+    /**
+     * Returns the URL where users authenticate and authorize clients, carrying
+     * authorization state.
+     *
+     * <p>
+     * Same as {@link #getAuthorizationUrl(int, ParameterList, ParameterList)},
+     * with the state and, when present, the PKCE code challenge appended.
+     * </p>
+     *
+     * @param state
+     *            Authorization state.
+     * @param numberEncodings
+     *            Number of URL encoding operations to be applied on the
+     *            callback URL.
+     * @param callbackParameters
+     *            Additional parameters to add into the callback URL.
+     * @param parameters
+     *            Additional parameters to add into the Authorization URL.
+     *
+     * @return The URL where users should be redirected.
+     *
+     * @see #newAuthorizationState()
+     */
+    public String getAuthorizationUrl(final TrueNTHAuthorizationState state, final int numberEncodings, final ParameterList callbackParameters,
+	    final ParameterList parameters) {
+
+	final ParameterList all = state.toParameters();
+	if (parameters != null) {
+	    all.addAll(parameters);
+	}
+
+	return snapshot.authorizationUrl.getUrl(numberEncodings, callbackParameters, all);
     }
 
     /**
@@ -328,7 +669,7 @@ public class TrueNTHOAuthService implements OAuthService {
     @Deprecated
     public String getAuthorizationUrl(final Token requestToken) {
 
-	return api.getAuthorizationUrl(config);
+	return snapshot.authorizationUrl.getUrl();
     }
 
     /**
@@ -355,119 +696,543 @@ public class TrueNTHOAuthService implements OAuthService {
      */
     public TrueNTHOAuthConfig getConfig() {
 
-	return config;
+	return snapshot.config;
     }
 
     /**
-     * Fetches request token.
+     * Replaces the service configuration.
      *
-     * @throws UnsupportedOperationException
-     *             This operation is not supported by SS; thus, this workflow
-     *             shall not be used.
+     * <p>
+     * The configuration is validated and its authorization URL compiled before
+     * being published; then, both are swapped at once, with a single volatile
+     * write. Requests in flight complete with the configuration they started
+     * with; later requests use the new one.
+     * </p>
      *
-     * @return Nothing will be returned, and an exception will be thrown.
+     * <p>
+     * If the service has an endpoint discovery, the configuration is completed
+     * with the discovered endpoints, as they are now and whenever they change;
+     * endpoints set in the configuration take precedence.
+     * </p>
+     *
+     * <p>
+     * Backends, state stores and request limits are kept. Cached roles and
+     * demographics are kept as well, unless the resource or roles URL changed
+     * (the data may come from another SS); thus, rotating secrets or keys
+     * does not cool caches down.
+     * </p>
+     *
+     * @param config
+     *            New configuration.
+     *
+     * @throws IllegalArgumentException
+     *             If the configuration is invalid; the current one is kept.
+     * @see TrueNTHOAuthConfig#validate()
+     * @see #setDiscovery(TrueNTHDiscovery)
      */
-    @Override
-    @Deprecated
-    public Token getRequestToken() {
+    public void setConfig(final TrueNTHOAuthConfig config) {
 
-	throw new UnsupportedOperationException("Unsupported operation, please use 'getAuthorizationUrl' and redirect your users there");
+	if (config == null) { throw new IllegalArgumentException("Configuration can't be null"); }
+
+	TrueNTHOAuthConfig previous = null;
+	TrueNTHOAuthConfig effective = null;
+
+	// The first metadata document is fetched before taking the lock, so a
+	// slow SS holds neither this service nor the discovery's refreshes.
+	TrueNTHDiscovery fetched = getDiscovery();
+	while (effective == null) {
+
+	    if (fetched != null) {
+		fetched.getMetadata();
+	    }
+
+	    // Discovery bindings complete the declared configuration under the
+	    // same lock: neither can restore the other's stale state.
+	    synchronized (this) {
+
+		if (discovery != fetched) {
+		    fetched = discovery;
+		    continue;
+		}
+
+		final TrueNTHOAuthConfig completed = (discovery == null) ? config : discovery.getMetadata().complete(config);
+		completed.validate();
+		if (isEmpty(completed.getAccessTokenEndpoint()) || isEmpty(completed.getBaseAuthorizationURL())) {
+		    throw new IllegalArgumentException("Missing SS endpoints: access token endpoint and base authorization URL are required");
+		}
+
+		previous = snapshot.config;
+		snapshot = new Snapshot(config, completed, api.compileAuthorizationUrl(completed));
+		effective = completed;
+	    }
+	}
+
+	if (!equal(previous.getResourceURL(), effective.getResourceURL()) || !equal(previous.getRolesURL(), effective.getRolesURL())) {
+
+	    for (final TrueNTHCache<?, ?> cache : new TrueNTHCache<?, ?>[] { roleCache, roleGrants, demographicsCache, demographicsGrants }) {
+		if (cache != null) {
+		    cache.invalidateAll();
+		}
+	    }
+	}
     }
 
     /**
-     * Returns the configured OAuth API base URL (API base).
+     * Releases the service: it stops following endpoint discovery, and its
+     * cached roles and demographics are dropped.
      *
      * <p>
-     * For instance: https://stg.us.truenth.org/api
+     * The service remains usable with its current configuration, for callers
+     * still holding it;
+     * {@link edu.uw.cirg.truenth.oauth.builder.TrueNTHServiceRegistry} closes
+     * the services it evicts.
      * </p>
+     */
+    public void close() {
+
+	setDiscovery(null);
+
+	for (final TrueNTHCache<?, ?> cache : new TrueNTHCache<?, ?>[] { roleCache, roleGrants, demographicsCache, demographicsGrants }) {
+	    if (cache != null) {
+		cache.invalidateAll();
+	    }
+	}
+    }
+
+    /**
+     * Returns the endpoint discovery.
      *
-     * @return API base URL.
+     * @return Endpoint discovery; null if endpoints are not discovered.
      */
-    public String getResourceURL() {
+    public synchronized TrueNTHDiscovery getDiscovery() {
 
-	return getConfig().getResourceURL();
+	return discovery;
     }
 
     /**
-     * Returns the configured roles URL.
+     * Configures endpoint discovery.
      *
      * <p>
-     * This method returns the generic address of users' roles. It contains the
-     * #userId wildcard, and it does not represent a real location.
+     * The current configuration, and every configuration later given to
+     * {@link #setConfig(TrueNTHOAuthConfig)}, is completed with the discovered
+     * endpoints; it is completed again whenever they change. Endpoints set in
+     * the configuration take precedence.
      * </p>
      *
      * <p>
-     * For instance: https://stg.us.truenth.org/api/user/#userId/roles
+     * {@link TrueNTHServiceBuilder#discovery(TrueNTHDiscovery)} configures it
+     * automatically.
      * </p>
      *
-     * @return Roles URL.
+     * @param discovery
+     *            Endpoint discovery; null stops completing configurations
+     *            (the current one is kept).
+     *
+     * @throws IllegalArgumentException
+     *             If the completed configuration is invalid; the current one
+     *             is kept.
+     * @throws OAuthException
+     *             If the metadata document was never fetched and can't be
+     *             fetched now.
      */
-    public String getRolesURL() {
+    public void setDiscovery(final TrueNTHDiscovery discovery) {
 
-	return getConfig().getRolesURL();
+	// Fetched before taking the lock; see setConfig.
+	if (discovery != null) {
+	    discovery.getMetadata();
+	}
+
+	synchronized (this) {
+
+	    final TrueNTHDiscovery previous = this.discovery;
+	    final DiscoveryBinding previousBinding = discoveryBinding;
+
+	    this.discovery = discovery;
+	    try {
+		setConfig((discovery == null) ? snapshot.config : snapshot.declared);
+	    } catch (final RuntimeException e) {
+		this.discovery = previous;
+		throw e;
+	    }
+
+	    if (previous != null) {
+		previous.removeListener(previousBinding);
+	    }
+	    discoveryBinding = null;
+	    if (discovery != null) {
+		discoveryBinding = new DiscoveryBinding(discovery, this);
+		discovery.addListener(discoveryBinding);
+	    }
+	}
     }
 
     /**
-     * Returns the configured roles URL, for a specific user.
+     * Get the demographics of the token's owner.
      *
      * <p>
-     * Replaces the userId place holder with the String representation of the
-     * TrueNTH User ID.
+     * Demographics are always fetched from SS. If a demographics cache is
+     * configured, the result is stored under its TrueNTH ID; subsequent calls
+     * to {@link #getDemographics(long, TrueNTHAccessToken)} are then served
+     * from the cache.
      * </p>
      *
-     * @param userId
-     *            TrueNTH User ID.
-     * @return Roles URL.
+     * <p>
+     * The returned instance is lazy: attributes are decoded on first access.
+     * </p>
+     *
+     * @param accessToken
+     *            Access Token.
+     * @return Demographics, or null in case of errors.
      */
-    public String getRolesURL(final long userId) {
+    public SSDemographics getDemographics(final TrueNTHAccessToken accessToken) {
 
-	return getRolesURL().replaceFirst(TrueNTHUrlPlaceHolders.USER_ID, String.valueOf(userId));
+	return fetchDemographics(accessToken).getValue();
     }
 
     /**
-     * Access current OAuth version.
+     * Get the demographics of the token's owner.
      *
-     * @return OAuth version.
+     * @param accessToken
+     *            Access Token.
+     * @return Result: demographics, or the reason they could not be obtained.
+     * @see #getDemographics(TrueNTHAccessToken)
      */
-    @Override
-    public String getVersion() {
+    public TrueNTHResult<SSDemographics> fetchDemographics(final TrueNTHAccessToken accessToken) {
+
+	final TrueNTHResult<SSDemographics> result = requestDemographics(DEMOGRAPHICS_PATH, accessToken);
+
+	final TrueNTHCache<Long, SSDemographics> cache = demographicsCache;
+	final TrueNTHCache<String, Boolean> grants = demographicsGrants;
+	if ((cache != null) && (grants != null) && result.isSuccess()) {
+	    final long trueNTHUserId = result.getValue().getTrueNTHID();
+	    if (trueNTHUserId >= 0) {
+		cache.put(trueNTHUserId, result.getValue());
+		grants.put(grantKey(accessToken, trueNTHUserId), Boolean.TRUE);
+	    }
+	}
 
-	return VERSION;
+	return result;
     }
 
     /**
-     * Signs a request.
-     *
-     * <p>
-     * This method appends the access token into the request, according to the
-     * configured signature type.
-     * </p>
+     * Get a user's demographics.
      *
      * <p>
-     * It supports the following two signature types:
+     * If a demographics cache is configured, demographics are served from it;
+     * the access token is used for misses and background revalidation. Cached
+     * instances are shared and must not be modified.
      * </p>
      *
-     * <ul>
-     * <li><code>SignatureType.Header</code>;</li>
-     * <li><code>SignatureType.QueryString</code>;</li>
-     * </ul>
-     *
      * <p>
-     * SignatureType.Header: Appends "BEARER" as an authentication header.
+     * <b>Cached demographics are PHI.</b> They are served only to access
+     * tokens SS already authorized for the same user, within the cache's time
+     * to live and stale window: any other token issues its own request, and
+     * gets SS' answer (for instance, 401 or 403) instead of the cached value.
      * </p>
      *
      * <p>
-     * SignatureType.QueryString: Append "oauth_token" as a query string
-     * parameter.
+     * The returned instance is lazy: attributes are decoded on first access.
      * </p>
      *
+     * @param trueNTHUserId
+     *            TrueNTH User ID.
+     * @param accessToken
+     *            Access Token, which must grant access to the user's
+     *            demographics.
+     * @return Demographics, or null in case of errors.
+     * @see #setDemographicsCache(TrueNTHCache)
      */
-    @Override
-    public void signRequest(final Token accessToken, final OAuthRequest request) {
+    public SSDemographics getDemographics(final long trueNTHUserId, final TrueNTHAccessToken accessToken) {
 
-	switch (config.getSignatureType()) {
-	    case Header:
-		request.addHeader(OAuthConstants.HEADER, TrueNTHTokenType.BEARER.toString() + " " + accessToken.getToken());
+	return fetchDemographics(trueNTHUserId, accessToken).getValue();
+    }
+
+    /**
+     * Get a user's demographics.
+     *
+     * @param trueNTHUserId
+     *            TrueNTH User ID.
+     * @param accessToken
+     *            Access Token, which must grant access to the user's
+     *            demographics.
+     * @return Result: demographics, or the reason they could not be obtained.
+     *         Values served from the cache report HTTP status 200.
+     * @see #getDemographics(long, TrueNTHAccessToken)
+     */
+    public TrueNTHResult<SSDemographics> fetchDemographics(final long trueNTHUserId, final TrueNTHAccessToken accessToken) {
+
+	return fetchCached(demographicsCache, demographicsGrants, TrueNTHEndpoint.DEMOGRAPHICS, trueNTHUserId, accessToken, new Fetcher<SSDemographics>() {
+
+	    @Override
+	    public TrueNTHResult<SSDemographics> fetch(final long key) {
+
+		return requestDemographics(USER_DEMOGRAPHICS_PATH.expand(key), accessToken);
+	    }
+	});
+    }
+
+    /**
+     * Returns the demographics cache.
+     *
+     * @return Demographics cache, or null if demographics are not cached.
+     */
+    public TrueNTHCache<Long, SSDemographics> getDemographicsCache() {
+
+	return demographicsCache;
+    }
+
+    /**
+     * Configures the demographics cache, keyed by TrueNTH User ID.
+     *
+     * <p>
+     * {@link TrueNTHServiceBuilder#demographicsCache(long, long, java.util.concurrent.TimeUnit, int, long)}
+     * configures it automatically.
+     * </p>
+     *
+     * <p>
+     * Cached demographics are bound to the access tokens SS authorized for
+     * them; see {@link #getDemographics(long, TrueNTHAccessToken)}. Thus, the
+     * cache only helps repeat reads within a session: the first read with
+     * each new access token, as on every login, still issues a request
+     * (shared by concurrent reads with that token).
+     * </p>
+     *
+     * @param demographicsCache
+     *            Demographics cache; null disables caching.
+     */
+    public void setDemographicsCache(final TrueNTHCache<Long, SSDemographics> demographicsCache) {
+
+	demographicsGrants = newGrants(demographicsCache);
+	this.demographicsCache = demographicsCache;
+    }
+
+    /**
+     * Discards the cached demographics of a user.
+     *
+     * @param trueNTHUserId
+     *            TrueNTH User ID.
+     */
+    public void invalidateDemographics(final long trueNTHUserId) {
+
+	final TrueNTHCache<Long, SSDemographics> cache = demographicsCache;
+	if (cache != null) {
+	    cache.invalidate(trueNTHUserId);
+	}
+    }
+
+    /**
+     * Returns the JSON backend used to read SS responses.
+     *
+     * @return JSON backend.
+     */
+    public TrueNTHJsonBackend getJsonBackend() {
+
+	return jsonBackend;
+    }
+
+    /**
+     * Configures the JSON backend used to read SS responses.
+     *
+     * <p>
+     * {@link TrueNTHServiceBuilder#jsonBackend(TrueNTHJsonBackend)} configures
+     * it automatically.
+     * </p>
+     *
+     * @param jsonBackend
+     *            JSON backend.
+     */
+    public void setJsonBackend(final TrueNTHJsonBackend jsonBackend) {
+
+	if (jsonBackend == null) { throw new NullPointerException("jsonBackend cannot be null"); }
+	this.jsonBackend = jsonBackend;
+    }
+
+    /**
+     * Returns the limit of concurrent requests towards SS.
+     *
+     * @return Maximum number of concurrent requests; 0 if unlimited.
+     */
+    public int getMaxConcurrentRequests() {
+
+	return maxConcurrentRequests;
+    }
+
+    /**
+     * Limits concurrent requests towards SS.
+     *
+     * <p>
+     * Requests beyond the limit are not queued: typed results report them as
+     * (retryable) transport failures, and token requests throw. Useful to keep
+     * one tenant from exhausting connections shared with others.
+     * </p>
+     *
+     * @param maxConcurrentRequests
+     *            Maximum number of concurrent requests; 0 removes the limit.
+     */
+    public synchronized void setMaxConcurrentRequests(final int maxConcurrentRequests) {
+
+	if (maxConcurrentRequests < 0) { throw new IllegalArgumentException("maxConcurrentRequests can't be negative"); }
+
+	requestPermits = (maxConcurrentRequests == 0) ? null : new Semaphore(maxConcurrentRequests);
+	this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * Returns the recorder receiving this service's measurements.
+     *
+     * @return Metrics recorder; null if metrics are disabled.
+     */
+    public TrueNTHMetricsRecorder getMetricsRecorder() {
+
+	return metrics;
+    }
+
+    /**
+     * Reports requests to metrics.
+     *
+     * <p>
+     * Every request towards SS is reported with its endpoint, HTTP status,
+     * latency and sizes; responses also report their parse time, and cached
+     * reads their hits and misses. By default, nothing is measured.
+     * </p>
+     *
+     * @param metrics
+     *            Metrics; null disables them.
+     * @param tenant
+     *            Tenant tag, under which measurements are recorded.
+     * @see edu.uw.cirg.truenth.oauth.metrics.TrueNTHMemoryMetrics
+     */
+    public void setMetrics(final TrueNTHMetrics metrics, final String tenant) {
+
+	if (metrics == null) {
+	    this.metrics = null;
+	    return;
+	}
+
+	if (tenant == null) { throw new IllegalArgumentException("tenant can't be null"); }
+	this.metrics = metrics.getRecorder(tenant);
+    }
+
+    /**
+     * Fetches request token.
+     *
+     * @throws UnsupportedOperationException
+     *             This operation is not supported by SS; thus, this workflow
+     *             shall not be used.
+     *
+     * @return Nothing will be returned, and an exception will be thrown.
+     */
+    @Override
+    @Deprecated
+    public Token getRequestToken() {
+
+	throw new UnsupportedOperationException("Unsupported operation, please use 'getAuthorizationUrl' and redirect your users there");
+    }
+
+    /**
+     * Returns the configured OAuth API base URL (API base).
+     *
+     * <p>
+     * For instance: https://stg.us.truenth.org/api
+     * </p>
+     *
+     * @return API base URL.
+     */
+    public String getResourceURL() {
+
+	return getConfig().getResourceURL();
+    }
+
+    /**
+     * Returns the configured roles URL.
+     *
+     * <p>
+     * This method returns the generic address of users' roles. It contains the
+     * #userId wildcard, and it does not represent a real location.
+     * </p>
+     *
+     * <p>
+     * For instance: https://stg.us.truenth.org/api/user/#userId/roles
+     * </p>
+     *
+     * @return Roles URL.
+     */
+    public String getRolesURL() {
+
+	return getConfig().getRolesURL();
+    }
+
+    /**
+     * Returns the configured roles URL, for a specific user.
+     *
+     * <p>
+     * Replaces the userId place holder with the String representation of the
+     * TrueNTH User ID. The roles URL is compiled once, by the configuration, as
+     * a {@link TrueNTHUriTemplate}; both <code>#userId</code> and
+     * <code>{userId}</code> are accepted.
+     * </p>
+     *
+     * @param userId
+     *            TrueNTH User ID.
+     * @return Roles URL.
+     *
+     * @throws IllegalStateException
+     *             If no valid roles URL was configured.
+     * @throws IllegalArgumentException
+     *             If the roles URL has placeholders other than userId.
+     */
+    public String getRolesURL(final long userId) {
+
+	final TrueNTHUriTemplate rolesURL = getConfig().getRolesTemplate();
+	if (rolesURL == null) { throw new IllegalStateException("Roles URL is not configured or invalid."); }
+
+	return rolesURL.expand(Collections.singletonMap(TrueNTHUrlPlaceHolders.USER_ID_NAME, userId));
+    }
+
+    /**
+     * Access current OAuth version.
+     *
+     * @return OAuth version.
+     */
+    @Override
+    public String getVersion() {
+
+	return VERSION;
+    }
+
+    /**
+     * Signs a request.
+     *
+     * <p>
+     * This method appends the access token into the request, according to the
+     * configured signature type.
+     * </p>
+     *
+     * <p>
+     * It supports the following two signature types:
+     * </p>
+     *
+     * <ul>
+     * <li><code>SignatureType.Header</code>;</li>
+     * <li><code>SignatureType.QueryString</code>;</li>
+     * </ul>
+     *
+     * <p>
+     * SignatureType.Header: Appends "BEARER" as an authentication header.
+     * </p>
+     *
+     * <p>
+     * SignatureType.QueryString: Append "oauth_token" as a query string
+     * parameter.
+     * </p>
+     *
+     */
+    @Override
+    public void signRequest(final Token accessToken, final OAuthRequest request) {
+
+	switch (getConfig().getSignatureType()) {
+	    case Header:
+		request.addHeader(OAuthConstants.HEADER, TrueNTHTokenType.BEARER.toString() + " " + accessToken.getToken());
 		break;
 	    case QueryString:
 		request.addQuerystringParameter(OAuthConstants.ACCESS_TOKEN, accessToken.getToken());
@@ -485,52 +1250,41 @@ public class TrueNTHOAuthService implements OAuthService {
      * @param accessToken
      *            Access Token.
      *
-     * @return The JSON object extracted from the response, or null in case of
-     *         exceptions.
+     * @return The JSON object extracted from the response, whatever its HTTP
+     *         status, or null in case of exceptions.
      *
      * @see #getResourceURL()
+     * @see #fetchResourceJson(String, Token)
      */
     public JsonObject getResourceJson(final String path, final Token accessToken) {
 
-	try {
-
-	    final URL url = new URL(getResourceURL().concat(path));
-
-	    return getResourceJson(url, accessToken);
+	final TrueNTHResult<String> address = resourceAddress(path);
+	if (!address.isSuccess()) { return null; }
 
-	} catch (final Exception e) {
-
-	    return null;
-	}
+	return fetchJson(TrueNTHEndpoint.RESOURCE, address.getValue(), accessToken, true).getValue();
     }
 
     /**
      * Get a resource that is know to be a JSON object.
      *
-     * @param address
-     *            Complete URL, which points to the desired resource.
+     * @param path
+     *            Resource relative path. It should be relative to the Resource
+     *            URL.
      *
      * @param accessToken
      *            Access Token.
      *
-     * @return The JSON object extracted from the response, or null in case of
-     *         exceptions.
+     * @return Result: the JSON object extracted from a successful (2xx)
+     *         response, or the reason it could not be obtained.
+     *
+     * @see #getResourceURL()
      */
-    private JsonObject getResourceJson(final URL url, final Token accessToken) {
-
-	try {
+    public TrueNTHResult<JsonObject> fetchResourceJson(final String path, final Token accessToken) {
 
-	    final OAuthRequest request = new OAuthRequest(Verb.GET, url.toString());
-	    signRequest(accessToken, request);
-
-	    final String json = getResource(url, accessToken).getBody();
-
-	    return Json.createReader(new StringReader(json)).readObject();
-
-	} catch (final Exception e) {
+	final TrueNTHResult<String> address = resourceAddress(path);
+	if (!address.isSuccess()) { return TrueNTHResult.failure(address); }
 
-	    return null;
-	}
+	return fetchJson(TrueNTHEndpoint.RESOURCE, address.getValue(), accessToken, false);
     }
 
     /**
@@ -544,76 +1298,836 @@ public class TrueNTHOAuthService implements OAuthService {
      *            Access Token.
      *
      * @return The received response, without and treatment, or null in case of
-     *         exceptions.
+     *         exceptions. If concurrent requests are limited, its body has
+     *         already been read: use {@link Response#getBody()}.
      *
      * @see #getResourceURL()
+     * @see #fetchResource(String, Token)
+     * @see #setMaxConcurrentRequests(int)
      */
     public Response getResource(final String path, final Token accessToken) {
 
-	try {
-
-	    final URL url = new URL(getResourceURL().concat(path));
-
-	    return getResource(url, accessToken);
+	final TrueNTHResult<String> address = resourceAddress(path);
+	if (!address.isSuccess()) { return null; }
 
-	} catch (final Exception e) {
-
-	    return null;
-	}
+	return fetchResponse(TrueNTHEndpoint.RESOURCE, address.getValue(), accessToken, true).getValue();
     }
 
     /**
      * Get a generic OAuth protected resource.
      *
-     * @param address
-     *            Complete URL, which points to the desired resource.
+     * @param path
+     *            Resource relative path. It should be relative to the Resource
+     *            URL.
      *
      * @param accessToken
      *            Access Token.
      *
-     * @return The received response, without and treatment, or null in case of
-     *         exceptions.
+     * @return Result: the received response, if successful (2xx), or the
+     *         reason it could not be obtained. If concurrent requests are
+     *         limited, its body has already been read: use
+     *         {@link Response#getBody()}.
      *
+     * @see #getResourceURL()
+     * @see #setMaxConcurrentRequests(int)
      */
-    private Response getResource(final URL address, final Token accessToken) {
-
-	try {
+    public TrueNTHResult<Response> fetchResource(final String path, final Token accessToken) {
 
-	    final OAuthRequest request = new OAuthRequest(Verb.GET, address.toString());
-	    signRequest(accessToken, request);
+	final TrueNTHResult<String> address = resourceAddress(path);
+	if (!address.isSuccess()) { return TrueNTHResult.failure(address); }
 
-	    return request.send();
-
-	} catch (final Exception e) {
-
-	    return null;
-	}
+	return fetchResponse(TrueNTHEndpoint.RESOURCE, address.getValue(), accessToken, false);
     }
 
     /**
      * Get user roles.
      *
+     * <p>
+     * If a role cache is configured, roles are served from it and the returned
+     * list holds canonical, immutable roles.
+     * </p>
+     *
      * @param trueNTHUserId
      *            TrueNTH User ID.
      * @param accessToken
      *            Access Token.
      * @return A list of the roles associated with the user.
+     * @see #setRoleCache(TrueNTHCache)
      */
     public List<SSRole> getTrueNTHRoles(final long trueNTHUserId, final TrueNTHAccessToken accessToken) {
 
-	try {
+	return fetchTrueNTHRoles(trueNTHUserId, accessToken).getValue();
+    }
 
-	    final URL url = new URL(getRolesURL(trueNTHUserId));
+    /**
+     * Get user roles.
+     *
+     * @param trueNTHUserId
+     *            TrueNTH User ID.
+     * @param accessToken
+     *            Access Token.
+     * @return Result: a list of the roles associated with the user, or the
+     *         reason it could not be obtained.
+     * @see #getTrueNTHRoles(long, TrueNTHAccessToken)
+     */
+    public TrueNTHResult<List<SSRole>> fetchTrueNTHRoles(final long trueNTHUserId, final TrueNTHAccessToken accessToken) {
 
-	    final JsonObject json = getResourceJson(url, accessToken);
+	if (roleCache != null) {
+	    final TrueNTHResult<SSRoleSet> roles = fetchTrueNTHRoleSet(trueNTHUserId, accessToken);
+	    if (!roles.isSuccess()) { return TrueNTHResult.failure(roles); }
+	    return TrueNTHResult.<List<SSRole>> success(new ArrayList<SSRole>(roles.getValue()), roles.getHttpStatus());
+	}
 
-	    final SSRoleExtractorJson roleExtractor = new SSRoleExtractorJson();
+	final TrueNTHResult<String> address = rolesAddress(trueNTHUserId);
+	if (!address.isSuccess()) { return TrueNTHResult.failure(address); }
 
-	    return roleExtractor.extractRoles(json);
+	final TrueNTHResult<JsonObject> json = fetchJson(TrueNTHEndpoint.ROLES, address.getValue(), accessToken, false);
+	if (!json.isSuccess()) { return TrueNTHResult.failure(json); }
 
-	} catch (final Exception e) {
+	try {
+	    final List<SSRole> roles = new SSRoleExtractorJson().extractRoles(json.getValue());
+	    if (roles == null) { return TrueNTHResult.parseFailure(json.getHttpStatus(), null); }
+	    return TrueNTHResult.success(roles, json.getHttpStatus());
+	} catch (final RuntimeException e) {
+	    return TrueNTHResult.parseFailure(json.getHttpStatus(), e);
+	}
+    }
 
-	    return null;
+    /**
+     * Get user roles, as a role set.
+     *
+     * <p>
+     * Roles are interned into the default role registry, so membership checks
+     * on the returned set run in constant time.
+     * </p>
+     *
+     * <p>
+     * If a role cache is configured, roles are served from it; the access
+     * token is used for misses and background refreshes.
+     * </p>
+     *
+     * @param trueNTHUserId
+     *            TrueNTH User ID.
+     * @param accessToken
+     *            Access Token.
+     * @return An immutable set of the roles associated with the user, or null
+     *         in case of exceptions.
+     * @see SSRoleSet
+     * @see #setRoleCache(TrueNTHCache)
+     */
+    public SSRoleSet getTrueNTHRoleSet(final long trueNTHUserId, final TrueNTHAccessToken accessToken) {
+
+	return fetchTrueNTHRoleSet(trueNTHUserId, accessToken).getValue();
+    }
+
+    /**
+     * Get user roles, as a role set.
+     *
+     * @param trueNTHUserId
+     *            TrueNTH User ID.
+     * @param accessToken
+     *            Access Token.
+     * @return Result: an immutable set of the roles associated with the user,
+     *         or the reason it could not be obtained. Values served from the
+     *         cache report HTTP status 200.
+     * @see #getTrueNTHRoleSet(long, TrueNTHAccessToken)
+     */
+    public TrueNTHResult<SSRoleSet> fetchTrueNTHRoleSet(final long trueNTHUserId, final TrueNTHAccessToken accessToken) {
+
+	return fetchCached(roleCache, roleGrants, TrueNTHEndpoint.ROLES, trueNTHUserId, accessToken, new Fetcher<SSRoleSet>() {
+
+	    @Override
+	    public TrueNTHResult<SSRoleSet> fetch(final long key) {
+
+		return requestTrueNTHRoleSet(key, accessToken);
+	    }
+	});
+    }
+
+    /**
+     * Get the changes in a user's roles.
+     *
+     * <p>
+     * Fetches the current roles (through the role cache, if configured) and
+     * compares them with the roles previously known. Callers synchronizing
+     * local groups can skip all work when
+     * {@link SSRoleDiff#hasChanges()} is false, and store
+     * {@link SSRoleDiff#getFingerprint()} for future comparisons.
+     * </p>
+     *
+     * @param trueNTHUserId
+     *            TrueNTH User ID.
+     * @param previous
+     *            Roles previously known for the user; null if none.
+     * @param accessToken
+     *            Access Token.
+     * @return Role changes, or null in case of exceptions.
+     * @see SSRoleDiff#between(SSRoleSet, SSRoleSet)
+     */
+    public SSRoleDiff getTrueNTHRoleDiff(final long trueNTHUserId, final SSRoleSet previous, final TrueNTHAccessToken accessToken) {
+
+	final SSRoleSet current = getTrueNTHRoleSet(trueNTHUserId, accessToken);
+
+	return (current == null) ? null : SSRoleDiff.between(previous, current);
+    }
+
+    /**
+     * Returns the role cache.
+     *
+     * @return Role cache, or null if roles are not cached.
+     */
+    public TrueNTHCache<Long, SSRoleSet> getRoleCache() {
+
+	return roleCache;
+    }
+
+    /**
+     * Configures the role cache, keyed by TrueNTH User ID.
+     *
+     * <p>
+     * {@link TrueNTHServiceBuilder#roleCache(long, long, java.util.concurrent.TimeUnit, int)}
+     * configures it automatically.
+     * </p>
+     *
+     * <p>
+     * Cached roles are bound to the access tokens SS authorized for them: a
+     * token SS did not authorize for a user, within the cache's time to live
+     * and stale window, issues its own request. Thus, the cache only helps
+     * repeat reads within a session: the first read with each new access
+     * token, as in a group synchronization on login, still issues a request
+     * (shared by concurrent reads with that token).
+     * </p>
+     *
+     * @param roleCache
+     *            Role cache; null disables caching.
+     */
+    public void setRoleCache(final TrueNTHCache<Long, SSRoleSet> roleCache) {
+
+	roleGrants = newGrants(roleCache);
+	this.roleCache = roleCache;
+    }
+
+    /**
+     * Returns the authorization state store.
+     *
+     * @return State store, or null if none is configured.
+     */
+    public TrueNTHStateStore getStateStore() {
+
+	return stateStore;
+    }
+
+    /**
+     * Configures the authorization state store.
+     *
+     * <p>
+     * {@link TrueNTHServiceBuilder#stateStore(TrueNTHStateStore)} configures
+     * it automatically.
+     * </p>
+     *
+     * @param stateStore
+     *            State store; null disables state checks.
+     */
+    public void setStateStore(final TrueNTHStateStore stateStore) {
+
+	this.stateStore = stateStore;
+    }
+
+    /**
+     * Issues authorization state, with a PKCE code verifier, and keeps it in
+     * the state store.
+     *
+     * <p>
+     * The state goes with the authorization URL
+     * ({@link #getAuthorizationUrl(TrueNTHAuthorizationState)}); SS returns it
+     * to the callback, which passes it to
+     * {@link #getAccessToken(String, String)}. No HTTP session is involved.
+     * </p>
+     *
+     * @return New authorization state.
+     *
+     * @throws IllegalStateException
+     *             If no state store is configured.
+     */
+    public TrueNTHAuthorizationState newAuthorizationState() {
+
+	final TrueNTHStateStore store = stateStore;
+	if (store == null) { throw new IllegalStateException("No authorization state store is configured."); }
+
+	final TrueNTHAuthorizationState state = TrueNTHAuthorizationState.generate(true);
+	store.put(state);
+	return state;
+    }
+
+    /**
+     * Discards the cached roles of a user.
+     *
+     * <p>
+     * Should be called whenever roles are known to have changed, so the next
+     * read fetches them from SS.
+     * </p>
+     *
+     * @param trueNTHUserId
+     *            TrueNTH User ID.
+     */
+    public void invalidateRoles(final long trueNTHUserId) {
+
+	final TrueNTHCache<Long, SSRoleSet> cache = roleCache;
+	if (cache != null) {
+	    cache.invalidate(trueNTHUserId);
+	}
+    }
+
+    /**
+     * Reads a value through a cache, keeping the failure of the request that
+     * could not load it.
+     *
+     * <p>
+     * Accesses count as misses when the request is issued by the calling
+     * thread; background refreshes do not count.
+     * </p>
+     *
+     * <p>
+     * Concurrent misses share a single request, and its outcome; except
+     * unauthorized responses, which are specific to the token used: callers
+     * that waited for them issue their own request.
+     * </p>
+     *
+     * <p>
+     * Cached values are served only to tokens granted access to them: tokens
+     * whose request for the same key succeeded. Other tokens issue their own
+     * request, whose value, if any, replaces the cached one; concurrent
+     * requests with the same token share it, through the grants' loader.
+     * </p>
+     *
+     * @param cache
+     *            Cache; null to always fetch.
+     * @param grants
+     *            Tokens granted access to cached values.
+     * @param endpoint
+     *            Endpoint reported to metrics.
+     * @param key
+     *            TrueNTH User ID.
+     * @param accessToken
+     *            Access Token used by the fetcher.
+     * @param fetcher
+     *            Issues the request.
+     * @return Result: cached values report HTTP status 200.
+     */
+    private <V> TrueNTHResult<V> fetchCached(final TrueNTHCache<Long, V> cache, final TrueNTHCache<String, Boolean> grants,
+	    final TrueNTHEndpoint endpoint, final long key, final Token accessToken, final Fetcher<V> fetcher) {
+
+	if ((cache == null) || (grants == null)) { return fetcher.fetch(key); }
+
+	final TrueNTHMetricsRecorder recorder = metrics;
+	final String grant = grantKey(accessToken, key);
+
+	if (grants.getIfPresent(grant) == null) { return fetchGranted(cache, grants, endpoint, key, grant, fetcher); }
+
+	final Thread caller = Thread.currentThread();
+	final boolean[] missed = new boolean[1];
+
+	V value;
+	TrueNTHResult<V> failure = null;
+	try {
+	    value = cache.get(key, new TrueNTHCache.Loader<Long, V>() {
+
+		@Override
+		public V load(final Long loading) throws FetchFailure {
+
+		    if (Thread.currentThread() == caller) {
+			missed[0] = true;
+		    }
+
+		    final TrueNTHResult<V> result = fetcher.fetch(loading);
+		    if (!result.isSuccess()) { throw new FetchFailure(result); }
+
+		    grants.put(grant, Boolean.TRUE);
+		    return result.getValue();
+		}
+	    });
+	} catch (final FetchFailure e) {
+	    value = null;
+	    failure = TrueNTHResult.failure(e.result);
+	} catch (final Exception e) {
+	    value = null;
+	    failure = TrueNTHResult.transportFailure(e);
+	}
+
+	if (recorder != null) {
+	    recorder.recordCacheAccess(endpoint, !missed[0]);
+	}
+
+	if (value != null) { return TrueNTHResult.success(value, HTTP_OK); }
+	if (failure == null) { return TrueNTHResult.parseFailure(TrueNTHResult.NO_STATUS, null); }
+	if (!missed[0] && failure.isUnauthorized()) { return fetcher.fetch(key); }
+	return failure;
+    }
+
+    /**
+     * Reads a value for a token not yet granted access to it.
+     *
+     * <p>
+     * The token's request is issued through the grants' loader: concurrent
+     * reads with the same token and key share it, and its outcome. Its
+     * value, if any, replaces the cached one.
+     * </p>
+     *
+     * @return Result: values of shared requests report HTTP status 200.
+     */
+    private <V> TrueNTHResult<V> fetchGranted(final TrueNTHCache<Long, V> cache, final TrueNTHCache<String, Boolean> grants,
+	    final TrueNTHEndpoint endpoint, final long key, final String grant, final Fetcher<V> fetcher) {
+
+	final List<TrueNTHResult<V>> loaded = new ArrayList<TrueNTHResult<V>>(1);
+	TrueNTHResult<V> failure = null;
+
+	try {
+	    grants.get(grant, new TrueNTHCache.Loader<String, Boolean>() {
+
+		@Override
+		public Boolean load(final String loading) throws FetchFailure {
+
+		    final TrueNTHResult<V> result = fetcher.fetch(key);
+		    loaded.add(result);
+		    if (!result.isSuccess()) { throw new FetchFailure(result); }
+
+		    cache.put(key, result.getValue());
+		    return Boolean.TRUE;
+		}
+	    });
+	} catch (final FetchFailure e) {
+	    failure = TrueNTHResult.failure(e.result);
+	} catch (final Exception e) {
+	    failure = TrueNTHResult.transportFailure(e);
+	}
+
+	final TrueNTHMetricsRecorder recorder = metrics;
+	if (recorder != null) {
+	    recorder.recordCacheAccess(endpoint, loaded.isEmpty());
+	}
+
+	// This thread issued the request: its own result.
+	if (!loaded.isEmpty()) { return loaded.get(0); }
+	if (failure != null) { return failure; }
+
+	// Another read with the same token issued it: the value it cached.
+	final V value = cache.getIfPresent(key);
+	return (value != null) ? TrueNTHResult.success(value, HTTP_OK) : fetcher.fetch(key);
+    }
+
+    /**
+     * Exchanges an Authorization Code for an access token.
+     *
+     * @param code
+     *            Authorization Code.
+     * @param codeVerifier
+     *            PKCE code verifier; null if PKCE is not used.
+     * @return access token.
+     */
+    private TrueNTHAccessToken requestAccessToken(final String code, final String codeVerifier) {
+
+	final TrueNTHOAuthConfig config = getConfig();
+	final OAuthRequest request = new OAuthRequest(api.getAccessTokenVerb(), api.getAccessTokenEndpoint(config));
+	request.addBodyParameter(OAuthConstants.CLIENT_ID, config.getApiKey());
+	request.addBodyParameter(OAuthConstants.CLIENT_SECRET, config.getApiSecret());
+	request.addBodyParameter(TrueNTHGrantType.PARAMETER, TrueNTHGrantType.CODE.toString());
+	request.addBodyParameter(OAuthConstants.CODE, code);
+	request.addBodyParameter(OAuthConstants.REDIRECT_URI, config.getCallback());
+	if (config.hasScope()) {
+	    request.addBodyParameter(OAuthConstants.SCOPE, config.getScope());
+	}
+	if (codeVerifier != null) {
+	    request.addBodyParameter(TrueNTHAuthorizationState.CODE_VERIFIER, codeVerifier);
+	}
+
+	final Semaphore permits = requestPermits;
+	if ((permits != null) && !permits.tryAcquire()) { throw new OAuthException(LIMIT_REACHED); }
+
+	final TrueNTHMetricsRecorder recorder = metrics;
+	final long start = (recorder == null) ? 0 : System.nanoTime();
+
+	Response response = null;
+	String body = null;
+	try {
+	    response = request.send();
+	    body = response.getBody();
+	} finally {
+	    if (recorder != null) {
+		recorder.recordRequest(TrueNTHEndpoint.ACCESS_TOKEN, (response == null) ? TrueNTHResult.NO_STATUS : response.getCode(),
+			System.nanoTime() - start, request.getBodyContents().length(), (body == null) ? 0 : body.getBytes(StandardCharsets.UTF_8).length);
+	    }
+	    if (permits != null) {
+		permits.release();
+	    }
+	}
+
+	if (recorder == null) { return api.getAccessTokenExtractor(jsonBackend).extract(body); }
+
+	final long parsing = System.nanoTime();
+	try {
+	    return api.getAccessTokenExtractor(jsonBackend).extract(body);
+	} finally {
+	    recorder.recordParse(TrueNTHEndpoint.ACCESS_TOKEN, System.nanoTime() - parsing);
+	}
+    }
+
+    /**
+     * Fetches a JSON object.
+     *
+     * @param endpoint
+     *            Endpoint reported to metrics.
+     * @param address
+     *            Complete URL, which points to the desired resource.
+     * @param accessToken
+     *            Access Token.
+     * @param anyStatus
+     *            True to parse responses of any HTTP status; false to report
+     *            non 2xx responses as HTTP errors.
+     * @return Result: JSON object.
+     */
+    private TrueNTHResult<JsonObject> fetchJson(final TrueNTHEndpoint endpoint, final String address, final Token accessToken,
+	    final boolean anyStatus) {
+
+	return send(endpoint, address, accessToken, new ResponseHandler<JsonObject>() {
+
+	    @Override
+	    public TrueNTHResult<JsonObject> handle(final Response response, final Body body) {
+
+		if (!anyStatus && !response.isSuccessful()) {
+		    discard(response);
+		    return TrueNTHResult.httpError(response.getCode());
+		}
+
+		final TrueNTHMetricsRecorder recorder = metrics;
+		final long start = (recorder == null) ? 0 : System.nanoTime();
+
+		try {
+		    return TrueNTHResult.success(jsonBackend.readObject(body), response.getCode());
+		} catch (final JsonException e) {
+		    // Malformed bodies are parse failures, even when the parser
+		    // reports them as IOExceptions (e.g. Jackson's
+		    // JsonParseException).
+		    if (!(e instanceof JsonParsingException) && (e.getCause() instanceof IOException)) {
+			return TrueNTHResult.transportFailure(e);
+		    }
+		    return TrueNTHResult.parseFailure(response.getCode(), e);
+		} catch (final RuntimeException e) {
+		    return TrueNTHResult.transportFailure(e);
+		} finally {
+		    if (recorder != null) {
+			recorder.recordParse(endpoint, System.nanoTime() - start);
+		    }
+		    discard(response);
+		}
+	    }
+	});
+    }
+
+    /**
+     * Fetches a response, for callers.
+     *
+     * <p>
+     * If concurrent requests are limited, the body is read before the request
+     * permit is released: callers can't hold it. If requests are measured, it
+     * is read too, so that its time and size are.
+     * </p>
+     *
+     * @param endpoint
+     *            Endpoint reported to metrics.
+     * @param address
+     *            Complete URL, which points to the desired resource.
+     * @param accessToken
+     *            Access Token.
+     * @param anyStatus
+     *            True to return responses of any HTTP status; false to report
+     *            non 2xx responses as HTTP errors.
+     * @return Result: response.
+     */
+    private TrueNTHResult<Response> fetchResponse(final TrueNTHEndpoint endpoint, final String address, final Token accessToken,
+	    final boolean anyStatus) {
+
+	return send(endpoint, address, accessToken, new ResponseHandler<Response>() {
+
+	    @Override
+	    public TrueNTHResult<Response> handle(final Response response, final Body body) {
+
+		if (!anyStatus && !response.isSuccessful()) {
+		    discard(response);
+		    return TrueNTHResult.httpError(response.getCode());
+		}
+
+		if ((requestPermits != null) || (metrics != null)) {
+		    try {
+			body.consumed(response.getBody());
+		    } catch (final RuntimeException e) {
+			return TrueNTHResult.transportFailure(e);
+		    }
+		}
+		return TrueNTHResult.success(response, response.getCode());
+	    }
+	});
+    }
+
+    /**
+     * Issues a signed GET request.
+     *
+     * @param endpoint
+     *            Endpoint reported to metrics.
+     * @param address
+     *            Complete URL, which points to the desired resource.
+     * @param accessToken
+     *            Access Token.
+     * @param handler
+     *            Consumes the response, whatever its HTTP status, before the
+     *            request permit is released; metrics measure the request
+     *            until it returns, and the body bytes it read.
+     * @return Result: the handler's; or a transport failure if no response
+     *         was received.
+     */
+    private <V> TrueNTHResult<V> send(final TrueNTHEndpoint endpoint, final String address, final Token accessToken,
+	    final ResponseHandler<V> handler) {
+
+	// Released into the semaphore acquired, even if the limit changes.
+	final Semaphore permits = requestPermits;
+	if ((permits != null) && !permits.tryAcquire()) { return TrueNTHResult.transportFailure(new RejectedExecutionException(LIMIT_REACHED)); }
+
+	final TrueNTHMetricsRecorder recorder = metrics;
+	final long start = (recorder == null) ? 0 : System.nanoTime();
+
+	try {
+
+	    final Response response;
+	    try {
+		final OAuthRequest request = new OAuthRequest(Verb.GET, address);
+		signRequest(accessToken, request);
+		response = request.send();
+	    } catch (final RuntimeException e) {
+		if (recorder != null) {
+		    recorder.recordRequest(endpoint, TrueNTHResult.NO_STATUS, System.nanoTime() - start, 0, 0);
+		}
+		return TrueNTHResult.transportFailure(e);
+	    }
+
+	    final Body body = new Body(response.getStream());
+	    try {
+		return handler.handle(response, body);
+	    } finally {
+		if (recorder != null) {
+		    recorder.recordRequest(endpoint, response.getCode(), System.nanoTime() - start, 0, body.bytes);
+		}
+	    }
+
+	} finally {
+
+	    if (permits != null) {
+		permits.release();
+	    }
+	}
+    }
+
+    private static boolean equal(final String a, final String b) {
+
+	return (a == null) ? (b == null) : a.equals(b);
+    }
+
+    /**
+     * Identifies a token's grant to a cached value, without keeping the token.
+     *
+     * @param accessToken
+     *            Access Token.
+     * @param key
+     *            TrueNTH User ID.
+     * @return Grant key: the token's SHA-256 digest and the user ID.
+     */
+    private static String grantKey(final Token accessToken, final long key) {
+
+	final String token = ((accessToken == null) || (accessToken.getToken() == null)) ? "" : accessToken.getToken();
+	return Base64.encodeBase64URLSafeString(GRANT_DIGESTS.get().digest(token.getBytes(StandardCharsets.UTF_8))) + ':' + key;
+    }
+
+    private static boolean isEmpty(final String value) {
+
+	return (value == null) || value.isEmpty();
+    }
+
+    /**
+     * Creates the grants of a cache: they live as long as its values may be
+     * served, and several sessions may read the same user.
+     *
+     * @param cache
+     *            Cache; may be null.
+     * @return Grants cache; null if the cache is null.
+     */
+    private static TrueNTHCache<String, Boolean> newGrants(final TrueNTHCache<Long, ?> cache) {
+
+	if (cache == null) { return null; }
+
+	final long lifetime = cache.getTimeToLive(TimeUnit.MILLISECONDS) + cache.getStaleWindow(TimeUnit.MILLISECONDS);
+	final int maxEntries = (int) Math.min(Integer.MAX_VALUE, 4L * cache.getMaxEntries());
+	return new TrueNTHCache<String, Boolean>(Math.max(1, lifetime), 0, TimeUnit.MILLISECONDS, maxEntries, null);
+    }
+
+    /**
+     * Releases a response body, so its connection can be reused.
+     *
+     * @param response
+     *            Response.
+     */
+    private static void discard(final Response response) {
+
+	try {
+	    final InputStream stream = response.getStream();
+	    if (stream != null) {
+		stream.close();
+	    }
+	} catch (final Exception e) {
+	    // Nothing to release.
+	}
+    }
+
+    /**
+     * Fetches demographics from SS.
+     *
+     * @param path
+     *            Resource path, relative to the resource URL.
+     * @param accessToken
+     *            Access Token.
+     * @return Result: lazy demographics.
+     */
+    private TrueNTHResult<SSDemographics> requestDemographics(final String path, final Token accessToken) {
+
+	final TrueNTHResult<String> address = resourceAddress(path);
+	if (!address.isSuccess()) { return TrueNTHResult.failure(address); }
+
+	final TrueNTHResult<byte[]> body = send(TrueNTHEndpoint.DEMOGRAPHICS, address.getValue(), accessToken, new ResponseHandler<byte[]>() {
+
+	    @Override
+	    public TrueNTHResult<byte[]> handle(final Response response, final Body body) {
+
+		if (!response.isSuccessful()) {
+		    discard(response);
+		    return TrueNTHResult.httpError(response.getCode());
+		}
+
+		try {
+		    return TrueNTHResult.success(readBytes(body), response.getCode());
+		} catch (final IOException e) {
+		    return TrueNTHResult.transportFailure(e);
+		}
+	    }
+	});
+	if (!body.isSuccess()) { return TrueNTHResult.failure(body); }
+
+	final TrueNTHMetricsRecorder recorder = metrics;
+	final long start = (recorder == null) ? 0 : System.nanoTime();
+
+	try {
+	    return TrueNTHResult.success(new SSDemographicsExtractorJson(jsonBackend).extractDemographics(body.getValue()), body.getHttpStatus());
+	} catch (final RuntimeException e) {
+	    return TrueNTHResult.parseFailure(body.getHttpStatus(), e);
+	} finally {
+	    if (recorder != null) {
+		recorder.recordParse(TrueNTHEndpoint.DEMOGRAPHICS, System.nanoTime() - start);
+	    }
+	}
+    }
+
+    /**
+     * Reads a response stream completely.
+     *
+     * @param stream
+     *            Response stream.
+     * @return Stream content.
+     * @throws IOException
+     *             If the stream cannot be read.
+     */
+    private static byte[] readBytes(final InputStream stream) throws IOException {
+
+	try {
+	    final ByteArrayOutputStream content = new ByteArrayOutputStream(4096);
+	    final byte[] buffer = new byte[4096];
+
+	    int read;
+	    while ((read = stream.read(buffer)) != -1) {
+		content.write(buffer, 0, read);
+	    }
+	    return content.toByteArray();
+	} finally {
+	    stream.close();
+	}
+    }
+
+    /**
+     * Completes the declared configuration again, with the latest discovered
+     * endpoints.
+     *
+     * @param binding
+     *            Binding notified; ignored if no longer current.
+     */
+    private synchronized void rediscover(final DiscoveryBinding binding) {
+
+	if (binding == discoveryBinding) {
+	    setConfig(snapshot.declared);
+	}
+    }
+
+    /**
+     * Fetches user roles from SS.
+     *
+     * @param trueNTHUserId
+     *            TrueNTH User ID.
+     * @param accessToken
+     *            Access Token.
+     * @return Result: role set.
+     */
+    private TrueNTHResult<SSRoleSet> requestTrueNTHRoleSet(final long trueNTHUserId, final TrueNTHAccessToken accessToken) {
+
+	final TrueNTHResult<String> address = rolesAddress(trueNTHUserId);
+	if (!address.isSuccess()) { return TrueNTHResult.failure(address); }
+
+	final TrueNTHResult<JsonObject> json = fetchJson(TrueNTHEndpoint.ROLES, address.getValue(), accessToken, false);
+	if (!json.isSuccess()) { return TrueNTHResult.failure(json); }
+
+	try {
+	    final SSRoleSet roles = new SSRoleExtractorJson().extractRoleSet(json.getValue());
+	    if (roles == null) { return TrueNTHResult.parseFailure(json.getHttpStatus(), null); }
+	    return TrueNTHResult.success(roles, json.getHttpStatus());
+	} catch (final RuntimeException e) {
+	    return TrueNTHResult.parseFailure(json.getHttpStatus(), e);
+	}
+    }
+
+    /**
+     * Resolves a resource address.
+     *
+     * @param path
+     *            Resource path, relative to the resource URL.
+     * @return Result: address; a configuration failure if no resource URL is
+     *         configured.
+     */
+    private TrueNTHResult<String> resourceAddress(final String path) {
+
+	try {
+	    return TrueNTHResult.success(getConfig().resolveResourceURL(path), TrueNTHResult.NO_STATUS);
+	} catch (final IllegalStateException e) {
+	    return TrueNTHResult.configurationFailure(e);
+	}
+    }
+
+    /**
+     * Resolves the roles address of a user.
+     *
+     * @param trueNTHUserId
+     *            TrueNTH User ID.
+     * @return Result: address; a configuration failure if the roles URL is not
+     *         configured or cannot be expanded.
+     */
+    private TrueNTHResult<String> rolesAddress(final long trueNTHUserId) {
+
+	try {
+	    return TrueNTHResult.success(getRolesURL(trueNTHUserId), TrueNTHResult.NO_STATUS);
+	} catch (final IllegalStateException | IllegalArgumentException e) {
+	    return TrueNTHResult.configurationFailure(e);
 	}
     }
 }
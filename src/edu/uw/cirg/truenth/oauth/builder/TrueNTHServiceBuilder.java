@@ -16,6 +16,8 @@
 package edu.uw.cirg.truenth.oauth.builder;
 
 import java.io.OutputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import org.scribe.exceptions.OAuthException;
 import org.scribe.model.SignatureType;
@@ -23,7 +25,18 @@ import org.scribe.utils.Preconditions;
 
 import edu.uw.cirg.truenth.oauth.TrueNTHOAuthService;
 import edu.uw.cirg.truenth.oauth.builder.api.TrueNTHOAuthProvider;
+import edu.uw.cirg.truenth.oauth.cache.TrueNTHCache;
+import edu.uw.cirg.truenth.oauth.discovery.TrueNTHDiscovery;
+import edu.uw.cirg.truenth.oauth.json.TrueNTHJsonBackend;
+import edu.uw.cirg.truenth.oauth.json.TrueNTHJsonBackends;
+import edu.uw.cirg.truenth.oauth.metrics.TrueNTHMemoryMetrics;
+import edu.uw.cirg.truenth.oauth.metrics.TrueNTHMetrics;
 import edu.uw.cirg.truenth.oauth.model.TrueNTHOAuthConfig;
+import edu.uw.cirg.truenth.oauth.state.TrueNTHMemoryStateStore;
+import edu.uw.cirg.truenth.oauth.state.TrueNTHStateStore;
+import edu.uw.cirg.truenth.ss.demographics.SSDemographics;
+import edu.uw.cirg.truenth.ss.demographics.SSDemographicsLazy;
+import edu.uw.cirg.truenth.ss.roles.SSRoleSet;
 
 /**
  * Extension of ServiceBuilder to include server configuration parameters.
@@ -38,6 +51,21 @@ import edu.uw.cirg.truenth.oauth.model.TrueNTHOAuthConfig;
  */
 public class TrueNTHServiceBuilder {
 
+    /**
+     * Estimates the memory held by cached demographics: raw data plus a fixed
+     * allowance for the decoded attributes.
+     */
+    private static final TrueNTHCache.Weigher<SSDemographics> DEMOGRAPHICS_WEIGHER = new TrueNTHCache.Weigher<SSDemographics>() {
+
+	@Override
+	public long weigh(final SSDemographics demographics) {
+
+	    final long attributes = 512;
+	    if (demographics instanceof SSDemographicsLazy) { return attributes + ((SSDemographicsLazy) demographics).getRetainedSize(); }
+	    return attributes;
+	}
+    };
+
     private String	       accessTokenEndpointURL;
     private String	       accessTokenStatusEndpointURL;
 
@@ -48,13 +76,29 @@ public class TrueNTHServiceBuilder {
 
     private String	       baseAuthorizationURL;
     private String	       baseURL;
+    private Executor	     cacheExecutor;
     private String	       callbackURL;
     private OutputStream	 debugStream;
+    private TrueNTHDiscovery     discovery;
+    private long		 demographicsCacheMaxBytes;
+    private int		  demographicsCacheMaxEntries;
+    private long		 demographicsCacheStaleWindow;
+    private long		 demographicsCacheTTL;
+    private TimeUnit	     demographicsCacheUnit;
+    private TrueNTHJsonBackend   jsonBackend;
+    private int		  maxConcurrentRequests;
+    private TrueNTHMetrics       metrics;
+    private String	       metricsTenant;
 
     private String	       resourceURL;
+    private long		 roleCacheStaleWindow;
+    private long		 roleCacheTTL;
+    private TimeUnit	     roleCacheUnit;
+    private int		  roleCacheMaxEntries;
     private String	       rolesURL;
     private String	       scope;
     private SignatureType	signatureType;
+    private TrueNTHStateStore    stateStore;
 
     /**
      * Default constructor.
@@ -70,6 +114,51 @@ public class TrueNTHServiceBuilder {
 	signatureType = SignatureType.Header;
     }
 
+    /**
+     * Copy constructor.
+     *
+     * <p>
+     * Copies every setting of a template, so that it can be completed without
+     * changing the template. Objects configured in the template (provider,
+     * discovery, state store, executor, metrics, ...) are shared, not copied.
+     * </p>
+     *
+     * @param template
+     *            Builder to copy.
+     */
+    public TrueNTHServiceBuilder(final TrueNTHServiceBuilder template) {
+
+	accessTokenEndpointURL = template.accessTokenEndpointURL;
+	accessTokenStatusEndpointURL = template.accessTokenStatusEndpointURL;
+	api = template.api;
+	apiKey = template.apiKey;
+	apiSecret = template.apiSecret;
+	baseAuthorizationURL = template.baseAuthorizationURL;
+	baseURL = template.baseURL;
+	cacheExecutor = template.cacheExecutor;
+	callbackURL = template.callbackURL;
+	debugStream = template.debugStream;
+	discovery = template.discovery;
+	demographicsCacheMaxBytes = template.demographicsCacheMaxBytes;
+	demographicsCacheMaxEntries = template.demographicsCacheMaxEntries;
+	demographicsCacheStaleWindow = template.demographicsCacheStaleWindow;
+	demographicsCacheTTL = template.demographicsCacheTTL;
+	demographicsCacheUnit = template.demographicsCacheUnit;
+	jsonBackend = template.jsonBackend;
+	maxConcurrentRequests = template.maxConcurrentRequests;
+	metrics = template.metrics;
+	metricsTenant = template.metricsTenant;
+	resourceURL = template.resourceURL;
+	roleCacheStaleWindow = template.roleCacheStaleWindow;
+	roleCacheTTL = template.roleCacheTTL;
+	roleCacheUnit = template.roleCacheUnit;
+	roleCacheMaxEntries = template.roleCacheMaxEntries;
+	rolesURL = template.rolesURL;
+	scope = template.scope;
+	signatureType = template.signatureType;
+	stateStore = template.stateStore;
+    }
+
     /**
      * Configures the SS' OAuth access token request URL.
      *
@@ -194,16 +283,74 @@ public class TrueNTHServiceBuilder {
 
 	Preconditions.checkNotNull(api, "Must specify a valid api through the provider() method");
 
-	Preconditions.checkEmptyString(accessTokenEndpointURL, "Must provide an access token endpoint URL");
-	Preconditions.checkEmptyString(baseAuthorizationURL, "Must provide an base authorization URL");
 	Preconditions.checkEmptyString(callbackURL, "Must provide an callback URL");
 
 	Preconditions.checkEmptyString(apiKey, "Must provide an api key");
 	Preconditions.checkEmptyString(apiSecret, "Must provide an api secret");
 
-	return api.createService(new TrueNTHOAuthConfig(getApiKey(), getApiSecret(), getAccessTokenEndpointURL(), getAccessTokenStatusEndpointURL(),
-		getBaseAuthorizationURL(), getBaseURL(), getResourceURL(), getRolesURL(), getCallbackURL(), getSignatureType(), getScope(),
-		getDebugStream()));
+	final TrueNTHOAuthConfig explicit = new TrueNTHOAuthConfig(getApiKey(), getApiSecret(), getAccessTokenEndpointURL(),
+		getAccessTokenStatusEndpointURL(), getBaseAuthorizationURL(), getBaseURL(), getResourceURL(), getRolesURL(), getCallbackURL(),
+		getSignatureType(), getScope(), getDebugStream());
+	final TrueNTHOAuthConfig config = (discovery == null) ? explicit : discovery.getMetadata().complete(explicit);
+
+	Preconditions.checkEmptyString(config.getAccessTokenEndpoint(), "Must provide an access token endpoint URL");
+	Preconditions.checkEmptyString(config.getBaseAuthorizationURL(), "Must provide an base authorization URL");
+	config.validate();
+
+	final TrueNTHOAuthService service = api.createService(config);
+
+	if (discovery != null) {
+	    // Only the endpoints set by hand are declared; the rest follow SS.
+	    service.setDiscovery(discovery);
+	    service.setConfig(explicit);
+	}
+
+	if (jsonBackend != null) {
+	    service.setJsonBackend(jsonBackend);
+	}
+
+	if (stateStore != null) {
+	    service.setStateStore(stateStore);
+	}
+
+	if (maxConcurrentRequests > 0) {
+	    service.setMaxConcurrentRequests(maxConcurrentRequests);
+	}
+
+	if (metrics != null) {
+	    service.setMetrics(metrics, metricsTenant);
+	}
+
+	if (roleCacheTTL > 0) {
+	    service.setRoleCache(new TrueNTHCache<Long, SSRoleSet>(roleCacheTTL, roleCacheStaleWindow, roleCacheUnit, roleCacheMaxEntries,
+		    cacheExecutor));
+	}
+
+	if (demographicsCacheTTL > 0) {
+	    service.setDemographicsCache(new TrueNTHCache<Long, SSDemographics>(demographicsCacheTTL, demographicsCacheStaleWindow,
+		    demographicsCacheUnit, demographicsCacheMaxEntries, demographicsCacheMaxBytes, DEMOGRAPHICS_WEIGHER, cacheExecutor));
+	}
+
+	return service;
+    }
+
+    /**
+     * Configures the executor used for background cache refreshes.
+     *
+     * <p>
+     * Defaults to a shared daemon executor.
+     * </p>
+     *
+     * @param executor
+     *            Executor for cache refreshes.
+     * @return The {@link TrueNTHServiceBuilder} instance for method chaining.
+     * @see TrueNTHCache#getDefaultExecutor()
+     */
+    public TrueNTHServiceBuilder cacheExecutor(final Executor executor) {
+
+	Preconditions.checkNotNull(executor, "Cache executor can't be null");
+	cacheExecutor = executor;
+	return this;
     }
 
     /**
@@ -230,6 +377,8 @@ public class TrueNTHServiceBuilder {
     private TrueNTHOAuthProvider createApi(final Class<? extends TrueNTHOAuthProvider> apiClass) {
 
 	Preconditions.checkNotNull(apiClass, "Api class cannot be null");
+	if (apiClass == TrueNTHOAuthProvider.class) { return TrueNTHOAuthProvider.getDefault(); }
+
 	TrueNTHOAuthProvider api;
 	try {
 	    api = apiClass.newInstance();
@@ -239,6 +388,46 @@ public class TrueNTHServiceBuilder {
 	return api;
     }
 
+    /**
+     * Enables the demographics cache, keyed by TrueNTH User ID.
+     *
+     * <p>
+     * Demographics are served from the cache for <code>ttl</code>. During the
+     * following <code>staleWhileRevalidate</code> period, cached demographics
+     * are still served while they are revalidated in background. By default,
+     * demographics are not cached.
+     * </p>
+     *
+     * @param ttl
+     *            Time during which cached demographics are fresh. Must be
+     *            positive.
+     * @param staleWhileRevalidate
+     *            Time during which expired demographics are served while
+     *            revalidated.
+     * @param unit
+     *            Time unit of both periods.
+     * @param maxEntries
+     *            Maximum number of users kept in the cache.
+     * @param maxBytes
+     *            Approximate memory budget, in bytes.
+     * @return The {@link TrueNTHServiceBuilder} instance for method chaining.
+     * @see TrueNTHOAuthService#invalidateDemographics(long)
+     */
+    public TrueNTHServiceBuilder demographicsCache(final long ttl, final long staleWhileRevalidate, final TimeUnit unit, final int maxEntries,
+	    final long maxBytes) {
+
+	Preconditions.checkNotNull(unit, "Time unit can't be null");
+	if ((ttl <= 0) || (staleWhileRevalidate < 0) || (maxEntries <= 0) || (maxBytes <= 0)) { throw new IllegalArgumentException(
+		"Invalid demographics cache configuration"); }
+
+	demographicsCacheTTL = ttl;
+	demographicsCacheStaleWindow = staleWhileRevalidate;
+	demographicsCacheUnit = unit;
+	demographicsCacheMaxEntries = maxEntries;
+	demographicsCacheMaxBytes = maxBytes;
+	return this;
+    }
+
     /**
      * Configures the debug stream as System.out.
      *
@@ -264,6 +453,88 @@ public class TrueNTHServiceBuilder {
 	return this;
     }
 
+    /**
+     * Configures endpoint discovery.
+     *
+     * <p>
+     * Endpoints not configured by hand are read from SS' metadata document
+     * when the service is built; afterwards, the service swaps its
+     * configuration whenever the discovered endpoints change. The same
+     * discovery instance can be shared by every tenant of an SS.
+     * </p>
+     *
+     * @param discovery
+     *            Endpoint discovery.
+     * @return The {@link TrueNTHServiceBuilder} instance for method chaining.
+     */
+    public TrueNTHServiceBuilder discovery(final TrueNTHDiscovery discovery) {
+
+	Preconditions.checkNotNull(discovery, "Discovery can't be null");
+	this.discovery = discovery;
+	return this;
+    }
+
+    /**
+     * Configures the JSON backend used to read SS responses.
+     *
+     * <p>
+     * Defaults to {@link TrueNTHJsonBackends#getDefault()}.
+     * </p>
+     *
+     * @param backend
+     *            JSON backend; for instance,
+     *            {@link TrueNTHJsonBackends#jackson()}.
+     * @return The {@link TrueNTHServiceBuilder} instance for method chaining.
+     */
+    public TrueNTHServiceBuilder jsonBackend(final TrueNTHJsonBackend backend) {
+
+	Preconditions.checkNotNull(backend, "JSON backend can't be null");
+	jsonBackend = backend;
+	return this;
+    }
+
+    /**
+     * Limits concurrent requests towards SS, per service.
+     *
+     * <p>
+     * By default, requests are not limited.
+     * </p>
+     *
+     * @param maxConcurrentRequests
+     *            Maximum number of concurrent requests. Must be positive.
+     * @return The {@link TrueNTHServiceBuilder} instance for method chaining.
+     * @see TrueNTHOAuthService#setMaxConcurrentRequests(int)
+     */
+    public TrueNTHServiceBuilder maxConcurrentRequests(final int maxConcurrentRequests) {
+
+	if (maxConcurrentRequests <= 0) { throw new IllegalArgumentException("maxConcurrentRequests must be positive"); }
+	this.maxConcurrentRequests = maxConcurrentRequests;
+	return this;
+    }
+
+    /**
+     * Reports the service's requests to metrics.
+     *
+     * <p>
+     * By default, nothing is measured.
+     * </p>
+     *
+     * @param metrics
+     *            Metrics; for instance, a {@link TrueNTHMemoryMetrics}.
+     * @param tenant
+     *            Tenant tag, under which measurements are recorded.
+     * @return The {@link TrueNTHServiceBuilder} instance for method chaining.
+     * @see TrueNTHOAuthService#setMetrics(TrueNTHMetrics, String)
+     */
+    public TrueNTHServiceBuilder metrics(final TrueNTHMetrics metrics, final String tenant) {
+
+	Preconditions.checkNotNull(metrics, "Metrics can't be null");
+	Preconditions.checkNotNull(tenant, "Tenant can't be null");
+	this.metrics = metrics;
+	metricsTenant = tenant;
+	return this;
+    }
+
     /**
      * Returns the SS' URL that receives access token requests.
      *
@@ -294,6 +565,56 @@ public class TrueNTHServiceBuilder {
 	return api;
     }
 
+    /**
+     * Returns the executor used for background cache refreshes.
+     *
+     * @return Cache executor; null if the shared default is used.
+     */
+    public Executor getCacheExecutor() {
+
+	return cacheExecutor;
+    }
+
+    /**
+     * Returns the JSON backend used to read SS responses.
+     *
+     * @return JSON backend; null if the default is used.
+     */
+    public TrueNTHJsonBackend getJsonBackend() {
+
+	return jsonBackend;
+    }
+
+    /**
+     * Returns the limit of concurrent requests towards SS, per service.
+     *
+     * @return Maximum number of concurrent requests; 0 if unlimited.
+     */
+    public int getMaxConcurrentRequests() {
+
+	return maxConcurrentRequests;
+    }
+
+    /**
+     * Returns the metrics receiving the service's measurements.
+     *
+     * @return Metrics; null if disabled.
+     */
+    public TrueNTHMetrics getMetrics() {
+
+	return metrics;
+    }
+
+    /**
+     * Returns the tenant tag of the service's measurements.
+     *
+     * @return Tenant tag; null if metrics are disabled.
+     */
+    public String getMetricsTenant() {
+
+	return metricsTenant;
+    }
+
     /**
      * Returns the application key (application ID), configured in SS.
      *
@@ -446,6 +767,11 @@ public class TrueNTHServiceBuilder {
     /**
      * Configures the API TrueNTHOAuthProvider.
      *
+     * <p>
+     * Subclasses are instantiated through reflection; the default provider
+     * class maps to its shared instance, {@link TrueNTHOAuthProvider#getDefault()}.
+     * </p>
+     *
      * @param apiClass
      *            The provider class to be used.
      *
@@ -485,6 +811,39 @@ public class TrueNTHServiceBuilder {
 	return this;
     }
 
+    /**
+     * Enables the role cache, keyed by TrueNTH User ID.
+     *
+     * <p>
+     * Roles are served from the cache for <code>ttl</code>. During the
+     * following <code>staleWhileRevalidate</code> period, cached roles are
+     * still served while they are refreshed in background. By default, roles
+     * are not cached.
+     * </p>
+     *
+     * @param ttl
+     *            Time during which cached roles are fresh. Must be positive.
+     * @param staleWhileRevalidate
+     *            Time during which expired roles are served while refreshed.
+     * @param unit
+     *            Time unit of both periods.
+     * @param maxEntries
+     *            Maximum number of users kept in the cache.
+     * @return The {@link TrueNTHServiceBuilder} instance for method chaining.
+     * @see TrueNTHOAuthService#invalidateRoles(long)
+     */
+    public TrueNTHServiceBuilder roleCache(final long ttl, final long staleWhileRevalidate, final TimeUnit unit, final int maxEntries) {
+
+	Preconditions.checkNotNull(unit, "Time unit can't be null");
+	if ((ttl <= 0) || (staleWhileRevalidate < 0) || (maxEntries <= 0)) { throw new IllegalArgumentException("Invalid role cache configuration"); }
+
+	roleCacheTTL = ttl;
+	roleCacheStaleWindow = staleWhileRevalidate;
+	roleCacheUnit = unit;
+	roleCacheMaxEntries = maxEntries;
+	return this;
+    }
+
     /**
      * Configures the Shared Services roles URL.
      *
@@ -539,4 +898,23 @@ public class TrueNTHServiceBuilder {
 	return this;
     }
 
+    /**
+     * Configures the store of authorization state (CSRF state and PKCE code
+     * verifiers).
+     *
+     * <p>
+     * By default, no state is issued or checked.
+     * </p>
+     *
+     * @param store
+     *            State store; for instance, a {@link TrueNTHMemoryStateStore}.
+     * @return The {@link TrueNTHServiceBuilder} instance for method chaining.
+     * @see TrueNTHOAuthService#newAuthorizationState()
+     */
+    public TrueNTHServiceBuilder stateStore(final TrueNTHStateStore store) {
+
+	Preconditions.checkNotNull(store, "State store can't be null");
+	stateStore = store;
+	return this;
+    }
 }
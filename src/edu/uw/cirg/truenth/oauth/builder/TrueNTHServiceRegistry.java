@@ -0,0 +1,462 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.builder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.uw.cirg.truenth.oauth.TrueNTHOAuthService;
+import edu.uw.cirg.truenth.oauth.json.TrueNTHJsonBackend;
+import edu.uw.cirg.truenth.oauth.metrics.TrueNTHMetrics;
+
+/**
+ * Services of several tenants (for instance, portal companies).
+ *
+ * <p>
+ * Services are built on first use, from builders supplied per tenant by a
+ * {@link Source}, and kept while in use. Tenants idle for longer than the idle
+ * timeout, or the least recently used ones beyond the maximum number of
+ * tenants, are evicted; they are built again when needed. Evicted services
+ * are closed ({@link TrueNTHOAuthService#close()}); tenants being built are
+ * never evicted.
+ * </p>
+ *
+ * <p>
+ * Tenants share what builders do not configure explicitly: the executor used
+ * for cache refreshes and the JSON backend. SS connections are already pooled
+ * per JVM (HTTP keep-alive), and so shared across tenants; each tenant can be
+ * limited in the number of concurrent requests, so none exhausts that pool.
+ * Endpoint discovery is shared by configuring the same
+ * {@link edu.uw.cirg.truenth.oauth.discovery.TrueNTHDiscovery} in every
+ * builder.
+ * </p>
+ *
+ * <p>
+ * Instances are thread safe; concurrent first uses of a tenant build its
+ * service once.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ *
+ * @param <K>
+ *            Tenant key type.
+ */
+public class TrueNTHServiceRegistry<K> {
+
+    /**
+     * Supplies service builders.
+     *
+     * @param <K>
+     *            Tenant key type.
+     */
+    public interface Source<K> {
+
+	/**
+	 * Returns a builder configured for a tenant.
+	 *
+	 * <p>
+	 * The registry completes a copy of the builder; thus, the same template
+	 * builder may be returned for several tenants.
+	 * </p>
+	 *
+	 * @param tenant
+	 *            Tenant key.
+	 * @return Builder; null if the tenant is unknown.
+	 */
+	TrueNTHServiceBuilder builder(K tenant);
+    }
+
+    /**
+     * Registered tenant.
+     */
+    private static final class Entry {
+
+	volatile TrueNTHOAuthService service;
+	volatile long		lastAccess;
+
+	Entry(final long now) {
+
+	    lastAccess = now;
+	}
+    }
+
+    private final Source<K>		    source;
+    private final int			  maxTenants;
+    private final long			 idleTimeout;
+    private final ConcurrentMap<K, Entry>      entries   = new ConcurrentHashMap<K, Entry>();
+    private final AtomicBoolean		sweeping  = new AtomicBoolean();
+    private final AtomicLong		   builds    = new AtomicLong();
+    private final AtomicLong		   evictions = new AtomicLong();
+
+    private volatile long		lastSweep;
+    private volatile Executor	    cacheExecutor;
+    private volatile TrueNTHJsonBackend jsonBackend;
+    private volatile int		 maxConcurrentRequests;
+    private volatile TrueNTHMetrics     metrics;
+
+    /**
+     * Constructor.
+     *
+     * @param source
+     *            Builder source.
+     * @param maxTenants
+     *            Maximum number of tenants kept. Must be positive.
+     * @param idleTimeout
+     *            Time after which unused tenants are evicted. Must be positive.
+     * @param unit
+     *            Time unit.
+     */
+    public TrueNTHServiceRegistry(final Source<K> source, final int maxTenants, final long idleTimeout, final TimeUnit unit) {
+
+	if (source == null) { throw new IllegalArgumentException("source can't be null"); }
+	if (maxTenants <= 0) { throw new IllegalArgumentException("maxTenants must be positive"); }
+	if (idleTimeout <= 0) { throw new IllegalArgumentException("idleTimeout must be positive"); }
+
+	this.source = source;
+	this.maxTenants = maxTenants;
+	this.idleTimeout = unit.toMillis(idleTimeout);
+	lastSweep = System.currentTimeMillis();
+    }
+
+    /**
+     * Evicts tenants idle for longer than the idle timeout.
+     *
+     * <p>
+     * Runs automatically, every quarter of the idle timeout, as services are
+     * requested.
+     * </p>
+     *
+     * @return Number of evicted tenants.
+     */
+    public int evictIdle() {
+
+	return evictIdle(System.currentTimeMillis());
+    }
+
+    /**
+     * Returns a tenant's service, building it on first use.
+     *
+     * @param tenant
+     *            Tenant key.
+     * @return Service; null if the tenant is unknown to the source.
+     *
+     * @throws IllegalArgumentException
+     *             If the tenant's configuration is invalid (nothing is kept).
+     */
+    public TrueNTHOAuthService get(final K tenant) {
+
+	final long now = System.currentTimeMillis();
+	sweep(now);
+
+	Entry entry = entries.get(tenant);
+	if (entry == null) {
+	    final Entry created = new Entry(now);
+	    entry = entries.putIfAbsent(tenant, created);
+	    if (entry == null) {
+		entry = created;
+	    }
+	}
+	entry.lastAccess = now;
+
+	TrueNTHOAuthService service = entry.service;
+	if (service != null) { return service; }
+
+	synchronized (entry) {
+
+	    service = entry.service;
+	    if (service != null) { return service; }
+
+	    try {
+		service = build(tenant);
+	    } finally {
+		if (service == null) {
+		    entries.remove(tenant, entry);
+		}
+	    }
+
+	    entry.service = service;
+	}
+
+	if (entries.size() > maxTenants) {
+	    evictLeastRecentlyUsed();
+	}
+
+	return service;
+    }
+
+    /**
+     * Returns the number of services built.
+     *
+     * @return Builds, including rebuilds after evictions.
+     */
+    public long getBuildCount() {
+
+	return builds.get();
+    }
+
+    /**
+     * Returns the executor shared by tenants for cache refreshes.
+     *
+     * @return Shared executor; null if the cache default is used.
+     */
+    public Executor getCacheExecutor() {
+
+	return cacheExecutor;
+    }
+
+    /**
+     * Returns the number of evicted tenants.
+     *
+     * @return Evictions, idle or over the maximum number of tenants.
+     */
+    public long getEvictionCount() {
+
+	return evictions.get();
+    }
+
+    /**
+     * Returns the JSON backend shared by tenants.
+     *
+     * @return Shared backend; null if the default is used.
+     */
+    public TrueNTHJsonBackend getJsonBackend() {
+
+	return jsonBackend;
+    }
+
+    /**
+     * Returns the default limit of concurrent requests, per tenant.
+     *
+     * @return Maximum number of concurrent requests; 0 if unlimited.
+     */
+    public int getMaxConcurrentRequests() {
+
+	return maxConcurrentRequests;
+    }
+
+    /**
+     * Returns the metrics shared by tenants.
+     *
+     * @return Shared metrics; null if disabled.
+     */
+    public TrueNTHMetrics getMetrics() {
+
+	return metrics;
+    }
+
+    /**
+     * Discards a tenant's service, closing it; it is built again on next use
+     * (for instance, after its configuration changed).
+     *
+     * @param tenant
+     *            Tenant key.
+     */
+    public void invalidate(final K tenant) {
+
+	final Entry entry = entries.remove(tenant);
+	if (entry != null) {
+	    close(entry);
+	}
+    }
+
+    /**
+     * Sets the executor shared by tenants for cache refreshes, unless their
+     * builders configure one.
+     *
+     * <p>
+     * Applies to services built afterwards.
+     * </p>
+     *
+     * @param executor
+     *            Shared executor; null selects the cache default (also
+     *            shared).
+     */
+    public void setCacheExecutor(final Executor executor) {
+
+	cacheExecutor = executor;
+    }
+
+    /**
+     * Sets the JSON backend shared by tenants, unless their builders
+     * configure one.
+     *
+     * <p>
+     * Applies to services built afterwards.
+     * </p>
+     *
+     * @param backend
+     *            Shared backend; null selects the default (also shared).
+     */
+    public void setJsonBackend(final TrueNTHJsonBackend backend) {
+
+	jsonBackend = backend;
+    }
+
+    /**
+     * Sets the default limit of concurrent requests, per tenant, unless their
+     * builders configure one.
+     *
+     * <p>
+     * Applies to services built afterwards.
+     * </p>
+     *
+     * @param maxConcurrentRequests
+     *            Maximum number of concurrent requests; 0 removes the limit.
+     */
+    public void setMaxConcurrentRequests(final int maxConcurrentRequests) {
+
+	if (maxConcurrentRequests < 0) { throw new IllegalArgumentException("maxConcurrentRequests can't be negative"); }
+	this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * Sets the metrics shared by tenants, unless their builders configure
+     * them; measurements are tagged with the tenant key.
+     *
+     * <p>
+     * Applies to services built afterwards.
+     * </p>
+     *
+     * @param metrics
+     *            Shared metrics; null disables them.
+     */
+    public void setMetrics(final TrueNTHMetrics metrics) {
+
+	this.metrics = metrics;
+    }
+
+    /**
+     * Returns the number of tenants kept.
+     *
+     * @return Tenants, including those being built.
+     */
+    public int size() {
+
+	return entries.size();
+    }
+
+    /**
+     * Evicts idle tenants, at a given time.
+     */
+    int evictIdle(final long now) {
+
+	int evicted = 0;
+	for (final Map.Entry<K, Entry> entry : entries.entrySet()) {
+	    final Entry candidate = entry.getValue();
+	    if ((candidate.service != null) && ((now - candidate.lastAccess) > idleTimeout) && entries.remove(entry.getKey(), candidate)) {
+		close(candidate);
+		evicted++;
+	    }
+	}
+
+	evictions.addAndGet(evicted);
+	return evicted;
+    }
+
+    private TrueNTHOAuthService build(final K tenant) {
+
+	final TrueNTHServiceBuilder supplied = source.builder(tenant);
+	if (supplied == null) { return null; }
+
+	// Sources may hand out a shared template: registry defaults go to a copy.
+	final TrueNTHServiceBuilder builder = new TrueNTHServiceBuilder(supplied);
+
+	final Executor executor = cacheExecutor;
+	if ((executor != null) && (builder.getCacheExecutor() == null)) {
+	    builder.cacheExecutor(executor);
+	}
+
+	final TrueNTHJsonBackend backend = jsonBackend;
+	if ((backend != null) && (builder.getJsonBackend() == null)) {
+	    builder.jsonBackend(backend);
+	}
+
+	final int limit = maxConcurrentRequests;
+	if ((limit > 0) && (builder.getMaxConcurrentRequests() == 0)) {
+	    builder.maxConcurrentRequests(limit);
+	}
+
+	final TrueNTHMetrics shared = metrics;
+	if ((shared != null) && (builder.getMetrics() == null)) {
+	    builder.metrics(shared, String.valueOf(tenant));
+	}
+
+	final TrueNTHOAuthService service = builder.build();
+	builds.incrementAndGet();
+	return service;
+    }
+
+    /**
+     * Closes an evicted tenant's service.
+     */
+    private static void close(final Entry entry) {
+
+	final TrueNTHOAuthService service = entry.service;
+	if (service == null) { return; }
+
+	try {
+	    service.close();
+	} catch (final RuntimeException e) {
+	    // Evicted anyway: the service is no longer referenced.
+	}
+    }
+
+    /**
+     * Evicts the least recently used tenants, down to the maximum; tenants
+     * being built are skipped.
+     */
+    private void evictLeastRecentlyUsed() {
+
+	while (entries.size() > maxTenants) {
+
+	    Map.Entry<K, Entry> oldest = null;
+	    for (final Map.Entry<K, Entry> candidate : entries.entrySet()) {
+		if ((candidate.getValue().service != null)
+			&& ((oldest == null) || (candidate.getValue().lastAccess < oldest.getValue().lastAccess))) {
+		    oldest = candidate;
+		}
+	    }
+
+	    if (oldest == null) { return; }
+
+	    if (entries.remove(oldest.getKey(), oldest.getValue())) {
+		close(oldest.getValue());
+		evictions.incrementAndGet();
+	    }
+	}
+    }
+
+    /**
+     * Evicts idle tenants, at most once per quarter of the idle timeout.
+     */
+    private void sweep(final long now) {
+
+	if (((now - lastSweep) < (idleTimeout / 4)) || !sweeping.compareAndSet(false, true)) { return; }
+
+	try {
+	    lastSweep = now;
+	    evictIdle(now);
+	} finally {
+	    sweeping.set(false);
+	}
+    }
+}
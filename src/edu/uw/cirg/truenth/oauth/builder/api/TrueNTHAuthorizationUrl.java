@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.builder.api;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.scribe.model.ParameterList;
+import org.scribe.utils.OAuthEncoder;
+
+import edu.uw.cirg.truenth.oauth.model.TrueNTHOAuthConfig;
+
+/**
+ * Precompiled authorization URL.
+ *
+ * <p>
+ * The parts of the authorization URL that depend only on the configuration
+ * (base address, client id, scope and the encoded callback) are assembled once;
+ * each request only encodes its own parameters. Encoded callback parameters
+ * are kept in a small LRU, as the same parameter sets tend to repeat.
+ * </p>
+ *
+ * <p>
+ * URLs are identical to the ones produced by
+ * {@link TrueNTHOAuthProvider#getAuthorizationUrl(TrueNTHOAuthConfig, int, ParameterList, ParameterList)}
+ * for the same configuration. Instances are thread safe.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ *
+ * @see TrueNTHOAuthProvider#compileAuthorizationUrl(TrueNTHOAuthConfig)
+ */
+public final class TrueNTHAuthorizationUrl {
+
+    /**
+     * Encoding levels with cached callbacks (0 to 3).
+     */
+    private static final int CACHED_LEVELS = 4;
+
+    /**
+     * Maximum number of encoded callback parameter sets.
+     */
+    private static final int SUFFIX_CACHE_SIZE = 64;
+
+    private final String   prefix;
+    private final String   scope;
+    private final String   callback;
+    private final char     separator;
+    private final String[] callbacks = new String[CACHED_LEVELS];
+    private final String   url;
+
+    private final Map<String, String> suffixes = new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+
+	    return size() > SUFFIX_CACHE_SIZE;
+	}
+    };
+
+    /**
+     * Compiles the authorization URL of a configuration.
+     *
+     * <p>
+     * Later changes to the configuration are not observed.
+     * </p>
+     *
+     * @param config
+     *            SS' OAuth configuration.
+     */
+    public TrueNTHAuthorizationUrl(final TrueNTHOAuthConfig config) {
+
+	prefix = config.getBaseAuthorizationURL() + "?client_id=" + config.getApiKey() + "&response_type=code&redirect_uri=";
+	scope = config.hasScope() ? "&scope=" + OAuthEncoder.encode(config.getScope()) : "";
+	callback = config.getCallback();
+	separator = ((callback != null) && (callback.indexOf('?') >= 0)) ? '&' : '?';
+	callbacks[0] = callback;
+	url = (callback == null) ? null : prefix + encodedCallback(1) + scope;
+    }
+
+    /**
+     * Returns the authorization URL, with the callback encoded once.
+     *
+     * @return The URL where users should be redirected.
+     *
+     * @see TrueNTHOAuthProvider#getAuthorizationUrl(TrueNTHOAuthConfig)
+     */
+    public String getUrl() {
+
+	return (url != null) ? url : prefix + encodedCallback(1) + scope;
+    }
+
+    /**
+     * Returns the authorization URL, with additional parameters.
+     *
+     * @param numberEncodings
+     *            Number of URL encoding operations to be applied on the
+     *            callback URL.
+     *
+     * @param callbackParameters
+     *            Additional parameters to add into the callback URL; may be
+     *            null.
+     *
+     * @param parameters
+     *            Additional parameters to add into the Authorization URL; may
+     *            be null.
+     *
+     * @return The URL where users should be redirected.
+     *
+     * @see TrueNTHOAuthProvider#getAuthorizationUrl(TrueNTHOAuthConfig, int,
+     *      ParameterList, ParameterList)
+     */
+    public String getUrl(final int numberEncodings, final ParameterList callbackParameters, final ParameterList parameters) {
+
+	final int level = Math.max(numberEncodings, 0);
+	final String encodedCallback = encodedCallback(level);
+	final String suffix = (callbackParameters == null) ? "" : encodedSuffix(level, callbackParameters.asFormUrlEncodedString());
+	final String query = (parameters == null) ? "" : parameters.asFormUrlEncodedString();
+
+	final StringBuilder builder = new StringBuilder(prefix.length() + encodedCallback.length() + suffix.length() + scope.length()
+		+ query.length() + 1);
+
+	builder.append(prefix).append(encodedCallback).append(suffix).append(scope);
+
+	if (!query.isEmpty()) {
+	    builder.append('&').append(query);
+	}
+
+	return builder.toString();
+    }
+
+    /**
+     * Returns the callback encoded a number of times.
+     *
+     * <p>
+     * Cached levels are computed on first use; concurrent callers may both
+     * encode, but they store equal strings.
+     * </p>
+     *
+     * @param level
+     *            Number of encodings.
+     *
+     * @return Encoded callback.
+     */
+    private String encodedCallback(final int level) {
+
+	if (level < CACHED_LEVELS) {
+
+	    String encoded = callbacks[level];
+	    if (encoded == null) {
+		encoded = encode(callback, level);
+		callbacks[level] = encoded;
+	    }
+	    return encoded;
+	}
+
+	return encode(callback, level);
+    }
+
+    /**
+     * Returns the callback parameters, with their separator, encoded a number
+     * of times.
+     *
+     * <p>
+     * Encoding is applied character by character, so encoding the callback and
+     * its parameters apart yields the same text as encoding them together.
+     * </p>
+     *
+     * @param level
+     *            Number of encodings.
+     * @param query
+     *            Form encoded callback parameters.
+     *
+     * @return Encoded parameters; empty if there are none.
+     */
+    private String encodedSuffix(final int level, final String query) {
+
+	if (query.isEmpty()) { return ""; }
+	if (level == 0) { return separator + query; }
+
+	final String key = level + ":" + query;
+
+	String encoded;
+	synchronized (suffixes) {
+	    encoded = suffixes.get(key);
+	}
+
+	if (encoded == null) {
+	    encoded = encode(separator + query, level);
+	    synchronized (suffixes) {
+		suffixes.put(key, encoded);
+	    }
+	}
+
+	return encoded;
+    }
+
+    /**
+     * Encodes a string a number of times.
+     *
+     * @param value
+     *            String to encode.
+     * @param level
+     *            Number of encodings.
+     *
+     * @return Encoded string.
+     */
+    private static String encode(final String value, final int level) {
+
+	String encoded = value;
+	for (int i = 0; i < level; i++) {
+	    encoded = OAuthEncoder.encode(encoded);
+	}
+	return encoded;
+    }
+}
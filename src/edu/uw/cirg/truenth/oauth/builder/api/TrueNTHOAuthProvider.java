@@ -23,9 +23,9 @@ import org.scribe.builder.api.Api;
 import org.scribe.model.OAuthConfig;
 import org.scribe.model.ParameterList;
 import org.scribe.model.Verb;
-import org.scribe.utils.OAuthEncoder;
 
 import edu.uw.cirg.truenth.oauth.TrueNTHOAuthService;
+import edu.uw.cirg.truenth.oauth.json.TrueNTHJsonBackend;
 import edu.uw.cirg.truenth.oauth.model.TrueNTHOAuthConfig;
 import edu.uw.cirg.truenth.oauth.model.tokens.extractors.TrueNTHAccessTokenExtractor;
 import edu.uw.cirg.truenth.oauth.model.tokens.extractors.TrueNTHAccessTokenExtractorJSon;
@@ -57,8 +57,44 @@ import edu.uw.cirg.truenth.oauth.model.tokens.extractors.TrueNTHAccessTokenExtra
  */
 public class TrueNTHOAuthProvider implements Api {
 
-    private static final String AUTHORIZE_URL	= "?client_id=%s&response_type=code&redirect_uri=%s";
-    private static final String SCOPED_AUTHORIZE_URL = AUTHORIZE_URL + "&scope=%s";
+    /**
+     * Shared instance: providers hold no state.
+     */
+    private static final TrueNTHOAuthProvider DEFAULT = new TrueNTHOAuthProvider();
+
+    /**
+     * Returns the shared provider instance.
+     *
+     * <p>
+     * The instance is created when the class is initialized, without
+     * reflection; thus, it can be created at build time by native image
+     * compilers.
+     * </p>
+     *
+     * @return Default provider.
+     */
+    public static TrueNTHOAuthProvider getDefault() {
+
+	return DEFAULT;
+    }
+
+    /**
+     * Compiles the authorization URL of a configuration.
+     *
+     * <p>
+     * Services compile their URL once, when built, and reuse it for every
+     * request.
+     * </p>
+     *
+     * @param config
+     *            SS' OAuth configuration.
+     *
+     * @return Precompiled authorization URL.
+     */
+    public TrueNTHAuthorizationUrl compileAuthorizationUrl(final TrueNTHOAuthConfig config) {
+
+	return new TrueNTHAuthorizationUrl(config);
+    }
 
     /**
      * Creates an {@link TrueNTHOAuthService}
@@ -139,6 +175,19 @@ public class TrueNTHOAuthProvider implements Api {
 	return new TrueNTHAccessTokenExtractorJSon();
     }
 
+    /**
+     * Returns the access token extractor, reading data through a JSON backend.
+     *
+     * @param backend
+     *            JSON backend.
+     *
+     * @return access Token extractor.
+     */
+    public TrueNTHAccessTokenExtractor<JsonObject> getAccessTokenExtractor(final TrueNTHJsonBackend backend) {
+
+	return new TrueNTHAccessTokenExtractorJSon(backend);
+    }
+
     /**
      * Returns the chosen method for obtaining an access token.
      *
@@ -185,16 +234,7 @@ public class TrueNTHOAuthProvider implements Api {
      */
     public String getAuthorizationUrl(final TrueNTHOAuthConfig config) {
 
-	final String baseURL = config.getBaseAuthorizationURL();
-
-	final String callback = OAuthEncoder.encode(config.getCallback());
-
-	if (config.hasScope()) {
-	    return baseURL + String.format(SCOPED_AUTHORIZE_URL, config.getApiKey(), callback, OAuthEncoder.encode(config.getScope()));
-	} else {
-	    return baseURL + String.format(AUTHORIZE_URL, config.getApiKey(), callback);
-	}
-
+	return compileAuthorizationUrl(config).getUrl();
     }
 
     /**
@@ -242,25 +282,7 @@ public class TrueNTHOAuthProvider implements Api {
     public String getAuthorizationUrl(final TrueNTHOAuthConfig config, final int numberEncodings, final ParameterList callbackParameters,
 	    final ParameterList parameters) {
 
-	String baseURL = config.getBaseAuthorizationURL();
-
-	String callback = config.getCallback();
-
-	if (callbackParameters != null) {
-	    callback = callbackParameters.appendTo(callback);
-	}
-
-	for (int i = 0; i < numberEncodings; i++) {
-	    callback = OAuthEncoder.encode(callback);
-	}
-
-	if (config.hasScope()) {
-	    baseURL += String.format(SCOPED_AUTHORIZE_URL, config.getApiKey(), callback, OAuthEncoder.encode(config.getScope()));
-	} else {
-	    baseURL += String.format(AUTHORIZE_URL, config.getApiKey(), callback);
-	}
-
-	return (parameters == null) ? baseURL : parameters.appendTo(baseURL);
+	return compileAuthorizationUrl(config).getUrl(numberEncodings, callbackParameters, parameters);
     }
 
 }
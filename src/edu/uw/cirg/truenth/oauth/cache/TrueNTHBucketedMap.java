@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock striped map, split in time buckets.
+ *
+ * <p>
+ * Entries are put at a time (for instance, their issue time) and expire once
+ * it is older than the oldest live time given by callers. Each stripe keeps
+ * eight buckets of entries; expired buckets are released whole, as their
+ * slots are reused, so expiry costs no scans. Puts and removals are O(1).
+ * </p>
+ *
+ * <p>
+ * Memory can be capped: when a stripe is full, its oldest entry is dropped,
+ * one at a time; buckets keep their entries in insertion order (see
+ * {@link #getEvictionCount()}).
+ * </p>
+ *
+ * <p>
+ * Times are in any unit, as long as callers use the same one. Instances are
+ * thread safe.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ *
+ * @param <K>
+ *            Key type.
+ * @param <V>
+ *            Value type.
+ */
+public class TrueNTHBucketedMap<K, V> {
+
+    /**
+     * Time buckets per stripe.
+     */
+    private static final int BUCKETS = 8;
+
+    /**
+     * Lock stripe: time buckets of entries.
+     */
+    private static final class Stripe<K, V> {
+
+	final long[]	    epochs  = new long[BUCKETS];
+	final List<Map<K, V>> buckets = new ArrayList<Map<K, V>>(Collections.<Map<K, V>> nCopies(BUCKETS, null));
+	int		     size;
+
+	Stripe() {
+
+	    Arrays.fill(epochs, Long.MIN_VALUE);
+	}
+    }
+
+    private final long		   bucketWidth;
+    private final int		    stripeCapacity;
+    private final List<Stripe<K, V>> stripes;
+    private final AtomicLong	     evictions = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param span
+     *            Range of live times: the newest time put exceeds the oldest
+     *            live time by at most this much. Must not be negative.
+     * @param stripes
+     *            Number of independently locked stripes; rounded up to a
+     *            power of two.
+     * @param maxEntries
+     *            Maximum number of entries, split evenly among stripes; 0 for
+     *            no limit.
+     */
+    public TrueNTHBucketedMap(final long span, final int stripes, final int maxEntries) {
+
+	if (span < 0) { throw new IllegalArgumentException("span can't be negative"); }
+	if (stripes <= 0) { throw new IllegalArgumentException("stripes must be positive"); }
+	if (maxEntries < 0) { throw new IllegalArgumentException("maxEntries can't be negative"); }
+
+	// Live times span span + 1 units: at most BUCKETS consecutive epochs.
+	bucketWidth = (span / (BUCKETS - 1)) + 1;
+
+	final int count = Integer.highestOneBit((stripes * 2) - 1);
+	this.stripes = new ArrayList<Stripe<K, V>>(count);
+	for (int index = 0; index < count; index++) {
+	    this.stripes.add(new Stripe<K, V>());
+	}
+
+	stripeCapacity = (maxEntries == 0) ? 0 : Math.max(1, (maxEntries + count - 1) / count);
+    }
+
+    /**
+     * Returns the number of entries dropped to respect the memory cap.
+     *
+     * @return Evicted entries.
+     */
+    public long getEvictionCount() {
+
+	return evictions.get();
+    }
+
+    /**
+     * Puts an entry, releasing expired buckets of its stripe.
+     *
+     * @param key
+     *            Key.
+     * @param value
+     *            Value.
+     * @param time
+     *            Entry time; not older than the oldest live time.
+     * @param oldest
+     *            Oldest live time.
+     * @return Value previously put under the key at a time sharing the same
+     *         bucket; null if none.
+     */
+    public V put(final K key, final V value, final long time, final long oldest) {
+
+	final Stripe<K, V> stripe = stripe(key);
+	final long epoch = time / bucketWidth;
+
+	synchronized (stripe) {
+
+	    release(stripe, oldest / bucketWidth);
+
+	    if ((stripeCapacity > 0) && (stripe.size >= stripeCapacity)) {
+		evictOldest(stripe);
+	    }
+
+	    final int slot = (int) (epoch % BUCKETS);
+	    Map<K, V> bucket = stripe.buckets.get(slot);
+	    if ((bucket == null) || (stripe.epochs[slot] != epoch)) {
+		if (bucket != null) {
+		    drop(stripe, slot);
+		}
+		bucket = new LinkedHashMap<K, V>();
+		stripe.buckets.set(slot, bucket);
+		stripe.epochs[slot] = epoch;
+	    }
+
+	    final V previous = bucket.put(key, value);
+	    if (previous == null) {
+		stripe.size++;
+	    }
+	    return previous;
+	}
+    }
+
+    /**
+     * Removes an entry, releasing expired buckets of its stripe.
+     *
+     * @param key
+     *            Key.
+     * @param oldest
+     *            Oldest live time.
+     * @return Value removed; null if absent or expired.
+     */
+    public V remove(final K key, final long oldest) {
+
+	final Stripe<K, V> stripe = stripe(key);
+
+	synchronized (stripe) {
+
+	    release(stripe, oldest / bucketWidth);
+
+	    for (final Map<K, V> bucket : stripe.buckets) {
+		if (bucket != null) {
+		    final V found = bucket.remove(key);
+		    if (found != null) {
+			stripe.size--;
+			return found;
+		    }
+		}
+	    }
+	}
+
+	return null;
+    }
+
+    /**
+     * Returns the number of entries held.
+     *
+     * @return Entries held, including those in expired buckets not yet
+     *         released.
+     */
+    public int size() {
+
+	int size = 0;
+	for (final Stripe<K, V> stripe : stripes) {
+	    synchronized (stripe) {
+		size += stripe.size;
+	    }
+	}
+	return size;
+    }
+
+    private static <K, V> void drop(final Stripe<K, V> stripe, final int slot) {
+
+	stripe.size -= stripe.buckets.get(slot).size();
+	stripe.buckets.set(slot, null);
+	stripe.epochs[slot] = Long.MIN_VALUE;
+    }
+
+    /**
+     * Drops the oldest entry of a stripe: the first one put in its oldest non
+     * empty bucket.
+     */
+    private void evictOldest(final Stripe<K, V> stripe) {
+
+	int oldest = -1;
+	for (int slot = 0; slot < BUCKETS; slot++) {
+	    final Map<K, V> bucket = stripe.buckets.get(slot);
+	    if ((bucket != null) && !bucket.isEmpty() && ((oldest < 0) || (stripe.epochs[slot] < stripe.epochs[oldest]))) {
+		oldest = slot;
+	    }
+	}
+
+	if (oldest < 0) { return; }
+
+	final Iterator<K> keys = stripe.buckets.get(oldest).keySet().iterator();
+	keys.next();
+	keys.remove();
+	stripe.size--;
+	evictions.incrementAndGet();
+    }
+
+    /**
+     * Releases expired buckets of a stripe.
+     */
+    private static <K, V> void release(final Stripe<K, V> stripe, final long oldest) {
+
+	for (int slot = 0; slot < BUCKETS; slot++) {
+	    if ((stripe.buckets.get(slot) != null) && (stripe.epochs[slot] < oldest)) {
+		drop(stripe, slot);
+	    }
+	}
+    }
+
+    private Stripe<K, V> stripe(final K key) {
+
+	final int hash = key.hashCode();
+	return stripes.get((hash ^ (hash >>> 16)) & (stripes.size() - 1));
+    }
+}
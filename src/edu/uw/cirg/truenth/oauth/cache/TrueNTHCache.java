@@ -0,0 +1,626 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size bounded cache with time to live and stale-while-revalidate refresh.
+ *
+ * <p>
+ * Entries are fresh for the configured time to live. After that, and for the
+ * configured stale window, reads still return the cached value while a single
+ * background refresh is issued through the cache's executor. Entries older
+ * than both periods are reloaded synchronously. Once the entry limit, or the
+ * optional weight budget, is exceeded, the least recently used entries are
+ * evicted.
+ * </p>
+ *
+ * <p>
+ * Null values are never cached: a loader returning null (for instance, after
+ * an SS error) makes the read return null and leaves the cache untouched.
+ * </p>
+ *
+ * <p>
+ * Each key has at most one load in flight: concurrent misses wait for it and
+ * share its outcome (value, null or exception). Loads started before an
+ * {@link #invalidate(Object)}, {@link #invalidateAll()} or
+ * {@link #put(Object, Object)} of their key are superseded: their values are
+ * still returned to the readers waiting for them, but never stored, and later
+ * misses start a new load.
+ * </p>
+ *
+ * <p>
+ * This class is thread safe. Map operations are guarded by the cache's
+ * monitor; loads run outside of it.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ *
+ * @param <K>
+ *            Key type.
+ * @param <V>
+ *            Value type.
+ */
+public class TrueNTHCache<K, V> {
+
+    /**
+     * Loads values on cache misses and refreshes.
+     *
+     * @param <K>
+     *            Key type.
+     * @param <V>
+     *            Value type.
+     */
+    public interface Loader<K, V> {
+
+	/**
+	 * Loads the value associated with a key.
+	 *
+	 * @param key
+	 *            Key.
+	 * @return Value, or null if it could not be obtained.
+	 * @throws Exception
+	 *             If the value could not be obtained.
+	 */
+	V load(K key) throws Exception;
+    }
+
+    /**
+     * Estimates the memory held by cached values.
+     *
+     * @param <V>
+     *            Value type.
+     */
+    public interface Weigher<V> {
+
+	/**
+	 * Returns the weight of a value; for instance, its size in bytes.
+	 *
+	 * @param value
+	 *            Cached value.
+	 * @return Non negative weight.
+	 */
+	long weigh(V value);
+    }
+
+    /**
+     * Cached value and its timestamps.
+     */
+    private static final class CachedValue<V> {
+
+	final V	 value;
+	final long loaded;
+	final long weight;
+
+	CachedValue(final V value, final long loaded, final long weight) {
+
+	    this.value = value;
+	    this.loaded = loaded;
+	    this.weight = weight;
+	}
+    }
+
+    /**
+     * Load in flight, shared by every reader that missed its key meanwhile.
+     */
+    private static final class Load<V> {
+
+	final CountDownLatch done = new CountDownLatch(1);
+	boolean		     superseded;
+	V		    value;
+	Exception	    failure;
+
+	V await() throws Exception {
+
+	    boolean interrupted = false;
+	    while (true) {
+		try {
+		    done.await();
+		    break;
+		} catch (final InterruptedException e) {
+		    interrupted = true;
+		}
+	    }
+	    if (interrupted) {
+		Thread.currentThread().interrupt();
+	    }
+
+	    if (failure != null) { throw failure; }
+	    return value;
+	}
+    }
+
+    private static volatile ExecutorService defaultExecutor;
+
+    private final long			    ttl;
+    private final long			    staleWindow;
+    private final int			    maxEntries;
+    private final long			    maxWeight;
+    private final Weigher<? super V>	    weigher;
+    private final Executor		    executor;
+    private long			    weight;
+
+    private final LinkedHashMap<K, CachedValue<V>> entries;
+    private final HashMap<K, Load<V>>		loads = new HashMap<K, Load<V>>();
+
+    private final AtomicLong		    hits	      = new AtomicLong();
+    private final AtomicLong		    staleHits	      = new AtomicLong();
+    private final AtomicLong		    misses	      = new AtomicLong();
+    private final AtomicLong		    loadFailures      = new AtomicLong();
+    private final AtomicLong		    refreshes	      = new AtomicLong();
+    private final AtomicLong		    evictions	      = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param ttl
+     *            Time during which entries are fresh.
+     * @param staleWindow
+     *            Time, after expiration, during which stale entries are served
+     *            while being refreshed in background. Zero disables
+     *            stale-while-revalidate.
+     * @param unit
+     *            Time unit of <code>ttl</code> and <code>staleWindow</code>.
+     * @param maxEntries
+     *            Maximum number of entries.
+     * @param executor
+     *            Executor for background refreshes; null selects a shared
+     *            daemon executor.
+     */
+    public TrueNTHCache(final long ttl, final long staleWindow, final TimeUnit unit, final int maxEntries, final Executor executor) {
+
+	this(ttl, staleWindow, unit, maxEntries, Long.MAX_VALUE, null, executor);
+    }
+
+    /**
+     * Constructor for weight bounded caches.
+     *
+     * @param ttl
+     *            Time during which entries are fresh.
+     * @param staleWindow
+     *            Time, after expiration, during which stale entries are served
+     *            while being refreshed in background. Zero disables
+     *            stale-while-revalidate.
+     * @param unit
+     *            Time unit of <code>ttl</code> and <code>staleWindow</code>.
+     * @param maxEntries
+     *            Maximum number of entries.
+     * @param maxWeight
+     *            Maximum total weight of the cached values.
+     * @param weigher
+     *            Weigher; null gives every value a zero weight.
+     * @param executor
+     *            Executor for background refreshes; null selects a shared
+     *            daemon executor.
+     */
+    public TrueNTHCache(final long ttl, final long staleWindow, final TimeUnit unit, final int maxEntries, final long maxWeight,
+	    final Weigher<? super V> weigher, final Executor executor) {
+
+	if ((ttl <= 0) || (staleWindow < 0)) { throw new IllegalArgumentException("Invalid cache periods"); }
+	if ((maxEntries <= 0) || (maxWeight <= 0)) { throw new IllegalArgumentException("Cache bounds must be positive"); }
+
+	this.ttl = unit.toNanos(ttl);
+	this.staleWindow = unit.toNanos(staleWindow);
+	this.maxEntries = maxEntries;
+	this.maxWeight = maxWeight;
+	this.weigher = weigher;
+	this.executor = (executor == null) ? getDefaultExecutor() : executor;
+
+	entries = new LinkedHashMap<K, CachedValue<V>>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the shared executor used for background refreshes.
+     *
+     * <p>
+     * Its threads are daemons, created on demand and discarded when idle.
+     * </p>
+     *
+     * @return Shared refresh executor.
+     */
+    public static ExecutorService getDefaultExecutor() {
+
+	ExecutorService executor = defaultExecutor;
+	if (executor == null) {
+	    synchronized (TrueNTHCache.class) {
+		executor = defaultExecutor;
+		if (executor == null) {
+		    executor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+
+			    final Thread thread = new Thread(runnable, "truenth-cache-refresh");
+			    thread.setDaemon(true);
+			    return thread;
+			}
+		    });
+		    defaultExecutor = executor;
+		}
+	    }
+	}
+	return executor;
+    }
+
+    /**
+     * Returns the value associated with a key, loading it if necessary.
+     *
+     * @param key
+     *            Key.
+     * @param loader
+     *            Loader used on misses and refreshes.
+     * @return Cached or loaded value; null if the loader returned null.
+     * @throws Exception
+     *             If the loader failed on a miss.
+     */
+    public V get(final K key, final Loader<K, V> loader) throws Exception {
+
+	final long now = System.nanoTime();
+	final Load<V> load;
+	final boolean leader;
+	V stale = null;
+
+	synchronized (this) {
+
+	    final CachedValue<V> entry = entries.get(key);
+	    final Load<V> inFlight = loads.get(key);
+
+	    if (entry != null) {
+
+		final long age = now - entry.loaded;
+
+		if (age < ttl) {
+		    hits.incrementAndGet();
+		    return entry.value;
+		}
+
+		if (age < (ttl + staleWindow)) {
+		    staleHits.incrementAndGet();
+		    stale = entry.value;
+		} else {
+		    remove(key);
+		}
+	    }
+
+	    leader = (inFlight == null);
+	    load = leader ? start(key) : inFlight;
+	}
+
+	if (stale != null) {
+	    if (leader) {
+		refresh(key, loader, load);
+	    }
+	    return stale;
+	}
+
+	misses.incrementAndGet();
+	if (leader) {
+	    load(key, loader, load);
+	}
+	return load.await();
+    }
+
+    /**
+     * Returns a fresh or stale cached value, without loading.
+     *
+     * @param key
+     *            Key.
+     * @return Cached value, or null.
+     */
+    public synchronized V getIfPresent(final K key) {
+
+	final CachedValue<V> entry = entries.get(key);
+	if ((entry == null) || ((System.nanoTime() - entry.loaded) >= (ttl + staleWindow))) { return null; }
+	return entry.value;
+    }
+
+    /**
+     * Stores a value, replacing any previous one.
+     *
+     * <p>
+     * A load of the key in flight is superseded.
+     * </p>
+     *
+     * @param key
+     *            Key.
+     * @param value
+     *            Value; null removes the entry.
+     */
+    public synchronized void put(final K key, final V value) {
+
+	supersede(key);
+
+	if (value == null) {
+	    remove(key);
+	} else {
+	    store(key, value);
+	}
+    }
+
+    /**
+     * Removes a key.
+     *
+     * <p>
+     * A load of the key in flight is superseded.
+     * </p>
+     *
+     * @param key
+     *            Key.
+     */
+    public synchronized void invalidate(final K key) {
+
+	supersede(key);
+	remove(key);
+    }
+
+    /**
+     * Removes every entry.
+     *
+     * <p>
+     * Loads in flight are superseded.
+     * </p>
+     */
+    public synchronized void invalidateAll() {
+
+	for (final Load<V> load : loads.values()) {
+	    load.superseded = true;
+	}
+	loads.clear();
+
+	entries.clear();
+	weight = 0;
+    }
+
+    /**
+     * Returns the number of cached entries.
+     *
+     * @return Number of entries, including stale ones.
+     */
+    public synchronized int size() {
+
+	return entries.size();
+    }
+
+    /**
+     * Returns the total weight of the cached values.
+     *
+     * @return Cached weight; zero if the cache has no weigher.
+     */
+    public synchronized long getWeight() {
+
+	return weight;
+    }
+
+    /**
+     * Returns the maximum number of entries.
+     *
+     * @return Entry limit.
+     */
+    public int getMaxEntries() {
+
+	return maxEntries;
+    }
+
+    /**
+     * Returns the stale window.
+     *
+     * @param unit
+     *            Time unit.
+     * @return Time, after expiration, during which stale entries are served.
+     */
+    public long getStaleWindow(final TimeUnit unit) {
+
+	return unit.convert(staleWindow, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the time to live.
+     *
+     * @param unit
+     *            Time unit.
+     * @return Time during which entries are fresh.
+     */
+    public long getTimeToLive(final TimeUnit unit) {
+
+	return unit.convert(ttl, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of reads answered with fresh entries.
+     *
+     * @return Hit count.
+     */
+    public long getHitCount() {
+
+	return hits.get();
+    }
+
+    /**
+     * Returns the number of reads answered with stale entries.
+     *
+     * @return Stale hit count.
+     */
+    public long getStaleHitCount() {
+
+	return staleHits.get();
+    }
+
+    /**
+     * Returns the number of reads that required a synchronous load.
+     *
+     * @return Miss count.
+     */
+    public long getMissCount() {
+
+	return misses.get();
+    }
+
+    /**
+     * Returns the number of failed loads and refreshes.
+     *
+     * @return Load failure count.
+     */
+    public long getLoadFailureCount() {
+
+	return loadFailures.get();
+    }
+
+    /**
+     * Returns the number of background refreshes issued.
+     *
+     * @return Refresh count.
+     */
+    public long getRefreshCount() {
+
+	return refreshes.get();
+    }
+
+    /**
+     * Returns the number of entries evicted by the size bound.
+     *
+     * @return Eviction count.
+     */
+    public long getEvictionCount() {
+
+	return evictions.get();
+    }
+
+    /**
+     * Returns the ratio of reads answered from the cache, stale or fresh.
+     *
+     * @return Hit rate, between 0 and 1; 0 if nothing was read.
+     */
+    public double getHitRate() {
+
+	final long served = hits.get() + staleHits.get();
+	final long total = served + misses.get();
+	return (total == 0) ? 0 : (double) served / total;
+    }
+
+    /**
+     * Runs a load and publishes its outcome: stored, unless superseded, and
+     * handed to every reader waiting for it.
+     */
+    private void load(final K key, final Loader<K, V> loader, final Load<V> load) {
+
+	V value = null;
+	Exception failure = null;
+	try {
+	    value = loader.load(key);
+	} catch (final Exception e) {
+	    failure = e;
+	} catch (final Error e) {
+	    failure = new IllegalStateException("Cache load failed", e);
+	    throw e;
+	} finally {
+	    publish(key, load, value, failure);
+	}
+    }
+
+    private void publish(final K key, final Load<V> load, final V value, final Exception failure) {
+
+	if (value == null) {
+	    loadFailures.incrementAndGet();
+	}
+
+	synchronized (this) {
+	    if (loads.get(key) == load) {
+		loads.remove(key);
+	    }
+	    if ((value != null) && !load.superseded) {
+		store(key, value);
+	    }
+	}
+
+	load.value = value;
+	load.failure = failure;
+	load.done.countDown();
+    }
+
+    private void refresh(final K key, final Loader<K, V> loader, final Load<V> load) {
+
+	refreshes.incrementAndGet();
+	try {
+	    executor.execute(new Runnable() {
+
+		@Override
+		public void run() {
+
+		    // Failures are counted; the stale entry is kept until it
+		    // expires.
+		    load(key, loader, load);
+		}
+	    });
+	} catch (final RuntimeException e) {
+	    publish(key, load, null, e);
+	}
+    }
+
+    private void remove(final K key) {
+
+	final CachedValue<V> entry = entries.remove(key);
+	if (entry != null) {
+	    weight -= entry.weight;
+	}
+    }
+
+    private Load<V> start(final K key) {
+
+	final Load<V> load = new Load<V>();
+	loads.put(key, load);
+	return load;
+    }
+
+    private void store(final K key, final V value) {
+
+	final CachedValue<V> entry = new CachedValue<V>(value, System.nanoTime(), (weigher == null) ? 0 : weigher.weigh(value));
+	final CachedValue<V> previous = entries.put(key, entry);
+
+	weight += entry.weight - ((previous == null) ? 0 : previous.weight);
+
+	final Iterator<CachedValue<V>> eldest = entries.values().iterator();
+	while (((entries.size() > maxEntries) || ((weight > maxWeight) && (entries.size() > 1))) && eldest.hasNext()) {
+
+	    final CachedValue<V> evicted = eldest.next();
+	    if (evicted == entry) {
+		continue;
+	    }
+
+	    eldest.remove();
+	    weight -= evicted.weight;
+	    evictions.incrementAndGet();
+	}
+    }
+
+    private void supersede(final K key) {
+
+	final Load<V> load = loads.remove(key);
+	if (load != null) {
+	    load.superseded = true;
+	}
+    }
+}
@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.config;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.uw.cirg.truenth.oauth.TrueNTHOAuthService;
+import edu.uw.cirg.truenth.oauth.model.TrueNTHOAuthConfig;
+
+/**
+ * Reloads service configurations when their source changes.
+ *
+ * <p>
+ * The source version is polled periodically; when it changes, a new
+ * configuration snapshot is loaded, validated, and handed to every watched
+ * service ({@link TrueNTHOAuthService#setConfig(TrueNTHOAuthConfig)}).
+ * Services keep running on their current configuration while a change is
+ * loaded, and keep it if the new one is invalid; a version that failed to
+ * load is not tried again.
+ * </p>
+ *
+ * <p>
+ * Snapshots are declared configurations: services with an endpoint discovery
+ * ({@link TrueNTHOAuthService#setDiscovery(edu.uw.cirg.truenth.oauth.discovery.TrueNTHDiscovery)})
+ * complete them with the discovered endpoints, and keep doing so when those
+ * change.
+ * </p>
+ *
+ * <p>
+ * Instances are thread safe.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public class TrueNTHConfigWatcher {
+
+    private static volatile ScheduledExecutorService defaultScheduler;
+
+    private final TrueNTHConfigSource	  source;
+    private final long			 interval;
+    private final ScheduledExecutorService     scheduler;
+    private final List<TrueNTHOAuthService>    services = new CopyOnWriteArrayList<TrueNTHOAuthService>();
+    private final AtomicLong		   reloads  = new AtomicLong();
+    private final AtomicLong		   failures = new AtomicLong();
+
+    private long		     version;
+    private long		     failedVersion;
+    private volatile RuntimeException lastFailure;
+    private ScheduledFuture<?>	task;
+
+    /**
+     * Constructor: shared scheduler.
+     *
+     * <p>
+     * The current version of the source is taken as applied.
+     * </p>
+     *
+     * @param source
+     *            Configuration source.
+     * @param interval
+     *            Time between polls. Must be positive.
+     * @param unit
+     *            Time unit.
+     */
+    public TrueNTHConfigWatcher(final TrueNTHConfigSource source, final long interval, final TimeUnit unit) {
+
+	this(source, interval, unit, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * <p>
+     * The current version of the source is taken as applied.
+     * </p>
+     *
+     * @param source
+     *            Configuration source.
+     * @param interval
+     *            Time between polls. Must be positive.
+     * @param unit
+     *            Time unit.
+     * @param scheduler
+     *            Scheduler for polls; null selects a shared daemon scheduler.
+     */
+    public TrueNTHConfigWatcher(final TrueNTHConfigSource source, final long interval, final TimeUnit unit, final ScheduledExecutorService scheduler) {
+
+	if (source == null) { throw new IllegalArgumentException("source can't be null"); }
+	if (interval <= 0) { throw new IllegalArgumentException("interval must be positive"); }
+
+	this.source = source;
+	this.interval = unit.toMillis(interval);
+	this.scheduler = (scheduler == null) ? getDefaultScheduler() : scheduler;
+	version = source.getVersion();
+	failedVersion = version - 1;
+    }
+
+    /**
+     * Returns the shared scheduler used for polls.
+     *
+     * <p>
+     * Its single thread is a daemon.
+     * </p>
+     *
+     * @return Shared poll scheduler.
+     */
+    public static ScheduledExecutorService getDefaultScheduler() {
+
+	ScheduledExecutorService scheduler = defaultScheduler;
+	if (scheduler == null) {
+	    synchronized (TrueNTHConfigWatcher.class) {
+		scheduler = defaultScheduler;
+		if (scheduler == null) {
+		    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+
+			    final Thread thread = new Thread(runnable, "truenth-config-watcher");
+			    thread.setDaemon(true);
+			    return thread;
+			}
+		    });
+		    defaultScheduler = scheduler;
+		}
+	    }
+	}
+	return scheduler;
+    }
+
+    /**
+     * Polls the source now.
+     *
+     * @return True if a new configuration was applied.
+     */
+    public synchronized boolean check() {
+
+	final long current = source.getVersion();
+	if ((current == version) || (current == failedVersion)) { return false; }
+
+	final TrueNTHOAuthConfig config;
+	try {
+	    config = source.load();
+	    config.validate();
+	} catch (final RuntimeException e) {
+	    failedVersion = current;
+	    lastFailure = e;
+	    failures.incrementAndGet();
+	    return false;
+	}
+
+	RuntimeException rejected = null;
+	for (final TrueNTHOAuthService service : services) {
+	    try {
+		service.setConfig(config);
+	    } catch (final RuntimeException e) {
+		// This service keeps its configuration; the others are updated.
+		rejected = e;
+	    }
+	}
+
+	version = current;
+	lastFailure = rejected;
+	reloads.incrementAndGet();
+	return true;
+    }
+
+    /**
+     * Stops polling.
+     */
+    public synchronized void close() {
+
+	if (task != null) {
+	    task.cancel(false);
+	    task = null;
+	}
+    }
+
+    /**
+     * Returns the number of versions that failed to load.
+     *
+     * @return Failed loads.
+     */
+    public long getFailureCount() {
+
+	return failures.get();
+    }
+
+    /**
+     * Returns the error of the last failed load, if no load succeeded since;
+     * or the error of a service that rejected the last configuration applied.
+     *
+     * @return Last error; null if none.
+     */
+    public RuntimeException getLastFailure() {
+
+	return lastFailure;
+    }
+
+    /**
+     * Returns the number of configurations applied.
+     *
+     * @return Reloads.
+     */
+    public long getReloadCount() {
+
+	return reloads.get();
+    }
+
+    /**
+     * Returns the source.
+     *
+     * @return Configuration source.
+     */
+    public TrueNTHConfigSource getSource() {
+
+	return source;
+    }
+
+    /**
+     * Starts polling, every interval.
+     *
+     * @return This watcher.
+     */
+    public synchronized TrueNTHConfigWatcher start() {
+
+	if (task == null) {
+	    task = scheduler.scheduleWithFixedDelay(new Runnable() {
+
+		@Override
+		public void run() {
+
+		    try {
+			check();
+		    } catch (final RuntimeException e) {
+			// Keep polling.
+		    }
+		}
+	    }, interval, interval, TimeUnit.MILLISECONDS);
+	}
+	return this;
+    }
+
+    /**
+     * Stops applying configurations to a service.
+     *
+     * @param service
+     *            Service.
+     */
+    public void unwatch(final TrueNTHOAuthService service) {
+
+	services.remove(service);
+    }
+
+    /**
+     * Applies new configurations to a service.
+     *
+     * @param service
+     *            Service.
+     * @return This watcher.
+     */
+    public TrueNTHConfigWatcher watch(final TrueNTHOAuthService service) {
+
+	if (service == null) { throw new IllegalArgumentException("service can't be null"); }
+	services.add(service);
+	return this;
+    }
+}
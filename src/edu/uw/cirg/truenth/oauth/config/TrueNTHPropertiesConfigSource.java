@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.config;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.scribe.exceptions.OAuthException;
+import org.scribe.model.SignatureType;
+
+import edu.uw.cirg.truenth.oauth.model.TrueNTHOAuthConfig;
+
+/**
+ * Configuration read from a properties file.
+ *
+ * <p>
+ * Keys are named after {@link edu.uw.cirg.truenth.oauth.builder.TrueNTHServiceBuilder}
+ * methods, optionally under a prefix:
+ * </p>
+ *
+ * <pre>
+ * apiKey=...
+ * apiSecret=...
+ * callbackURL=https://portal.example.org/truenth/login
+ * baseURL=https://stg.us.truenth.org
+ * baseAuthorizationURL=https://stg.us.truenth.org/oauth/authorize
+ * accessTokenEndpointURL=https://stg.us.truenth.org/oauth/token
+ * accessTokenStatusEndpointURL=https://stg.us.truenth.org/oauth/token-status
+ * resourceURL=https://stg.us.truenth.org/api
+ * rolesURL=https://stg.us.truenth.org/api/user/#userId/roles
+ * scope=email
+ * signatureType=Header
+ * </pre>
+ *
+ * <p>
+ * Endpoints may be left out for services that discover them
+ * ({@link edu.uw.cirg.truenth.oauth.TrueNTHOAuthService#setDiscovery(edu.uw.cirg.truenth.oauth.discovery.TrueNTHDiscovery)});
+ * services without discovery reject configurations lacking the access token
+ * endpoint or the base authorization URL.
+ * </p>
+ *
+ * <p>
+ * The version is the file's modification time and length. Files are read as
+ * UTF-8.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public class TrueNTHPropertiesConfigSource implements TrueNTHConfigSource {
+
+    public static final String API_KEY			 = "apiKey";
+    public static final String API_SECRET			 = "apiSecret";
+    public static final String CALLBACK_URL			 = "callbackURL";
+    public static final String BASE_URL			 = "baseURL";
+    public static final String BASE_AUTHORIZATION_URL	 = "baseAuthorizationURL";
+    public static final String ACCESS_TOKEN_ENDPOINT_URL	 = "accessTokenEndpointURL";
+    public static final String ACCESS_TOKEN_STATUS_ENDPOINT_URL = "accessTokenStatusEndpointURL";
+    public static final String RESOURCE_URL			 = "resourceURL";
+    public static final String ROLES_URL			 = "rolesURL";
+    public static final String SCOPE			 = "scope";
+    public static final String SIGNATURE_TYPE		 = "signatureType";
+
+    /**
+     * Default scope, as in the service builder.
+     */
+    private static final String DEFAULT_SCOPE = "email";
+
+    private final File   file;
+    private final String prefix;
+
+    /**
+     * Constructor: keys without prefix.
+     *
+     * @param file
+     *            Properties file.
+     */
+    public TrueNTHPropertiesConfigSource(final File file) {
+
+	this(file, "");
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file
+     *            Properties file.
+     * @param prefix
+     *            Key prefix; for instance, "truenth.".
+     */
+    public TrueNTHPropertiesConfigSource(final File file, final String prefix) {
+
+	if (file == null) { throw new IllegalArgumentException("file can't be null"); }
+
+	this.file = file;
+	this.prefix = (prefix == null) ? "" : prefix;
+    }
+
+    /**
+     * Builds a configuration from properties.
+     *
+     * <p>
+     * Every missing required key is reported at once.
+     * </p>
+     *
+     * @param properties
+     *            Properties.
+     * @param prefix
+     *            Key prefix.
+     * @return Configuration; not validated.
+     *
+     * @throws IllegalArgumentException
+     *             If the API key, API secret or callback URL are missing, or
+     *             the signature type is unknown.
+     */
+    public static TrueNTHOAuthConfig toConfig(final Properties properties, final String prefix) {
+
+	final List<String> missing = new ArrayList<String>();
+
+	final String apiKey = required(properties, prefix, API_KEY, missing);
+	final String apiSecret = required(properties, prefix, API_SECRET, missing);
+	final String callback = required(properties, prefix, CALLBACK_URL, missing);
+
+	if (!missing.isEmpty()) { throw new IllegalArgumentException("Missing SS configuration keys: " + missing); }
+
+	final String signatureType = optional(properties, prefix, SIGNATURE_TYPE);
+	final String scope = optional(properties, prefix, SCOPE);
+
+	SignatureType type = SignatureType.Header;
+	if (signatureType != null) {
+	    try {
+		type = SignatureType.valueOf(signatureType);
+	    } catch (final IllegalArgumentException e) {
+		throw new IllegalArgumentException("Unknown signature type: " + signatureType);
+	    }
+	}
+
+	return new TrueNTHOAuthConfig(apiKey, apiSecret, optional(properties, prefix, ACCESS_TOKEN_ENDPOINT_URL),
+		optional(properties, prefix, ACCESS_TOKEN_STATUS_ENDPOINT_URL), optional(properties, prefix, BASE_AUTHORIZATION_URL),
+		optional(properties, prefix, BASE_URL), optional(properties, prefix, RESOURCE_URL),
+		optional(properties, prefix, ROLES_URL), callback, type, (scope == null) ? DEFAULT_SCOPE : scope, null);
+    }
+
+    /**
+     * Returns the properties file.
+     *
+     * @return Properties file.
+     */
+    public File getFile() {
+
+	return file;
+    }
+
+    @Override
+    public long getVersion() {
+
+	return (file.lastModified() * 31) + file.length();
+    }
+
+    @Override
+    public TrueNTHOAuthConfig load() {
+
+	final Properties properties = new Properties();
+
+	try (InputStream stream = new FileInputStream(file)) {
+	    properties.load(new InputStreamReader(stream, StandardCharsets.UTF_8));
+	} catch (final IOException e) {
+	    throw new OAuthException("Unable to read SS configuration: " + file, e);
+	}
+
+	return toConfig(properties, prefix);
+    }
+
+    private static String optional(final Properties properties, final String prefix, final String key) {
+
+	final String value = properties.getProperty(prefix + key);
+	if (value == null) { return null; }
+
+	final String trimmed = value.trim();
+	return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static String required(final Properties properties, final String prefix, final String key, final List<String> missing) {
+
+	final String value = optional(properties, prefix, key);
+	if (value == null) {
+	    missing.add(prefix + key);
+	}
+	return value;
+    }
+}
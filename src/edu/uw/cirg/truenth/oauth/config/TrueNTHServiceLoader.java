@@ -0,0 +1,609 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.config;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.scribe.exceptions.OAuthException;
+import org.scribe.model.SignatureType;
+
+import edu.uw.cirg.truenth.oauth.TrueNTHOAuthService;
+import edu.uw.cirg.truenth.oauth.builder.TrueNTHServiceBuilder;
+import edu.uw.cirg.truenth.oauth.builder.api.TrueNTHOAuthProvider;
+import edu.uw.cirg.truenth.oauth.discovery.TrueNTHDiscovery;
+import edu.uw.cirg.truenth.oauth.json.TrueNTHJsonBackends;
+import edu.uw.cirg.truenth.oauth.model.TrueNTHOAuthConfig;
+
+/**
+ * Declarative service bootstrap.
+ *
+ * <p>
+ * Builds one service per tenant from properties, a properties file or
+ * environment variables, in a single pass over the keys. Keys are named after
+ * {@link TrueNTHServiceBuilder} methods, as in
+ * {@link TrueNTHPropertiesConfigSource}; keys without a tenant are shared by
+ * all tenants:
+ * </p>
+ *
+ * <pre>
+ * truenth.baseURL=https://stg.us.truenth.org
+ * truenth.accessTokenEndpointURL=https://stg.us.truenth.org/oauth/token
+ * truenth.baseAuthorizationURL=https://stg.us.truenth.org/oauth/authorize
+ * truenth.resourceURL=https://stg.us.truenth.org/api
+ * truenth.rolesURL=https://stg.us.truenth.org/api/user/#userId/roles
+ * truenth.roleCacheTTL=300
+ * truenth.acme.apiKey=...
+ * truenth.acme.apiSecret=...
+ * truenth.acme.callbackURL=https://acme.example.org/truenth/login
+ * </pre>
+ *
+ * <p>
+ * Without tenant keys, a single service is built, named
+ * {@value #DEFAULT_TENANT}. Environment variables follow the same scheme, in
+ * upper case: TRUENTH_BASE_URL, TRUENTH_ACME_API_KEY, and so on; tenant
+ * names are read in lower case.
+ * </p>
+ *
+ * <p>
+ * Every tenant is validated before any service is built, and every problem
+ * found (missing keys, malformed URLs or numbers, unknown keys) is reported
+ * at once. Tenants without a "provider" key share a single
+ * {@link TrueNTHOAuthProvider#getDefault() provider}, created without
+ * reflection. Time options are
+ * expressed in seconds.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public final class TrueNTHServiceLoader {
+
+    /**
+     * Default key prefix.
+     */
+    public static final String PREFIX		= "truenth.";
+
+    /**
+     * Environment variables prefix.
+     */
+    public static final String ENVIRONMENT_PREFIX = "TRUENTH_";
+
+    /**
+     * Tenant name used when no tenant keys are present.
+     */
+    public static final String DEFAULT_TENANT	= "default";
+
+    public static final String PROVIDER			   = "provider";
+    public static final String JSON_BACKEND			   = "jsonBackend";
+    public static final String MAX_CONCURRENT_REQUESTS	   = "maxConcurrentRequests";
+    public static final String ROLE_CACHE_TTL		   = "roleCacheTTL";
+    public static final String ROLE_CACHE_MAX_ENTRIES	   = "roleCacheMaxEntries";
+    public static final String DEMOGRAPHICS_CACHE_TTL	   = "demographicsCacheTTL";
+    public static final String DEMOGRAPHICS_CACHE_MAX_ENTRIES = "demographicsCacheMaxEntries";
+    public static final String DEMOGRAPHICS_CACHE_MAX_BYTES   = "demographicsCacheMaxBytes";
+    public static final String DISCOVERY			   = "discovery";
+    public static final String DISCOVERY_TTL		   = "discoveryTTL";
+
+    private static final int  DEFAULT_CACHE_ENTRIES = 10000;
+    private static final long DEFAULT_CACHE_BYTES   = 16L * 1024 * 1024;
+    private static final long DEFAULT_DISCOVERY_TTL = 3600;
+
+    private static final String[] OPTIONS = { TrueNTHPropertiesConfigSource.API_KEY, TrueNTHPropertiesConfigSource.API_SECRET,
+	    TrueNTHPropertiesConfigSource.CALLBACK_URL, TrueNTHPropertiesConfigSource.BASE_URL,
+	    TrueNTHPropertiesConfigSource.BASE_AUTHORIZATION_URL, TrueNTHPropertiesConfigSource.ACCESS_TOKEN_ENDPOINT_URL,
+	    TrueNTHPropertiesConfigSource.ACCESS_TOKEN_STATUS_ENDPOINT_URL, TrueNTHPropertiesConfigSource.RESOURCE_URL,
+	    TrueNTHPropertiesConfigSource.ROLES_URL, TrueNTHPropertiesConfigSource.SCOPE, TrueNTHPropertiesConfigSource.SIGNATURE_TYPE, PROVIDER,
+	    JSON_BACKEND, MAX_CONCURRENT_REQUESTS, ROLE_CACHE_TTL, ROLE_CACHE_MAX_ENTRIES, DEMOGRAPHICS_CACHE_TTL, DEMOGRAPHICS_CACHE_MAX_ENTRIES,
+	    DEMOGRAPHICS_CACHE_MAX_BYTES, DISCOVERY, DISCOVERY_TTL };
+
+    private static final Set<String> OPTION_NAMES = new HashSet<String>(Arrays.asList(OPTIONS));
+
+    /**
+     * Option names, by environment variable suffix (API_KEY to apiKey).
+     */
+    private static final Map<String, String> ENVIRONMENT_NAMES = new HashMap<String, String>();
+
+    static {
+	for (final String option : OPTIONS) {
+	    ENVIRONMENT_NAMES.put(toEnvironmentName(option), option);
+	}
+    }
+
+    private TrueNTHServiceLoader() {
+
+    }
+
+    /**
+     * Builds services from a properties file, with the default prefix.
+     *
+     * <p>
+     * The file is read as UTF-8.
+     * </p>
+     *
+     * @param file
+     *            Properties file.
+     * @return Services, by tenant name, in tenant name order.
+     *
+     * @throws OAuthException
+     *             If the file can't be read.
+     * @throws IllegalArgumentException
+     *             If any tenant is misconfigured; the message lists every
+     *             problem found.
+     */
+    public static Map<String, TrueNTHOAuthService> load(final File file) {
+
+	return load(read(file), PREFIX);
+    }
+
+    /**
+     * Builds services from properties.
+     *
+     * @param properties
+     *            Properties.
+     * @param prefix
+     *            Key prefix; for instance, {@value #PREFIX}.
+     * @return Services, by tenant name, in tenant name order.
+     *
+     * @throws IllegalArgumentException
+     *             If any tenant is misconfigured; the message lists every
+     *             problem found.
+     */
+    public static Map<String, TrueNTHOAuthService> load(final Properties properties, final String prefix) {
+
+	return build(prepare(properties, prefix));
+    }
+
+    /**
+     * Builds services from the process' environment variables.
+     *
+     * @return Services, by tenant name, in tenant name order.
+     *
+     * @throws IllegalArgumentException
+     *             If any tenant is misconfigured; the message lists every
+     *             problem found.
+     */
+    public static Map<String, TrueNTHOAuthService> loadEnvironment() {
+
+	return loadEnvironment(System.getenv());
+    }
+
+    /**
+     * Builds services from environment variables.
+     *
+     * @param environment
+     *            Environment variables.
+     * @return Services, by tenant name, in tenant name order.
+     *
+     * @throws IllegalArgumentException
+     *             If any tenant is misconfigured; the message lists every
+     *             problem found.
+     */
+    public static Map<String, TrueNTHOAuthService> loadEnvironment(final Map<String, String> environment) {
+
+	return load(toProperties(environment), PREFIX);
+    }
+
+    /**
+     * Prepares one builder per tenant, validating every tenant.
+     *
+     * <p>
+     * Builders may be customized (for instance, with a state store) before
+     * services are built. Endpoints of tenants using discovery are only
+     * validated when built.
+     * </p>
+     *
+     * @param properties
+     *            Properties.
+     * @param prefix
+     *            Key prefix; for instance, {@value #PREFIX}.
+     * @return Builders, by tenant name, in tenant name order.
+     *
+     * @throws IllegalArgumentException
+     *             If any tenant is misconfigured; the message lists every
+     *             problem found.
+     */
+    public static Map<String, TrueNTHServiceBuilder> prepare(final Properties properties, final String prefix) {
+
+	if (properties == null) { throw new IllegalArgumentException("properties can't be null"); }
+
+	final String keyPrefix = (prefix == null) ? "" : prefix;
+	final Map<String, String> shared = new HashMap<String, String>();
+	final Map<String, Map<String, String>> tenants = new TreeMap<String, Map<String, String>>();
+	final List<String> errors = new ArrayList<String>();
+
+	for (final String key : properties.stringPropertyNames()) {
+
+	    if (!key.startsWith(keyPrefix) || key.equals(TrueNTHJsonBackends.PROPERTY)) {
+		continue;
+	    }
+
+	    final String name = key.substring(keyPrefix.length());
+	    final int dot = name.lastIndexOf('.');
+	    final String option = name.substring(dot + 1);
+
+	    if ((dot == 0) || !OPTION_NAMES.contains(option)) {
+		errors.add("Unknown key: " + key);
+		continue;
+	    }
+
+	    final String value = properties.getProperty(key).trim();
+	    if (value.isEmpty()) {
+		continue;
+	    }
+
+	    if (dot < 0) {
+		shared.put(option, value);
+	    } else {
+		final String tenant = name.substring(0, dot);
+		Map<String, String> options = tenants.get(tenant);
+		if (options == null) {
+		    options = new HashMap<String, String>();
+		    tenants.put(tenant, options);
+		}
+		options.put(option, value);
+	    }
+	}
+
+	if (tenants.isEmpty()) {
+	    tenants.put(DEFAULT_TENANT, new HashMap<String, String>());
+	}
+
+	final Map<String, TrueNTHDiscovery> discoveries = new HashMap<String, TrueNTHDiscovery>();
+	final Map<String, TrueNTHServiceBuilder> builders = new LinkedHashMap<String, TrueNTHServiceBuilder>();
+
+	for (final Map.Entry<String, Map<String, String>> tenant : tenants.entrySet()) {
+
+	    final Map<String, String> options = new HashMap<String, String>(shared);
+	    options.putAll(tenant.getValue());
+
+	    builders.put(tenant.getKey(), configure(tenant.getKey(), options, discoveries, errors));
+	}
+
+	failOnErrors(errors);
+	return builders;
+    }
+
+    /**
+     * Converts environment variables into properties under the default
+     * prefix.
+     *
+     * <p>
+     * Variables not matching any option are ignored.
+     * </p>
+     *
+     * @param environment
+     *            Environment variables.
+     * @return Properties; for instance, TRUENTH_ACME_API_KEY becomes
+     *         truenth.acme.apiKey.
+     */
+    public static Properties toProperties(final Map<String, String> environment) {
+
+	if (environment == null) { throw new IllegalArgumentException("environment can't be null"); }
+
+	final Properties properties = new Properties();
+
+	for (final Map.Entry<String, String> variable : environment.entrySet()) {
+
+	    final String name = variable.getKey();
+	    if (!name.startsWith(ENVIRONMENT_PREFIX) || (variable.getValue() == null)) {
+		continue;
+	    }
+
+	    final String key = toKey(name.substring(ENVIRONMENT_PREFIX.length()));
+	    if (key != null) {
+		properties.setProperty(PREFIX + key, variable.getValue());
+	    }
+	}
+
+	return properties;
+    }
+
+    private static Map<String, TrueNTHOAuthService> build(final Map<String, TrueNTHServiceBuilder> builders) {
+
+	final Map<String, TrueNTHOAuthService> services = new LinkedHashMap<String, TrueNTHOAuthService>();
+	final List<String> errors = new ArrayList<String>();
+
+	for (final Map.Entry<String, TrueNTHServiceBuilder> builder : builders.entrySet()) {
+	    try {
+		services.put(builder.getKey(), builder.getValue().build());
+	    } catch (final IllegalArgumentException e) {
+		errors.add(builder.getKey() + ": " + e.getMessage());
+	    } catch (final OAuthException e) {
+		errors.add(builder.getKey() + ": " + e.getMessage());
+	    }
+	}
+
+	failOnErrors(errors);
+	return services;
+    }
+
+    private static TrueNTHServiceBuilder configure(final String tenant, final Map<String, String> options,
+	    final Map<String, TrueNTHDiscovery> discoveries, final List<String> errors) {
+
+	final TrueNTHServiceBuilder builder = new TrueNTHServiceBuilder();
+	final int before = errors.size();
+
+	for (final Map.Entry<String, String> option : options.entrySet()) {
+	    try {
+		apply(builder, option.getKey(), option.getValue());
+	    } catch (final IllegalArgumentException e) {
+		errors.add(tenant + ": " + option.getKey() + ": " + e.getMessage());
+	    } catch (final OAuthException e) {
+		errors.add(tenant + ": " + option.getKey() + ": " + e.getMessage());
+	    }
+	}
+
+	if (builder.getApi() == null) {
+	    builder.provider(TrueNTHOAuthProvider.getDefault());
+	}
+
+	try {
+	    configureCaches(builder, options);
+	} catch (final IllegalArgumentException e) {
+	    errors.add(tenant + ": " + e.getMessage());
+	}
+
+	final boolean discovery = Boolean.parseBoolean(options.get(DISCOVERY));
+	if (discovery) {
+	    if (builder.getBaseURL() == null) {
+		errors.add(tenant + ": discovery requires " + TrueNTHPropertiesConfigSource.BASE_URL);
+	    } else {
+		try {
+		    builder.discovery(discovery(builder.getBaseURL(), options, discoveries));
+		} catch (final IllegalArgumentException e) {
+		    errors.add(tenant + ": " + DISCOVERY_TTL + ": " + e.getMessage());
+		}
+	    }
+	}
+
+	required(tenant, options, TrueNTHPropertiesConfigSource.API_KEY, errors);
+	required(tenant, options, TrueNTHPropertiesConfigSource.API_SECRET, errors);
+	required(tenant, options, TrueNTHPropertiesConfigSource.CALLBACK_URL, errors);
+
+	if (discovery) { return builder; }
+
+	required(tenant, options, TrueNTHPropertiesConfigSource.ACCESS_TOKEN_ENDPOINT_URL, errors);
+	required(tenant, options, TrueNTHPropertiesConfigSource.BASE_AUTHORIZATION_URL, errors);
+
+	if (errors.size() == before) {
+	    final TrueNTHOAuthConfig config = new TrueNTHOAuthConfig(builder.getApiKey(), builder.getApiSecret(),
+		    builder.getAccessTokenEndpointURL(), builder.getAccessTokenStatusEndpointURL(), builder.getBaseAuthorizationURL(),
+		    builder.getBaseURL(), builder.getResourceURL(), builder.getRolesURL(), builder.getCallbackURL(), builder.getSignatureType(),
+		    builder.getScope(), null);
+	    for (final String problem : config.getProblems()) {
+		errors.add(tenant + ": " + problem);
+	    }
+	}
+
+	return builder;
+    }
+
+    private static void apply(final TrueNTHServiceBuilder builder, final String option, final String value) {
+
+	switch (option) {
+	    case TrueNTHPropertiesConfigSource.API_KEY:
+		builder.apiKey(value);
+		break;
+	    case TrueNTHPropertiesConfigSource.API_SECRET:
+		builder.apiSecret(value);
+		break;
+	    case TrueNTHPropertiesConfigSource.CALLBACK_URL:
+		builder.callbackURL(value);
+		break;
+	    case TrueNTHPropertiesConfigSource.BASE_URL:
+		builder.baseURL(value);
+		break;
+	    case TrueNTHPropertiesConfigSource.BASE_AUTHORIZATION_URL:
+		builder.baseAuthorizationURL(value);
+		break;
+	    case TrueNTHPropertiesConfigSource.ACCESS_TOKEN_ENDPOINT_URL:
+		builder.accessTokenEndpointURL(value);
+		break;
+	    case TrueNTHPropertiesConfigSource.ACCESS_TOKEN_STATUS_ENDPOINT_URL:
+		builder.accessTokenStatusEndpointURL(value);
+		break;
+	    case TrueNTHPropertiesConfigSource.RESOURCE_URL:
+		builder.resourceURL(value);
+		break;
+	    case TrueNTHPropertiesConfigSource.ROLES_URL:
+		builder.rolesURL(value);
+		break;
+	    case TrueNTHPropertiesConfigSource.SCOPE:
+		builder.scope(value);
+		break;
+	    case TrueNTHPropertiesConfigSource.SIGNATURE_TYPE:
+		try {
+		    builder.signatureType(SignatureType.valueOf(value));
+		} catch (final IllegalArgumentException e) {
+		    throw new IllegalArgumentException("Unknown signature type: " + value);
+		}
+		break;
+	    case PROVIDER:
+		builder.provider(providerClass(value));
+		break;
+	    case JSON_BACKEND:
+		if ("jackson".equalsIgnoreCase(value)) {
+		    builder.jsonBackend(TrueNTHJsonBackends.jackson());
+		} else if ("javax".equalsIgnoreCase(value)) {
+		    builder.jsonBackend(TrueNTHJsonBackends.jsonProcessing());
+		} else {
+		    throw new IllegalArgumentException("Unknown JSON backend: " + value);
+		}
+		break;
+	    case MAX_CONCURRENT_REQUESTS:
+		builder.maxConcurrentRequests((int) number(value));
+		break;
+	    default:
+		// Caches and discovery combine several options.
+		break;
+	}
+    }
+
+    private static void configureCaches(final TrueNTHServiceBuilder builder, final Map<String, String> options) {
+
+	final long roleTTL = number(options, ROLE_CACHE_TTL, 0);
+	if (roleTTL > 0) {
+	    builder.roleCache(roleTTL, 0, TimeUnit.SECONDS, (int) number(options, ROLE_CACHE_MAX_ENTRIES, DEFAULT_CACHE_ENTRIES));
+	}
+
+	final long demographicsTTL = number(options, DEMOGRAPHICS_CACHE_TTL, 0);
+	if (demographicsTTL > 0) {
+	    builder.demographicsCache(demographicsTTL, 0, TimeUnit.SECONDS,
+		    (int) number(options, DEMOGRAPHICS_CACHE_MAX_ENTRIES, DEFAULT_CACHE_ENTRIES),
+		    number(options, DEMOGRAPHICS_CACHE_MAX_BYTES, DEFAULT_CACHE_BYTES));
+	}
+    }
+
+    private static TrueNTHDiscovery discovery(final String baseURL, final Map<String, String> options,
+	    final Map<String, TrueNTHDiscovery> discoveries) {
+
+	TrueNTHDiscovery discovery = discoveries.get(baseURL);
+	if (discovery == null) {
+	    discovery = new TrueNTHDiscovery(baseURL, number(options, DISCOVERY_TTL, DEFAULT_DISCOVERY_TTL), TimeUnit.SECONDS);
+	    discoveries.put(baseURL, discovery);
+	}
+	return discovery;
+    }
+
+    private static void failOnErrors(final List<String> errors) {
+
+	if (!errors.isEmpty()) {
+
+	    final StringBuilder message = new StringBuilder("Invalid SS configuration:");
+	    for (final String error : errors) {
+		message.append("\n\t").append(error);
+	    }
+
+	    throw new IllegalArgumentException(message.toString());
+	}
+    }
+
+    private static long number(final Map<String, String> options, final String option, final long defaultValue) {
+
+	final String value = options.get(option);
+	if (value == null) { return defaultValue; }
+
+	try {
+	    return number(value);
+	} catch (final IllegalArgumentException e) {
+	    throw new IllegalArgumentException(option + ": " + e.getMessage());
+	}
+    }
+
+    private static long number(final String value) {
+
+	try {
+	    return Long.parseLong(value);
+	} catch (final NumberFormatException e) {
+	    throw new IllegalArgumentException("Not a number: " + value);
+	}
+    }
+
+    private static Class<? extends TrueNTHOAuthProvider> providerClass(final String name) {
+
+	try {
+	    return Class.forName(name).asSubclass(TrueNTHOAuthProvider.class);
+	} catch (final ClassNotFoundException e) {
+	    throw new IllegalArgumentException("Unknown provider: " + name);
+	} catch (final ClassCastException e) {
+	    throw new IllegalArgumentException("Not a TrueNTHOAuthProvider: " + name);
+	}
+    }
+
+    private static Properties read(final File file) {
+
+	if (file == null) { throw new IllegalArgumentException("file can't be null"); }
+
+	final Properties properties = new Properties();
+
+	try (InputStream stream = new FileInputStream(file)) {
+	    properties.load(new InputStreamReader(stream, StandardCharsets.UTF_8));
+	} catch (final IOException e) {
+	    throw new OAuthException("Unable to read SS configuration: " + file, e);
+	}
+
+	return properties;
+    }
+
+    private static void required(final String tenant, final Map<String, String> options, final String option, final List<String> errors) {
+
+	if (!options.containsKey(option)) {
+	    errors.add(tenant + ": missing " + option);
+	}
+    }
+
+    /**
+     * Converts an environment variable name, without prefix, into a key:
+     * API_KEY to apiKey, ACME_API_KEY to acme.apiKey.
+     *
+     * @return Key; null if no option matches.
+     */
+    private static String toKey(final String name) {
+
+	final String shared = ENVIRONMENT_NAMES.get(name);
+	if (shared != null) { return shared; }
+
+	String key = null;
+	int longest = 0;
+
+	for (final Map.Entry<String, String> option : ENVIRONMENT_NAMES.entrySet()) {
+
+	    final String suffix = option.getKey();
+	    if ((suffix.length() > longest) && (name.length() > (suffix.length() + 1)) && name.endsWith(suffix)
+		    && (name.charAt(name.length() - suffix.length() - 1) == '_')) {
+		longest = suffix.length();
+		key = name.substring(0, name.length() - suffix.length() - 1).toLowerCase() + '.' + option.getValue();
+	    }
+	}
+
+	return key;
+    }
+
+    /**
+     * Converts an option name into its environment variable suffix: apiKey to
+     * API_KEY, roleCacheTTL to ROLE_CACHE_TTL.
+     */
+    private static String toEnvironmentName(final String option) {
+
+	final StringBuilder name = new StringBuilder(option.length() + 8);
+
+	for (int i = 0; i < option.length(); i++) {
+	    final char c = option.charAt(i);
+	    if (Character.isUpperCase(c) && (i > 0) && Character.isLowerCase(option.charAt(i - 1))) {
+		name.append('_');
+	    }
+	    name.append(Character.toUpperCase(c));
+	}
+
+	return name.toString();
+    }
+}
@@ -0,0 +1,438 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.discovery;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.json.JsonObject;
+
+import org.scribe.exceptions.OAuthException;
+import org.scribe.model.OAuthRequest;
+import org.scribe.model.Response;
+import org.scribe.model.Verb;
+
+import edu.uw.cirg.truenth.oauth.json.TrueNTHJsonBackend;
+import edu.uw.cirg.truenth.oauth.json.TrueNTHJsonBackends;
+
+/**
+ * Discovers SS endpoints from its metadata document.
+ *
+ * <p>
+ * The document is fetched once, on first use, and kept; every time to live, it
+ * is fetched again in background. Readers never wait for refreshes: they see
+ * the last document fetched. When a refresh fails, the previous document is
+ * kept, and the next refresh is tried as scheduled.
+ * </p>
+ *
+ * <p>
+ * When the endpoints change, listeners are notified; services built with
+ * {@link edu.uw.cirg.truenth.oauth.builder.TrueNTHServiceBuilder#discovery(TrueNTHDiscovery)}
+ * swap their configuration then. One instance can serve every tenant of the
+ * same SS.
+ * </p>
+ *
+ * <p>
+ * Instances are thread safe.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public class TrueNTHDiscovery {
+
+    /**
+     * Metadata changes.
+     */
+    public interface Listener {
+
+	/**
+	 * Called, from the refreshing thread, when the endpoints change.
+	 *
+	 * <p>
+	 * Listeners are called outside any lock held by the discovery, one
+	 * notification at a time, with the latest metadata. Exceptions thrown
+	 * by a listener do not reach the refreshing thread, nor prevent other
+	 * listeners from being notified.
+	 * </p>
+	 *
+	 * @param metadata
+	 *            New metadata.
+	 */
+	void metadataChanged(TrueNTHMetadata metadata);
+    }
+
+    /**
+     * Metadata document path, relative to SS' base URL (RFC 8414).
+     */
+    public static final String WELL_KNOWN_PATH = "/.well-known/oauth-authorization-server";
+
+    /**
+     * Connect and read timeouts of metadata requests, in seconds: a hung SS
+     * must not hold the refresh thread, shared by every discovery, or the
+     * services waiting for a first document.
+     */
+    private static final int    TIMEOUT = 10;
+
+    private static volatile ScheduledExecutorService defaultScheduler;
+
+    private final String		   baseURL;
+    private final String		   metadataURL;
+    private final long		     timeToLive;
+    private final ScheduledExecutorService scheduler;
+    private final TrueNTHJsonBackend       backend;
+    private final List<Listener>	   listeners = new CopyOnWriteArrayList<Listener>();
+    private final AtomicLong	       refreshes = new AtomicLong();
+    private final AtomicLong	       failures  = new AtomicLong();
+    private final Object		   lock      = new Object();
+    private final Object		   notifying = new Object();
+
+    private volatile TrueNTHMetadata metadata;
+    private volatile long	    fetchedAt;
+    private TrueNTHMetadata	  notified;
+    private ScheduledFuture<?>       task;
+
+    /**
+     * Constructor: well-known metadata location, shared scheduler and default
+     * JSON backend.
+     *
+     * @param baseURL
+     *            SS' base URL; for instance, https://stg.us.truenth.org.
+     * @param timeToLive
+     *            Time between refreshes. Must be positive.
+     * @param unit
+     *            Time unit.
+     */
+    public TrueNTHDiscovery(final String baseURL, final long timeToLive, final TimeUnit unit) {
+
+	this(baseURL, null, timeToLive, unit, null, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param baseURL
+     *            SS' base URL; for instance, https://stg.us.truenth.org.
+     * @param metadataURL
+     *            Metadata document URL; null selects the well-known location
+     *            under the base URL.
+     * @param timeToLive
+     *            Time between refreshes. Must be positive.
+     * @param unit
+     *            Time unit.
+     * @param scheduler
+     *            Scheduler for background refreshes; null selects a shared
+     *            daemon scheduler.
+     * @param backend
+     *            JSON backend; null selects the default.
+     */
+    public TrueNTHDiscovery(final String baseURL, final String metadataURL, final long timeToLive, final TimeUnit unit,
+	    final ScheduledExecutorService scheduler, final TrueNTHJsonBackend backend) {
+
+	if ((baseURL == null) || baseURL.isEmpty()) { throw new IllegalArgumentException("baseURL must not be empty"); }
+	if (timeToLive <= 0) { throw new IllegalArgumentException("timeToLive must be positive"); }
+
+	int end = baseURL.length();
+	while ((end > 0) && (baseURL.charAt(end - 1) == '/')) {
+	    end--;
+	}
+
+	this.baseURL = baseURL.substring(0, end);
+	this.metadataURL = (metadataURL == null) ? this.baseURL + WELL_KNOWN_PATH : metadataURL;
+	this.timeToLive = unit.toMillis(timeToLive);
+	this.scheduler = (scheduler == null) ? getDefaultScheduler() : scheduler;
+	this.backend = (backend == null) ? TrueNTHJsonBackends.getDefault() : backend;
+    }
+
+    /**
+     * Returns the shared scheduler used for background refreshes.
+     *
+     * <p>
+     * Its single thread is a daemon.
+     * </p>
+     *
+     * @return Shared refresh scheduler.
+     */
+    public static ScheduledExecutorService getDefaultScheduler() {
+
+	ScheduledExecutorService scheduler = defaultScheduler;
+	if (scheduler == null) {
+	    synchronized (TrueNTHDiscovery.class) {
+		scheduler = defaultScheduler;
+		if (scheduler == null) {
+		    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+
+			    final Thread thread = new Thread(runnable, "truenth-discovery-refresh");
+			    thread.setDaemon(true);
+			    return thread;
+			}
+		    });
+		    defaultScheduler = scheduler;
+		}
+	    }
+	}
+	return scheduler;
+    }
+
+    /**
+     * Registers a listener.
+     *
+     * @param listener
+     *            Listener.
+     */
+    public void addListener(final Listener listener) {
+
+	listeners.add(listener);
+    }
+
+    /**
+     * Stops background refreshes.
+     *
+     * <p>
+     * The last document fetched is still served; {@link #refresh()} restarts
+     * them.
+     * </p>
+     */
+    public void close() {
+
+	synchronized (lock) {
+	    if (task != null) {
+		task.cancel(false);
+		task = null;
+	    }
+	}
+    }
+
+    /**
+     * Returns the base URL.
+     *
+     * @return SS' base URL, without trailing slash.
+     */
+    public String getBaseURL() {
+
+	return baseURL;
+    }
+
+    /**
+     * Returns the number of failed fetches.
+     *
+     * @return Failed fetches.
+     */
+    public long getFailureCount() {
+
+	return failures.get();
+    }
+
+    /**
+     * Returns the current metadata, fetching it on first use.
+     *
+     * @return Metadata.
+     *
+     * @throws OAuthException
+     *             If the document was never fetched and can't be fetched now.
+     */
+    public TrueNTHMetadata getMetadata() {
+
+	final TrueNTHMetadata current = metadata;
+	if (current != null) { return current; }
+
+	synchronized (lock) {
+	    if (metadata == null) {
+		refresh();
+	    }
+	    return metadata;
+	}
+    }
+
+    /**
+     * Returns the metadata document URL.
+     *
+     * @return Metadata URL.
+     */
+    public String getMetadataURL() {
+
+	return metadataURL;
+    }
+
+    /**
+     * Returns the number of successful fetches.
+     *
+     * @return Successful fetches.
+     */
+    public long getRefreshCount() {
+
+	return refreshes.get();
+    }
+
+    /**
+     * Returns the time to live.
+     *
+     * @return Time between refreshes, in milliseconds.
+     */
+    public long getTimeToLive() {
+
+	return timeToLive;
+    }
+
+    /**
+     * Checks whether the metadata outlived its time to live (a refresh is due
+     * or failed).
+     *
+     * @return True if no document was fetched within the time to live.
+     */
+    public boolean isExpired() {
+
+	return (metadata == null) || ((System.currentTimeMillis() - fetchedAt) > timeToLive);
+    }
+
+    /**
+     * Fetches the metadata document now.
+     *
+     * <p>
+     * Listeners are notified if the endpoints changed. Background refreshes are
+     * scheduled after the first success.
+     * </p>
+     *
+     * @return Fetched metadata.
+     *
+     * @throws OAuthException
+     *             If the document can't be fetched or read; the previous
+     *             document is kept.
+     */
+    public TrueNTHMetadata refresh() {
+
+	final TrueNTHMetadata fetched = fetchAndSchedule();
+	notifyListeners();
+
+	return fetched;
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener
+     *            Listener.
+     */
+    public void removeListener(final Listener listener) {
+
+	listeners.remove(listener);
+    }
+
+    private TrueNTHMetadata fetchAndSchedule() {
+
+	synchronized (lock) {
+
+	    final TrueNTHMetadata fetched;
+	    try {
+		fetched = fetch();
+	    } catch (final RuntimeException e) {
+		failures.incrementAndGet();
+		throw (e instanceof OAuthException) ? (OAuthException) e : new OAuthException("Unable to read SS metadata: " + metadataURL, e);
+	    }
+
+	    if (metadata == null) {
+		synchronized (notifying) {
+		    notified = fetched;
+		}
+	    }
+	    metadata = fetched;
+	    fetchedAt = System.currentTimeMillis();
+	    refreshes.incrementAndGet();
+
+	    if (task == null) {
+		task = scheduler.scheduleWithFixedDelay(new Runnable() {
+
+		    @Override
+		    public void run() {
+
+			try {
+			    refresh();
+			} catch (final RuntimeException e) {
+			    // Counted; the previous document is kept.
+			}
+		    }
+		}, timeToLive, timeToLive, TimeUnit.MILLISECONDS);
+	    }
+
+	    return fetched;
+	}
+    }
+
+    /**
+     * Notifies listeners if the current endpoints were not notified yet.
+     *
+     * <p>
+     * Notifications are serialized, and always carry the latest metadata, so
+     * concurrent refreshes cannot deliver an older document last.
+     * </p>
+     */
+    private void notifyListeners() {
+
+	synchronized (notifying) {
+
+	    final TrueNTHMetadata current = metadata;
+	    if ((current == null) || current.equals(notified)) { return; }
+	    notified = current;
+
+	    for (final Listener listener : listeners) {
+		try {
+		    listener.metadataChanged(current);
+		} catch (final RuntimeException e) {
+		    // A failing listener must not starve the others.
+		}
+	    }
+	}
+    }
+
+    private TrueNTHMetadata fetch() {
+
+	final OAuthRequest request = new OAuthRequest(Verb.GET, metadataURL);
+	request.setConnectTimeout(TIMEOUT, TimeUnit.SECONDS);
+	request.setReadTimeout(TIMEOUT, TimeUnit.SECONDS);
+
+	final Response response = request.send();
+	final InputStream stream = response.getStream();
+
+	try {
+	    if (!response.isSuccessful()) {
+		throw new OAuthException("SS metadata request failed with HTTP status " + response.getCode() + ": " + metadataURL);
+	    }
+
+	    final JsonObject document = backend.readObject(stream);
+	    return TrueNTHMetadata.read(baseURL, document);
+
+	} finally {
+	    try {
+		if (stream != null) {
+		    stream.close();
+		}
+	    } catch (final IOException e) {
+		// Nothing to release.
+	    }
+	}
+    }
+}
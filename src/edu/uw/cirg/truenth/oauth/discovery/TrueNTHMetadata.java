@@ -0,0 +1,260 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.discovery;
+
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+import edu.uw.cirg.truenth.oauth.model.TrueNTHOAuthConfig;
+import edu.uw.cirg.truenth.oauth.model.definitions.TrueNTHUrlPlaceHolders;
+
+/**
+ * SS endpoints, as published in its metadata document.
+ *
+ * <p>
+ * The document follows the OAuth 2.0 Authorization Server Metadata format (RFC
+ * 8414): {@value #AUTHORIZATION_ENDPOINT} and {@value #TOKEN_ENDPOINT} are
+ * read from it. SS specific endpoints are read from extension members, when
+ * present, or derived from the base URL, as in SS' deployments:
+ * </p>
+ * <ul>
+ * <li>{@value #TOKEN_STATUS_ENDPOINT}: base URL + "/oauth/token-status";</li>
+ * <li>{@value #RESOURCE_URL}: base URL + "/api";</li>
+ * <li>{@value #ROLES_URL}: base URL + "/api/user/#userId/roles".</li>
+ * </ul>
+ *
+ * <p>
+ * Instances are immutable.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public final class TrueNTHMetadata {
+
+    /**
+     * Metadata member: authorization endpoint.
+     */
+    public static final String AUTHORIZATION_ENDPOINT = "authorization_endpoint";
+
+    /**
+     * Metadata member: token endpoint.
+     */
+    public static final String TOKEN_ENDPOINT = "token_endpoint";
+
+    /**
+     * Metadata member (extension): token status endpoint.
+     */
+    public static final String TOKEN_STATUS_ENDPOINT = "token_status_endpoint";
+
+    /**
+     * Metadata member (extension): resource URL (API base).
+     */
+    public static final String RESOURCE_URL = "resource_url";
+
+    /**
+     * Metadata member (extension): roles URL.
+     */
+    public static final String ROLES_URL = "roles_url";
+
+    private final String baseURL;
+    private final String authorizationEndpoint;
+    private final String tokenEndpoint;
+    private final String tokenStatusEndpoint;
+    private final String resourceURL;
+    private final String rolesURL;
+
+    /**
+     * Constructor.
+     *
+     * @param baseURL
+     *            SS' base URL.
+     * @param authorizationEndpoint
+     *            Authorization endpoint.
+     * @param tokenEndpoint
+     *            Token endpoint.
+     * @param tokenStatusEndpoint
+     *            Token status endpoint.
+     * @param resourceURL
+     *            Resource URL (API base).
+     * @param rolesURL
+     *            Roles URL.
+     */
+    public TrueNTHMetadata(final String baseURL, final String authorizationEndpoint, final String tokenEndpoint, final String tokenStatusEndpoint,
+	    final String resourceURL, final String rolesURL) {
+
+	this.baseURL = baseURL;
+	this.authorizationEndpoint = authorizationEndpoint;
+	this.tokenEndpoint = tokenEndpoint;
+	this.tokenStatusEndpoint = tokenStatusEndpoint;
+	this.resourceURL = resourceURL;
+	this.rolesURL = rolesURL;
+    }
+
+    /**
+     * Reads a metadata document.
+     *
+     * @param baseURL
+     *            SS' base URL, without trailing slash.
+     * @param document
+     *            Metadata document.
+     * @return Metadata.
+     *
+     * @throws IllegalArgumentException
+     *             If the authorization or token endpoints are missing.
+     */
+    public static TrueNTHMetadata read(final String baseURL, final JsonObject document) {
+
+	final String authorizationEndpoint = member(document, AUTHORIZATION_ENDPOINT);
+	final String tokenEndpoint = member(document, TOKEN_ENDPOINT);
+
+	if ((authorizationEndpoint == null) || (tokenEndpoint == null)) {
+	    throw new IllegalArgumentException("SS metadata must include " + AUTHORIZATION_ENDPOINT + " and " + TOKEN_ENDPOINT);
+	}
+
+	return new TrueNTHMetadata(baseURL, authorizationEndpoint, tokenEndpoint,
+		orDefault(member(document, TOKEN_STATUS_ENDPOINT), baseURL + "/oauth/token-status"),
+		orDefault(member(document, RESOURCE_URL), baseURL + "/api"),
+		orDefault(member(document, ROLES_URL), baseURL + "/api/user/" + TrueNTHUrlPlaceHolders.USER_ID_PLACEHOLDER + "/roles"));
+    }
+
+    /**
+     * Completes a configuration with the discovered endpoints.
+     *
+     * @param declared
+     *            Configuration; its endpoints take precedence.
+     * @return Configuration with every missing endpoint filled from this
+     *         metadata.
+     */
+    public TrueNTHOAuthConfig complete(final TrueNTHOAuthConfig declared) {
+
+	return new TrueNTHOAuthConfig(declared.getApiKey(), declared.getApiSecret(), choose(declared.getAccessTokenEndpoint(), tokenEndpoint),
+		choose(declared.getAccessTokenStatusEndpoint(), tokenStatusEndpoint), choose(declared.getBaseAuthorizationURL(), authorizationEndpoint),
+		choose(declared.getBaseURL(), baseURL), choose(declared.getResourceURL(), resourceURL), choose(declared.getRolesURL(), rolesURL),
+		declared.getCallback(), declared.getSignatureType(), declared.getScope(), declared.getDebugStream());
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+
+	if (this == obj) { return true; }
+	if (!(obj instanceof TrueNTHMetadata)) { return false; }
+
+	final TrueNTHMetadata other = (TrueNTHMetadata) obj;
+
+	return equal(baseURL, other.baseURL) && equal(authorizationEndpoint, other.authorizationEndpoint) && equal(tokenEndpoint, other.tokenEndpoint)
+		&& equal(tokenStatusEndpoint, other.tokenStatusEndpoint) && equal(resourceURL, other.resourceURL) && equal(rolesURL, other.rolesURL);
+    }
+
+    /**
+     * Returns the authorization endpoint.
+     *
+     * @return Authorization endpoint.
+     */
+    public String getAuthorizationEndpoint() {
+
+	return authorizationEndpoint;
+    }
+
+    /**
+     * Returns SS' base URL.
+     *
+     * @return Base URL.
+     */
+    public String getBaseURL() {
+
+	return baseURL;
+    }
+
+    /**
+     * Returns the resource URL (API base).
+     *
+     * @return Resource URL.
+     */
+    public String getResourceURL() {
+
+	return resourceURL;
+    }
+
+    /**
+     * Returns the roles URL.
+     *
+     * @return Roles URL.
+     */
+    public String getRolesURL() {
+
+	return rolesURL;
+    }
+
+    /**
+     * Returns the token endpoint.
+     *
+     * @return Token endpoint.
+     */
+    public String getTokenEndpoint() {
+
+	return tokenEndpoint;
+    }
+
+    /**
+     * Returns the token status endpoint.
+     *
+     * @return Token status endpoint.
+     */
+    public String getTokenStatusEndpoint() {
+
+	return tokenStatusEndpoint;
+    }
+
+    @Override
+    public int hashCode() {
+
+	int hash = 17;
+	for (final String value : new String[] { baseURL, authorizationEndpoint, tokenEndpoint, tokenStatusEndpoint, resourceURL, rolesURL }) {
+	    hash = (31 * hash) + ((value == null) ? 0 : value.hashCode());
+	}
+	return hash;
+    }
+
+    @Override
+    public String toString() {
+
+	return "TrueNTHMetadata [authorizationEndpoint=" + authorizationEndpoint + ", tokenEndpoint=" + tokenEndpoint + ", tokenStatusEndpoint="
+		+ tokenStatusEndpoint + ", resourceURL=" + resourceURL + ", rolesURL=" + rolesURL + "]";
+    }
+
+    private static String choose(final String declared, final String discovered) {
+
+	return ((declared == null) || declared.isEmpty()) ? discovered : declared;
+    }
+
+    private static boolean equal(final String a, final String b) {
+
+	return (a == null) ? (b == null) : a.equals(b);
+    }
+
+    private static String member(final JsonObject document, final String name) {
+
+	final JsonValue value = document.get(name);
+	return (value instanceof JsonString) ? ((JsonString) value).getString() : null;
+    }
+
+    private static String orDefault(final String value, final String fallback) {
+
+	return (value == null) ? fallback : value;
+    }
+}
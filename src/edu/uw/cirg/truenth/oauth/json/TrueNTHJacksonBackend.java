@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.spi.JsonProvider;
+import javax.json.stream.JsonLocation;
+import javax.json.stream.JsonParsingException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Jackson streaming backend.
+ *
+ * <p>
+ * Parses documents with Jackson's streaming parser, which reads UTF-8 bytes
+ * directly, and builds the javax.json objects expected by extractors through a
+ * cached builder factory. Numbers follow javax.json: integers keep their exact
+ * value and decimals are read as BigDecimal.
+ * </p>
+ *
+ * <p>
+ * Requires jackson-core 2.x in the classpath.
+ * </p>
+ *
+ * <p>
+ * As with javax.json, malformed data is reported as a
+ * {@link JsonParsingException}; other {@link javax.json.JsonException}s are
+ * I/O failures.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public class TrueNTHJacksonBackend implements TrueNTHJsonBackend {
+
+    private final JsonBuilderFactory builders;
+    private final JsonFactory	factory = new JsonFactory();
+
+    /**
+     * Constructor: javax.json provider looked up by <code>Json</code>.
+     */
+    public TrueNTHJacksonBackend() {
+
+	builders = Json.createBuilderFactory(null);
+    }
+
+    /**
+     * Constructor: explicit javax.json provider, used to build objects.
+     *
+     * @param provider
+     *            javax.json provider.
+     */
+    public TrueNTHJacksonBackend(final JsonProvider provider) {
+
+	if (provider == null) { throw new IllegalArgumentException("provider can't be null"); }
+
+	builders = provider.createBuilderFactory(null);
+    }
+
+    @Override
+    public JsonObject readObject(final byte[] data, final int offset, final int length) {
+
+	try {
+	    return read(factory.createParser(data, offset, length));
+	} catch (final JsonProcessingException e) {
+	    throw malformed(e);
+	} catch (final IOException e) {
+	    throw new JsonException(e.getMessage(), e);
+	}
+    }
+
+    @Override
+    public JsonObject readObject(final InputStream data) {
+
+	try {
+	    return read(factory.createParser(data));
+	} catch (final JsonProcessingException e) {
+	    throw malformed(e);
+	} catch (final IOException e) {
+	    throw new JsonException(e.getMessage(), e);
+	}
+    }
+
+    @Override
+    public JsonObject readObject(final String data) {
+
+	try {
+	    return read(factory.createParser(data));
+	} catch (final JsonProcessingException e) {
+	    throw malformed(e);
+	} catch (final IOException e) {
+	    throw new JsonException(e.getMessage(), e);
+	}
+    }
+
+    /**
+     * Reports malformed data as javax.json does: a parsing exception, distinct
+     * from I/O failures.
+     */
+    private static JsonParsingException malformed(final JsonProcessingException e) {
+
+	return new JsonParsingException(e.getOriginalMessage(), e, location(e.getLocation()));
+    }
+
+    private static JsonParsingException malformed(final JsonParser parser, final String message) {
+
+	return new JsonParsingException(message, location(parser.getCurrentLocation()));
+    }
+
+    private static JsonLocation location(final com.fasterxml.jackson.core.JsonLocation location) {
+
+	final long line = (location == null) ? -1 : location.getLineNr();
+	final long column = (location == null) ? -1 : location.getColumnNr();
+	final long offset = (location == null) ? -1 : Math.max(location.getByteOffset(), location.getCharOffset());
+
+	return new JsonLocation() {
+
+	    @Override
+	    public long getColumnNumber() {
+
+		return column;
+	    }
+
+	    @Override
+	    public long getLineNumber() {
+
+		return line;
+	    }
+
+	    @Override
+	    public long getStreamOffset() {
+
+		return offset;
+	    }
+	};
+    }
+
+    private JsonObject read(final JsonParser parser) throws IOException {
+
+	try {
+	    if (parser.nextToken() != JsonToken.START_OBJECT) { throw malformed(parser, "JSON object expected"); }
+	    return readObject(parser).build();
+	} finally {
+	    parser.close();
+	}
+    }
+
+    private JsonObjectBuilder readObject(final JsonParser parser) throws IOException {
+
+	final JsonObjectBuilder builder = builders.createObjectBuilder();
+
+	while (parser.nextToken() == JsonToken.FIELD_NAME) {
+
+	    final String name = parser.getCurrentName();
+
+	    switch (parser.nextToken()) {
+		case START_OBJECT:
+		    builder.add(name, readObject(parser));
+		    break;
+		case START_ARRAY:
+		    builder.add(name, readArray(parser));
+		    break;
+		case VALUE_STRING:
+		    builder.add(name, parser.getText());
+		    break;
+		case VALUE_NUMBER_INT:
+		    switch (parser.getNumberType()) {
+			case INT:
+			    builder.add(name, parser.getIntValue());
+			    break;
+			case LONG:
+			    builder.add(name, parser.getLongValue());
+			    break;
+			default:
+			    builder.add(name, parser.getBigIntegerValue());
+		    }
+		    break;
+		case VALUE_NUMBER_FLOAT:
+		    builder.add(name, parser.getDecimalValue());
+		    break;
+		case VALUE_TRUE:
+		    builder.add(name, true);
+		    break;
+		case VALUE_FALSE:
+		    builder.add(name, false);
+		    break;
+		case VALUE_NULL:
+		    builder.addNull(name);
+		    break;
+		default:
+		    throw malformed(parser, "Unexpected token: " + parser.getCurrentToken());
+	    }
+	}
+
+	if (parser.getCurrentToken() != JsonToken.END_OBJECT) { throw malformed(parser, "Unterminated JSON object"); }
+	return builder;
+    }
+
+    private JsonArrayBuilder readArray(final JsonParser parser) throws IOException {
+
+	final JsonArrayBuilder builder = builders.createArrayBuilder();
+
+	JsonToken token;
+	while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+
+	    if (token == null) { throw malformed(parser, "Unterminated JSON array"); }
+
+	    switch (token) {
+		case START_OBJECT:
+		    builder.add(readObject(parser));
+		    break;
+		case START_ARRAY:
+		    builder.add(readArray(parser));
+		    break;
+		case VALUE_STRING:
+		    builder.add(parser.getText());
+		    break;
+		case VALUE_NUMBER_INT:
+		    switch (parser.getNumberType()) {
+			case INT:
+			    builder.add(parser.getIntValue());
+			    break;
+			case LONG:
+			    builder.add(parser.getLongValue());
+			    break;
+			default:
+			    builder.add(parser.getBigIntegerValue());
+		    }
+		    break;
+		case VALUE_NUMBER_FLOAT:
+		    builder.add(parser.getDecimalValue());
+		    break;
+		case VALUE_TRUE:
+		    builder.add(true);
+		    break;
+		case VALUE_FALSE:
+		    builder.add(false);
+		    break;
+		case VALUE_NULL:
+		    builder.addNull();
+		    break;
+		default:
+		    throw malformed(parser, "Unexpected token: " + token);
+	    }
+	}
+	return builder;
+    }
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.json;
+
+import java.io.InputStream;
+
+import javax.json.JsonException;
+import javax.json.JsonObject;
+
+/**
+ * JSON backend SPI.
+ *
+ * <p>
+ * A backend reads JSON objects from raw data, producing javax.json objects, so
+ * that extractors remain independent from the parser actually used.
+ * Implementations must be thread safe.
+ * </p>
+ *
+ * <p>
+ * Malformed data must be reported as a JsonParsingException, or as a
+ * JsonException without an IOException cause; read failures, as any other
+ * JsonException caused by an IOException. Callers rely on that distinction to
+ * separate parse failures from transport failures.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ *
+ * @see TrueNTHJsonBackends
+ */
+public interface TrueNTHJsonBackend {
+
+    /**
+     * Reads a JSON object from UTF-8 encoded bytes.
+     *
+     * @param data
+     *            Data source.
+     * @param offset
+     *            First byte of the object.
+     * @param length
+     *            Number of bytes to read.
+     * @return JSON object.
+     * @throws JsonException
+     *             If the data is not a valid JSON object.
+     */
+    JsonObject readObject(byte[] data, int offset, int length);
+
+    /**
+     * Reads a JSON object from a UTF-8 encoded stream.
+     *
+     * <p>
+     * The stream is read up to the end of the object and closed.
+     * </p>
+     *
+     * @param data
+     *            Data source.
+     * @return JSON object.
+     * @throws JsonException
+     *             If the data is not a valid JSON object, or cannot be read;
+     *             in the latter case, the cause is an IOException.
+     */
+    JsonObject readObject(InputStream data);
+
+    /**
+     * Reads a JSON object from a String.
+     *
+     * @param data
+     *            Data source.
+     * @return JSON object.
+     * @throws JsonException
+     *             If the data is not a valid JSON object.
+     */
+    JsonObject readObject(String data);
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.json;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+import javax.json.spi.JsonProvider;
+
+import org.glassfish.json.JsonProviderImpl;
+
+/**
+ * Access to the built-in JSON backends.
+ *
+ * <p>
+ * The default backend is the javax.json one, unless the system property
+ * <code>truenth.json.backend</code> is set to <code>jackson</code>.
+ * </p>
+ *
+ * <p>
+ * Backends are given their javax.json provider: the first one registered as
+ * a service, or the reference implementation. Thus, <code>Json</code> never
+ * falls back to its reflective lookup.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public final class TrueNTHJsonBackends {
+
+    /**
+     * System property selecting the default backend: "javax" or "jackson".
+     */
+    public static final String		PROPERTY = "truenth.json.backend";
+
+    private static volatile TrueNTHJsonBackend defaultBackend;
+    private static volatile TrueNTHJsonBackend jackson;
+    private static volatile TrueNTHJsonBackend jsonProcessing;
+
+    private TrueNTHJsonBackends() {
+
+    }
+
+    /**
+     * Returns the default backend.
+     *
+     * @return Default JSON backend.
+     * @see #PROPERTY
+     */
+    public static TrueNTHJsonBackend getDefault() {
+
+	TrueNTHJsonBackend backend = defaultBackend;
+	if (backend == null) {
+	    backend = "jackson".equalsIgnoreCase(System.getProperty(PROPERTY)) ? jackson() : jsonProcessing();
+	    defaultBackend = backend;
+	}
+	return backend;
+    }
+
+    /**
+     * Returns the shared Jackson streaming backend.
+     *
+     * @return Jackson backend.
+     * @throws NoClassDefFoundError
+     *             If jackson-core is not in the classpath.
+     */
+    public static TrueNTHJsonBackend jackson() {
+
+	TrueNTHJsonBackend backend = jackson;
+	if (backend == null) {
+	    backend = new TrueNTHJacksonBackend(provider());
+	    jackson = backend;
+	}
+	return backend;
+    }
+
+    /**
+     * Returns the shared javax.json backend.
+     *
+     * @return javax.json backend.
+     */
+    public static TrueNTHJsonBackend jsonProcessing() {
+
+	TrueNTHJsonBackend backend = jsonProcessing;
+	if (backend == null) {
+	    backend = new TrueNTHJsonProcessingBackend(provider());
+	    jsonProcessing = backend;
+	}
+	return backend;
+    }
+
+    /**
+     * Looks up the javax.json provider.
+     *
+     * @return <ul>
+     *         <li>First provider registered as a service, if any;</li>
+     *         <li>javax.json reference implementation, otherwise.</li>
+     *         </ul>
+     */
+    private static JsonProvider provider() {
+
+	final Iterator<JsonProvider> providers = ServiceLoader.load(JsonProvider.class).iterator();
+	return providers.hasNext() ? providers.next() : new JsonProviderImpl();
+    }
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonReaderFactory;
+import javax.json.spi.JsonProvider;
+
+/**
+ * javax.json (JSR 353) backend.
+ *
+ * <p>
+ * Readers are created by a single, cached factory; thus, the javax.json
+ * provider is looked up once, instead of once per document as with
+ * <code>Json.createReader</code>.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public class TrueNTHJsonProcessingBackend implements TrueNTHJsonBackend {
+
+    private final JsonReaderFactory readers;
+
+    /**
+     * Constructor: javax.json provider looked up by <code>Json</code>.
+     */
+    public TrueNTHJsonProcessingBackend() {
+
+	readers = Json.createReaderFactory(null);
+    }
+
+    /**
+     * Constructor: explicit javax.json provider.
+     *
+     * <p>
+     * Skips the provider lookup (ServiceLoader, then reflection), which is
+     * not available in some environments; for instance, native images.
+     * </p>
+     *
+     * @param provider
+     *            javax.json provider; for instance,
+     *            <code>new org.glassfish.json.JsonProviderImpl()</code>.
+     */
+    public TrueNTHJsonProcessingBackend(final JsonProvider provider) {
+
+	if (provider == null) { throw new IllegalArgumentException("provider can't be null"); }
+
+	readers = provider.createReaderFactory(null);
+    }
+
+    @Override
+    public JsonObject readObject(final byte[] data, final int offset, final int length) {
+
+	return readObject(new ByteArrayInputStream(data, offset, length));
+    }
+
+    @Override
+    public JsonObject readObject(final InputStream data) {
+
+	final JsonReader reader = readers.createReader(data, StandardCharsets.UTF_8);
+	try {
+	    return reader.readObject();
+	} finally {
+	    reader.close();
+	}
+    }
+
+    @Override
+    public JsonObject readObject(final String data) {
+
+	final JsonReader reader = readers.createReader(new StringReader(data));
+	try {
+	    return reader.readObject();
+	} finally {
+	    reader.close();
+	}
+    }
+}
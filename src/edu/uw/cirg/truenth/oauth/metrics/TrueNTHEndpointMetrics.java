@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import edu.uw.cirg.truenth.oauth.model.TrueNTHResult;
+
+/**
+ * Measurements of a tenant's endpoint.
+ *
+ * <p>
+ * Latency covers the time until the response body was read, or discarded,
+ * for every request issued, including failed ones; parse time covers
+ * decoding response bodies (and reading them, when they are parsed as they
+ * are read).
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ *
+ * @see TrueNTHMemoryMetrics
+ */
+public class TrueNTHEndpointMetrics {
+
+    /**
+     * Status codes tracked individually; others, and missing responses, share
+     * slot 0.
+     */
+    private static final int STATUS_CODES = 600;
+
+    private final TrueNTHHistogram latency   = new TrueNTHHistogram();
+    private final TrueNTHHistogram parseTime = new TrueNTHHistogram();
+    private final AtomicLongArray  statuses  = new AtomicLongArray(STATUS_CODES);
+    private final AtomicLong       bytesIn   = new AtomicLong();
+    private final AtomicLong       bytesOut  = new AtomicLong();
+    private final AtomicLong       hits      = new AtomicLong();
+    private final AtomicLong       misses    = new AtomicLong();
+
+    TrueNTHEndpointMetrics() {
+
+    }
+
+    /**
+     * Returns the total size of response bodies.
+     *
+     * @return Bytes received: body bytes read.
+     */
+    public long getBytesIn() {
+
+	return bytesIn.get();
+    }
+
+    /**
+     * Returns the total size of request bodies.
+     *
+     * @return Bytes sent.
+     */
+    public long getBytesOut() {
+
+	return bytesOut.get();
+    }
+
+    /**
+     * Returns the fraction of cache accesses served from the cache.
+     *
+     * @return Hit ratio, from 0 to 1; 0 if the cache was not accessed.
+     */
+    public double getCacheHitRatio() {
+
+	final long hitCount = hits.get();
+	final long total = hitCount + misses.get();
+	return (total == 0) ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Returns the number of accesses served from the cache.
+     *
+     * @return Cache hits.
+     */
+    public long getCacheHits() {
+
+	return hits.get();
+    }
+
+    /**
+     * Returns the number of accesses that issued requests.
+     *
+     * @return Cache misses.
+     */
+    public long getCacheMisses() {
+
+	return misses.get();
+    }
+
+    /**
+     * Returns the request latency histogram, in nanoseconds.
+     *
+     * @return Latency histogram.
+     */
+    public TrueNTHHistogram getLatency() {
+
+	return latency;
+    }
+
+    /**
+     * Returns the parse time histogram, in nanoseconds.
+     *
+     * @return Parse time histogram.
+     */
+    public TrueNTHHistogram getParseTime() {
+
+	return parseTime;
+    }
+
+    /**
+     * Returns the number of requests issued.
+     *
+     * @return Request count.
+     */
+    public long getRequestCount() {
+
+	return latency.getCount();
+    }
+
+    /**
+     * Returns the number of responses with a status code.
+     *
+     * @param status
+     *            HTTP status; {@link TrueNTHResult#NO_STATUS} for requests
+     *            without response.
+     * @return Count.
+     */
+    public long getStatusCount(final int status) {
+
+	return statuses.get(slotOf(status));
+    }
+
+    /**
+     * Returns the status code distribution.
+     *
+     * @return Counts by HTTP status, in status order; requests without
+     *         response are reported under {@link TrueNTHResult#NO_STATUS}.
+     */
+    public Map<Integer, Long> getStatusCounts() {
+
+	final Map<Integer, Long> distribution = new TreeMap<Integer, Long>();
+	for (int status = 0; status < STATUS_CODES; status++) {
+	    final long count = statuses.get(status);
+	    if (count > 0) {
+		distribution.put((status == 0) ? TrueNTHResult.NO_STATUS : status, count);
+	    }
+	}
+	return distribution;
+    }
+
+    void recordCacheAccess(final boolean hit) {
+
+	(hit ? hits : misses).incrementAndGet();
+    }
+
+    void recordParse(final long nanos) {
+
+	parseTime.record(nanos);
+    }
+
+    void recordRequest(final int status, final long nanos, final long out, final long in) {
+
+	latency.record(nanos);
+	statuses.incrementAndGet(slotOf(status));
+	if (out > 0) {
+	    bytesOut.addAndGet(out);
+	}
+	if (in > 0) {
+	    bytesIn.addAndGet(in);
+	}
+    }
+
+    private static int slotOf(final int status) {
+
+	return ((status > 0) && (status < STATUS_CODES)) ? status : 0;
+    }
+}
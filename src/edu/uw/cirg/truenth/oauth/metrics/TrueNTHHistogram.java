@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free, log-linear histogram of non-negative values.
+ *
+ * <p>
+ * As in HDR histograms, every power of two is split into 32 linear
+ * sub-buckets; thus, values are reported with a relative error below 1/32
+ * (about 3%), at a fixed memory cost (8K) and without allocation. Values
+ * above 2<sup>36</sup> - 1 (about 68 seconds, in nanoseconds) are recorded as
+ * that value.
+ * </p>
+ *
+ * <p>
+ * Recording takes two atomic increments. Readers scan the buckets while
+ * values are recorded; their results reflect a moment close to the call.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public class TrueNTHHistogram {
+
+    private static final int  SUB_BUCKET_BITS = 5;
+    private static final int  SUB_BUCKETS     = 1 << SUB_BUCKET_BITS;
+    private static final int  MAX_EXPONENT    = 36;
+    private static final int  BUCKETS	      = ((MAX_EXPONENT - SUB_BUCKET_BITS) + 1) * SUB_BUCKETS;
+
+    /**
+     * Highest trackable value.
+     */
+    public static final long  MAX_VALUE       = (1L << MAX_EXPONENT) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong      sum    = new AtomicLong();
+    private final AtomicLong      max    = new AtomicLong();
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return Count.
+     */
+    public long getCount() {
+
+	long count = 0;
+	for (int i = 0; i < BUCKETS; i++) {
+	    count += counts.get(i);
+	}
+	return count;
+    }
+
+    /**
+     * Returns the highest recorded value.
+     *
+     * @return Maximum; 0 if empty.
+     */
+    public long getMax() {
+
+	return max.get();
+    }
+
+    /**
+     * Returns the mean of recorded values.
+     *
+     * @return Mean; 0 if empty.
+     */
+    public double getMean() {
+
+	final long count = getCount();
+	return (count == 0) ? 0 : (double) sum.get() / count;
+    }
+
+    /**
+     * Returns the sum of recorded values.
+     *
+     * @return Sum.
+     */
+    public long getSum() {
+
+	return sum.get();
+    }
+
+    /**
+     * Returns the value below which a percentage of recorded values fall.
+     *
+     * <p>
+     * The value reported is the highest value equivalent to the percentile's
+     * bucket, bounded by the maximum recorded.
+     * </p>
+     *
+     * @param percentile
+     *            Percentile, from 0 to 100; for instance, 99.9.
+     * @return Value; 0 if empty.
+     */
+    public long getValueAtPercentile(final double percentile) {
+
+	if ((percentile < 0) || (percentile > 100)) { throw new IllegalArgumentException("Invalid percentile: " + percentile); }
+
+	final long[] snapshot = new long[BUCKETS];
+	long count = 0;
+	for (int i = 0; i < BUCKETS; i++) {
+	    snapshot[i] = counts.get(i);
+	    count += snapshot[i];
+	}
+
+	if (count == 0) { return 0; }
+
+	final long target = Math.max(1, (long) Math.ceil((percentile / 100) * count));
+
+	long seen = 0;
+	for (int i = 0; i < BUCKETS; i++) {
+	    seen += snapshot[i];
+	    if (seen >= target) { return Math.min(highestEquivalentValue(i), max.get()); }
+	}
+
+	return max.get();
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value
+     *            Value; negative values are recorded as 0.
+     */
+    public void record(final long value) {
+
+	final long bounded = (value < 0) ? 0 : Math.min(value, MAX_VALUE);
+
+	counts.incrementAndGet(indexOf(bounded));
+	sum.addAndGet(bounded);
+
+	long current = max.get();
+	while ((bounded > current) && !max.compareAndSet(current, bounded)) {
+	    current = max.get();
+	}
+    }
+
+    /**
+     * Clears recorded values.
+     *
+     * <p>
+     * Values recorded concurrently may be lost.
+     * </p>
+     */
+    public void reset() {
+
+	for (int i = 0; i < BUCKETS; i++) {
+	    counts.set(i, 0);
+	}
+	sum.set(0);
+	max.set(0);
+    }
+
+    /**
+     * Highest value mapped to a bucket.
+     */
+    static long highestEquivalentValue(final int index) {
+
+	if (index < SUB_BUCKETS) { return index; }
+
+	final int shift = (index >>> SUB_BUCKET_BITS) - 1;
+	final long mantissa = (index & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+	return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * Bucket of a value: values below 32 have their own buckets; above, the
+     * exponent selects a range and the 5 bits after the leading one select the
+     * sub-bucket.
+     */
+    static int indexOf(final long value) {
+
+	if (value < SUB_BUCKETS) { return (int) value; }
+
+	final int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+	return (((shift + 1) << SUB_BUCKET_BITS) + (int) (value >>> shift)) - SUB_BUCKETS;
+    }
+}
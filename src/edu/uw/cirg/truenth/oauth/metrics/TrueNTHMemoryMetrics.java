@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.metrics;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * In-memory metrics: lock-free histograms and counters, per tenant and
+ * endpoint.
+ *
+ * <p>
+ * Recorders are bound to their tenant when services are configured, so
+ * recording involves no lookup: only the atomic updates of the endpoint's
+ * histogram and counters. Endpoint measurements are allocated on first use.
+ * </p>
+ *
+ * <p>
+ * Exporters read {@link #getTenants()} and
+ * {@link #getEndpointMetrics(String, TrueNTHEndpoint)} periodically, and
+ * publish the values as gauges or summaries of their registries.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public class TrueNTHMemoryMetrics implements TrueNTHMetrics {
+
+    private final ConcurrentMap<String, Recorder> tenants = new ConcurrentHashMap<String, Recorder>();
+
+    /**
+     * Returns the measurements of a tenant's endpoint.
+     *
+     * @param tenant
+     *            Tenant tag.
+     * @param endpoint
+     *            Endpoint.
+     * @return Measurements; null if nothing was recorded.
+     */
+    public TrueNTHEndpointMetrics getEndpointMetrics(final String tenant, final TrueNTHEndpoint endpoint) {
+
+	final Recorder recorder = tenants.get(tenant);
+	return (recorder == null) ? null : recorder.endpoints.get(endpoint.ordinal());
+    }
+
+    @Override
+    public TrueNTHMetricsRecorder getRecorder(final String tenant) {
+
+	if (tenant == null) { throw new IllegalArgumentException("tenant can't be null"); }
+
+	Recorder recorder = tenants.get(tenant);
+	if (recorder == null) {
+	    final Recorder created = new Recorder();
+	    recorder = tenants.putIfAbsent(tenant, created);
+	    if (recorder == null) {
+		recorder = created;
+	    }
+	}
+	return recorder;
+    }
+
+    /**
+     * Returns the tenants with recorders.
+     *
+     * @return Tenant tags; a live, unmodifiable view.
+     */
+    public Set<String> getTenants() {
+
+	return Collections.unmodifiableSet(tenants.keySet());
+    }
+
+    /**
+     * Forgets a tenant's measurements.
+     *
+     * <p>
+     * Services keep recording into their recorder; call
+     * {@link edu.uw.cirg.truenth.oauth.TrueNTHOAuthService#setMetrics(TrueNTHMetrics, String)}
+     * again to resume reporting.
+     * </p>
+     *
+     * @param tenant
+     *            Tenant tag.
+     */
+    public void remove(final String tenant) {
+
+	tenants.remove(tenant);
+    }
+
+    private static final class Recorder implements TrueNTHMetricsRecorder {
+
+	private final AtomicReferenceArray<TrueNTHEndpointMetrics> endpoints = new AtomicReferenceArray<TrueNTHEndpointMetrics>(
+		TrueNTHEndpoint.values().length);
+
+	@Override
+	public void recordCacheAccess(final TrueNTHEndpoint endpoint, final boolean hit) {
+
+	    metrics(endpoint).recordCacheAccess(hit);
+	}
+
+	@Override
+	public void recordParse(final TrueNTHEndpoint endpoint, final long nanos) {
+
+	    metrics(endpoint).recordParse(nanos);
+	}
+
+	@Override
+	public void recordRequest(final TrueNTHEndpoint endpoint, final int status, final long nanos, final long bytesOut, final long bytesIn) {
+
+	    metrics(endpoint).recordRequest(status, nanos, bytesOut, bytesIn);
+	}
+
+	private TrueNTHEndpointMetrics metrics(final TrueNTHEndpoint endpoint) {
+
+	    final int index = endpoint.ordinal();
+
+	    final TrueNTHEndpointMetrics metrics = endpoints.get(index);
+	    if (metrics != null) { return metrics; }
+
+	    endpoints.compareAndSet(index, null, new TrueNTHEndpointMetrics());
+	    return endpoints.get(index);
+	}
+    }
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.metrics;
+
+/**
+ * Receives the measurements of a tenant.
+ *
+ * <p>
+ * Methods are called by request threads, on every request; implementations
+ * must be thread safe and should not block.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public interface TrueNTHMetricsRecorder {
+
+    /**
+     * Records a cache access.
+     *
+     * @param endpoint
+     *            Endpoint whose responses are cached.
+     * @param hit
+     *            True if served from the cache; false if a request was issued.
+     */
+    void recordCacheAccess(TrueNTHEndpoint endpoint, boolean hit);
+
+    /**
+     * Records the time spent reading and decoding a response body.
+     *
+     * @param endpoint
+     *            Endpoint.
+     * @param nanos
+     *            Elapsed time, in nanoseconds.
+     */
+    void recordParse(TrueNTHEndpoint endpoint, long nanos);
+
+    /**
+     * Records a request.
+     *
+     * @param endpoint
+     *            Endpoint.
+     * @param status
+     *            HTTP status; {@link edu.uw.cirg.truenth.oauth.model.TrueNTHResult#NO_STATUS}
+     *            if no response was received.
+     * @param nanos
+     *            Time until the response body was read, or discarded, in
+     *            nanoseconds; it includes parsing for bodies parsed as they
+     *            are read (see {@link #recordParse(TrueNTHEndpoint, long)}).
+     * @param bytesOut
+     *            Request body size.
+     * @param bytesIn
+     *            Response body bytes read; 0 for bodies discarded unread.
+     */
+    void recordRequest(TrueNTHEndpoint endpoint, int status, long nanos, long bytesOut, long bytesIn);
+}
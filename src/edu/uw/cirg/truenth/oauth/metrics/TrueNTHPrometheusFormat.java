@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.metrics;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+import edu.uw.cirg.truenth.oauth.model.TrueNTHResult;
+
+/**
+ * Exporter of {@link TrueNTHMemoryMetrics} in the Prometheus text exposition
+ * format (version 0.0.4).
+ *
+ * <p>
+ * Dependency free: serve {@link #format(TrueNTHMemoryMetrics)} from a scrape
+ * endpoint, or adapt it as an example for other registries. Every series is
+ * labeled with its tenant and endpoint; latency and parse time are published
+ * as summaries, in seconds.
+ * </p>
+ *
+ * <pre>
+ * truenth_requests_total{tenant="a",endpoint="roles",status="200"} 42
+ * truenth_request_seconds{tenant="a",endpoint="roles",quantile="0.99"} 0.031
+ * </pre>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public final class TrueNTHPrometheusFormat {
+
+    /**
+     * Content type of the exposition format.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
+
+    /**
+     * Metric families, in output order.
+     */
+    private enum Family {
+
+	REQUESTS("truenth_requests_total", "counter", "Requests issued to SS, by status."),
+	REQUEST_SECONDS("truenth_request_seconds", "summary", "Time until response bodies were read."),
+	PARSE_SECONDS("truenth_parse_seconds", "summary", "Time decoding response bodies."),
+	RECEIVED_BYTES("truenth_received_bytes_total", "counter", "Response body bytes read."),
+	SENT_BYTES("truenth_sent_bytes_total", "counter", "Request body bytes sent."),
+	CACHE_HITS("truenth_cache_hits_total", "counter", "Reads served from caches."),
+	CACHE_MISSES("truenth_cache_misses_total", "counter", "Reads that issued requests.");
+
+	final String name;
+	final String type;
+	final String help;
+
+	Family(final String name, final String type, final String help) {
+
+	    this.name = name;
+	    this.type = type;
+	    this.help = help;
+	}
+    }
+
+    private TrueNTHPrometheusFormat() {
+
+    }
+
+    /**
+     * Formats the current measurements.
+     *
+     * @param metrics
+     *            Measurements.
+     * @return Exposition text.
+     */
+    public static String format(final TrueNTHMemoryMetrics metrics) {
+
+	final StringBuilder text = new StringBuilder(4096);
+	try {
+	    write(metrics, text);
+	} catch (final IOException e) {
+	    // StringBuilder does not throw.
+	    throw new IllegalStateException(e);
+	}
+	return text.toString();
+    }
+
+    /**
+     * Writes the current measurements.
+     *
+     * @param metrics
+     *            Measurements.
+     * @param out
+     *            Destination.
+     * @throws IOException
+     *             If the destination fails.
+     */
+    public static void write(final TrueNTHMemoryMetrics metrics, final Appendable out) throws IOException {
+
+	for (final Family family : Family.values()) {
+
+	    out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+	    out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+
+	    for (final String tenant : metrics.getTenants()) {
+		for (final TrueNTHEndpoint endpoint : TrueNTHEndpoint.values()) {
+		    final TrueNTHEndpointMetrics measured = metrics.getEndpointMetrics(tenant, endpoint);
+		    if (measured != null) {
+			write(out, family, labels(tenant, endpoint), measured);
+		    }
+		}
+	    }
+	}
+    }
+
+    private static void write(final Appendable out, final Family family, final String labels, final TrueNTHEndpointMetrics measured)
+	    throws IOException {
+
+	switch (family) {
+	    case REQUESTS:
+		for (final Map.Entry<Integer, Long> status : measured.getStatusCounts().entrySet()) {
+		    final String code = (status.getKey() == TrueNTHResult.NO_STATUS) ? "none" : status.getKey().toString();
+		    sample(out, family.name, labels + ",status=\"" + code + '"', status.getValue());
+		}
+		break;
+	    case REQUEST_SECONDS:
+		summary(out, family.name, labels, measured.getLatency());
+		break;
+	    case PARSE_SECONDS:
+		summary(out, family.name, labels, measured.getParseTime());
+		break;
+	    case RECEIVED_BYTES:
+		sample(out, family.name, labels, measured.getBytesIn());
+		break;
+	    case SENT_BYTES:
+		sample(out, family.name, labels, measured.getBytesOut());
+		break;
+	    case CACHE_HITS:
+		sample(out, family.name, labels, measured.getCacheHits());
+		break;
+	    case CACHE_MISSES:
+		sample(out, family.name, labels, measured.getCacheMisses());
+		break;
+	}
+    }
+
+    private static void summary(final Appendable out, final String name, final String labels, final TrueNTHHistogram histogram)
+	    throws IOException {
+
+	for (final double quantile : QUANTILES) {
+	    sample(out, name, labels + ",quantile=\"" + quantile + '"', seconds(histogram.getValueAtPercentile(quantile * 100)));
+	}
+	sample(out, name + "_sum", labels, seconds(histogram.getSum()));
+	sample(out, name + "_count", labels, histogram.getCount());
+    }
+
+    private static void sample(final Appendable out, final String name, final String labels, final Object value) throws IOException {
+
+	out.append(name).append('{').append(labels).append("} ").append(String.valueOf(value)).append('\n');
+    }
+
+    private static String seconds(final long nanos) {
+
+	return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private static String labels(final String tenant, final TrueNTHEndpoint endpoint) {
+
+	return "tenant=\"" + escape(tenant) + "\",endpoint=\"" + endpoint.name().toLowerCase(Locale.ROOT) + '"';
+    }
+
+    /**
+     * Escapes a label value: backslashes, quotes and line feeds.
+     */
+    private static String escape(final String value) {
+
+	return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
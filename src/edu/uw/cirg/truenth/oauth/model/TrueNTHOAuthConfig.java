@@ -16,6 +16,12 @@
 package edu.uw.cirg.truenth.oauth.model;
 
 import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.scribe.model.OAuthConfig;
 import org.scribe.model.SignatureType;
@@ -91,6 +97,26 @@ public class TrueNTHOAuthConfig extends OAuthConfig {
      */
     private final String rolesURL;
 
+    /**
+     * Debug stream; null if debugging is off.
+     */
+    private final OutputStream debugStream;
+
+    /**
+     * Roles URL, compiled.
+     */
+    private final TrueNTHUriTemplate rolesTemplate;
+
+    /**
+     * Resource URL, without trailing slashes; base for resource paths.
+     */
+    private final String resourcePrefix;
+
+    /**
+     * Configuration problems, found while parsing.
+     */
+    private final List<String> problems;
+
     /**
      * Constructor.
      *
@@ -133,7 +159,31 @@ public class TrueNTHOAuthConfig extends OAuthConfig {
 	this.baseURL = baseURL;
 	this.resourceURL = resourceURL;
 	this.rolesURL = rolesURL;
+	debugStream = stream;
+
+	final List<String> found = new ArrayList<String>();
+
+	check("access token endpoint URL", accessTokenEndpointURL, found);
+	check("access token status endpoint URL", accessTokenStatusEndpointURL, found);
+	check("base authorization URL", baseAuthorizationURL, found);
+	check("base URL", baseURL, found);
+	check("resource URL", resourceURL, found);
+
+	TrueNTHUriTemplate template = null;
+	if (rolesURL != null) {
+	    try {
+		template = TrueNTHUriTemplate.compile(rolesURL);
+		final Object[] sample = new Object[template.getVariables().size()];
+		Arrays.fill(sample, 0);
+		check("roles URL", template.expand(sample), found);
+	    } catch (final IllegalArgumentException e) {
+		found.add(e.getMessage());
+	    }
+	}
+	rolesTemplate = template;
 
+	resourcePrefix = (resourceURL == null) ? null : stripTrailingSlashes(resourceURL);
+	problems = Collections.unmodifiableList(found);
     }
 
     /**
@@ -209,4 +259,131 @@ public class TrueNTHOAuthConfig extends OAuthConfig {
 	return rolesURL;
     }
 
+    /**
+     * Returns the debug stream.
+     *
+     * @return Debug stream; null if debugging is off.
+     */
+    public OutputStream getDebugStream() {
+
+	return debugStream;
+    }
+
+    /**
+     * Returns the configuration problems found while parsing.
+     *
+     * @return Unmodifiable list of problems; empty if none.
+     *
+     * @see #validate()
+     */
+    public List<String> getProblems() {
+
+	return problems;
+    }
+
+    /**
+     * Returns the roles URL, compiled.
+     *
+     * @return Roles URL template; null if not configured or invalid.
+     */
+    public TrueNTHUriTemplate getRolesTemplate() {
+
+	return rolesTemplate;
+    }
+
+    /**
+     * Resolves a resource path against the resource URL.
+     *
+     * <p>
+     * Paths are appended to the API base, with exactly one slash between them;
+     * paths starting with a query (<code>?</code>) are appended as they are.
+     * </p>
+     *
+     * <p>
+     * For instance, with https://stg.us.truenth.org/api as resource URL,
+     * "/demographics" and "demographics" both resolve to
+     * https://stg.us.truenth.org/api/demographics.
+     * </p>
+     *
+     * @param path
+     *            Resource path.
+     * @return Resource address.
+     *
+     * @throws IllegalStateException
+     *             If no resource URL was configured.
+     */
+    public String resolveResourceURL(final String path) {
+
+	if (resourcePrefix == null) { throw new IllegalStateException("Resource URL is not configured."); }
+	if ((path == null) || path.isEmpty()) { return resourceURL; }
+
+	final char first = path.charAt(0);
+	final boolean separated = (first == '/') || (first == '?');
+
+	return separated ? (resourcePrefix + path) : (resourcePrefix + '/' + path);
+    }
+
+    /**
+     * Validates the configuration.
+     *
+     * <p>
+     * Every configured endpoint must be an absolute HTTP(S) URL, and the roles
+     * URL a valid template. All problems are reported at once.
+     * </p>
+     *
+     * @throws IllegalArgumentException
+     *             If any configured endpoint is invalid.
+     */
+    public void validate() {
+
+	if (!problems.isEmpty()) {
+
+	    final StringBuilder message = new StringBuilder("Invalid SS configuration:");
+	    for (final String problem : problems) {
+		message.append("\n\t").append(problem);
+	    }
+
+	    throw new IllegalArgumentException(message.toString());
+	}
+    }
+
+    /**
+     * Checks that an endpoint is an absolute HTTP(S) URL.
+     *
+     * @param name
+     *            Endpoint name, for messages.
+     * @param address
+     *            Endpoint address; may be null.
+     * @param problems
+     *            Problems found so far.
+     */
+    private static void check(final String name, final String address, final List<String> problems) {
+
+	if ((address == null) || address.isEmpty()) { return; }
+
+	try {
+
+	    final URI uri = new URI(address);
+
+	    final String scheme = uri.getScheme();
+	    if (!"http".equalsIgnoreCase(scheme) && !"https".equalsIgnoreCase(scheme)) {
+		problems.add("The " + name + " must be an absolute HTTP(S) URL: " + address);
+	    } else if (uri.getHost() == null) {
+		problems.add("The " + name + " has no host: " + address);
+	    }
+
+	} catch (final URISyntaxException e) {
+
+	    problems.add("The " + name + " is not a valid URL: " + e.getMessage());
+	}
+    }
+
+    private static String stripTrailingSlashes(final String address) {
+
+	int end = address.length();
+	while ((end > 0) && (address.charAt(end - 1) == '/')) {
+	    end--;
+	}
+	return address.substring(0, end);
+    }
 }
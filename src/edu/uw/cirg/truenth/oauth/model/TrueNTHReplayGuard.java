@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.model;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.uw.cirg.truenth.oauth.cache.TrueNTHBucketedMap;
+
+/**
+ * Replay protection for TrueNTH "signed requests".
+ *
+ * <p>
+ * Accepts a request once, and only while its "issued_at" claim lies within a
+ * window around the current time. Signatures of accepted requests are
+ * remembered until their issue time leaves the window; afterwards, the
+ * freshness check alone rejects them.
+ * </p>
+ *
+ * <p>
+ * Signatures are kept in memory, in a {@link TrueNTHBucketedMap} bucketed by
+ * issue time. Buckets are recycled as they expire; thus, memory is bounded by
+ * the number of requests accepted within a window.
+ * </p>
+ *
+ * <p>
+ * Instances are thread safe. Replay protection is local to the instance: a
+ * cluster needs sticky callbacks or a shared store.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ *
+ * @see TrueNTHSignedRequestVerifier#setReplayGuard(TrueNTHReplayGuard)
+ */
+public class TrueNTHReplayGuard {
+
+    /**
+     * Check outcomes.
+     */
+    public enum Verdict {
+	/**
+	 * Fresh and never seen: accepted.
+	 */
+	FRESH,
+	/**
+	 * Issue time outside the window.
+	 */
+	EXPIRED,
+	/**
+	 * Already accepted.
+	 */
+	REPLAYED
+    }
+
+    /**
+     * Default number of stripes.
+     */
+    public static final int DEFAULT_STRIPES = 16;
+
+    /**
+     * Signature, held by value.
+     */
+    private static final class Signature {
+
+	private final byte[] bytes;
+	private final int    hash;
+
+	Signature(final byte[] bytes, final int hash) {
+
+	    this.bytes = bytes;
+	    this.hash = hash;
+	}
+
+	@Override
+	public boolean equals(final Object other) {
+
+	    return (other instanceof Signature) && Arrays.equals(bytes, ((Signature) other).bytes);
+	}
+
+	@Override
+	public int hashCode() {
+
+	    return hash;
+	}
+    }
+
+    private final long					window;
+    private final TrueNTHBucketedMap<Signature, Boolean> signatures;
+    private final AtomicLong expired  = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+
+    /**
+     * Constructor: default number of stripes.
+     *
+     * @param window
+     *            Accepted distance between issue time and the current time, in
+     *            either direction (clock skew is included).
+     * @param unit
+     *            Window unit; the window is rounded up to seconds.
+     */
+    public TrueNTHReplayGuard(final long window, final TimeUnit unit) {
+
+	this(window, unit, DEFAULT_STRIPES);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param window
+     *            Accepted distance between issue time and the current time, in
+     *            either direction (clock skew is included).
+     * @param unit
+     *            Window unit; the window is rounded up to seconds.
+     * @param stripes
+     *            Number of independently locked stripes; rounded up to a
+     *            power of two.
+     */
+    public TrueNTHReplayGuard(final long window, final TimeUnit unit, final int stripes) {
+
+	if (window <= 0) { throw new IllegalArgumentException("window must be positive"); }
+	if (stripes <= 0) { throw new IllegalArgumentException("stripes must be positive"); }
+
+	this.window = (unit.toMillis(window) + 999) / 1000;
+
+	// Live issue times range from now - window to now + window.
+	signatures = new TrueNTHBucketedMap<Signature, Boolean>(2 * this.window, stripes, 0);
+    }
+
+    /**
+     * Checks a request, remembering it if fresh.
+     *
+     * @param issuedAt
+     *            Request issue time, in seconds since the epoch ("issued_at").
+     * @param signature
+     *            Request signature.
+     * @return Verdict.
+     */
+    public Verdict check(final long issuedAt, final byte[] signature) {
+
+	return check(issuedAt, signature, System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * Checks a request, at a given time.
+     */
+    Verdict check(final long issuedAt, final byte[] signature, final long now) {
+
+	if ((issuedAt < (now - window)) || (issuedAt > (now + window))) {
+	    expired.incrementAndGet();
+	    return Verdict.EXPIRED;
+	}
+
+	// Replays carry the same issue time: they land in the same bucket.
+	if (signatures.put(new Signature(signature.clone(), hash(signature)), Boolean.TRUE, issuedAt, now - window) != null) {
+	    replayed.incrementAndGet();
+	    return Verdict.REPLAYED;
+	}
+
+	return Verdict.FRESH;
+    }
+
+    /**
+     * Returns the number of requests rejected for their issue time.
+     *
+     * @return Expired requests.
+     */
+    public long getExpiredCount() {
+
+	return expired.get();
+    }
+
+    /**
+     * Returns the number of replayed requests.
+     *
+     * @return Replayed requests.
+     */
+    public long getReplayCount() {
+
+	return replayed.get();
+    }
+
+    /**
+     * Returns the window.
+     *
+     * @return Window, in seconds.
+     */
+    public long getWindow() {
+
+	return window;
+    }
+
+    /**
+     * Returns the number of remembered signatures.
+     *
+     * @return Signatures held, including those in expired buckets not yet
+     *         recycled.
+     */
+    public int size() {
+
+	return signatures.size();
+    }
+
+    /**
+     * Signatures are HMAC outputs, uniformly distributed: their first bytes
+     * are a sufficient hash.
+     */
+    private static int hash(final byte[] signature) {
+
+	if (signature.length < 4) { return Arrays.hashCode(signature); }
+	return ((signature[0] & 0xff) << 24) | ((signature[1] & 0xff) << 16) | ((signature[2] & 0xff) << 8) | (signature[3] & 0xff);
+    }
+}
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.model;
+
+/**
+ * Outcome of a request towards SS.
+ *
+ * <p>
+ * Distinguishes five outcomes, so callers can act on failures without
+ * catching exceptions or interpreting nulls:
+ * </p>
+ * <ul>
+ * <li>{@link Kind#SUCCESS}: a value was obtained;</li>
+ * <li>{@link Kind#HTTP_ERROR}: SS answered with an unexpected HTTP status;</li>
+ * <li>{@link Kind#TRANSPORT_FAILURE}: the request could not be issued or its
+ * response could not be read (e.g. timeouts, unknown hosts);</li>
+ * <li>{@link Kind#PARSE_FAILURE}: SS answered, but its response could not be
+ * interpreted;</li>
+ * <li>{@link Kind#CONFIGURATION_FAILURE}: no request was issued, because the
+ * endpoint is not configured or its address cannot be built.</li>
+ * </ul>
+ *
+ * <p>
+ * Results are immutable; failures do not capture stack traces of their own.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ *
+ * @param <T>
+ *            Value type.
+ */
+public final class TrueNTHResult<T> {
+
+    /**
+     * Result kinds.
+     */
+    public enum Kind {
+	SUCCESS, HTTP_ERROR, TRANSPORT_FAILURE, PARSE_FAILURE, CONFIGURATION_FAILURE
+    }
+
+    /**
+     * HTTP status used when no response was received.
+     */
+    public static final int NO_STATUS = -1;
+
+    /**
+     * Creates: configuration failure.
+     *
+     * @param cause
+     *            Configuration error.
+     * @return Failed result.
+     */
+    public static <T> TrueNTHResult<T> configurationFailure(final Exception cause) {
+
+	return new TrueNTHResult<T>(Kind.CONFIGURATION_FAILURE, null, NO_STATUS, cause);
+    }
+
+    /**
+     * Creates: HTTP error.
+     *
+     * @param httpStatus
+     *            HTTP status received.
+     * @return Failed result.
+     */
+    public static <T> TrueNTHResult<T> httpError(final int httpStatus) {
+
+	return new TrueNTHResult<T>(Kind.HTTP_ERROR, null, httpStatus, null);
+    }
+
+    /**
+     * Creates: parse failure.
+     *
+     * @param httpStatus
+     *            HTTP status received.
+     * @param cause
+     *            Parsing error.
+     * @return Failed result.
+     */
+    public static <T> TrueNTHResult<T> parseFailure(final int httpStatus, final Exception cause) {
+
+	return new TrueNTHResult<T>(Kind.PARSE_FAILURE, null, httpStatus, cause);
+    }
+
+    /**
+     * Creates: success.
+     *
+     * @param value
+     *            Value obtained.
+     * @param httpStatus
+     *            HTTP status received.
+     * @return Successful result.
+     */
+    public static <T> TrueNTHResult<T> success(final T value, final int httpStatus) {
+
+	return new TrueNTHResult<T>(Kind.SUCCESS, value, httpStatus, null);
+    }
+
+    /**
+     * Creates: transport failure.
+     *
+     * @param cause
+     *            Transport error.
+     * @return Failed result.
+     */
+    public static <T> TrueNTHResult<T> transportFailure(final Exception cause) {
+
+	return new TrueNTHResult<T>(Kind.TRANSPORT_FAILURE, null, NO_STATUS, cause);
+    }
+
+    /**
+     * Converts a failure to another value type.
+     *
+     * @param failure
+     *            Failed result.
+     * @return The same failure, typed for the caller.
+     * @throws IllegalArgumentException
+     *             If the result is successful.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> TrueNTHResult<T> failure(final TrueNTHResult<?> failure) {
+
+	if (failure.isSuccess()) { throw new IllegalArgumentException("Result is successful"); }
+	return (TrueNTHResult<T>) failure;
+    }
+
+    private final Kind      kind;
+    private final T	 value;
+    private final int       httpStatus;
+    private final Exception cause;
+
+    private TrueNTHResult(final Kind kind, final T value, final int httpStatus, final Exception cause) {
+
+	this.kind = kind;
+	this.value = value;
+	this.httpStatus = httpStatus;
+	this.cause = cause;
+    }
+
+    /**
+     * Returns the failure cause.
+     *
+     * @return <ul>
+     *         <li>Exception that caused transport and parse failures;</li>
+     *         <li>null, otherwise.</li>
+     *         </ul>
+     */
+    public Exception getCause() {
+
+	return cause;
+    }
+
+    /**
+     * Returns the HTTP status received.
+     *
+     * @return HTTP status, or {@link #NO_STATUS} if no response was received.
+     */
+    public int getHttpStatus() {
+
+	return httpStatus;
+    }
+
+    /**
+     * Returns the result kind.
+     *
+     * @return Result kind.
+     */
+    public Kind getKind() {
+
+	return kind;
+    }
+
+    /**
+     * Returns the value obtained.
+     *
+     * @return Value, or null for failures.
+     */
+    public T getValue() {
+
+	return value;
+    }
+
+    /**
+     * Checks if the request may succeed if repeated.
+     *
+     * @return <ul>
+     *         <li>True, for transport failures and HTTP status 408, 429 and
+     *         5xx;</li>
+     *         <li>False, otherwise.</li>
+     *         </ul>
+     */
+    public boolean isRetryable() {
+
+	if (kind == Kind.TRANSPORT_FAILURE) { return true; }
+	if (kind != Kind.HTTP_ERROR) { return false; }
+	return (httpStatus == 408) || (httpStatus == 429) || (httpStatus >= 500);
+    }
+
+    /**
+     * Checks for success.
+     *
+     * @return True, if a value was obtained.
+     */
+    public boolean isSuccess() {
+
+	return kind == Kind.SUCCESS;
+    }
+
+    /**
+     * Checks if SS rejected the access token.
+     *
+     * @return True, for HTTP status 401.
+     */
+    public boolean isUnauthorized() {
+
+	return (kind == Kind.HTTP_ERROR) && (httpStatus == 401);
+    }
+
+    @Override
+    public String toString() {
+
+	if (kind == Kind.SUCCESS) { return "SUCCESS(" + httpStatus + ")"; }
+	if (cause == null) { return kind + "(" + httpStatus + ")"; }
+	return kind + "(" + httpStatus + "): " + cause;
+    }
+}
@@ -15,33 +15,34 @@
  *******************************************************************************/
 package edu.uw.cirg.truenth.oauth.model;
 
-import java.io.StringReader;
-import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import javax.json.Json;
 import javax.json.JsonObject;
 
-import org.apache.commons.codec.binary.Base64;
+import edu.uw.cirg.truenth.oauth.json.TrueNTHJsonBackend;
+import edu.uw.cirg.truenth.oauth.json.TrueNTHJsonBackends;
 
 /**
  * TrueNTH "signed requests" model.
  *
+ * <p>
+ * Constructors verify through a {@link TrueNTHSignedRequestVerifier} shared
+ * by requests validated with the same key (a few keys are kept), and parse
+ * the data eagerly; callers verifying many requests should hold their own
+ * verifier instead, which parses on first access.
+ * </p>
+ *
  * @author Victor de Lima Soares
  * @since Oct 21, 2015
  */
 public class TrueNTHSignedRequest {
 
-    private final static String  algorithm = "HmacSHA256";
-    private final static Base64  base64    = new Base64(false);
-
-    private final static Charset charset   = StandardCharsets.UTF_8;
-    private final JsonObject     data;
-    private final String	 signature;
+    private final byte[]	     payload;
+    private final TrueNTHJsonBackend backend;
+    private final byte[]	     signature;
+    private final String	     keyId;
+    private volatile JsonObject      data;
 
     /**
      * Builds a TrueNTHSignedRequest instance from an existing request in a
@@ -72,81 +73,114 @@ public class TrueNTHSignedRequest {
      */
     public TrueNTHSignedRequest(final String signed_request, final String validationKey) throws InvalidKeyException, NoSuchAlgorithmException {
 
-	if (signed_request == null) { throw new NullPointerException("signed_request cannot be null"); }
+	this(signed_request, validationKey, TrueNTHJsonBackends.getDefault());
+    }
 
-	final String[] signedRequest = signed_request.split("\\.", 2);
+    /**
+     * Builds a TrueNTHSignedRequest instance from an existing request in a
+     * String format, reading its data through a JSON backend.
+     *
+     * @param signed_request
+     *            Raw string containing the "signed_request": signature+data.
+     * @param validationKey
+     *            Company's App Secret.
+     * @param backend
+     *            JSON backend.
+     * @throws NoSuchAlgorithmException
+     *             If the algorithm declared inside the request is not
+     *             supported.
+     * @throws InvalidKeyException
+     *             If the key is not suitable for the algorithm.
+     * @throws IllegalStateException
+     *             If the key was not the one used to build the signed request.
+     * @see #TrueNTHSignedRequest(String, String)
+     */
+    public TrueNTHSignedRequest(final String signed_request, final String validationKey, final TrueNTHJsonBackend backend) throws InvalidKeyException,
+	    NoSuchAlgorithmException {
+
+	this(TrueNTHSignedRequestVerifier.shared(validationKey, backend).verify(signed_request));
+	getData();
+    }
 
-	signature = new String(base64.decode(signedRequest[0].getBytes(charset)));
+    /**
+     * Builds a verified signed request.
+     *
+     * @param payload
+     *            Request's decoded data, JSON formatted.
+     * @param backend
+     *            JSON backend, to parse the data on first access.
+     * @param signature
+     *            Request's signature.
+     * @param keyId
+     *            Id of the key that authenticated the request.
+     * @see TrueNTHSignedRequestVerifier#verify(String)
+     */
+    TrueNTHSignedRequest(final byte[] payload, final TrueNTHJsonBackend backend, final byte[] signature, final String keyId) {
 
-	final String rawData = signedRequest[1];
-	data = Json.createReader(new StringReader(new String(base64.decode(rawData.getBytes(charset))))).readObject();
+	this.payload = payload;
+	this.backend = backend;
+	this.signature = signature;
+	this.keyId = keyId;
+    }
 
-	validate(rawData, validationKey);
-    };
+    private TrueNTHSignedRequest(final TrueNTHSignedRequest verified) {
+
+	this(verified.payload, verified.backend, verified.signature, verified.keyId);
+    }
 
     /**
      * Access the extracted JSon data.
      *
+     * <p>
+     * Requests built by {@link TrueNTHSignedRequestVerifier} parse their data
+     * on the first call.
+     * </p>
+     *
      * @return Signed request's data.
+     * @throws javax.json.JsonException
+     *             If the signed data is not a JSON object.
      */
     public JsonObject getData() {
 
-	return data;
+	JsonObject parsed = data;
+	if (parsed == null) {
+	    parsed = backend.readObject(payload, 0, payload.length);
+	    data = parsed;
+	}
+	return parsed;
     }
 
     /**
-     * Access the signature used.
+     * Access the id of the key that authenticated the request.
      *
-     * @return Signed request's signature.
+     * @return Key id; {@link TrueNTHSignedRequestVerifier#DEFAULT_KEY_ID} for
+     *         single key validation.
      */
-    public String getSignature() {
+    public String getKeyId() {
 
-	return signature;
+	return keyId;
     }
 
     /**
-     * Calculates the expected signature for the received data.
+     * Access the signature used.
      *
-     * @param data
-     *            Raw data received in the "signed_request".
-     * @param key
-     *            Company App key.
-     * @return Expected signature for the received data.
-     * @throws NoSuchAlgorithmException
-     *             If the algorithm declared inside the request is not
-     *             supported.
-     * @throws InvalidKeyException
-     *             If the key is not suitable for the algorithm.
+     * @return Signed request's signature, decoded with the platform's default
+     *         charset.
+     * @deprecated Signatures are binary; use {@link #getSignatureBytes()}.
      */
-    private String hmacSHA256(final String data, final String key) throws NoSuchAlgorithmException, InvalidKeyException {
+    @Deprecated
+    public String getSignature() {
 
-	final SecretKeySpec secretKey = new SecretKeySpec(key.getBytes(charset), algorithm);
-	final Mac mac = Mac.getInstance(algorithm);
-	mac.init(secretKey);
-	final byte[] hmacData = mac.doFinal(data.getBytes(charset));
-	return new String(hmacData);
+	return new String(signature);
     }
 
     /**
-     * Validates the data received, matching it with the expected signature.
+     * Access the signature used.
      *
-     * @param rawData
-     *            Raw data received in the "signed_request".
-     * @param validationKey
-     *            Company App key.
-     * @throws NoSuchAlgorithmException
-     *             If the algorithm declared inside the request is not
-     *             supported.
-     * @throws InvalidKeyException
-     *             If the key is not suitable for the algorithm.
-     * @throws IllegalStateException
-     *             If the key was not the one used to build the signed request.
+     * @return Signed request's signature (HMAC bytes); a copy.
      */
-    private void validate(final String rawData, final String validationKey) throws NoSuchAlgorithmException, InvalidKeyException {
-
-	if (!data.getString("algorithm").equals("HMAC-SHA256")) { throw new NoSuchAlgorithmException("Unknown signature algorithm."); }
+    public byte[] getSignatureBytes() {
 
-	if (!hmacSHA256(rawData, validationKey).equals(signature)) { throw new IllegalStateException("Signature is not correct."); }
+	return signature.clone();
     }
-
 }
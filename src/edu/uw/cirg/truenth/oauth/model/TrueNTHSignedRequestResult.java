@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.model;
+
+/**
+ * Outcome of a signed request verification, in batch.
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ *
+ * @see TrueNTHSignedRequestVerifier#verifyAll(Iterable)
+ */
+public final class TrueNTHSignedRequestResult {
+
+    /**
+     * Verification outcomes.
+     */
+    public enum Status {
+	/**
+	 * Authentic, with the supported algorithm.
+	 */
+	VALID,
+	/**
+	 * Well formed, but not signed by a key of the ring, or declaring an
+	 * unsupported algorithm.
+	 */
+	INVALID,
+	/**
+	 * Not a signed request: missing separator, invalid base64, or payload
+	 * over the maximum length.
+	 */
+	MALFORMED
+    }
+
+    static final TrueNTHSignedRequestResult INVALID   = new TrueNTHSignedRequestResult(Status.INVALID, null);
+    static final TrueNTHSignedRequestResult MALFORMED = new TrueNTHSignedRequestResult(Status.MALFORMED, null);
+
+    private final Status		   status;
+    private final TrueNTHSignedRequest request;
+
+    TrueNTHSignedRequestResult(final Status status, final TrueNTHSignedRequest request) {
+
+	this.status = status;
+	this.request = request;
+    }
+
+    /**
+     * Returns the verified request.
+     *
+     * <p>
+     * Its data is parsed on first access to
+     * {@link TrueNTHSignedRequest#getData()}.
+     * </p>
+     *
+     * @return Verified request; null, unless valid.
+     */
+    public TrueNTHSignedRequest getRequest() {
+
+	return request;
+    }
+
+    /**
+     * Returns the verification outcome.
+     *
+     * @return Status.
+     */
+    public Status getStatus() {
+
+	return status;
+    }
+
+    /**
+     * Checks for a valid request.
+     *
+     * @return True, if the request is authentic.
+     */
+    public boolean isValid() {
+
+	return status == Status.VALID;
+    }
+
+    @Override
+    public String toString() {
+
+	return status.toString();
+    }
+}
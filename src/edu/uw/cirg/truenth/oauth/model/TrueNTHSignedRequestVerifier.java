@@ -0,0 +1,986 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.model;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+import edu.uw.cirg.truenth.oauth.json.TrueNTHJsonBackend;
+import edu.uw.cirg.truenth.oauth.json.TrueNTHJsonBackends;
+
+/**
+ * Reusable TrueNTH "signed requests" verifier.
+ *
+ * <p>
+ * Holds an ordered key ring: the keys derived from validation keys, computed
+ * once, and, per thread, one Mac per key, initialized once; Mac instances are
+ * reset by each computation. Thus, verifying a request costs its decoding and
+ * hashing only.
+ * </p>
+ *
+ * <p>
+ * Requests are authenticated before their payload is decoded: oversized
+ * requests are rejected first, then the HMAC of the raw payload is checked
+ * against each key, in ring order. The signature is decoded once into a per
+ * thread buffer and shared among the attempts; so is the payload, once
+ * authentic. Key rings of several keys are the exception: they decode the
+ * payload first, into the same buffer, only to read the key id hint. Only
+ * authentic payloads are copied out, and their JSON is parsed on first access to
+ * {@link TrueNTHSignedRequest#getData()}. The declared algorithm is read by a
+ * targeted scan, without parsing.
+ * </p>
+ *
+ * <p>
+ * Key rotation: list the new key first and keep the previous one until
+ * requests signed with it are no longer expected; {@link #getMatchCount(String)}
+ * shows when that happens. Payloads may carry a key id hint ("kid" member),
+ * which moves the named key to the front of the attempts; hints are not
+ * trusted: all keys are still tried.
+ * </p>
+ *
+ * <p>
+ * Freshness and replays are checked, for authentic requests, when a
+ * {@link TrueNTHReplayGuard} is configured.
+ * </p>
+ *
+ * <p>
+ * Instances are thread safe and meant to be shared: one per key ring.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ *
+ * @see TrueNTHSignedRequest
+ */
+public class TrueNTHSignedRequestVerifier {
+
+    /**
+     * Default maximum payload length, in characters.
+     */
+    public static final int	    DEFAULT_MAX_PAYLOAD_LENGTH = 16 * 1024;
+
+    /**
+     * Key id used by single key verifiers.
+     */
+    public static final String	 DEFAULT_KEY_ID	     = "default";
+
+    private final static String	algorithm		  = "HmacSHA256";
+    private final static Charset       charset		    = StandardCharsets.UTF_8;
+
+    /**
+     * Algorithm member and the only supported value, as JSON bytes.
+     */
+    private static final byte[]	ALGORITHM_MEMBER	   = "\"algorithm\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[]	ALGORITHM_VALUE	    = "\"HMAC-SHA256\"".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Key id hint member, as JSON bytes.
+     */
+    private static final byte[]	KEY_ID_MEMBER	      = "\"kid\"".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Issue time member, as JSON bytes.
+     */
+    private static final byte[]	ISSUED_AT_MEMBER	   = "\"issued_at\"".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * HMAC-SHA256 output length, in bytes.
+     */
+    private static final int	   HMAC_LENGTH		= 32;
+
+    /**
+     * Authentication outcomes, other than a key index.
+     */
+    private static final int	   MALFORMED		  = -1;
+    private static final int	   INVALID		    = -2;
+    private static final int	   TOO_LARGE		  = -3;
+
+    /**
+     * Verifiers shared by the {@link TrueNTHSignedRequest} constructors, at
+     * most.
+     */
+    private static final int	   SHARED_VERIFIERS	   = 16;
+
+    /**
+     * Requests verified by each batch task, at most.
+     */
+    private static final int	   BATCH_THRESHOLD	    = 256;
+
+    /**
+     * Base64 values, by character (standard and URL safe alphabets); -1 for
+     * invalid characters.
+     */
+    private static final byte[]	BASE64		     = new byte[128];
+
+    static {
+	Arrays.fill(BASE64, (byte) -1);
+	final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+	for (int index = 0; index < alphabet.length(); index++) {
+	    BASE64[alphabet.charAt(index)] = (byte) index;
+	}
+	BASE64['-'] = 62;
+	BASE64['_'] = 63;
+    }
+
+    /**
+     * Key ring entry.
+     */
+    private static final class Key {
+
+	final String	id;
+	final byte[]	idBytes;
+	final SecretKeySpec spec;
+	final Mac	   prototype;
+	final AtomicLong    matches      = new AtomicLong();
+	final AtomicLong    batchMatches = new AtomicLong();
+
+	Key(final String id, final String validationKey) throws InvalidKeyException, NoSuchAlgorithmException {
+
+	    this.id = id;
+	    idBytes = id.getBytes(charset);
+	    spec = new SecretKeySpec(validationKey.getBytes(charset), algorithm);
+	    prototype = Mac.getInstance(algorithm);
+	    prototype.init(spec);
+	}
+
+	/**
+	 * Creates a Mac for a new thread: cloned from the initialized
+	 * prototype, or initialized from the precomputed key when the provider
+	 * does not support cloning.
+	 */
+	Mac newMac() {
+
+	    try {
+		synchronized (prototype) {
+		    return (Mac) prototype.clone();
+		}
+	    } catch (final CloneNotSupportedException e) {
+		try {
+		    final Mac mac = Mac.getInstance(algorithm);
+		    mac.init(spec);
+		    return mac;
+		} catch (final Exception ex) {
+		    // Already validated by the constructor.
+		    throw new IllegalStateException(ex);
+		}
+	    }
+	}
+    }
+
+    /**
+     * Per thread verification state: initialized Macs and reusable buffers.
+     */
+    private static final class Scratch {
+
+	final Mac[]  macs;
+	final byte[] signature = new byte[HMAC_LENGTH];
+	final byte[] expected  = new byte[HMAC_LENGTH];
+	byte[]       payload   = new byte[1024];
+	byte[]       decoded   = new byte[768];
+	int	  decodedLength;
+
+	Scratch(final int keys) {
+
+	    macs = new Mac[keys];
+	}
+
+	byte[] decoded(final int length) {
+
+	    if (decoded.length < length) {
+		decoded = new byte[Math.max(length, decoded.length * 2)];
+	    }
+	    return decoded;
+	}
+
+	byte[] payload(final int length) {
+
+	    if (payload.length < length) {
+		payload = new byte[Math.max(length, payload.length * 2)];
+	    }
+	    return payload;
+	}
+    }
+
+    private static volatile ForkJoinPool defaultPool;
+
+    /**
+     * Verifiers shared by the {@link TrueNTHSignedRequest} constructors, by
+     * validation key and backend; least recently used first.
+     */
+    private static final Map<List<Object>, TrueNTHSignedRequestVerifier> sharedVerifiers = new LinkedHashMap<List<Object>,
+	    TrueNTHSignedRequestVerifier>(16, 0.75f, true) {
+
+	private static final long serialVersionUID = 3862264385216587712L;
+
+	@Override
+	protected boolean removeEldestEntry(final Map.Entry<List<Object>, TrueNTHSignedRequestVerifier> eldest) {
+
+	    return size() > SHARED_VERIFIERS;
+	}
+    };
+
+    private final Key[]		keys;
+    private final TrueNTHJsonBackend   backend;
+    private final int		  maxPayloadLength;
+    private final AtomicLong	   rejections      = new AtomicLong();
+    private final AtomicLong	   batchRejections = new AtomicLong();
+    private final ThreadLocal<Scratch> scratches;
+
+    private volatile TrueNTHReplayGuard replayGuard;
+
+    /**
+     * Constructor: uses the default JSON backend.
+     *
+     * @param validationKey
+     *            Company's App Secret.
+     * @throws NoSuchAlgorithmException
+     *             If HmacSHA256 is not supported.
+     * @throws InvalidKeyException
+     *             If the key is not suitable for the algorithm.
+     */
+    public TrueNTHSignedRequestVerifier(final String validationKey) throws InvalidKeyException, NoSuchAlgorithmException {
+
+	this(validationKey, TrueNTHJsonBackends.getDefault());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param validationKey
+     *            Company's App Secret.
+     * @param backend
+     *            JSON backend, to read request data.
+     * @throws NoSuchAlgorithmException
+     *             If HmacSHA256 is not supported.
+     * @throws InvalidKeyException
+     *             If the key is not suitable for the algorithm.
+     */
+    public TrueNTHSignedRequestVerifier(final String validationKey, final TrueNTHJsonBackend backend) throws InvalidKeyException,
+	    NoSuchAlgorithmException {
+
+	this(validationKey, backend, DEFAULT_MAX_PAYLOAD_LENGTH);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param validationKey
+     *            Company's App Secret.
+     * @param backend
+     *            JSON backend, to read request data.
+     * @param maxPayloadLength
+     *            Maximum length of the encoded payload, in characters; longer
+     *            requests are rejected without hashing.
+     * @throws NoSuchAlgorithmException
+     *             If HmacSHA256 is not supported.
+     * @throws InvalidKeyException
+     *             If the key is not suitable for the algorithm.
+     */
+    public TrueNTHSignedRequestVerifier(final String validationKey, final TrueNTHJsonBackend backend, final int maxPayloadLength)
+	    throws InvalidKeyException, NoSuchAlgorithmException {
+
+	this(singleKey(validationKey), backend, maxPayloadLength);
+    }
+
+    /**
+     * Constructor: key ring.
+     *
+     * @param keyRing
+     *            Validation keys (Company's App Secrets), by key id; the map's
+     *            iteration order is the attempt order (e.g. a LinkedHashMap,
+     *            current key first).
+     * @param backend
+     *            JSON backend, to read request data.
+     * @param maxPayloadLength
+     *            Maximum length of the encoded payload, in characters; longer
+     *            requests are rejected without hashing.
+     * @throws NoSuchAlgorithmException
+     *             If HmacSHA256 is not supported.
+     * @throws InvalidKeyException
+     *             If a key is not suitable for the algorithm.
+     */
+    public TrueNTHSignedRequestVerifier(final Map<String, String> keyRing, final TrueNTHJsonBackend backend, final int maxPayloadLength)
+	    throws InvalidKeyException, NoSuchAlgorithmException {
+
+	if ((keyRing == null) || keyRing.isEmpty()) { throw new IllegalArgumentException("keyRing cannot be empty"); }
+	if (backend == null) { throw new NullPointerException("backend cannot be null"); }
+	if (maxPayloadLength <= 0) { throw new IllegalArgumentException("maxPayloadLength must be positive"); }
+
+	keys = new Key[keyRing.size()];
+	int index = 0;
+	for (final Map.Entry<String, String> entry : keyRing.entrySet()) {
+	    if ((entry.getKey() == null) || (entry.getValue() == null)) { throw new NullPointerException("key ids and keys cannot be null"); }
+	    keys[index++] = new Key(entry.getKey(), entry.getValue());
+	}
+
+	this.backend = backend;
+	this.maxPayloadLength = maxPayloadLength;
+
+	scratches = new ThreadLocal<Scratch>() {
+
+	    @Override
+	    protected Scratch initialValue() {
+
+		return new Scratch(keys.length);
+	    }
+	};
+    }
+
+    /**
+     * Returns a verifier shared by requests validated with the same key and
+     * backend, creating it on first use.
+     *
+     * @param validationKey
+     *            Company's App Secret.
+     * @param backend
+     *            JSON backend, to read request data.
+     * @return Shared verifier, without replay guard.
+     * @throws NoSuchAlgorithmException
+     *             If HmacSHA256 is not supported.
+     * @throws InvalidKeyException
+     *             If the key is not suitable for the algorithm.
+     */
+    static TrueNTHSignedRequestVerifier shared(final String validationKey, final TrueNTHJsonBackend backend) throws InvalidKeyException,
+	    NoSuchAlgorithmException {
+
+	final List<Object> key = Arrays.<Object> asList(validationKey, backend);
+
+	synchronized (sharedVerifiers) {
+	    TrueNTHSignedRequestVerifier verifier = sharedVerifiers.get(key);
+	    if (verifier == null) {
+		verifier = new TrueNTHSignedRequestVerifier(validationKey, backend);
+		sharedVerifiers.put(key, verifier);
+	    }
+	    return verifier;
+	}
+    }
+
+    private static Map<String, String> singleKey(final String validationKey) {
+
+	if (validationKey == null) { throw new NullPointerException("validationKey cannot be null"); }
+	return Collections.singletonMap(DEFAULT_KEY_ID, validationKey);
+    }
+
+    /**
+     * Returns the key ids, in attempt order.
+     *
+     * @return Key ids.
+     */
+    public List<String> getKeyIds() {
+
+	final List<String> ids = new ArrayList<String>(keys.length);
+	for (final Key key : keys) {
+	    ids.add(key.id);
+	}
+	return Collections.unmodifiableList(ids);
+    }
+
+    /**
+     * Returns the number of requests authenticated by a key, in batches.
+     *
+     * @param keyId
+     *            Key id.
+     * @return Matches by {@link #verifyAll(Iterable, ForkJoinPool)}, or -1 if
+     *         the key is not in the ring.
+     */
+    public long getBatchMatchCount(final String keyId) {
+
+	for (final Key key : keys) {
+	    if (key.id.equals(keyId)) { return key.batchMatches.get(); }
+	}
+	return -1;
+    }
+
+    /**
+     * Returns the number of requests rejected in batches.
+     *
+     * @return Rejections by {@link #verifyAll(Iterable, ForkJoinPool)}.
+     */
+    public long getBatchRejectionCount() {
+
+	return batchRejections.get();
+    }
+
+    /**
+     * Returns the pool shared by {@link #verifyAll(Iterable)}.
+     *
+     * <p>
+     * One worker per available processor; its threads are daemons.
+     * </p>
+     *
+     * @return Shared pool.
+     */
+    public static ForkJoinPool getDefaultPool() {
+
+	ForkJoinPool pool = defaultPool;
+	if (pool == null) {
+	    synchronized (TrueNTHSignedRequestVerifier.class) {
+		pool = defaultPool;
+		if (pool == null) {
+		    pool = new ForkJoinPool();
+		    defaultPool = pool;
+		}
+	    }
+	}
+	return pool;
+    }
+
+    /**
+     * Returns the number of requests authenticated by a key.
+     *
+     * <p>
+     * Counts {@link #verify(String)} calls only; batches are counted apart.
+     * </p>
+     *
+     * @param keyId
+     *            Key id.
+     * @return Matches, or -1 if the key is not in the ring.
+     * @see #getBatchMatchCount(String)
+     */
+    public long getMatchCount(final String keyId) {
+
+	for (final Key key : keys) {
+	    if (key.id.equals(keyId)) { return key.matches.get(); }
+	}
+	return -1;
+    }
+
+    /**
+     * Returns the number of matches per key.
+     *
+     * @return Matches by {@link #verify(String)}, by key id, in attempt order.
+     */
+    public Map<String, Long> getMatchCounts() {
+
+	final Map<String, Long> counts = new LinkedHashMap<String, Long>();
+	for (final Key key : keys) {
+	    counts.put(key.id, key.matches.get());
+	}
+	return counts;
+    }
+
+    /**
+     * Returns the maximum payload length.
+     *
+     * @return Maximum length of the encoded payload, in characters.
+     */
+    public int getMaxPayloadLength() {
+
+	return maxPayloadLength;
+    }
+
+    /**
+     * Returns the replay guard.
+     *
+     * @return Replay guard, or null if requests are not checked for
+     *         freshness.
+     */
+    public TrueNTHReplayGuard getReplayGuard() {
+
+	return replayGuard;
+    }
+
+    /**
+     * Configures the replay guard.
+     *
+     * <p>
+     * Authentic requests are then required to carry an "issued_at" claim
+     * within the guard's window, and are accepted once.
+     * </p>
+     *
+     * @param replayGuard
+     *            Replay guard; null disables freshness checks.
+     */
+    public void setReplayGuard(final TrueNTHReplayGuard replayGuard) {
+
+	this.replayGuard = replayGuard;
+    }
+
+    /**
+     * Returns the number of rejected requests: not authentic, malformed or
+     * too large.
+     *
+     * @return Rejections by {@link #verify(String)}.
+     * @see #getBatchRejectionCount()
+     */
+    public long getRejectionCount() {
+
+	return rejections.get();
+    }
+
+    /**
+     * Verifies a signed request, building its model.
+     *
+     * <p>
+     * Equivalent to
+     * {@link TrueNTHSignedRequest#TrueNTHSignedRequest(String, String, TrueNTHJsonBackend)}
+     * , without per request setup, and with data parsed on first access.
+     * </p>
+     *
+     * <p>
+     * Signatures are compared as bytes, in constant time; the signature and
+     * the expected HMAC are computed into per thread buffers.
+     * </p>
+     *
+     * @param signedRequest
+     *            Raw string containing the "signed_request": signature+data.
+     * @return Verified signed request.
+     * @throws NoSuchAlgorithmException
+     *             If the algorithm declared inside an authentic request is not
+     *             supported.
+     * @throws IllegalStateException
+     *             If the request was not signed with a key of the ring, if
+     *             its payload exceeds the maximum length, or, with a replay
+     *             guard, if it is not fresh or was already accepted.
+     */
+    public TrueNTHSignedRequest verify(final String signedRequest) throws NoSuchAlgorithmException {
+
+	if (signedRequest == null) { throw new NullPointerException("signed_request cannot be null"); }
+
+	final Scratch scratch = scratches.get();
+	final int match = authenticate(scratch, signedRequest, false);
+
+	if (match == TOO_LARGE) { throw new IllegalStateException("Signed request is too large."); }
+	if (match < 0) { throw new IllegalStateException("Signature is not correct."); }
+
+	if (!declaresAlgorithm(scratch.decoded, scratch.decodedLength)) { throw new NoSuchAlgorithmException("Unknown signature algorithm."); }
+
+	final TrueNTHReplayGuard guard = replayGuard;
+	if (guard != null) {
+	    final long issuedAt = readIssuedAt(scratch.decoded, scratch.decodedLength);
+	    final TrueNTHReplayGuard.Verdict verdict = (issuedAt < 0) ? TrueNTHReplayGuard.Verdict.EXPIRED : guard.check(issuedAt, scratch.signature);
+
+	    if (verdict == TrueNTHReplayGuard.Verdict.EXPIRED) { throw new IllegalStateException("Signed request is not fresh."); }
+	    if (verdict == TrueNTHReplayGuard.Verdict.REPLAYED) { throw new IllegalStateException("Signed request was replayed."); }
+	}
+
+	return new TrueNTHSignedRequest(Arrays.copyOf(scratch.decoded, scratch.decodedLength), backend, Arrays.copyOf(scratch.signature,
+		HMAC_LENGTH), keys[match].id);
+    }
+
+    /**
+     * Verifies signed requests in parallel, on the shared pool.
+     *
+     * @param signedRequests
+     *            Raw "signed_request" strings.
+     * @return Results, in input order.
+     * @see #verifyAll(Iterable, ForkJoinPool)
+     * @see #getDefaultPool()
+     */
+    public List<TrueNTHSignedRequestResult> verifyAll(final Iterable<String> signedRequests) {
+
+	return verifyAll(signedRequests, getDefaultPool());
+    }
+
+    /**
+     * Verifies signed requests in parallel.
+     *
+     * <p>
+     * Meant for audits of recorded requests: failures are reported per item,
+     * never thrown, the replay guard is not consulted, and outcomes are
+     * counted apart from live verifications. Each worker uses
+     * its own Mac instances and buffers; payloads are parsed only on access
+     * to {@link TrueNTHSignedRequest#getData()}.
+     * </p>
+     *
+     * @param signedRequests
+     *            Raw "signed_request" strings; null elements are malformed.
+     * @param pool
+     *            Pool running the verification.
+     * @return Results, in input order.
+     */
+    public List<TrueNTHSignedRequestResult> verifyAll(final Iterable<String> signedRequests, final ForkJoinPool pool) {
+
+	final List<String> requests = new ArrayList<String>();
+	for (final String signedRequest : signedRequests) {
+	    requests.add(signedRequest);
+	}
+
+	final TrueNTHSignedRequestResult[] results = new TrueNTHSignedRequestResult[requests.size()];
+	pool.invoke(new BatchTask(requests, results, 0, results.length));
+	return Arrays.asList(results);
+    }
+
+    /**
+     * Verifies a request, reporting failures as results.
+     */
+    private TrueNTHSignedRequestResult inspect(final String signedRequest) {
+
+	if (signedRequest == null) { return TrueNTHSignedRequestResult.MALFORMED; }
+
+	final Scratch scratch = scratches.get();
+	final int match = authenticate(scratch, signedRequest, true);
+
+	if (match == INVALID) { return TrueNTHSignedRequestResult.INVALID; }
+	if (match < 0) { return TrueNTHSignedRequestResult.MALFORMED; }
+	if (!declaresAlgorithm(scratch.decoded, scratch.decodedLength)) { return TrueNTHSignedRequestResult.INVALID; }
+
+	return new TrueNTHSignedRequestResult(TrueNTHSignedRequestResult.Status.VALID, new TrueNTHSignedRequest(Arrays.copyOf(scratch.decoded,
+		scratch.decodedLength), backend, Arrays.copyOf(scratch.signature, HMAC_LENGTH), keys[match].id));
+    }
+
+    /**
+     * Batch verification task: splits its range until it is small enough.
+     */
+    private final class BatchTask extends RecursiveAction {
+
+	private static final long		   serialVersionUID = -6441385474012264123L;
+
+	private final List<String>		   requests;
+	private final TrueNTHSignedRequestResult[] results;
+	private final int			   start;
+	private final int			   end;
+
+	BatchTask(final List<String> requests, final TrueNTHSignedRequestResult[] results, final int start, final int end) {
+
+	    this.requests = requests;
+	    this.results = results;
+	    this.start = start;
+	    this.end = end;
+	}
+
+	@Override
+	protected void compute() {
+
+	    if ((end - start) <= BATCH_THRESHOLD) {
+		for (int index = start; index < end; index++) {
+		    results[index] = inspect(requests.get(index));
+		}
+		return;
+	    }
+
+	    final int middle = (start + end) >>> 1;
+	    invokeAll(new BatchTask(requests, results, start, middle), new BatchTask(requests, results, middle, end));
+	}
+    }
+
+    /**
+     * Authenticates a request.
+     *
+     * <p>
+     * On success, the scratch holds the decoded signature and payload.
+     * </p>
+     *
+     * @param batch
+     *            True to count the outcome as part of a batch.
+     * @return Index of the matching key; or MALFORMED, INVALID or TOO_LARGE.
+     */
+    private int authenticate(final Scratch scratch, final String signedRequest, final boolean batch) {
+
+	final int result = match(scratch, signedRequest);
+
+	if (result < 0) {
+	    (batch ? batchRejections : rejections).incrementAndGet();
+	} else {
+	    (batch ? keys[result].batchMatches : keys[result].matches).incrementAndGet();
+	}
+	return result;
+    }
+
+    private int match(final Scratch scratch, final String signedRequest) {
+
+	final int separator = signedRequest.indexOf('.');
+	if (separator < 0) { return MALFORMED; }
+
+	final int length = signedRequest.length() - separator - 1;
+	if (length > maxPayloadLength) { return TOO_LARGE; }
+
+	final int signatureLength = decodeBase64(signedRequest, 0, separator, scratch.signature);
+	if (signatureLength < 0) { return MALFORMED; }
+	if (signatureLength != HMAC_LENGTH) { return INVALID; }
+
+	final byte[] payload = scratch.payload(length);
+	for (int index = 0; index < length; index++) {
+	    final char current = signedRequest.charAt(separator + 1 + index);
+	    if (current > 0x7f) { return MALFORMED; }
+	    payload[index] = (byte) current;
+	}
+
+	// Key rings read the hint from the decoded payload; single keys decode
+	// authentic payloads only. Either way, the payload is decoded once.
+	final boolean hinted = keys.length > 1;
+	if (hinted && !decodePayload(scratch, signedRequest, separator, length)) { return MALFORMED; }
+
+	final int hint = hinted ? findHint(scratch.decoded, scratch.decodedLength) : -1;
+
+	int match = ((hint >= 0) && matches(scratch, hint, payload, length)) ? hint : INVALID;
+	for (int index = 0; (match == INVALID) && (index < keys.length); index++) {
+	    if ((index != hint) && matches(scratch, index, payload, length)) {
+		match = index;
+	    }
+	}
+
+	if ((match >= 0) && !hinted && !decodePayload(scratch, signedRequest, separator, length)) { return MALFORMED; }
+	return match;
+    }
+
+    /**
+     * Decodes the payload into the scratch's buffer.
+     *
+     * @return False if the payload is not base64.
+     */
+    private static boolean decodePayload(final Scratch scratch, final String signedRequest, final int separator, final int length) {
+
+	scratch.decodedLength = decodeBase64(signedRequest, separator + 1, signedRequest.length(), scratch.decoded(((length * 3) / 4) + 1));
+	return scratch.decodedLength >= 0;
+    }
+
+    /**
+     * Checks the decoded signature against the HMAC of the payload with one
+     * key, comparing in constant time.
+     */
+    private boolean matches(final Scratch scratch, final int key, final byte[] payload, final int length) {
+
+	Mac mac = scratch.macs[key];
+	if (mac == null) {
+	    mac = keys[key].newMac();
+	    scratch.macs[key] = mac;
+	}
+
+	try {
+	    mac.update(payload, 0, length);
+	    mac.doFinal(scratch.expected, 0);
+	} catch (final ShortBufferException e) {
+	    mac.reset();
+	    return false;
+	}
+
+	return isEqual(scratch.signature, scratch.expected, HMAC_LENGTH);
+    }
+
+    /**
+     * Finds the key named by the payload's key id hint.
+     *
+     * @return Key index; -1 if there is no hint, or it names no key.
+     */
+    private int findHint(final byte[] payload, final int length) {
+
+	final int start = valueOf(payload, length, KEY_ID_MEMBER);
+	if ((start < 0) || (payload[start] != '"')) { return -1; }
+
+	for (int index = 0; index < keys.length; index++) {
+	    final byte[] id = keys[index].idBytes;
+	    final int end = start + 1 + id.length;
+	    if ((end < length) && (payload[end] == '"') && (indexOf(payload, end, id, start + 1) == (start + 1))) { return index; }
+	}
+
+	return -1;
+    }
+
+    /**
+     * Checks, without parsing, if the payload declares the supported
+     * algorithm: "algorithm" : "HMAC-SHA256".
+     *
+     * <p>
+     * Payloads are authentic at this point; the scan only needs to find the
+     * top level member, not to validate the document.
+     * </p>
+     */
+    private static boolean declaresAlgorithm(final byte[] payload, final int length) {
+
+	final int start = valueOf(payload, length, ALGORITHM_MEMBER);
+	return (start >= 0) && (indexOf(payload, length, ALGORITHM_VALUE, start) == start);
+    }
+
+    /**
+     * Reads the "issued_at" claim, without parsing.
+     *
+     * @return Issue time, in seconds; -1 if absent or not an integer.
+     */
+    private static long readIssuedAt(final byte[] payload, final int length) {
+
+	int position = valueOf(payload, length, ISSUED_AT_MEMBER);
+	if ((position < 0) || (payload[position] < '0') || (payload[position] > '9')) { return -1; }
+
+	long issuedAt = 0;
+	while ((position < length) && (payload[position] >= '0') && (payload[position] <= '9')) {
+	    if (issuedAt > (Long.MAX_VALUE / 10)) { return -1; }
+	    issuedAt = (issuedAt * 10) + (payload[position++] - '0');
+	}
+	return issuedAt;
+    }
+
+    /**
+     * Finds a top level member's value.
+     *
+     * <p>
+     * Strings and nesting are tracked, so that names appearing as values, or
+     * as members of nested structures, are not taken for the member. If the
+     * member is repeated, the last occurrence wins, as in the javax.json
+     * object model.
+     * </p>
+     *
+     * @return Position of the value's first byte; -1 if the member is absent.
+     */
+    private static int valueOf(final byte[] payload, final int length, final byte[] member) {
+
+	int found = -1;
+	int depth = 0;
+	int position = 0;
+
+	while (position < length) {
+
+	    final byte current = payload[position];
+
+	    if (current == '"') {
+		final int start = position;
+		position = skipString(payload, length, position);
+
+		if ((depth == 1) && ((position - start) == member.length) && (indexOf(payload, position, member, start) == start)) {
+		    final int colon = skipWhitespace(payload, length, position);
+		    if ((colon < length) && (payload[colon] == ':')) {
+			final int value = skipWhitespace(payload, length, colon + 1);
+			if (value < length) {
+			    found = value;
+			}
+		    }
+		}
+		continue;
+	    }
+
+	    if ((current == '{') || (current == '[')) {
+		depth++;
+	    } else if ((current == '}') || (current == ']')) {
+		depth--;
+	    }
+	    position++;
+	}
+
+	return found;
+    }
+
+    private static int indexOf(final byte[] data, final int length, final byte[] target, final int from) {
+
+	final int last = length - target.length;
+
+	search: for (int start = from; start <= last; start++) {
+	    for (int index = 0; index < target.length; index++) {
+		if (data[start + index] != target[index]) {
+		    continue search;
+		}
+	    }
+	    return start;
+	}
+
+	return -1;
+    }
+
+    /**
+     * Skips a string, starting at its opening quote.
+     *
+     * @return Position following the closing quote; length, if the string is
+     *         not terminated.
+     */
+    private static int skipString(final byte[] data, final int length, int position) {
+
+	position++;
+	while (position < length) {
+	    final byte current = data[position];
+	    if (current == '\\') {
+		position += 2;
+	    } else if (current == '"') {
+		return position + 1;
+	    } else {
+		position++;
+	    }
+	}
+	return length;
+    }
+
+    private static int skipWhitespace(final byte[] data, final int length, int position) {
+
+	while ((position < length) && ((data[position] == ' ') || (data[position] == '\t') || (data[position] == '\n') || (data[position] == '\r'))) {
+	    position++;
+	}
+	return position;
+    }
+
+    /**
+     * Compares the first bytes of two arrays, in time independent of their
+     * content (as {@link java.security.MessageDigest#isEqual(byte[], byte[])}).
+     */
+    private static boolean isEqual(final byte[] a, final byte[] b, final int length) {
+
+	int difference = 0;
+	for (int index = 0; index < length; index++) {
+	    difference |= a[index] ^ b[index];
+	}
+	return difference == 0;
+    }
+
+    /**
+     * Decodes base64 (standard or URL safe alphabet, optional padding) into a
+     * buffer.
+     *
+     * <p>
+     * Padding, if present, must complete the last quantum: only "=" may
+     * follow the first "=".
+     * </p>
+     *
+     * @return Number of decoded bytes; -1 if the text is not base64 or does
+     *         not fit the buffer.
+     */
+    private static int decodeBase64(final String text, final int start, final int end, final byte[] out) {
+
+	int bits = 0;
+	int count = 0;
+	int length = 0;
+
+	int data = end;
+	while ((data > start) && (text.charAt(data - 1) == '=')) {
+	    data--;
+	}
+
+	final int characters = data - start;
+	final int padding = end - data;
+	if ((characters % 4) == 1) { return -1; }
+	if ((padding > 0) && ((padding > 2) || (((characters + padding) % 4) != 0))) { return -1; }
+
+	for (int index = start; index < data; index++) {
+
+	    final char current = text.charAt(index);
+
+	    final int value = (current < BASE64.length) ? BASE64[current] : -1;
+	    if (value < 0) { return -1; }
+
+	    bits = (bits << 6) | value;
+	    count += 6;
+
+	    if (count >= 8) {
+		count -= 8;
+		if (length == out.length) { return -1; }
+		out[length++] = (byte) (bits >> count);
+	    }
+	}
+
+	return length;
+    }
+}
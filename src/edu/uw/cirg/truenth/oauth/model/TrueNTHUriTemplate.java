@@ -0,0 +1,348 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import edu.uw.cirg.truenth.oauth.model.definitions.TrueNTHUrlPlaceHolders;
+
+/**
+ * Compiled URI template.
+ *
+ * <p>
+ * Templates are parsed once into literal and variable segments; expansions
+ * only append literals and encoded values, without regular expressions or
+ * reparsing. Two placeholder forms are recognized:
+ * </p>
+ * <ul>
+ * <li><code>{name}</code>;</li>
+ * <li><code>#name</code>, as in SS' roles URL, for known names only
+ * ({@link TrueNTHUrlPlaceHolders#USER_ID_NAME}); other <code>#</code>
+ * sequences, such as fragments, are literal.</li>
+ * </ul>
+ *
+ * <p>
+ * Names are made of letters, digits and underscores. A variable may appear
+ * more than once; every occurrence is replaced. Values are percent-encoded
+ * (UTF-8), keeping only RFC 3986 unreserved characters; integral numbers are
+ * appended as they are.
+ * </p>
+ *
+ * <p>
+ * For instance:
+ * </p>
+ *
+ * <pre>
+ * TrueNTHUriTemplate.compile("/user/{userId}/roles").expand(10) // "/user/10/roles"
+ * </pre>
+ *
+ * <p>
+ * Templates are immutable and thread safe.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public final class TrueNTHUriTemplate {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * Characters reserved per expanded value, when presizing buffers.
+     */
+    private static final int VALUE_LENGTH = 16;
+
+    /**
+     * Names recognized in <code>#name</code> placeholders.
+     */
+    private static final List<String> HASH_NAMES = Collections.singletonList(TrueNTHUrlPlaceHolders.USER_ID_NAME);
+
+    private final String   template;
+    private final String[] literals;
+    private final int[]    slots;
+    private final String[] variables;
+    private final int      literalLength;
+
+    private TrueNTHUriTemplate(final String template, final List<String> literals, final List<Integer> slots, final List<String> variables) {
+
+	this.template = template;
+	this.literals = literals.toArray(new String[literals.size()]);
+	this.slots = new int[slots.size()];
+	for (int i = 0; i < this.slots.length; i++) {
+	    this.slots[i] = slots.get(i);
+	}
+	this.variables = variables.toArray(new String[variables.size()]);
+
+	int length = 0;
+	for (final String literal : this.literals) {
+	    length += literal.length();
+	}
+	literalLength = length;
+    }
+
+    /**
+     * Compiles a template.
+     *
+     * @param template
+     *            URI template.
+     * @return Compiled template.
+     *
+     * @throws IllegalArgumentException
+     *             If a <code>{</code> placeholder is not closed, or its name is
+     *             empty or invalid.
+     */
+    public static TrueNTHUriTemplate compile(final String template) {
+
+	if (template == null) { throw new IllegalArgumentException("URI template is null."); }
+
+	final List<String> literals = new ArrayList<String>();
+	final List<Integer> slots = new ArrayList<Integer>();
+	final List<String> variables = new ArrayList<String>();
+
+	final int length = template.length();
+	int start = 0;
+	int i = 0;
+
+	while (i < length) {
+
+	    final char c = template.charAt(i);
+
+	    int nameStart;
+	    int nameEnd;
+	    int next;
+
+	    if (c == '{') {
+		nameStart = i + 1;
+		nameEnd = template.indexOf('}', nameStart);
+		if (nameEnd < 0) { throw new IllegalArgumentException("Unclosed placeholder in URI template: " + template); }
+		if ((nameEnd == nameStart) || (scanName(template, nameStart) != nameEnd)) {
+		    throw new IllegalArgumentException("Invalid placeholder name in URI template: " + template);
+		}
+		next = nameEnd + 1;
+	    } else if (c == '#') {
+		nameStart = i + 1;
+		nameEnd = scanName(template, nameStart);
+		if (!HASH_NAMES.contains(template.substring(nameStart, nameEnd))) {
+		    i++;
+		    continue;
+		}
+		next = nameEnd;
+	    } else {
+		i++;
+		continue;
+	    }
+
+	    final String name = template.substring(nameStart, nameEnd);
+	    int index = variables.indexOf(name);
+	    if (index < 0) {
+		index = variables.size();
+		variables.add(name);
+	    }
+
+	    literals.add(template.substring(start, i));
+	    slots.add(index);
+
+	    start = next;
+	    i = next;
+	}
+
+	literals.add(template.substring(start));
+
+	return new TrueNTHUriTemplate(template, literals, slots, variables);
+    }
+
+    /**
+     * Expands the template, with values given in order of first appearance of
+     * their variables.
+     *
+     * @param values
+     *            Values, one per variable.
+     * @return Expanded URI.
+     *
+     * @throws IllegalArgumentException
+     *             If the number of values does not match the number of
+     *             variables, or a value is null.
+     * @see #getVariables()
+     */
+    public String expand(final Object... values) {
+
+	if (values.length != variables.length) {
+	    throw new IllegalArgumentException("URI template expects " + variables.length + " values, " + values.length + " given: " + template);
+	}
+
+	return expandValues(values);
+    }
+
+    /**
+     * Expands the template, with values given by variable name.
+     *
+     * @param values
+     *            Values, by variable name; extra entries are ignored.
+     * @return Expanded URI.
+     *
+     * @throws IllegalArgumentException
+     *             If a variable has no value.
+     */
+    public String expand(final Map<String, ?> values) {
+
+	final Object[] ordered = new Object[variables.length];
+	for (int i = 0; i < ordered.length; i++) {
+	    ordered[i] = values.get(variables[i]);
+	}
+
+	return expandValues(ordered);
+    }
+
+    /**
+     * Returns the template text.
+     *
+     * @return Template, as compiled.
+     */
+    public String getTemplate() {
+
+	return template;
+    }
+
+    /**
+     * Returns the variable names, in order of first appearance.
+     *
+     * @return Unmodifiable list of names.
+     */
+    public List<String> getVariables() {
+
+	return Collections.unmodifiableList(Arrays.asList(variables));
+    }
+
+    @Override
+    public String toString() {
+
+	return template;
+    }
+
+    private String expandValues(final Object[] values) {
+
+	if (slots.length == 0) { return template; }
+
+	final StringBuilder builder = new StringBuilder(literalLength + (slots.length * VALUE_LENGTH));
+
+	for (int i = 0; i < slots.length; i++) {
+	    builder.append(literals[i]);
+	    appendValue(builder, slots[i], values[slots[i]]);
+	}
+	builder.append(literals[slots.length]);
+
+	return builder.toString();
+    }
+
+    private void appendValue(final StringBuilder builder, final int variable, final Object value) {
+
+	if (value == null) { throw new IllegalArgumentException("Missing value for '" + variables[variable] + "' in URI template: " + template); }
+
+	if ((value instanceof Long) || (value instanceof Integer) || (value instanceof Short) || (value instanceof Byte)) {
+	    builder.append(((Number) value).longValue());
+	    return;
+	}
+
+	encode(builder, value.toString());
+    }
+
+    /**
+     * Appends a percent-encoded value.
+     *
+     * <p>
+     * Unpaired surrogates are encoded as U+FFFD.
+     * </p>
+     *
+     * @param builder
+     *            Target buffer.
+     * @param value
+     *            Value to encode.
+     */
+    private static void encode(final StringBuilder builder, final String value) {
+
+	final int length = value.length();
+
+	for (int i = 0; i < length; i++) {
+
+	    final char c = value.charAt(i);
+
+	    if (isUnreserved(c)) {
+		builder.append(c);
+		continue;
+	    }
+
+	    int codePoint = c;
+	    if (Character.isHighSurrogate(c) && ((i + 1) < length) && Character.isLowSurrogate(value.charAt(i + 1))) {
+		codePoint = Character.toCodePoint(c, value.charAt(++i));
+	    } else if (Character.isSurrogate(c)) {
+		codePoint = 0xFFFD;
+	    }
+
+	    if (codePoint < 0x80) {
+		appendByte(builder, codePoint);
+	    } else if (codePoint < 0x800) {
+		appendByte(builder, 0xC0 | (codePoint >> 6));
+		appendByte(builder, 0x80 | (codePoint & 0x3F));
+	    } else if (codePoint < 0x10000) {
+		appendByte(builder, 0xE0 | (codePoint >> 12));
+		appendByte(builder, 0x80 | ((codePoint >> 6) & 0x3F));
+		appendByte(builder, 0x80 | (codePoint & 0x3F));
+	    } else {
+		appendByte(builder, 0xF0 | (codePoint >> 18));
+		appendByte(builder, 0x80 | ((codePoint >> 12) & 0x3F));
+		appendByte(builder, 0x80 | ((codePoint >> 6) & 0x3F));
+		appendByte(builder, 0x80 | (codePoint & 0x3F));
+	    }
+	}
+    }
+
+    private static void appendByte(final StringBuilder builder, final int b) {
+
+	builder.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+
+    private static boolean isUnreserved(final char c) {
+
+	return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || ((c >= '0') && (c <= '9')) || (c == '-') || (c == '.') || (c == '_')
+		|| (c == '~');
+    }
+
+    /**
+     * Finds the end of a variable name.
+     *
+     * @param template
+     *            URI template.
+     * @param start
+     *            First name character.
+     * @return Index after the last name character.
+     */
+    private static int scanName(final String template, final int start) {
+
+	int i = start;
+	while (i < template.length()) {
+	    final char c = template.charAt(i);
+	    if (!(((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || ((c >= '0') && (c <= '9')) || (c == '_'))) {
+		break;
+	    }
+	    i++;
+	}
+	return i;
+    }
+}
@@ -23,5 +23,24 @@ package edu.uw.cirg.truenth.oauth.model.definitions;
  */
 public class TrueNTHUrlPlaceHolders {
 
+    /**
+     * User id placeholder, in SS' roles URL.
+     *
+     * @deprecated Mutable, and ignored by URI templates, which only recognize
+     *             {@link #USER_ID_NAME}; use {@link #USER_ID_PLACEHOLDER}.
+     */
+    @Deprecated
     public static String USER_ID = "#userId";
+
+    /**
+     * Name of the user id variable, in URI templates.
+     *
+     * @see edu.uw.cirg.truenth.oauth.model.TrueNTHUriTemplate
+     */
+    public static final String USER_ID_NAME = "userId";
+
+    /**
+     * User id placeholder, in SS' roles URL.
+     */
+    public static final String USER_ID_PLACEHOLDER = "#" + USER_ID_NAME;
 }
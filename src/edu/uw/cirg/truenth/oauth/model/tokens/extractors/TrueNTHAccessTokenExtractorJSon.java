@@ -15,14 +15,15 @@
  *******************************************************************************/
 package edu.uw.cirg.truenth.oauth.model.tokens.extractors;
 
-import java.io.StringReader;
-
-import javax.json.Json;
+import javax.json.JsonNumber;
 import javax.json.JsonObject;
 import javax.json.JsonString;
+import javax.json.JsonValue;
 
 import org.scribe.utils.Preconditions;
 
+import edu.uw.cirg.truenth.oauth.json.TrueNTHJsonBackend;
+import edu.uw.cirg.truenth.oauth.json.TrueNTHJsonBackends;
 import edu.uw.cirg.truenth.oauth.model.definitions.TrueNTHOAuthConstants;
 import edu.uw.cirg.truenth.oauth.model.tokens.TrueNTHAccessToken;
 
@@ -35,33 +36,78 @@ import edu.uw.cirg.truenth.oauth.model.tokens.TrueNTHAccessToken;
  */
 public class TrueNTHAccessTokenExtractorJSon implements TrueNTHAccessTokenExtractor<JsonObject> {
 
+    private final TrueNTHJsonBackend backend;
+
+    /**
+     * Constructor: uses the default JSON backend.
+     *
+     * @see TrueNTHJsonBackends#getDefault()
+     */
+    public TrueNTHAccessTokenExtractorJSon() {
+
+	this(TrueNTHJsonBackends.getDefault());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param backend
+     *            JSON backend used to read String data.
+     */
+    public TrueNTHAccessTokenExtractorJSon(final TrueNTHJsonBackend backend) {
+
+	Preconditions.checkNotNull(backend, "JSON backend cannot be null");
+	this.backend = backend;
+    }
+
+    /**
+     * Reads a required string parameter.
+     *
+     * @param data
+     *            Data containing the token.
+     * @param parameter
+     *            Parameter name.
+     * @return Trimmed parameter value.
+     * @throws TrueNTHTokenExtractionException
+     *             If the parameter is missing or is not a string.
+     */
+    private static String getRequired(final JsonObject data, final TrueNTHAccessToken.Parameters parameter) {
+
+	final JsonValue value = data.get(parameter.toString());
+	if (!(value instanceof JsonString)) { throw new TrueNTHTokenExtractionException("Error: data incomplete: " + parameter, null); }
+	return ((JsonString) value).getString().trim();
+    }
+
     /**
      * Reads a TrueNTH access token from a JsonObject instance.
      *
      * @param data
      *            Data containing the token.
      * @return Token extracted.
-     * @throws IllegalArgumentException
+     * @throws TrueNTHTokenExtractionException
      *             If an error message is received or when the data is
-     *             incomplete.
+     *             incomplete (an IllegalArgumentException, without stack
+     *             trace).
      */
     @Override
     public TrueNTHAccessToken extract(final JsonObject data) {
 
-	final JsonString error = data.getJsonString(TrueNTHOAuthConstants.ERROR);
-	if (error != null) { throw new IllegalArgumentException("Error: " + error.toString() + "\n" + data.toString()); }
-	try {
+	final JsonValue error = data.get(TrueNTHOAuthConstants.ERROR);
+	if (error instanceof JsonString) {
+	    final String code = ((JsonString) error).getString();
+	    throw new TrueNTHTokenExtractionException("Error: " + code, code);
+	}
 
-	    final String accessToken = data.getString(TrueNTHAccessToken.Parameters.ACCESS_TOKEN.toString()).trim();
-	    final long expiresIn = data.getJsonNumber(TrueNTHAccessToken.Parameters.EXPIRES_IN.toString()).longValue();
-	    final String refreshToken = data.getString(TrueNTHAccessToken.Parameters.REFRESH_TOKEN.toString()).trim();
-	    final String scope = data.getString(TrueNTHAccessToken.Parameters.SCOPE.toString()).trim();
-	    final String tokenType = data.getString(TrueNTHAccessToken.Parameters.TOKEN_TYPE.toString()).trim();
+	final JsonValue expiresIn = data.get(TrueNTHAccessToken.Parameters.EXPIRES_IN.toString());
+	if (!(expiresIn instanceof JsonNumber)) { throw new TrueNTHTokenExtractionException("Error: data incomplete: "
+		+ TrueNTHAccessToken.Parameters.EXPIRES_IN, null); }
 
-	    return new TrueNTHAccessToken(accessToken, expiresIn, refreshToken, scope, tokenType);
-	} catch (final NullPointerException e) {
-	    throw new IllegalArgumentException("Error: data incomplete: \n" + data.toString());
-	}
+	final String accessToken = getRequired(data, TrueNTHAccessToken.Parameters.ACCESS_TOKEN);
+	final String refreshToken = getRequired(data, TrueNTHAccessToken.Parameters.REFRESH_TOKEN);
+	final String scope = getRequired(data, TrueNTHAccessToken.Parameters.SCOPE);
+	final String tokenType = getRequired(data, TrueNTHAccessToken.Parameters.TOKEN_TYPE);
+
+	return new TrueNTHAccessToken(accessToken, ((JsonNumber) expiresIn).longValue(), refreshToken, scope, tokenType);
     }
 
     /**
@@ -79,7 +125,6 @@ public class TrueNTHAccessTokenExtractorJSon implements TrueNTHAccessTokenExtrac
     public TrueNTHAccessToken extract(final String data) {
 
 	Preconditions.checkEmptyString(data, "No data to extract");
-	final JsonObject json = Json.createReader(new StringReader(data)).readObject();
-	return extract(json);
+	return extract(backend.readObject(data));
     }
 }
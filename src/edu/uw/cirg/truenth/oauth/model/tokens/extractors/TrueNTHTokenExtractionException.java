@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.model.tokens.extractors;
+
+/**
+ * Token extraction failure.
+ *
+ * <p>
+ * Raised when SS answers with an error, or with incomplete token data. These
+ * failures are expected under SS error conditions; thus, they carry no stack
+ * trace, and their messages hold the SS error code or the missing parameter,
+ * never the received data.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public class TrueNTHTokenExtractionException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = -3017542096874515283L;
+
+    private final String      error;
+
+    /**
+     * Constructor.
+     *
+     * @param message
+     *            Failure description.
+     * @param error
+     *            SS error code, if SS reported one; null otherwise.
+     */
+    public TrueNTHTokenExtractionException(final String message, final String error) {
+
+	super(message);
+	this.error = error;
+    }
+
+    /**
+     * Stack traces are not captured.
+     *
+     * @return This exception.
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+
+	return this;
+    }
+
+    /**
+     * Returns the error code reported by SS.
+     *
+     * @return SS error code (e.g. "invalid_grant"), or null if the data was
+     *         incomplete.
+     */
+    public String getError() {
+
+	return error;
+    }
+}
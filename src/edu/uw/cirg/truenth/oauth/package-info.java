@@ -38,7 +38,8 @@
  * <ul>
  * <li>Scribe 1.3.0;</li>
  * <li>Apache Commons Codec 1.10;</li>
- * <li>javax.json 1.0.4.</li>
+ * <li>javax.json 1.0.4;</li>
+ * <li>jackson-core 2.x (optional: Jackson JSON backend).</li>
  * </ul>
  *
  * @author Victor de Lima Soares
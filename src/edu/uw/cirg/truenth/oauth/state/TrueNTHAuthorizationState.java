@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.state;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+import org.apache.commons.codec.binary.Base64;
+import org.scribe.model.ParameterList;
+
+/**
+ * Authorization state, issued with an authorization URL.
+ *
+ * <p>
+ * Holds the "state" value, which SS returns to the callback and protects it
+ * against cross-site request forgery, and, optionally, a PKCE code verifier
+ * (RFC 7636), whose S256 challenge goes with the authorization URL and which is
+ * sent back when exchanging the Authorization Code.
+ * </p>
+ *
+ * <p>
+ * Instances are immutable.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ *
+ * @see TrueNTHStateStore
+ */
+public final class TrueNTHAuthorizationState {
+
+    /**
+     * PKCE challenge method.
+     */
+    public static final String CODE_CHALLENGE_METHOD = "S256";
+
+    /**
+     * Authorization parameter: state.
+     */
+    public static final String STATE = "state";
+
+    /**
+     * Authorization parameter: code challenge.
+     */
+    public static final String CODE_CHALLENGE = "code_challenge";
+
+    /**
+     * Authorization parameter: code challenge method.
+     */
+    public static final String CODE_CHALLENGE_METHOD_PARAMETER = "code_challenge_method";
+
+    /**
+     * Token parameter: code verifier.
+     */
+    public static final String CODE_VERIFIER = "code_verifier";
+
+    /**
+     * Random bytes in state values (22 characters, encoded).
+     */
+    private static final int STATE_BYTES = 16;
+
+    /**
+     * Random bytes in code verifiers (43 characters, encoded; the minimum
+     * length accepted by RFC 7636).
+     */
+    private static final int VERIFIER_BYTES = 32;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final String state;
+    private final String codeVerifier;
+
+    /**
+     * Constructor.
+     *
+     * <p>
+     * Meant for stores that serialize state; new state should come from
+     * {@link #generate(boolean)}.
+     * </p>
+     *
+     * @param state
+     *            State value.
+     * @param codeVerifier
+     *            PKCE code verifier; null if PKCE is not used.
+     */
+    public TrueNTHAuthorizationState(final String state, final String codeVerifier) {
+
+	if ((state == null) || state.isEmpty()) { throw new IllegalArgumentException("State must not be empty."); }
+
+	this.state = state;
+	this.codeVerifier = codeVerifier;
+    }
+
+    /**
+     * Generates random authorization state.
+     *
+     * @param pkce
+     *            Whether to generate a PKCE code verifier.
+     * @return New state.
+     */
+    public static TrueNTHAuthorizationState generate(final boolean pkce) {
+
+	return new TrueNTHAuthorizationState(random(STATE_BYTES), pkce ? random(VERIFIER_BYTES) : null);
+    }
+
+    /**
+     * Returns the PKCE code challenge: the URL safe Base64 encoded SHA-256
+     * digest of the code verifier.
+     *
+     * @return Code challenge; null if PKCE is not used.
+     */
+    public String getCodeChallenge() {
+
+	if (codeVerifier == null) { return null; }
+
+	try {
+	    final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+	    return Base64.encodeBase64URLSafeString(digest.digest(codeVerifier.getBytes(StandardCharsets.US_ASCII)));
+	} catch (final NoSuchAlgorithmException e) {
+	    // Every Java platform provides SHA-256.
+	    throw new IllegalStateException(e);
+	}
+    }
+
+    /**
+     * Returns the PKCE code verifier.
+     *
+     * @return Code verifier; null if PKCE is not used.
+     */
+    public String getCodeVerifier() {
+
+	return codeVerifier;
+    }
+
+    /**
+     * Returns the state value.
+     *
+     * @return State.
+     */
+    public String getState() {
+
+	return state;
+    }
+
+    /**
+     * Returns the authorization URL parameters: state and, with PKCE, the code
+     * challenge and its method.
+     *
+     * @return New parameter list.
+     */
+    public ParameterList toParameters() {
+
+	final ParameterList parameters = new ParameterList();
+	parameters.add(STATE, state);
+
+	if (codeVerifier != null) {
+	    parameters.add(CODE_CHALLENGE, getCodeChallenge());
+	    parameters.add(CODE_CHALLENGE_METHOD_PARAMETER, CODE_CHALLENGE_METHOD);
+	}
+
+	return parameters;
+    }
+
+    private static String random(final int length) {
+
+	final byte[] bytes = new byte[length];
+	RANDOM.nextBytes(bytes);
+	return Base64.encodeBase64URLSafeString(bytes);
+    }
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.state;
+
+import java.util.concurrent.TimeUnit;
+
+import edu.uw.cirg.truenth.oauth.cache.TrueNTHBucketedMap;
+
+/**
+ * In-memory authorization state store.
+ *
+ * <p>
+ * State is kept in a {@link TrueNTHBucketedMap}, bucketed by issue time. Puts
+ * and consumes are O(1); expired buckets are released whole, as their slots
+ * are reused, so expiry costs no scans. State expires between the time to
+ * live and the time to live plus one bucket (a seventh of it, plus one
+ * millisecond).
+ * </p>
+ *
+ * <p>
+ * Memory is capped: when a stripe is full, its oldest state is dropped, one
+ * at a time; a burst of logins displaces the oldest pending states first,
+ * never a whole bucket (see {@link #getEvictionCount()}).
+ * </p>
+ *
+ * <p>
+ * Instances are thread safe. State is local to the instance: a cluster needs
+ * sticky callbacks or a shared {@link TrueNTHStateStore}.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public class TrueNTHMemoryStateStore implements TrueNTHStateStore {
+
+    /**
+     * Default number of stripes.
+     */
+    public static final int DEFAULT_STRIPES = 16;
+
+    private final long						  timeToLive;
+    private final TrueNTHBucketedMap<String, TrueNTHAuthorizationState> states;
+
+    /**
+     * Constructor: default number of stripes.
+     *
+     * @param timeToLive
+     *            Time state stays valid, after being issued.
+     * @param unit
+     *            Time unit.
+     * @param maxEntries
+     *            Maximum number of state entries.
+     */
+    public TrueNTHMemoryStateStore(final long timeToLive, final TimeUnit unit, final int maxEntries) {
+
+	this(timeToLive, unit, maxEntries, DEFAULT_STRIPES);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param timeToLive
+     *            Time state stays valid, after being issued.
+     * @param unit
+     *            Time unit.
+     * @param maxEntries
+     *            Maximum number of state entries; split evenly among stripes.
+     * @param stripes
+     *            Number of independently locked stripes; rounded up to a
+     *            power of two.
+     */
+    public TrueNTHMemoryStateStore(final long timeToLive, final TimeUnit unit, final int maxEntries, final int stripes) {
+
+	if (timeToLive <= 0) { throw new IllegalArgumentException("timeToLive must be positive"); }
+	if (maxEntries <= 0) { throw new IllegalArgumentException("maxEntries must be positive"); }
+	if (stripes <= 0) { throw new IllegalArgumentException("stripes must be positive"); }
+
+	this.timeToLive = unit.toMillis(timeToLive);
+	states = new TrueNTHBucketedMap<String, TrueNTHAuthorizationState>(this.timeToLive, stripes, maxEntries);
+    }
+
+    @Override
+    public TrueNTHAuthorizationState consume(final String state) {
+
+	if (state == null) { return null; }
+	return consume(state, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the number of entries dropped to respect the memory cap.
+     *
+     * @return Evicted entries.
+     */
+    public long getEvictionCount() {
+
+	return states.getEvictionCount();
+    }
+
+    /**
+     * Returns the time to live.
+     *
+     * @return Time to live, in milliseconds.
+     */
+    public long getTimeToLive() {
+
+	return timeToLive;
+    }
+
+    @Override
+    public void put(final TrueNTHAuthorizationState state) {
+
+	put(state, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the number of entries held.
+     *
+     * @return Entries held, including those in expired buckets not yet
+     *         released.
+     */
+    public int size() {
+
+	return states.size();
+    }
+
+    /**
+     * Consumes state, at a given time.
+     */
+    TrueNTHAuthorizationState consume(final String state, final long now) {
+
+	return states.remove(state, now - timeToLive);
+    }
+
+    /**
+     * Puts state, at a given time.
+     */
+    void put(final TrueNTHAuthorizationState state, final long now) {
+
+	states.put(state.getState(), state, now, now - timeToLive);
+    }
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.ss.binding;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds a field to a location inside a JSON document.
+ *
+ * <p>
+ * Paths are sequences of member names separated by dots. Each name may be
+ * followed by selectors over arrays:
+ * </p>
+ * <ul>
+ * <li>[n]: element at index n;</li>
+ * <li>[member=value]: first object whose member equals value (strings,
+ * numbers and booleans are compared by their textual form).</li>
+ * </ul>
+ *
+ * <p>
+ * Characters with meaning in paths (".", "[", "]", "=" and "\") are escaped
+ * with a backslash. Values may contain dots without escaping.
+ * </p>
+ *
+ * <pre>
+ * name.given
+ * photo[0].url
+ * telecom[system=email].value
+ * identifier[system=http://us.truenth.org/identity-codes/TrueNTH-identity].value
+ * </pre>
+ *
+ * <p>
+ * Fields must be visible to their package and not final; otherwise, a
+ * visible setter ("setName", for "name") is used. Supported types: String,
+ * boolean, int, long, double (and their wrappers), BigDecimal, URL, JsonValue,
+ * JsonObject and JsonArray. Absent or mistyped values leave fields untouched;
+ * malformed URLs are read as null.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ *
+ * @see SSResource
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface SSPath {
+
+    /**
+     * Path to the value.
+     *
+     * @return Path expression.
+     */
+    String value();
+}
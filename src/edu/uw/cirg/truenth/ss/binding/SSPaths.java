@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.ss.binding;
+
+import java.math.BigDecimal;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import javax.json.JsonArray;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+/**
+ * Runtime support for generated extractors.
+ *
+ * <p>
+ * Navigation functions accept and return null: a missing step ends the path
+ * without intermediate allocations.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public final class SSPaths {
+
+    private SSPaths() {
+
+    }
+
+    /**
+     * Converts: string value.
+     *
+     * @param value
+     *            JSON value.
+     * @return <ul>
+     *         <li>Text of strings, numbers and booleans;</li>
+     *         <li>null, otherwise.</li>
+     *         </ul>
+     */
+    public static String asString(final JsonValue value) {
+
+	if (value instanceof JsonString) { return ((JsonString) value).getString(); }
+	if ((value instanceof JsonNumber) || isBoolean(value)) { return value.toString(); }
+	return null;
+    }
+
+    /**
+     * Converts: URL value.
+     *
+     * @param value
+     *            JSON value.
+     * @return <ul>
+     *         <li>URL, if value is a string holding a valid URL;</li>
+     *         <li>null, otherwise.</li>
+     *         </ul>
+     */
+    public static URL asURL(final JsonValue value) {
+
+	if (!(value instanceof JsonString)) { return null; }
+
+	try {
+	    return new URL(((JsonString) value).getString());
+	} catch (final MalformedURLException e) {
+	    return null;
+	}
+    }
+
+    /**
+     * Converts: decimal value.
+     *
+     * @param value
+     *            JSON value, a number.
+     * @return Decimal value.
+     */
+    public static BigDecimal asBigDecimal(final JsonValue value) {
+
+	return ((JsonNumber) value).bigDecimalValue();
+    }
+
+    /**
+     * Converts: boolean value.
+     *
+     * @param value
+     *            JSON value, a boolean.
+     * @return True, if value is true.
+     */
+    public static boolean asBoolean(final JsonValue value) {
+
+	return value.getValueType() == JsonValue.ValueType.TRUE;
+    }
+
+    /**
+     * Converts: double value.
+     *
+     * @param value
+     *            JSON value, a number.
+     * @return Double value.
+     */
+    public static double asDouble(final JsonValue value) {
+
+	return ((JsonNumber) value).doubleValue();
+    }
+
+    /**
+     * Converts: int value.
+     *
+     * @param value
+     *            JSON value, a number.
+     * @return Int value.
+     */
+    public static int asInt(final JsonValue value) {
+
+	return ((JsonNumber) value).intValue();
+    }
+
+    /**
+     * Converts: long value.
+     *
+     * @param value
+     *            JSON value, a number.
+     * @return Long value.
+     */
+    public static long asLong(final JsonValue value) {
+
+	return ((JsonNumber) value).longValue();
+    }
+
+    /**
+     * Navigates: array element.
+     *
+     * @param value
+     *            Current value.
+     * @param index
+     *            Element index.
+     * @return <ul>
+     *         <li>Element, if value is an array with an element at index;</li>
+     *         <li>null, otherwise.</li>
+     *         </ul>
+     */
+    public static JsonValue element(final JsonValue value, final int index) {
+
+	if (!(value instanceof JsonArray)) { return null; }
+
+	final JsonArray array = (JsonArray) value;
+	return (index < array.size()) ? array.get(index) : null;
+    }
+
+    /**
+     * Tests: boolean value.
+     *
+     * @param value
+     *            JSON value.
+     * @return True, if value is true or false.
+     */
+    public static boolean isBoolean(final JsonValue value) {
+
+	if (value == null) { return false; }
+
+	final JsonValue.ValueType type = value.getValueType();
+	return (type == JsonValue.ValueType.TRUE) || (type == JsonValue.ValueType.FALSE);
+    }
+
+    /**
+     * Tests: number value.
+     *
+     * @param value
+     *            JSON value.
+     * @return True, if value is a number.
+     */
+    public static boolean isNumber(final JsonValue value) {
+
+	return value instanceof JsonNumber;
+    }
+
+    /**
+     * Tests: textual value.
+     *
+     * @param value
+     *            JSON value.
+     * @return True, if value is a string, number or boolean.
+     */
+    public static boolean isText(final JsonValue value) {
+
+	return (value instanceof JsonString) || (value instanceof JsonNumber) || isBoolean(value);
+    }
+
+    /**
+     * Tests: textual comparison.
+     *
+     * @param value
+     *            JSON value.
+     * @param expected
+     *            Expected text.
+     * @return True, if value is a string, number or boolean whose text equals
+     *         expected.
+     */
+    public static boolean matches(final JsonValue value, final String expected) {
+
+	if (value instanceof JsonString) { return expected.equals(((JsonString) value).getString()); }
+	if (value instanceof JsonNumber) { return expected.equals(value.toString()); }
+	if (isBoolean(value)) { return expected.equals(value.toString()); }
+	return false;
+    }
+
+    /**
+     * Navigates: object member.
+     *
+     * @param value
+     *            Current value.
+     * @param name
+     *            Member name.
+     * @return <ul>
+     *         <li>Member, if value is an object holding it;</li>
+     *         <li>null, otherwise.</li>
+     *         </ul>
+     */
+    public static JsonValue member(final JsonValue value, final String name) {
+
+	return (value instanceof JsonObject) ? ((JsonObject) value).get(name) : null;
+    }
+
+    /**
+     * Navigates: first array element matching a member value.
+     *
+     * @param value
+     *            Current value.
+     * @param name
+     *            Member name, tested on each element.
+     * @param expected
+     *            Expected member text.
+     * @return <ul>
+     *         <li>First object element whose member matches, if any;</li>
+     *         <li>null, otherwise.</li>
+     *         </ul>
+     *
+     * @see #matches(JsonValue, String)
+     */
+    public static JsonValue select(final JsonValue value, final String name, final String expected) {
+
+	if (!(value instanceof JsonArray)) { return null; }
+
+	final JsonArray array = (JsonArray) value;
+	for (int index = 0; index < array.size(); index++) {
+	    final JsonValue element = array.get(index);
+	    if ((element instanceof JsonObject) && matches(((JsonObject) element).get(name), expected)) { return element; }
+	}
+
+	return null;
+    }
+}
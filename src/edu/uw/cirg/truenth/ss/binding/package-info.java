@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+/**
+ * Compile time bindings between SS JSON documents and model classes.
+ *
+ * <p>
+ * Model classes are annotated with {@link edu.uw.cirg.truenth.ss.binding.SSResource},
+ * and their fields with {@link edu.uw.cirg.truenth.ss.binding.SSPath}.
+ * The annotation processor ({@link edu.uw.cirg.truenth.ss.binding.processor.SSResourceProcessor}) generates,
+ * for each model, an {@link edu.uw.cirg.truenth.ss.binding.SSResourceExtractor} in the same package;
+ * generated extractors use no reflection at runtime.
+ * </p>
+ *
+ * <p>
+ * Example:
+ * </p>
+ *
+ * <pre>
+ * &#64;SSResource
+ * public class Patient {
+ *
+ * 	&#64;SSPath("identifier[system=http://us.truenth.org/identity-codes/TrueNTH-identity].value")
+ * 	long   id = -1;
+ *
+ * 	&#64;SSPath("name.given")
+ * 	String firstName;
+ * }
+ *
+ * Patient patient = new PatientExtractor().extract(json);
+ * </pre>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+package edu.uw.cirg.truenth.ss.binding;
\ No newline at end of file
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.ss.binding.processor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parsed {@link edu.uw.cirg.truenth.ss.binding.SSPath} expression.
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+final class SSPathExpression {
+
+    /**
+     * Path step.
+     */
+    static final class Step {
+
+	/**
+	 * Step kinds.
+	 */
+	enum Kind {
+	    MEMBER, ELEMENT, SELECT
+	}
+
+	final Kind   kind;
+	final String name;
+	final int    index;
+	final String value;
+
+	Step(final Kind kind, final String name, final int index, final String value) {
+
+	    this.kind = kind;
+	    this.name = name;
+	    this.index = index;
+	    this.value = value;
+	}
+    }
+
+    /**
+     * Parses a path expression.
+     *
+     * @param path
+     *            Path expression.
+     * @return Parsed expression.
+     * @throws IllegalArgumentException
+     *             If the expression is malformed; the message describes the
+     *             problem.
+     */
+    static SSPathExpression parse(final String path) {
+
+	if ((path == null) || path.isEmpty()) { throw new IllegalArgumentException("empty path"); }
+
+	final List<Step> steps = new ArrayList<Step>();
+	final int[] position = { 0 };
+
+	while (true) {
+
+	    final String name = read(path, position, ".[");
+	    if (name.isEmpty()) { throw new IllegalArgumentException("empty member name at " + position[0]); }
+	    steps.add(new Step(Step.Kind.MEMBER, name, -1, null));
+
+	    while ((position[0] < path.length()) && (path.charAt(position[0]) == '[')) {
+		position[0]++;
+		steps.add(readSelector(path, position));
+	    }
+
+	    if (position[0] == path.length()) {
+		break;
+	    }
+
+	    if (path.charAt(position[0]) != '.') { throw new IllegalArgumentException("unexpected '" + path.charAt(position[0]) + "' at "
+		    + position[0]); }
+	    position[0]++;
+	}
+
+	return new SSPathExpression(path, steps);
+    }
+
+    /**
+     * Reads until a delimiter, resolving escapes.
+     */
+    private static String read(final String path, final int[] position, final String delimiters) {
+
+	final StringBuilder text = new StringBuilder();
+
+	while (position[0] < path.length()) {
+
+	    final char current = path.charAt(position[0]);
+
+	    if (current == '\\') {
+		if ((position[0] + 1) == path.length()) { throw new IllegalArgumentException("dangling escape at " + position[0]); }
+		text.append(path.charAt(position[0] + 1));
+		position[0] += 2;
+		continue;
+	    }
+
+	    if ((delimiters.indexOf(current) >= 0) || (current == ']')) {
+		break;
+	    }
+
+	    text.append(current);
+	    position[0]++;
+	}
+
+	return text.toString();
+    }
+
+    private static Step readSelector(final String path, final int[] position) {
+
+	final String key = read(path, position, "=");
+
+	if ((position[0] < path.length()) && (path.charAt(position[0]) == '=')) {
+
+	    position[0]++;
+	    final String value = read(path, position, "");
+	    expectClosing(path, position);
+
+	    if (key.isEmpty()) { throw new IllegalArgumentException("empty selector member at " + position[0]); }
+	    return new Step(Step.Kind.SELECT, key, -1, value);
+	}
+
+	expectClosing(path, position);
+
+	try {
+	    final int index = Integer.parseInt(key);
+	    if (index < 0) { throw new IllegalArgumentException("negative index at " + position[0]); }
+	    return new Step(Step.Kind.ELEMENT, null, index, null);
+	} catch (final NumberFormatException e) {
+	    throw new IllegalArgumentException("invalid index '" + key + "' at " + position[0]);
+	}
+    }
+
+    private static void expectClosing(final String path, final int[] position) {
+
+	if ((position[0] >= path.length()) || (path.charAt(position[0]) != ']')) { throw new IllegalArgumentException("missing ']' at "
+		+ position[0]); }
+	position[0]++;
+    }
+
+    private final String     path;
+    private final List<Step> steps;
+
+    private SSPathExpression(final String path, final List<Step> steps) {
+
+	this.path = path;
+	this.steps = Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * Returns the original expression.
+     *
+     * @return Path expression.
+     */
+    String getPath() {
+
+	return path;
+    }
+
+    /**
+     * Returns the path steps, in order.
+     *
+     * @return Steps.
+     */
+    List<Step> getSteps() {
+
+	return steps;
+    }
+}
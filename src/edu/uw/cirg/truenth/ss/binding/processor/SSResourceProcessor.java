@@ -0,0 +1,442 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.ss.binding.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import edu.uw.cirg.truenth.ss.binding.SSPath;
+import edu.uw.cirg.truenth.ss.binding.SSResource;
+
+/**
+ * Annotation processor: generates {@link edu.uw.cirg.truenth.ss.binding.SSResourceExtractor}s
+ * for {@link SSResource} models.
+ *
+ * <p>
+ * Generated extractors walk javax.json objects through
+ * {@link edu.uw.cirg.truenth.ss.binding.SSPaths}, with member names and
+ * selector values held in constants; neither reflection nor intermediate
+ * collections are used at runtime. Invalid models and paths are reported as
+ * compilation errors.
+ * </p>
+ *
+ * <p>
+ * Registered through META-INF/services; no compiler options are required.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public class SSResourceProcessor extends AbstractProcessor {
+
+    /**
+     * Conversion from a JSON value to a supported field type.
+     */
+    private static final class Conversion {
+
+	final String test;
+	final String convert;
+
+	Conversion(final String test, final String convert) {
+
+	    this.test = test;
+	    this.convert = convert;
+	}
+    }
+
+    /**
+     * Field binding: where the value goes and how it is read.
+     */
+    private static final class Binding {
+
+	final VariableElement	field;
+	final SSPathExpression   path;
+	final Conversion	 conversion;
+	final String	     setter;
+
+	Binding(final VariableElement field, final SSPathExpression path, final Conversion conversion, final String setter) {
+
+	    this.field = field;
+	    this.path = path;
+	    this.conversion = conversion;
+	    this.setter = setter;
+	}
+    }
+
+    private static final String		  PATHS       = "edu.uw.cirg.truenth.ss.binding.SSPaths";
+    private static final Map<String, Conversion> CONVERSIONS = new LinkedHashMap<String, Conversion>();
+
+    static {
+	final Conversion string = new Conversion("SSPaths.isText(value)", "SSPaths.asString(value)");
+	final Conversion bool = new Conversion("SSPaths.isBoolean(value)", "SSPaths.asBoolean(value)");
+	final Conversion integer = new Conversion("SSPaths.isNumber(value)", "SSPaths.asInt(value)");
+	final Conversion longInteger = new Conversion("SSPaths.isNumber(value)", "SSPaths.asLong(value)");
+	final Conversion real = new Conversion("SSPaths.isNumber(value)", "SSPaths.asDouble(value)");
+
+	CONVERSIONS.put("java.lang.String", string);
+	CONVERSIONS.put("boolean", bool);
+	CONVERSIONS.put("java.lang.Boolean", bool);
+	CONVERSIONS.put("int", integer);
+	CONVERSIONS.put("java.lang.Integer", integer);
+	CONVERSIONS.put("long", longInteger);
+	CONVERSIONS.put("java.lang.Long", longInteger);
+	CONVERSIONS.put("double", real);
+	CONVERSIONS.put("java.lang.Double", real);
+	CONVERSIONS.put("java.math.BigDecimal", new Conversion("SSPaths.isNumber(value)", "SSPaths.asBigDecimal(value)"));
+	CONVERSIONS.put("java.net.URL", new Conversion("value instanceof JsonString", "SSPaths.asURL(value)"));
+	CONVERSIONS.put("javax.json.JsonValue", new Conversion("value != null", "value"));
+	CONVERSIONS.put("javax.json.JsonObject", new Conversion("value instanceof JsonObject", "(JsonObject) value"));
+	CONVERSIONS.put("javax.json.JsonArray", new Conversion("value instanceof JsonArray", "(JsonArray) value"));
+    }
+
+    private static String capitalize(final String name) {
+
+	return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static String literal(final String text) {
+
+	final StringBuilder literal = new StringBuilder(text.length() + 2).append('"');
+
+	for (int index = 0; index < text.length(); index++) {
+	    final char current = text.charAt(index);
+	    switch (current) {
+		case '"':
+		    literal.append("\\\"");
+		    break;
+		case '\\':
+		    literal.append("\\\\");
+		    break;
+		default:
+		    if ((current < 0x20) || (current > 0x7e)) {
+			literal.append(String.format("\\u%04x", (int) current));
+		    } else {
+			literal.append(current);
+		    }
+	    }
+	}
+
+	return literal.append('"').toString();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+
+	return new LinkedHashSet<String>(Arrays.asList(SSResource.class.getCanonicalName(), SSPath.class.getCanonicalName()));
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+
+	return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment environment) {
+
+	for (final Element element : environment.getElementsAnnotatedWith(SSResource.class)) {
+
+	    if (element.getKind() != ElementKind.CLASS) {
+		error(element, "@SSResource applies to classes only");
+		continue;
+	    }
+
+	    final TypeElement model = (TypeElement) element;
+	    final List<Binding> bindings = bind(model);
+
+	    if (bindings != null) {
+		generate(model, bindings);
+	    }
+	}
+
+	for (final Element element : environment.getElementsAnnotatedWith(SSPath.class)) {
+
+	    final Element model = element.getEnclosingElement();
+	    if ((model == null) || (model.getAnnotation(SSResource.class) == null)) {
+		error(element, "@SSPath fields must be declared by an @SSResource model");
+	    }
+	}
+
+	return true;
+    }
+
+    /**
+     * Validates a model and resolves its bindings.
+     *
+     * @return Bindings; null, if errors were reported.
+     */
+    private List<Binding> bind(final TypeElement model) {
+
+	boolean valid = true;
+
+	if (model.getModifiers().contains(Modifier.ABSTRACT)) {
+	    error(model, "@SSResource models cannot be abstract");
+	    valid = false;
+	}
+
+	if ((model.getNestingKind() != NestingKind.TOP_LEVEL)
+		&& ((model.getNestingKind() != NestingKind.MEMBER) || !model.getModifiers().contains(Modifier.STATIC))) {
+	    error(model, "@SSResource models must be top level or static member classes");
+	    valid = false;
+	}
+
+	if (!hasVisibleDefaultConstructor(model)) {
+	    error(model, "@SSResource models must declare a non-private constructor without parameters");
+	    valid = false;
+	}
+
+	final List<Binding> bindings = new ArrayList<Binding>();
+
+	for (final VariableElement field : ElementFilter.fieldsIn(model.getEnclosedElements())) {
+
+	    final SSPath annotation = field.getAnnotation(SSPath.class);
+	    if (annotation == null) {
+		continue;
+	    }
+
+	    final SSPathExpression path;
+	    try {
+		path = SSPathExpression.parse(annotation.value());
+	    } catch (final IllegalArgumentException e) {
+		error(field, "Invalid @SSPath \"" + annotation.value() + "\": " + e.getMessage());
+		valid = false;
+		continue;
+	    }
+
+	    final Conversion conversion = CONVERSIONS.get(typeName(field.asType()));
+	    if (conversion == null) {
+		error(field, "Unsupported @SSPath field type: " + field.asType());
+		valid = false;
+		continue;
+	    }
+
+	    final Set<Modifier> modifiers = field.getModifiers();
+	    if (modifiers.contains(Modifier.STATIC)) {
+		error(field, "@SSPath fields cannot be static");
+		valid = false;
+		continue;
+	    }
+
+	    String setter = null;
+	    if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)) {
+		setter = findSetter(model, field);
+		if (setter == null) {
+		    error(field, "@SSPath fields must be non-private and non-final, or have a non-private setter");
+		    valid = false;
+		    continue;
+		}
+	    }
+
+	    bindings.add(new Binding(field, path, conversion, setter));
+	}
+
+	return valid ? bindings : null;
+    }
+
+    private void error(final Element element, final String message) {
+
+	processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private String findSetter(final TypeElement model, final VariableElement field) {
+
+	final String name = "set" + capitalize(field.getSimpleName().toString());
+
+	for (final ExecutableElement method : ElementFilter.methodsIn(model.getEnclosedElements())) {
+	    if (method.getSimpleName().contentEquals(name) && !method.getModifiers().contains(Modifier.PRIVATE)
+		    && !method.getModifiers().contains(Modifier.STATIC) && (method.getParameters().size() == 1)
+		    && processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), field.asType())) { return name; }
+	}
+
+	return null;
+    }
+
+    private void generate(final TypeElement model, final List<Binding> bindings) {
+
+	final String packageName = packageOf(model).getQualifiedName().toString();
+	final String name = extractorName(model);
+	final String qualifiedName = packageName.isEmpty() ? name : packageName + "." + name;
+	final String modelName = model.getQualifiedName().toString();
+
+	// Constants, shared among paths: one per distinct string.
+	final Map<String, String> constants = new LinkedHashMap<String, String>();
+	for (final Binding binding : bindings) {
+	    for (final SSPathExpression.Step step : binding.path.getSteps()) {
+		constant(constants, step.name);
+		constant(constants, step.value);
+	    }
+	}
+
+	final Messager messager = processingEnv.getMessager();
+	try {
+	    final JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, model);
+	    final PrintWriter out = new PrintWriter(file.openWriter());
+	    try {
+		if (!packageName.isEmpty()) {
+		    out.println("package " + packageName + ";");
+		    out.println();
+		}
+		out.println("import javax.json.JsonArray;");
+		out.println("import javax.json.JsonObject;");
+		out.println("import javax.json.JsonString;");
+		out.println("import javax.json.JsonValue;");
+		out.println();
+		out.println("import " + PATHS + ";");
+		out.println();
+		out.println("/**");
+		out.println(" * Extractor for {@link " + modelName + "}.");
+		out.println(" *");
+		out.println(" * <p>");
+		out.println(" * Generated by " + getClass().getName() + "; do not edit.");
+		out.println(" * </p>");
+		out.println(" */");
+		out.println("@SuppressWarnings(\"unused\")");
+		out.println("public final class " + name + " implements edu.uw.cirg.truenth.ss.binding.SSResourceExtractor<" + modelName + "> {");
+		out.println();
+
+		for (final Map.Entry<String, String> constant : constants.entrySet()) {
+		    out.println("    private static final String " + constant.getValue() + " = " + literal(constant.getKey()) + ";");
+		}
+		if (!constants.isEmpty()) {
+		    out.println();
+		}
+
+		out.println("    @Override");
+		out.println("    public " + modelName + " extract(final JsonObject data) {");
+		out.println();
+		out.println("        if (data == null) { return null; }");
+		out.println();
+		out.println("        final " + modelName + " model = new " + modelName + "();");
+		out.println("        JsonValue value;");
+
+		for (int index = 0; index < bindings.size(); index++) {
+		    final Binding binding = bindings.get(index);
+		    final String target = binding.field.getSimpleName().toString();
+
+		    out.println();
+		    out.println("        // " + target + ": " + binding.path.getPath().replace("*/", "*\\/"));
+		    out.println("        value = path" + index + "(data);");
+		    if (binding.setter == null) {
+			out.println("        if (" + binding.conversion.test + ") { model." + target + " = " + binding.conversion.convert + "; }");
+		    } else {
+			out.println("        if (" + binding.conversion.test + ") { model." + binding.setter + "(" + binding.conversion.convert + "); }");
+		    }
+		}
+
+		out.println();
+		out.println("        return model;");
+		out.println("    }");
+
+		for (int index = 0; index < bindings.size(); index++) {
+		    out.println();
+		    out.println("    private static JsonValue path" + index + "(final JsonObject data) {");
+		    out.println();
+		    out.println("        JsonValue current = data;");
+		    for (final SSPathExpression.Step step : bindings.get(index).path.getSteps()) {
+			switch (step.kind) {
+			    case MEMBER:
+				out.println("        current = SSPaths.member(current, " + constants.get(step.name) + ");");
+				break;
+			    case ELEMENT:
+				out.println("        current = SSPaths.element(current, " + step.index + ");");
+				break;
+			    case SELECT:
+				out.println("        current = SSPaths.select(current, " + constants.get(step.name) + ", " + constants.get(step.value)
+					+ ");");
+				break;
+			}
+		    }
+		    out.println("        return current;");
+		    out.println("    }");
+		}
+
+		out.println("}");
+	    } finally {
+		out.close();
+	    }
+	} catch (final IOException e) {
+	    messager.printMessage(Diagnostic.Kind.ERROR, "Could not generate " + qualifiedName + ": " + e.getMessage(), model);
+	}
+    }
+
+    private static void constant(final Map<String, String> constants, final String text) {
+
+	if ((text != null) && !constants.containsKey(text)) {
+	    constants.put(text, "S" + constants.size());
+	}
+    }
+
+    private String extractorName(final TypeElement model) {
+
+	final String configured = model.getAnnotation(SSResource.class).extractor();
+	if (!configured.isEmpty()) { return configured; }
+
+	// Nested models: Outer_InnerExtractor.
+	final StringBuilder name = new StringBuilder(model.getSimpleName());
+	Element enclosing = model.getEnclosingElement();
+	while (enclosing.getKind() != ElementKind.PACKAGE) {
+	    name.insert(0, '_').insert(0, enclosing.getSimpleName());
+	    enclosing = enclosing.getEnclosingElement();
+	}
+
+	return name.append("Extractor").toString();
+    }
+
+    private boolean hasVisibleDefaultConstructor(final TypeElement model) {
+
+	for (final ExecutableElement constructor : ElementFilter.constructorsIn(model.getEnclosedElements())) {
+	    if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) { return true; }
+	}
+	return false;
+    }
+
+    private PackageElement packageOf(final TypeElement model) {
+
+	return processingEnv.getElementUtils().getPackageOf(model);
+    }
+
+    private String typeName(final TypeMirror type) {
+
+	if (type.getKind().isPrimitive()) { return type.toString(); }
+	if (type.getKind() != TypeKind.DECLARED) { return null; }
+	return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+}
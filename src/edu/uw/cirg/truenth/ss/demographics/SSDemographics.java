@@ -168,12 +168,20 @@ public class SSDemographics {
     @Override
     public int hashCode() {
 
+	final Calendar birthday = getBirthday();
+	final String email = getEmail();
+	final String firstName = getFirstName();
+	final String lastName = getLastName();
+	final URL photoUrl = getPhotoUrl();
+	final long trueNTHID = getTrueNTHID();
+	final String trueNTHUsername = getTrueNTHUsername();
+
 	final int prime = 31;
 	int result = 1;
 	result = (prime * result) + ((birthday == null) ? 0 : birthday.hashCode());
 	result = (prime * result) + ((email == null) ? 0 : email.hashCode());
 	result = (prime * result) + ((firstName == null) ? 0 : firstName.hashCode());
-	result = (prime * result) + (gender ? 1231 : 1237);
+	result = (prime * result) + (getGender() ? 1231 : 1237);
 	result = (prime * result) + ((lastName == null) ? 0 : lastName.hashCode());
 	result = (prime * result) + ((photoUrl == null) ? 0 : photoUrl.hashCode());
 	result = (prime * result) + (int) (trueNTHID ^ (trueNTHID >>> 32));
@@ -181,6 +189,14 @@ public class SSDemographics {
 	return result;
     }
 
+    /**
+     * Compares demographics attribute by attribute.
+     *
+     * <p>
+     * Attributes are read through their getters, so subclasses computing them
+     * on demand, such as {@link SSDemographicsLazy}, compare by value.
+     * </p>
+     */
     @Override
     public boolean equals(final Object obj) {
 
@@ -188,27 +204,20 @@ public class SSDemographics {
 	if (obj == null) { return false; }
 	if (!(obj instanceof SSDemographics)) { return false; }
 	final SSDemographics other = (SSDemographics) obj;
-	if (birthday == null) {
-	    if (other.birthday != null) { return false; }
-	} else if (!birthday.equals(other.birthday)) { return false; }
-	if (email == null) {
-	    if (other.email != null) { return false; }
-	} else if (!email.equals(other.email)) { return false; }
-	if (firstName == null) {
-	    if (other.firstName != null) { return false; }
-	} else if (!firstName.equals(other.firstName)) { return false; }
-	if (gender != other.gender) { return false; }
-	if (lastName == null) {
-	    if (other.lastName != null) { return false; }
-	} else if (!lastName.equals(other.lastName)) { return false; }
-	if (photoUrl == null) {
-	    if (other.photoUrl != null) { return false; }
-	} else if (!photoUrl.equals(other.photoUrl)) { return false; }
-	if (trueNTHID != other.trueNTHID) { return false; }
-	if (trueNTHUsername == null) {
-	    if (other.trueNTHUsername != null) { return false; }
-	} else if (!trueNTHUsername.equals(other.trueNTHUsername)) { return false; }
+	if (!equals(getBirthday(), other.getBirthday())) { return false; }
+	if (!equals(getEmail(), other.getEmail())) { return false; }
+	if (!equals(getFirstName(), other.getFirstName())) { return false; }
+	if (getGender() != other.getGender()) { return false; }
+	if (!equals(getLastName(), other.getLastName())) { return false; }
+	if (!equals(getPhotoUrl(), other.getPhotoUrl())) { return false; }
+	if (getTrueNTHID() != other.getTrueNTHID()) { return false; }
+	if (!equals(getTrueNTHUsername(), other.getTrueNTHUsername())) { return false; }
 	return true;
     }
 
+    private static boolean equals(final Object value, final Object other) {
+
+	return (value == null) ? (other == null) : value.equals(other);
+    }
+
 }
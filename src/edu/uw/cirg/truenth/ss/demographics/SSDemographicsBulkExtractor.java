@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.ss.demographics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.json.JsonObject;
+import javax.json.JsonString;
+
+/**
+ * Streaming bulk demographics extractor.
+ *
+ * <p>
+ * Reads exported demographics, either as a FHIR Bundle (Patient resources
+ * under the top level "entry" array) or as NDJSON (one Patient resource per
+ * line), and hands each record to a {@link SSDemographicsHandler}. Records are
+ * delimited at the byte level and decoded one at a time; thus, memory use is
+ * bounded by the largest record (times the number of records in flight), not
+ * by the size of the export.
+ * </p>
+ *
+ * <p>
+ * With a parallelism above one, records are decoded concurrently and handed to
+ * the handler in no particular order. Resources whose "resourceType" is
+ * present and is not "Patient" are skipped.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public class SSDemographicsBulkExtractor {
+
+    /**
+     * Supported export formats.
+     */
+    public enum Format {
+	BUNDLE, NDJSON
+    }
+
+    /**
+     * Window mapped at a time when reading files.
+     */
+    private static final int		  MAPPING_SIZE = 64 * 1024 * 1024;
+
+    private final SSDemographicsExtractorJson extractor;
+    private final Executor		    executor;
+    private final int			 parallelism;
+
+    /**
+     * Constructor: sequential extraction, default JSON backend.
+     */
+    public SSDemographicsBulkExtractor() {
+
+	this(new SSDemographicsExtractorJson(), null, 1);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param extractor
+     *            Extractor used to decode each record.
+     * @param executor
+     *            Executor for parallel decoding; null creates a dedicated
+     *            pool for each extraction.
+     * @param parallelism
+     *            Number of records decoded concurrently; 1 decodes records
+     *            sequentially, on the calling thread.
+     */
+    public SSDemographicsBulkExtractor(final SSDemographicsExtractorJson extractor, final Executor executor, final int parallelism) {
+
+	if (extractor == null) { throw new NullPointerException("extractor cannot be null"); }
+	if (parallelism <= 0) { throw new IllegalArgumentException("parallelism must be positive"); }
+
+	this.extractor = extractor;
+	this.executor = executor;
+	this.parallelism = parallelism;
+    }
+
+    /**
+     * Extracts demographics from a file, through memory mapping.
+     *
+     * @param file
+     *            Exported data.
+     * @param format
+     *            Export format.
+     * @param handler
+     *            Receives the extracted records.
+     * @return Number of records handed to the handler.
+     * @throws IOException
+     *             If the file cannot be read, or is not well delimited.
+     */
+    public long extract(final File file, final Format format, final SSDemographicsHandler handler) throws IOException {
+
+	final RandomAccessFile input = new RandomAccessFile(file, "r");
+	try {
+	    return extract(new MappedInputStream(input.getChannel()), format, handler);
+	} finally {
+	    input.close();
+	}
+    }
+
+    /**
+     * Extracts demographics from a stream.
+     *
+     * <p>
+     * The stream is read to its end, but not closed.
+     * </p>
+     *
+     * @param in
+     *            Exported data, UTF-8 encoded.
+     * @param format
+     *            Export format.
+     * @param handler
+     *            Receives the extracted records.
+     * @return Number of records handed to the handler.
+     * @throws IOException
+     *             If the stream cannot be read, or is not well delimited.
+     */
+    public long extract(final InputStream in, final Format format, final SSDemographicsHandler handler) throws IOException {
+
+	final SSDemographicsRecordReader reader = new SSDemographicsRecordReader(in, format == Format.BUNDLE);
+	final AtomicLong count = new AtomicLong();
+
+	if (parallelism == 1) {
+	    byte[] record;
+	    while ((record = reader.next()) != null) {
+		process(record, format, handler, count);
+	    }
+	    return count.get();
+	}
+
+	final ExecutorService pool = (executor == null) ? newPool() : null;
+	final Executor workers = (executor == null) ? pool : executor;
+
+	// Bounds the records held in memory: decoding ones plus a small backlog.
+	final int permits = parallelism * 2;
+	final Semaphore inFlight = new Semaphore(permits);
+
+	try {
+	    byte[] record;
+	    while ((record = reader.next()) != null) {
+
+		inFlight.acquire();
+
+		final byte[] task = record;
+		try {
+		    workers.execute(new Runnable() {
+
+			@Override
+			public void run() {
+
+			    try {
+				process(task, format, handler, count);
+			    } finally {
+				inFlight.release();
+			    }
+			}
+		    });
+		} catch (final RuntimeException e) {
+		    inFlight.release();
+		    throw e;
+		}
+	    }
+
+	    inFlight.acquire(permits);
+	    inFlight.release(permits);
+	    return count.get();
+
+	} catch (final InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new InterruptedIOException("Extraction interrupted");
+	} finally {
+	    if (pool != null) {
+		pool.shutdown();
+	    }
+	}
+    }
+
+    private void process(final byte[] record, final Format format, final SSDemographicsHandler handler, final AtomicLong count) {
+
+	try {
+
+	    JsonObject resource = extractor.getBackend().readObject(record, 0, record.length);
+
+	    if (format == Format.BUNDLE) {
+		resource = resource.getJsonObject(SSDemographicsProtocolProperties.BUNDLE_RESOURCE.toString());
+		if (resource == null) { return; }
+	    }
+
+	    final JsonString type = resource.getJsonString(SSDemographicsProtocolProperties.RESOURCE_TYPE.toString());
+	    if ((type != null) && !SSDemographicsProtocolProperties.RESOURCE_TYPE_PATIENT.toString().equals(type.getString())) { return; }
+
+	    final SSDemographics demographics = extractor.extractDemographics(resource);
+	    count.incrementAndGet();
+	    handler.handle(demographics);
+
+	} catch (final Exception e) {
+	    handler.handleError(e);
+	}
+    }
+
+    private ExecutorService newPool() {
+
+	return Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+
+	    @Override
+	    public Thread newThread(final Runnable runnable) {
+
+		final Thread thread = new Thread(runnable, "truenth-demographics-bulk");
+		thread.setDaemon(true);
+		return thread;
+	    }
+	});
+    }
+
+    /**
+     * Sequential stream over a file channel, mapped one window at a time.
+     */
+    private static final class MappedInputStream extends InputStream {
+
+	private final FileChannel channel;
+	private final long	size;
+	private long	      mapped;
+	private MappedByteBuffer  window;
+
+	MappedInputStream(final FileChannel channel) throws IOException {
+
+	    this.channel = channel;
+	    size = channel.size();
+	}
+
+	@Override
+	public int read() throws IOException {
+
+	    if (!ensureWindow()) { return -1; }
+	    return window.get() & 0xff;
+	}
+
+	@Override
+	public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+
+	    if (length == 0) { return 0; }
+	    if (!ensureWindow()) { return -1; }
+
+	    final int read = Math.min(length, window.remaining());
+	    window.get(buffer, offset, read);
+	    return read;
+	}
+
+	private boolean ensureWindow() throws IOException {
+
+	    if ((window != null) && window.hasRemaining()) { return true; }
+	    if (mapped >= size) { return false; }
+
+	    final long windowSize = Math.min(MAPPING_SIZE, size - mapped);
+	    window = channel.map(FileChannel.MapMode.READ_ONLY, mapped, windowSize);
+	    mapped += windowSize;
+	    return true;
+	}
+    }
+}
@@ -24,6 +24,9 @@ import javax.json.JsonArray;
 import javax.json.JsonObject;
 import javax.json.JsonString;
 
+import edu.uw.cirg.truenth.oauth.json.TrueNTHJsonBackend;
+import edu.uw.cirg.truenth.oauth.json.TrueNTHJsonBackends;
+
 /**
  * JSON demographic information extractor.
  *
@@ -36,6 +39,40 @@ import javax.json.JsonString;
  */
 public class SSDemographicsExtractorJson implements SSDemographicsExtractor<JsonObject> {
 
+    private final TrueNTHJsonBackend backend;
+
+    /**
+     * Constructor: uses the default JSON backend.
+     *
+     * @see TrueNTHJsonBackends#getDefault()
+     */
+    public SSDemographicsExtractorJson() {
+
+	this(TrueNTHJsonBackends.getDefault());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param backend
+     *            JSON backend used to read raw data.
+     */
+    public SSDemographicsExtractorJson(final TrueNTHJsonBackend backend) {
+
+	if (backend == null) { throw new NullPointerException("backend cannot be null"); }
+	this.backend = backend;
+    }
+
+    /**
+     * Returns the JSON backend used to read raw data.
+     *
+     * @return JSON backend.
+     */
+    public TrueNTHJsonBackend getBackend() {
+
+	return backend;
+    }
+
     /**
      * Extracts: birthday.
      *
@@ -422,4 +459,31 @@ public class SSDemographicsExtractorJson implements SSDemographicsExtractor<Json
 	demographics.setTrueNTHID(extractTrueNTHID(data));
 	return demographics;
     }
+
+    /**
+     * Extracts: lazy SSDemographics instance.
+     *
+     * <p>
+     * The returned instance is backed by the raw data and decodes each
+     * attribute on first access, caching the result. This is the preferred
+     * form when only a few attributes are read, as in listings.
+     * </p>
+     *
+     * <p>
+     * For a fully decoded instance, use
+     * {@link #extractDemographics(JsonObject)} or
+     * {@link SSDemographicsLazy#materialize()}.
+     * </p>
+     *
+     * @param data
+     *            UTF-8 encoded JSON object, as sent by SS. The array is not
+     *            copied and must not be modified afterwards.
+     * @return Lazy demographics.
+     * @throws IllegalArgumentException
+     *             If the data is not a well delimited JSON object.
+     */
+    public SSDemographics extractDemographics(final byte[] data) {
+
+	return new SSDemographicsLazy(data, this);
+    }
 }
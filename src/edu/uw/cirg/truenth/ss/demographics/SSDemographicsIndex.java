@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.ss.demographics;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact index over a raw JSON demographics document.
+ *
+ * <p>
+ * The index records, for each top level property of interest, the byte range
+ * holding its value. No value is decoded while indexing: strings are skipped
+ * and nested structures are only balanced, so building the index costs a
+ * single pass over the data and two small int arrays.
+ * </p>
+ *
+ * <p>
+ * Keys are matched on their raw bytes; escaped property names are ignored. If a
+ * property is repeated, the last occurrence wins, as in the javax.json object
+ * model.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+final class SSDemographicsIndex {
+
+    /**
+     * Top level properties indexed.
+     */
+    static final SSDemographicsProtocolProperties[] PROPERTIES = { SSDemographicsProtocolProperties.BIRTH_DATE,
+	    SSDemographicsProtocolProperties.GENDER, SSDemographicsProtocolProperties.IDENTIFIER, SSDemographicsProtocolProperties.NAME,
+	    SSDemographicsProtocolProperties.PHOTO, SSDemographicsProtocolProperties.TELECOM };
+
+    private static final byte[][] KEYS = new byte[PROPERTIES.length][];
+
+    static {
+	for (int index = 0; index < PROPERTIES.length; index++) {
+	    KEYS[index] = PROPERTIES[index].toString().getBytes(StandardCharsets.US_ASCII);
+	}
+    }
+
+    private final byte[] data;
+    private final int[]  starts;
+    private final int[]  ends;
+
+    /**
+     * Indexes a JSON object.
+     *
+     * @param data
+     *            UTF-8 encoded JSON object.
+     * @throws IllegalArgumentException
+     *             If the data is not a well delimited JSON object.
+     */
+    SSDemographicsIndex(final byte[] data) {
+
+	if (data == null) { throw new NullPointerException("data cannot be null"); }
+
+	this.data = data;
+	starts = new int[PROPERTIES.length];
+	ends = new int[PROPERTIES.length];
+	Arrays.fill(starts, -1);
+
+	scan();
+    }
+
+    /**
+     * Returns the position of the property inside {@link #PROPERTIES}.
+     *
+     * @param property
+     *            Indexed property.
+     * @return Property position, or -1 if the property is not indexed.
+     */
+    static int indexOf(final SSDemographicsProtocolProperties property) {
+
+	for (int index = 0; index < PROPERTIES.length; index++) {
+	    if (PROPERTIES[index] == property) { return index; }
+	}
+	return -1;
+    }
+
+    /**
+     * Returns the first byte of the property's value.
+     *
+     * @param property
+     *            Position inside {@link #PROPERTIES}.
+     * @return Start offset, or -1 if the property is absent.
+     */
+    int start(final int property) {
+
+	return starts[property];
+    }
+
+    /**
+     * Returns the offset following the last byte of the property's value.
+     *
+     * @param property
+     *            Position inside {@link #PROPERTIES}.
+     * @return End offset (exclusive).
+     */
+    int end(final int property) {
+
+	return ends[property];
+    }
+
+    private void scan() {
+
+	int position = skipWhitespace(0);
+	expect(position, '{');
+	position = skipWhitespace(position + 1);
+
+	if (peek(position) == '}') { return; }
+
+	while (true) {
+
+	    expect(position, '"');
+	    final int keyStart = position + 1;
+	    position = skipString(position);
+	    final int keyEnd = position - 1;
+
+	    position = skipWhitespace(position);
+	    expect(position, ':');
+	    position = skipWhitespace(position + 1);
+
+	    final int valueStart = position;
+	    position = skipValue(position);
+
+	    final int property = match(keyStart, keyEnd);
+	    if (property >= 0) {
+		starts[property] = valueStart;
+		ends[property] = position;
+	    }
+
+	    position = skipWhitespace(position);
+	    if (peek(position) == '}') { return; }
+	    expect(position, ',');
+	    position = skipWhitespace(position + 1);
+	}
+    }
+
+    private int match(final int keyStart, final int keyEnd) {
+
+	final int length = keyEnd - keyStart;
+
+	for (int property = 0; property < KEYS.length; property++) {
+
+	    final byte[] key = KEYS[property];
+	    if (key.length != length) {
+		continue;
+	    }
+
+	    int index = 0;
+	    while ((index < length) && (key[index] == data[keyStart + index])) {
+		index++;
+	    }
+	    if (index == length) { return property; }
+	}
+	return -1;
+    }
+
+    private int skipValue(int position) {
+
+	final byte first = peek(position);
+
+	if (first == '"') { return skipString(position); }
+
+	if ((first == '{') || (first == '[')) {
+
+	    int depth = 0;
+	    do {
+		final byte current = peek(position);
+		if (current == '"') {
+		    position = skipString(position);
+		    continue;
+		}
+		if ((current == '{') || (current == '[')) {
+		    depth++;
+		} else if ((current == '}') || (current == ']')) {
+		    depth--;
+		}
+		position++;
+	    } while (depth > 0);
+
+	    return position;
+	}
+
+	while ((position < data.length) && !isDelimiter(data[position])) {
+	    position++;
+	}
+	return position;
+    }
+
+    /**
+     * Skips a string, starting at its opening quote.
+     *
+     * @return Offset following the closing quote.
+     */
+    private int skipString(int position) {
+
+	position++;
+	while (true) {
+	    final byte current = peek(position);
+	    if (current == '\\') {
+		position += 2;
+	    } else if (current == '"') {
+		return position + 1;
+	    } else {
+		position++;
+	    }
+	}
+    }
+
+    private int skipWhitespace(int position) {
+
+	while ((position < data.length) && ((data[position] == ' ') || (data[position] == '\n') || (data[position] == '\r') || (data[position] == '\t'))) {
+	    position++;
+	}
+	return position;
+    }
+
+    private static boolean isDelimiter(final byte value) {
+
+	return (value == ',') || (value == '}') || (value == ']') || (value == ' ') || (value == '\n') || (value == '\r') || (value == '\t');
+    }
+
+    private byte peek(final int position) {
+
+	if (position >= data.length) { throw new IllegalArgumentException("Malformed JSON: unexpected end of data"); }
+	return data[position];
+    }
+
+    private void expect(final int position, final char expected) {
+
+	if (peek(position) != expected) { throw new IllegalArgumentException("Malformed JSON: '" + expected + "' expected at " + position); }
+    }
+}
@@ -0,0 +1,423 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.ss.demographics;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+
+import javax.json.JsonObject;
+
+/**
+ * Lazy demographics, backed by the raw SS response.
+ *
+ * <p>
+ * Instances keep the response bytes and a compact index of its top level
+ * properties. Each attribute is decoded on first access, using
+ * {@link SSDemographicsExtractorJson}, and cached; only the property holding
+ * it is parsed, and attributes never read are never decoded. Once every
+ * property present in the data has been decoded, the raw data is released.
+ * </p>
+ *
+ * <p>
+ * Setters behave as in {@link SSDemographics}: a value set explicitly is never
+ * overwritten by the raw data. Use {@link #materialize()} to obtain a fully
+ * decoded, plain {@link SSDemographics} copy.
+ * </p>
+ *
+ * <p>
+ * Access to the lazy attributes is synchronized, so instances can be safely
+ * shared, for instance through caches.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ *
+ * @see SSDemographicsExtractorJson#extractDemographics(byte[])
+ */
+public class SSDemographicsLazy extends SSDemographics {
+
+    private static final int			 BIRTHDAY   = 1;
+    private static final int			 EMAIL	    = 1 << 1;
+    private static final int			 FIRST_NAME = 1 << 2;
+    private static final int			 LAST_NAME  = 1 << 3;
+    private static final int			 GENDER	    = 1 << 4;
+    private static final int			 PHOTO_URL  = 1 << 5;
+    private static final int			 USERNAME   = 1 << 6;
+    private static final int			 ID	    = 1 << 7;
+
+    /**
+     * Attributes decoded from each indexed property, in
+     * {@link SSDemographicsIndex#PROPERTIES} order.
+     */
+    private static final int[]			 ATTRIBUTES = new int[SSDemographicsIndex.PROPERTIES.length];
+
+    /**
+     * Bytes opening a single property object, in
+     * {@link SSDemographicsIndex#PROPERTIES} order.
+     */
+    private static final byte[][]		 PREFIXES   = new byte[SSDemographicsIndex.PROPERTIES.length][];
+
+    static {
+	for (int position = 0; position < SSDemographicsIndex.PROPERTIES.length; position++) {
+	    final SSDemographicsProtocolProperties property = SSDemographicsIndex.PROPERTIES[position];
+	    ATTRIBUTES[position] = attributes(property);
+	    PREFIXES[position] = ("{\"" + property.toString() + "\":").getBytes(StandardCharsets.UTF_8);
+	}
+    }
+
+    private final SSDemographicsExtractorJson	 extractor;
+    private byte[]				 data;
+    private SSDemographicsIndex			 index;
+    private final int				 present;
+    private int					 decoded;
+
+    /**
+     * Constructor.
+     *
+     * @param data
+     *            UTF-8 encoded JSON object, as sent by SS. The array is not
+     *            copied and must not be modified afterwards.
+     * @throws IllegalArgumentException
+     *             If the data is not a well delimited JSON object.
+     */
+    public SSDemographicsLazy(final byte[] data) {
+
+	this(data, new SSDemographicsExtractorJson());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param data
+     *            UTF-8 encoded JSON object, as sent by SS. The array is not
+     *            copied and must not be modified afterwards.
+     * @param extractor
+     *            Extractor used to decode attributes; its JSON backend reads
+     *            the raw data.
+     * @throws IllegalArgumentException
+     *             If the data is not a well delimited JSON object.
+     */
+    public SSDemographicsLazy(final byte[] data, final SSDemographicsExtractorJson extractor) {
+
+	this.extractor = extractor;
+	this.data = data;
+	index = new SSDemographicsIndex(data);
+
+	int attributes = 0;
+	for (int position = 0; position < ATTRIBUTES.length; position++) {
+	    if (index.start(position) >= 0) {
+		attributes |= ATTRIBUTES[position];
+	    }
+	}
+	present = attributes;
+
+	release();
+    }
+
+    /**
+     * Returns a fully decoded copy.
+     *
+     * @return Plain demographics instance, holding every attribute.
+     */
+    public synchronized SSDemographics materialize() {
+
+	final SSDemographics demographics = new SSDemographics();
+	demographics.setBirthday(getBirthday());
+	demographics.setEmail(getEmail());
+	demographics.setFirstName(getFirstName());
+	demographics.setLastName(getLastName());
+	demographics.setGender(getGender());
+	demographics.setPhotoUrl(getPhotoUrl());
+	demographics.setTrueNTHUsername(getTrueNTHUsername());
+	demographics.setTrueNTHID(getTrueNTHID());
+	return demographics;
+    }
+
+    /**
+     * Returns the size of the raw data still retained.
+     *
+     * @return Number of bytes retained; zero once every property present in
+     *         the data has been decoded.
+     */
+    public synchronized int getRetainedSize() {
+
+	return (data == null) ? 0 : data.length;
+    }
+
+    @Override
+    public synchronized Calendar getBirthday() {
+
+	if (pending(BIRTHDAY)) {
+	    decode(SSDemographicsProtocolProperties.BIRTH_DATE);
+	}
+	return super.getBirthday();
+    }
+
+    @Override
+    public synchronized void setBirthday(final Calendar birthday) {
+
+	super.setBirthday(birthday);
+	resolved(BIRTHDAY);
+    }
+
+    @Override
+    public synchronized String getEmail() {
+
+	if (pending(EMAIL)) {
+	    decode(SSDemographicsProtocolProperties.TELECOM);
+	}
+	return super.getEmail();
+    }
+
+    @Override
+    public synchronized void setEmail(final String email) {
+
+	super.setEmail(email);
+	resolved(EMAIL);
+    }
+
+    @Override
+    public synchronized String getFirstName() {
+
+	if (pending(FIRST_NAME)) {
+	    decode(SSDemographicsProtocolProperties.NAME);
+	}
+	return super.getFirstName();
+    }
+
+    @Override
+    public synchronized void setFirstName(final String firstName) {
+
+	super.setFirstName(firstName);
+	resolved(FIRST_NAME);
+    }
+
+    @Override
+    public synchronized String getLastName() {
+
+	if (pending(LAST_NAME)) {
+	    decode(SSDemographicsProtocolProperties.NAME);
+	}
+	return super.getLastName();
+    }
+
+    @Override
+    public synchronized void setLastName(final String lastName) {
+
+	super.setLastName(lastName);
+	resolved(LAST_NAME);
+    }
+
+    @Override
+    public synchronized boolean getGender() {
+
+	if (pending(GENDER)) {
+	    decode(SSDemographicsProtocolProperties.GENDER);
+	}
+	return super.getGender();
+    }
+
+    @Override
+    public synchronized void setGender(final String gender) {
+
+	super.setGender(gender);
+	resolved(GENDER);
+    }
+
+    @Override
+    public synchronized void setGender(final boolean isMale) {
+
+	super.setGender(isMale);
+	resolved(GENDER);
+    }
+
+    @Override
+    public synchronized URL getPhotoUrl() {
+
+	if (pending(PHOTO_URL)) {
+	    decode(SSDemographicsProtocolProperties.PHOTO);
+	}
+	return super.getPhotoUrl();
+    }
+
+    @Override
+    public synchronized void setPhotoUrl(final URL url) {
+
+	super.setPhotoUrl(url);
+	resolved(PHOTO_URL);
+    }
+
+    @Override
+    public synchronized String getTrueNTHUsername() {
+
+	if (pending(USERNAME)) {
+	    decode(SSDemographicsProtocolProperties.IDENTIFIER);
+	}
+	return super.getTrueNTHUsername();
+    }
+
+    @Override
+    public synchronized void setTrueNTHUsername(final String trueNTHUsername) {
+
+	super.setTrueNTHUsername(trueNTHUsername);
+	resolved(USERNAME);
+    }
+
+    @Override
+    public synchronized long getTrueNTHID() {
+
+	if (pending(ID)) {
+	    decode(SSDemographicsProtocolProperties.IDENTIFIER);
+	}
+	return super.getTrueNTHID();
+    }
+
+    @Override
+    public synchronized void setTrueNTHID(final long trueNTHID) {
+
+	super.setTrueNTHID(trueNTHID);
+	resolved(ID);
+    }
+
+    /**
+     * Returns the attributes decoded from a top level property.
+     */
+    private static int attributes(final SSDemographicsProtocolProperties property) {
+
+	switch (property) {
+	    case BIRTH_DATE:
+		return BIRTHDAY;
+	    case GENDER:
+		return GENDER;
+	    case IDENTIFIER:
+		return USERNAME | ID;
+	    case NAME:
+		return FIRST_NAME | LAST_NAME;
+	    case PHOTO:
+		return PHOTO_URL;
+	    case TELECOM:
+		return EMAIL;
+	    default:
+		return 0;
+	}
+    }
+
+    /**
+     * Decodes the pending attributes held by a single top level property.
+     *
+     * <p>
+     * Attributes sharing the property, such as first and last names, are
+     * decoded together, so the property is parsed once.
+     * </p>
+     *
+     * @param property
+     *            Top level property.
+     */
+    private void decode(final SSDemographicsProtocolProperties property) {
+
+	final JsonObject value = read(SSDemographicsIndex.indexOf(property));
+
+	switch (property) {
+	    case BIRTH_DATE:
+		super.setBirthday(extractor.extractBirthday(value));
+		break;
+	    case GENDER:
+		super.setGender(extractor.extractGender(value));
+		break;
+	    case IDENTIFIER:
+		if (pending(USERNAME)) {
+		    super.setTrueNTHUsername(extractor.extractTrueNTHUsername(value));
+		}
+		if (pending(ID)) {
+		    super.setTrueNTHID(extractor.extractTrueNTHID(value));
+		}
+		break;
+	    case NAME:
+		if (pending(FIRST_NAME)) {
+		    super.setFirstName(extractor.extractFirstName(value));
+		}
+		if (pending(LAST_NAME)) {
+		    super.setLastName(extractor.extractLastName(value));
+		}
+		break;
+	    case PHOTO:
+		super.setPhotoUrl(extractor.extractPhotoUrl(value));
+		break;
+	    case TELECOM:
+		super.setEmail(extractor.extractEmail(value));
+		break;
+	    default:
+		throw new IllegalArgumentException("Property not indexed: " + property);
+	}
+
+	resolved(attributes(property));
+    }
+
+    /**
+     * Reads a single top level property.
+     *
+     * <p>
+     * The property's value is copied from the raw data into a single property
+     * object; thus, the extractor sees the same structure it would see in the
+     * complete document.
+     * </p>
+     *
+     * @param position
+     *            Property position inside {@link SSDemographicsIndex#PROPERTIES}.
+     * @return JSON object holding only the property, or null if the property
+     *         is absent.
+     */
+    private JsonObject read(final int position) {
+
+	if (index == null) { return null; }
+
+	final int start = index.start(position);
+	if (start < 0) { return null; }
+
+	final byte[] prefix = PREFIXES[position];
+	final int length = index.end(position) - start;
+	final byte[] object = new byte[prefix.length + length + 1];
+
+	System.arraycopy(prefix, 0, object, 0, prefix.length);
+	System.arraycopy(data, start, object, prefix.length, length);
+	object[object.length - 1] = '}';
+
+	return extractor.getBackend().readObject(object, 0, object.length);
+    }
+
+    private boolean pending(final int attribute) {
+
+	return (decoded & attribute) == 0;
+    }
+
+    private void resolved(final int attributes) {
+
+	decoded |= attributes;
+	release();
+    }
+
+    /**
+     * Releases the raw data once no present property is left to decode.
+     */
+    private void release() {
+
+	if ((decoded & present) == present) {
+	    data = null;
+	    index = null;
+	}
+    }
+}
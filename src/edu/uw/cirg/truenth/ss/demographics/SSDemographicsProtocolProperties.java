@@ -24,6 +24,8 @@ package edu.uw.cirg.truenth.ss.demographics;
 public enum SSDemographicsProtocolProperties {
 
     BIRTH_DATE("birthDate"),
+    BUNDLE_ENTRY("entry"),
+    BUNDLE_RESOURCE("resource"),
     COMMUNICATION("communication"),
     GENDER("gender"),
     GENDER_FEMALE("female"),
@@ -38,6 +40,8 @@ public enum SSDemographicsProtocolProperties {
     NAME_GIVEN("given"),
     PHOTO("photo"),
     PHOTO_URL("url"),
+    RESOURCE_TYPE("resourceType"),
+    RESOURCE_TYPE_PATIENT("Patient"),
     TELECOM("telecom"),
     TELECOM_SYSTEM("system"),
     TELECOM_SYSTEM_EMAIL("email"),
@@ -0,0 +1,287 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.ss.demographics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits a stream of demographics into raw records.
+ *
+ * <p>
+ * Records are delimited at the byte level, without decoding them: either one
+ * object per line (NDJSON), or one object per element of a Bundle's top level
+ * "entry" array. Only the record being read is held in memory.
+ * </p>
+ *
+ * <p>
+ * Not thread safe.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+final class SSDemographicsRecordReader {
+
+    private static final byte[] ENTRY = SSDemographicsProtocolProperties.BUNDLE_ENTRY.toString().getBytes(StandardCharsets.US_ASCII);
+
+    private final InputStream   in;
+    private final boolean       bundle;
+    private final byte[]	buffer	= new byte[64 * 1024];
+    private int		 position;
+    private int		 limit;
+
+    private byte[]	      record	= new byte[4 * 1024];
+    private int		 length;
+
+    private boolean	     inEntries;
+    private boolean	     finished;
+
+    /**
+     * Constructor.
+     *
+     * @param in
+     *            Data source.
+     * @param bundle
+     *            True for Bundles, false for NDJSON.
+     */
+    SSDemographicsRecordReader(final InputStream in, final boolean bundle) {
+
+	this.in = in;
+	this.bundle = bundle;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return Record bytes, or null at the end of the data.
+     * @throws IOException
+     *             If the data cannot be read, or is not a well delimited
+     *             Bundle.
+     */
+    byte[] next() throws IOException {
+
+	if (finished) { return null; }
+
+	length = 0;
+
+	return bundle ? nextEntry() : nextLine();
+    }
+
+    private byte[] nextLine() throws IOException {
+
+	int current;
+	while ((current = read()) != -1) {
+
+	    if (current == '\n') {
+		if (hasContent()) { return Arrays.copyOf(record, length); }
+		length = 0;
+		continue;
+	    }
+	    append(current);
+	}
+
+	finished = true;
+	return hasContent() ? Arrays.copyOf(record, length) : null;
+    }
+
+    private byte[] nextEntry() throws IOException {
+
+	if (!inEntries) {
+	    seekEntries();
+	    if (finished) { return null; }
+	}
+
+	int current = skipWhitespace();
+	if (current == ',') {
+	    current = skipWhitespace();
+	}
+	if (current == ']') {
+	    finished = true;
+	    return null;
+	}
+	if (current != '{') { throw new IOException("Malformed Bundle: entry object expected"); }
+
+	append(current);
+	copyStructure();
+	return Arrays.copyOf(record, length);
+    }
+
+    /**
+     * Positions the reader inside the top level entry array.
+     */
+    private void seekEntries() throws IOException {
+
+	int current = skipWhitespace();
+	if (current != '{') { throw new IOException("Malformed Bundle: object expected"); }
+
+	while (true) {
+
+	    current = skipWhitespace();
+	    if ((current == '}') || (current == -1)) {
+		finished = true;
+		return;
+	    }
+	    if (current == ',') {
+		current = skipWhitespace();
+	    }
+	    if (current != '"') { throw new IOException("Malformed Bundle: property name expected"); }
+
+	    length = 0;
+	    readString(true);
+	    final boolean entries = recordEquals(ENTRY);
+	    length = 0;
+
+	    if (skipWhitespace() != ':') { throw new IOException("Malformed Bundle: ':' expected"); }
+
+	    current = skipWhitespace();
+	    if (entries && (current == '[')) {
+		inEntries = true;
+		return;
+	    }
+	    skipValue(current);
+	}
+    }
+
+    /**
+     * Copies an object or array, whose opening byte was already appended.
+     */
+    private void copyStructure() throws IOException {
+
+	int depth = 1;
+	while (depth > 0) {
+	    final int current = read();
+	    if (current == -1) { throw new IOException("Malformed Bundle: unexpected end of data"); }
+	    append(current);
+	    if (current == '"') {
+		readString(true);
+		append('"');
+	    } else if ((current == '{') || (current == '[')) {
+		depth++;
+	    } else if ((current == '}') || (current == ']')) {
+		depth--;
+	    }
+	}
+    }
+
+    private void skipValue(final int first) throws IOException {
+
+	if (first == '"') {
+	    readString(false);
+	    return;
+	}
+
+	if ((first == '{') || (first == '[')) {
+	    int depth = 1;
+	    while (depth > 0) {
+		final int current = read();
+		if (current == -1) { throw new IOException("Malformed Bundle: unexpected end of data"); }
+		if (current == '"') {
+		    readString(false);
+		} else if ((current == '{') || (current == '[')) {
+		    depth++;
+		} else if ((current == '}') || (current == ']')) {
+		    depth--;
+		}
+	    }
+	    return;
+	}
+
+	// Literal: consumed up to the delimiter, which is pushed back.
+	int current;
+	while (((current = read()) != -1) && (current != ',') && (current != '}')) {
+	    continue;
+	}
+	if (current != -1) {
+	    position--;
+	}
+    }
+
+    /**
+     * Reads a string whose opening quote was consumed, up to its closing
+     * quote (consumed, not copied).
+     *
+     * @param copy
+     *            Whether the string content is appended to the record.
+     */
+    private void readString(final boolean copy) throws IOException {
+
+	int current;
+	while ((current = read()) != '"') {
+	    if (current == -1) { throw new IOException("Malformed Bundle: unterminated string"); }
+	    if (copy) {
+		append(current);
+	    }
+	    if (current == '\\') {
+		current = read();
+		if (current == -1) { throw new IOException("Malformed Bundle: unterminated string"); }
+		if (copy) {
+		    append(current);
+		}
+	    }
+	}
+    }
+
+    private int skipWhitespace() throws IOException {
+
+	int current;
+	do {
+	    current = read();
+	} while ((current == ' ') || (current == '\n') || (current == '\r') || (current == '\t'));
+	return current;
+    }
+
+    private boolean recordEquals(final byte[] value) {
+
+	if (length != value.length) { return false; }
+	for (int index = 0; index < length; index++) {
+	    if (record[index] != value[index]) { return false; }
+	}
+	return true;
+    }
+
+    private boolean hasContent() {
+
+	for (int index = 0; index < length; index++) {
+	    final byte current = record[index];
+	    if ((current != ' ') && (current != '\r') && (current != '\t')) { return true; }
+	}
+	return false;
+    }
+
+    private void append(final int value) {
+
+	if (length == record.length) {
+	    record = Arrays.copyOf(record, record.length * 2);
+	}
+	record[length++] = (byte) value;
+    }
+
+    private int read() throws IOException {
+
+	if (position == limit) {
+	    limit = in.read(buffer, 0, buffer.length);
+	    position = 0;
+	    if (limit <= 0) {
+		limit = 0;
+		return -1;
+	    }
+	}
+	return buffer[position++] & 0xff;
+    }
+}
@@ -37,12 +37,40 @@ public class SSRole implements Serializable {
     private String	    description;
     private String	    name;
 
+    /**
+     * Registry identifier plus one.
+     *
+     * <p>
+     * Identifiers are only meaningful within the running registry; thus, the
+     * field is transient and deserialized roles read zero: not interned.
+     * </p>
+     */
+    private final transient int slot;
+
     public SSRole() {
 
+	this(null, null);
     }
 
     public SSRole(final String ssName, final String ssDescription) {
 
+	this(-1, ssName, ssDescription);
+    }
+
+    /**
+     * Constructor for canonical roles.
+     *
+     * @param id
+     *            Identifier within the registry.
+     * @param ssName
+     *            Name within the SS instance.
+     * @param ssDescription
+     *            Description stored in SS.
+     * @see SSRoleRegistry
+     */
+    SSRole(final int id, final String ssName, final String ssDescription) {
+
+	slot = id + 1;
 	name = ssName;
 	description = ssDescription;
     }
@@ -52,11 +80,38 @@ public class SSRole implements Serializable {
 	return description;
     }
 
+    /**
+     * Returns the identifier assigned by a {@link SSRoleRegistry}.
+     *
+     * @return <ul>
+     *         <li>Registry identifier, for canonical (interned) roles;</li>
+     *         <li>-1, otherwise.</li>
+     *         </ul>
+     */
+    public int getId() {
+
+	return slot - 1;
+    }
+
     public String getName() {
 
 	return name;
     }
 
+    /**
+     * Checks whether this is a canonical role, produced by a registry.
+     *
+     * <p>
+     * Canonical roles are immutable.
+     * </p>
+     *
+     * @return True if the role was interned, false otherwise.
+     */
+    public boolean isCanonical() {
+
+	return slot > 0;
+    }
+
     /**
      * Sets the description attribute.
      *
@@ -64,6 +119,7 @@ public class SSRole implements Serializable {
      */
     public void setDescription(final String ssDescription) {
 
+	checkMutable();
 	description = ssDescription;
     }
 
@@ -74,7 +130,45 @@ public class SSRole implements Serializable {
      */
     public void setName(final String ssName) {
 
+	checkMutable();
 	name = ssName;
     }
 
+    private void checkMutable() {
+
+	if (isCanonical()) { throw new UnsupportedOperationException("Canonical roles are immutable"); }
+    }
+
+    @Override
+    public int hashCode() {
+
+	final int prime = 31;
+	int result = 1;
+	result = (prime * result) + ((description == null) ? 0 : description.hashCode());
+	result = (prime * result) + ((name == null) ? 0 : name.hashCode());
+	return result;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+
+	if (this == obj) { return true; }
+	if (obj == null) { return false; }
+	if (!(obj instanceof SSRole)) { return false; }
+	final SSRole other = (SSRole) obj;
+	if (description == null) {
+	    if (other.description != null) { return false; }
+	} else if (!description.equals(other.description)) { return false; }
+	if (name == null) {
+	    if (other.name != null) { return false; }
+	} else if (!name.equals(other.name)) { return false; }
+	return true;
+    }
+
+    @Override
+    public String toString() {
+
+	return name;
+    }
+
 }
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.ss.roles;
+
+import java.util.Arrays;
+
+/**
+ * Difference between two role sets.
+ *
+ * <p>
+ * Used for incremental group synchronization: compare the roles previously
+ * known for a user with the current ones, and apply only the added and removed
+ * roles; or skip the synchronization entirely when {@link #hasChanges()} is
+ * false. The current set's fingerprint can be stored alongside the local
+ * groups for later comparisons.
+ * </p>
+ *
+ * <p>
+ * Immutable after construction.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ *
+ * @see SSRoleSet#getFingerprint()
+ */
+public class SSRoleDiff {
+
+    private final SSRoleSet added;
+    private final SSRoleSet current;
+    private final SSRoleSet removed;
+
+    private SSRoleDiff(final SSRoleSet added, final SSRoleSet removed, final SSRoleSet current) {
+
+	this.added = added;
+	this.removed = removed;
+	this.current = current;
+    }
+
+    /**
+     * Computes the difference between two role sets.
+     *
+     * <p>
+     * Sets backed by the same registry are compared word by word; otherwise,
+     * the previous set is first re-interned into the current set's registry.
+     * </p>
+     *
+     * @param previous
+     *            Roles previously known; null is treated as an empty set.
+     * @param current
+     *            Current roles.
+     * @return Role difference.
+     */
+    public static SSRoleDiff between(SSRoleSet previous, final SSRoleSet current) {
+
+	if (current == null) { throw new NullPointerException("current cannot be null"); }
+
+	final SSRoleRegistry registry = current.getRegistry();
+
+	if (previous == null) {
+	    previous = registry.emptySet();
+	} else if (previous.getRegistry() != registry) {
+	    previous = registry.roleSet(previous);
+	}
+
+	if (previous.equals(current)) { return new SSRoleDiff(registry.emptySet(), registry.emptySet(), current); }
+
+	return new SSRoleDiff(registry.newSet(andNot(current.words(), previous.words())),
+		registry.newSet(andNot(previous.words(), current.words())), current);
+    }
+
+    /**
+     * Returns the roles present only in the current set.
+     *
+     * @return Added roles.
+     */
+    public SSRoleSet getAdded() {
+
+	return added;
+    }
+
+    /**
+     * Returns the current role set.
+     *
+     * @return Current roles.
+     */
+    public SSRoleSet getCurrent() {
+
+	return current;
+    }
+
+    /**
+     * Returns the fingerprint of the current role set.
+     *
+     * @return Current fingerprint.
+     * @see SSRoleSet#getFingerprint()
+     */
+    public long getFingerprint() {
+
+	return current.getFingerprint();
+    }
+
+    /**
+     * Returns the roles present only in the previous set.
+     *
+     * @return Removed roles.
+     */
+    public SSRoleSet getRemoved() {
+
+	return removed;
+    }
+
+    /**
+     * Checks whether roles were added or removed.
+     *
+     * @return True if the role sets differ.
+     */
+    public boolean hasChanges() {
+
+	return !added.isEmpty() || !removed.isEmpty();
+    }
+
+    /**
+     * Computes <code>words &amp; ~mask</code>, trimming trailing zero words.
+     */
+    private static long[] andNot(final long[] words, final long[] mask) {
+
+	final long[] result = new long[words.length];
+	int length = 0;
+
+	for (int index = 0; index < words.length; index++) {
+	    result[index] = (index < mask.length) ? (words[index] & ~mask[index]) : words[index];
+	    if (result[index] != 0) {
+		length = index + 1;
+	    }
+	}
+
+	return (length == result.length) ? result : Arrays.copyOf(result, length);
+    }
+
+    @Override
+    public String toString() {
+
+	return "+" + added + " -" + removed;
+    }
+}
@@ -24,11 +24,40 @@ import javax.json.JsonObject;
 /**
  * JSON role information extractor.
  *
+ * <p>
+ * Besides role lists, this extractor produces {@link SSRoleSet} instances,
+ * whose roles are interned into a {@link SSRoleRegistry}.
+ * </p>
+ *
  * @author Victor de Lima Soares
  * @since Mar 28, 2016
  */
 public class SSRoleExtractorJson implements SSRoleExtractor<JsonObject> {
 
+    private final SSRoleRegistry registry;
+
+    /**
+     * Constructor: uses the default role registry.
+     *
+     * @see SSRoleRegistry#getDefault()
+     */
+    public SSRoleExtractorJson() {
+
+	this(SSRoleRegistry.getDefault());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param registry
+     *            Registry used to intern roles into role sets.
+     */
+    public SSRoleExtractorJson(final SSRoleRegistry registry) {
+
+	if (registry == null) { throw new NullPointerException("registry cannot be null"); }
+	this.registry = registry;
+    }
+
     @Override
     public String extractDescription(final JsonObject data) {
 
@@ -67,4 +96,39 @@ public class SSRoleExtractorJson implements SSRoleExtractor<JsonObject> {
 
 	return roleList;
     }
+
+    /**
+     * Extracts: SSRoleSet from an array of roles.
+     *
+     * <p>
+     * Each role is interned into the extractor's registry; no role instance is
+     * created for roles already known.
+     * </p>
+     *
+     * @param data
+     *            Data origin.
+     * @return <ul>
+     *         <li>Immutable role set, if roles are present;</li>
+     *         <li>null, otherwise.</li>
+     *         </ul>
+     * @see #extractRoles(JsonObject)
+     */
+    public SSRoleSet extractRoleSet(final JsonObject data) {
+
+	final JsonArray rolesData = data.getJsonArray(SSRolesProtocolProperties.ROOT.toString());
+	if (rolesData == null) { return null; }
+
+	long[] words = new long[0];
+
+	for (final JsonObject roleData : rolesData.getValuesAs(JsonObject.class)) {
+	    final String name = extractName(roleData);
+	    SSRole role = registry.get(name);
+	    if (role == null) {
+		role = registry.intern(name, extractDescription(roleData));
+	    }
+	    words = SSRoleRegistry.set(words, role.getId());
+	}
+
+	return registry.newSet(words);
+    }
 }
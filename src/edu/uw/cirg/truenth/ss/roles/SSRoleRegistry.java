@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.ss.roles;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of canonical SS roles.
+ *
+ * <p>
+ * SS instances define a small, stable set of roles, which are repeated in
+ * every user's role list. The registry interns each distinct role, by name,
+ * into a single immutable {@link SSRole} instance carrying a small integer
+ * identifier. Those identifiers back {@link SSRoleSet}, which answers
+ * membership questions with bit operations.
+ * </p>
+ *
+ * <p>
+ * This class is thread safe. Lookups are lock free; only the registration of
+ * a new role synchronizes.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ *
+ * @see SSRoleSet
+ */
+public class SSRoleRegistry {
+
+    private static final SSRoleRegistry		 defaultRegistry = new SSRoleRegistry();
+
+    private final ConcurrentMap<String, SSRole> rolesByName     = new ConcurrentHashMap<String, SSRole>();
+    private volatile SSRole[]			 rolesById	 = new SSRole[0];
+    private final SSRoleSet			 empty	         = new SSRoleSet(this, new long[0]);
+
+    /**
+     * Returns the JVM wide registry.
+     *
+     * @return Default registry.
+     */
+    public static SSRoleRegistry getDefault() {
+
+	return defaultRegistry;
+    }
+
+    /**
+     * Returns the canonical role with the given name.
+     *
+     * @param name
+     *            Role name.
+     * @return <ul>
+     *         <li>Canonical role, if the name has been registered;</li>
+     *         <li>null, otherwise.</li>
+     *         </ul>
+     */
+    public SSRole get(final String name) {
+
+	return (name == null) ? null : rolesByName.get(name);
+    }
+
+    /**
+     * Returns the canonical role with the given identifier.
+     *
+     * @param id
+     *            Registry identifier.
+     * @return <ul>
+     *         <li>Canonical role, if the identifier has been assigned;</li>
+     *         <li>null, otherwise.</li>
+     *         </ul>
+     */
+    public SSRole get(final int id) {
+
+	final SSRole[] roles = rolesById;
+	return ((id < 0) || (id >= roles.length)) ? null : roles[id];
+    }
+
+    /**
+     * Returns the empty role set for this registry.
+     *
+     * @return Empty role set.
+     */
+    public SSRoleSet emptySet() {
+
+	return empty;
+    }
+
+    /**
+     * Returns the canonical version of a role.
+     *
+     * <p>
+     * Roles are identified by name. The description of the first registration
+     * is kept.
+     * </p>
+     *
+     * @param name
+     *            Role name.
+     * @param description
+     *            Role description.
+     * @return Canonical role.
+     */
+    public SSRole intern(final String name, final String description) {
+
+	if (name == null) { throw new NullPointerException("Role name cannot be null"); }
+
+	final SSRole role = rolesByName.get(name);
+	if (role != null) { return role; }
+
+	return register(name, description);
+    }
+
+    /**
+     * Returns the canonical version of a role.
+     *
+     * @param role
+     *            Role to be interned.
+     * @return Canonical role.
+     * @see #intern(String, String)
+     */
+    public SSRole intern(final SSRole role) {
+
+	if (owns(role)) { return role; }
+	return intern(role.getName(), role.getDescription());
+    }
+
+    /**
+     * Checks whether a role is canonical within this registry.
+     *
+     * @param role
+     *            Role to be checked.
+     * @return True if the role was produced by this registry.
+     */
+    public boolean owns(final SSRole role) {
+
+	return (role != null) && role.isCanonical() && (get(role.getId()) == role);
+    }
+
+    /**
+     * Creates a role set, interning every role.
+     *
+     * @param roles
+     *            Roles.
+     * @return Immutable role set.
+     */
+    public SSRoleSet roleSet(final Collection<? extends SSRole> roles) {
+
+	long[] words = new long[0];
+	for (final SSRole role : roles) {
+	    words = set(words, intern(role).getId());
+	}
+	return newSet(words);
+    }
+
+    /**
+     * Creates a role set from role names.
+     *
+     * <p>
+     * Unknown names are registered without description.
+     * </p>
+     *
+     * @param names
+     *            Role names.
+     * @return Immutable role set.
+     */
+    public SSRoleSet roleSetOf(final String... names) {
+
+	long[] words = new long[0];
+	for (final String name : names) {
+	    words = set(words, intern(name, null).getId());
+	}
+	return newSet(words);
+    }
+
+    /**
+     * Returns the number of registered roles.
+     *
+     * @return Number of canonical roles.
+     */
+    public int size() {
+
+	return rolesById.length;
+    }
+
+    /**
+     * Wraps a bit set, sharing the empty instance.
+     *
+     * @param words
+     *            Trimmed bit set.
+     * @return Role set.
+     */
+    SSRoleSet newSet(final long[] words) {
+
+	return (words.length == 0) ? empty : new SSRoleSet(this, words);
+    }
+
+    /**
+     * Sets a bit, growing the array when necessary.
+     *
+     * @param words
+     *            Bit set.
+     * @param id
+     *            Bit index.
+     * @return Bit set holding the new bit; possibly a new array.
+     */
+    static long[] set(long[] words, final int id) {
+
+	final int word = id >>> 6;
+	if (word >= words.length) {
+	    words = Arrays.copyOf(words, word + 1);
+	}
+	words[word] |= 1L << id;
+	return words;
+    }
+
+    private synchronized SSRole register(final String name, final String description) {
+
+	SSRole role = rolesByName.get(name);
+	if (role != null) { return role; }
+
+	final SSRole[] roles = rolesById;
+	role = new SSRole(roles.length, name, description);
+
+	final SSRole[] updated = Arrays.copyOf(roles, roles.length + 1);
+	updated[roles.length] = role;
+
+	rolesById = updated;
+	rolesByName.put(name, role);
+
+	return role;
+    }
+}
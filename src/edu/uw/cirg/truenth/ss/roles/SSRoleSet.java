@@ -0,0 +1,324 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.ss.roles;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable set of canonical SS roles.
+ *
+ * <p>
+ * Membership is stored as a bit set indexed by {@link SSRoleRegistry}
+ * identifiers. Since SS instances define only a handful of roles, the set
+ * usually fits in a single long word: {@link #contains(Object)},
+ * {@link #containsAll(SSRoleSet)} and {@link #containsAny(SSRoleSet)} run in
+ * constant time, and identical role lists share no strings.
+ * </p>
+ *
+ * <p>
+ * Instances are immutable and thread safe. Sets are serialized by role name
+ * and description, and re-interned into the default registry when read.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ *
+ * @see SSRoleRegistry
+ */
+public final class SSRoleSet extends AbstractSet<SSRole> implements Serializable {
+
+    private static final long	    serialVersionUID = 1L;
+
+    private final transient SSRoleRegistry registry;
+    private final transient long[]	   words;
+    private final transient int	    size;
+
+    /**
+     * Lazily computed fingerprint, zero until computed; racy single-check, as
+     * in String.hashCode.
+     */
+    private transient long		 fingerprint;
+
+    /**
+     * Constructor.
+     *
+     * @param registry
+     *            Registry that assigned the identifiers.
+     * @param words
+     *            Bit set, without trailing zero words. Not copied.
+     */
+    SSRoleSet(final SSRoleRegistry registry, final long[] words) {
+
+	this.registry = registry;
+	this.words = words;
+
+	int count = 0;
+	for (final long word : words) {
+	    count += Long.bitCount(word);
+	}
+	size = count;
+    }
+
+    /**
+     * Checks for a role.
+     *
+     * <p>
+     * Canonical roles are checked with a single bit test. Other roles are
+     * resolved by name first.
+     * </p>
+     *
+     * @param role
+     *            Role to be checked.
+     * @return True if the set contains a role with the same name.
+     */
+    @Override
+    public boolean contains(final Object role) {
+
+	if (!(role instanceof SSRole)) { return false; }
+
+	final SSRole ssRole = (SSRole) role;
+	if (registry.owns(ssRole)) { return test(ssRole.getId()); }
+
+	return contains(ssRole.getName());
+    }
+
+    /**
+     * Checks for a role, by name.
+     *
+     * @param name
+     *            Role name.
+     * @return True if the set contains the role.
+     */
+    public boolean contains(final String name) {
+
+	final SSRole role = registry.get(name);
+	return (role != null) && test(role.getId());
+    }
+
+    /**
+     * Checks whether every role in another set is present in this set.
+     *
+     * @param roles
+     *            Roles to be checked.
+     * @return True if this set is a superset of <code>roles</code>.
+     */
+    public boolean containsAll(final SSRoleSet roles) {
+
+	if (roles.registry != registry) { return super.containsAll(roles); }
+
+	final long[] other = roles.words;
+	if (other.length > words.length) { return false; }
+
+	for (int index = 0; index < other.length; index++) {
+	    if ((other[index] & ~words[index]) != 0) { return false; }
+	}
+	return true;
+    }
+
+    /**
+     * Checks whether any role in another set is present in this set.
+     *
+     * @param roles
+     *            Roles to be checked.
+     * @return True if both sets share at least one role.
+     */
+    public boolean containsAny(final SSRoleSet roles) {
+
+	if (roles.registry != registry) {
+	    for (final SSRole role : roles) {
+		if (contains(role)) { return true; }
+	    }
+	    return false;
+	}
+
+	final long[] other = roles.words;
+	final int length = Math.min(other.length, words.length);
+
+	for (int index = 0; index < length; index++) {
+	    if ((other[index] & words[index]) != 0) { return true; }
+	}
+	return false;
+    }
+
+    /**
+     * Returns a compact fingerprint of the role names.
+     *
+     * <p>
+     * The fingerprint is a 64-bit FNV-1a hash over the sorted role names; it
+     * does not depend on registry identifiers, so it can be stored and
+     * compared across restarts and JVMs to detect role changes cheaply.
+     * </p>
+     *
+     * @return Role set fingerprint.
+     */
+    public long getFingerprint() {
+
+	long hash = fingerprint;
+
+	if (hash == 0) {
+
+	    final String[] names = new String[size];
+	    int index = 0;
+	    for (final SSRole role : this) {
+		names[index++] = role.getName();
+	    }
+	    Arrays.sort(names);
+
+	    hash = 0xcbf29ce484222325L;
+	    for (final String name : names) {
+		for (final byte value : name.getBytes(StandardCharsets.UTF_8)) {
+		    hash = (hash ^ (value & 0xff)) * 0x100000001b3L;
+		}
+		hash = hash * 0x100000001b3L;
+	    }
+
+	    fingerprint = hash;
+	}
+	return hash;
+    }
+
+    /**
+     * Returns the registry that backs this set.
+     *
+     * @return Role registry.
+     */
+    public SSRoleRegistry getRegistry() {
+
+	return registry;
+    }
+
+    @Override
+    public Iterator<SSRole> iterator() {
+
+	return new Iterator<SSRole>() {
+
+	    private int next = nextId(0);
+
+	    @Override
+	    public boolean hasNext() {
+
+		return next >= 0;
+	    }
+
+	    @Override
+	    public SSRole next() {
+
+		if (next < 0) { throw new NoSuchElementException(); }
+		final SSRole role = registry.get(next);
+		next = nextId(next + 1);
+		return role;
+	    }
+
+	    @Override
+	    public void remove() {
+
+		throw new UnsupportedOperationException("Role sets are immutable");
+	    }
+	};
+    }
+
+    @Override
+    public int size() {
+
+	return size;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+
+	if (this == obj) { return true; }
+	if ((obj instanceof SSRoleSet) && (((SSRoleSet) obj).registry == registry)) { return Arrays.equals(words, ((SSRoleSet) obj).words); }
+	return super.equals(obj);
+    }
+
+    @Override
+    public int hashCode() {
+
+	return super.hashCode();
+    }
+
+    /**
+     * Tests a registry identifier.
+     *
+     * @param id
+     *            Registry identifier.
+     * @return True if the bit is set.
+     */
+    boolean test(final int id) {
+
+	final int word = id >>> 6;
+	return (word < words.length) && ((words[word] & (1L << id)) != 0);
+    }
+
+    /**
+     * Returns the bit set. Not copied; must not be modified.
+     *
+     * @return Bit set.
+     */
+    long[] words() {
+
+	return words;
+    }
+
+    private int nextId(final int from) {
+
+	int word = from >>> 6;
+	if (word >= words.length) { return -1; }
+
+	long bits = words[word] & (-1L << from);
+	while (true) {
+	    if (bits != 0) { return (word << 6) + Long.numberOfTrailingZeros(bits); }
+	    if (++word == words.length) { return -1; }
+	    bits = words[word];
+	}
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+
+	return new SerializedForm(this);
+    }
+
+    /**
+     * Serialized form: role names and descriptions.
+     */
+    private static final class SerializedForm implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<SSRole> roles;
+
+	SerializedForm(final SSRoleSet set) {
+
+	    roles = new ArrayList<SSRole>(set.size());
+	    for (final SSRole role : set) {
+		roles.add(new SSRole(role.getName(), role.getDescription()));
+	    }
+	}
+
+	private Object readResolve() throws ObjectStreamException {
+
+	    return SSRoleRegistry.getDefault().roleSet(roles);
+	}
+    }
+}
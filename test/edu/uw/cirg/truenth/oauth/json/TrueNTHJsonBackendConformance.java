@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.stream.JsonParsingException;
+
+import org.scribe.model.Token;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.uw.cirg.truenth.oauth.TrueNTHOAuthService;
+import edu.uw.cirg.truenth.oauth.builder.TrueNTHServiceBuilder;
+import edu.uw.cirg.truenth.oauth.builder.api.TrueNTHOAuthProvider;
+import edu.uw.cirg.truenth.oauth.model.TrueNTHResult;
+import edu.uw.cirg.truenth.oauth.model.tokens.TrueNTHAccessToken;
+import edu.uw.cirg.truenth.oauth.model.tokens.extractors.TrueNTHAccessTokenExtractorJSon;
+import edu.uw.cirg.truenth.ss.demographics.SSDemographics;
+import edu.uw.cirg.truenth.ss.demographics.SSDemographicsExtractorJson;
+
+/**
+ * JSON backend conformance tests.
+ *
+ * <p>
+ * Runs the same cases against every backend shipped with the library, so that
+ * services behave the same whichever parser is configured: equal objects for
+ * valid documents, {@link JsonParsingException}s for malformed data, and
+ * {@link JsonException}s caused by {@link IOException}s for read failures. The
+ * last case checks the classification seen by callers, through a service
+ * talking to a local stub SS.
+ * </p>
+ *
+ * <p>
+ * Dependency free: run {@code test/run.sh}; exits with status 1 if any case
+ * fails.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public class TrueNTHJsonBackendConformance {
+
+    private static final String[] VALID	    = { "{}", " {\"a\" : 1 } ", "{\"a\":{\"b\":{\"c\":[]}},\"d\":[[],{}]}",
+	    "{\"int\":1,\"negative\":-7,\"long\":12345678901234,\"big\":123456789012345678901234567890,\"decimal\":2.5,\"exp\":-3e2}",
+	    "{\"t\":true,\"f\":false,\"n\":null,\"s\":\"\",\"mixed\":[1,\"x\",true,null,{\"k\":0.1}]}",
+	    "{\"text\":\"caf\\u00e9 \\\"q\\\" \\\\ \\/ \\n\\t\",\"raw\":\"é中😀\"}" };
+
+    private static final String[] MALFORMED = { "", "nope", "{", "{\"a\":", "{\"a\":1,}", "{\"a\" 1}", "{\"a\":[1,2}", "{\"a\":tru}",
+	    "{\"a\":\"unterminated}", "{'a':1}", "[1]", "\"string\"", "42" };
+
+    private static final String	    TOKEN     = "{\"access_token\":\"abc\",\"token_type\":\"Bearer\",\"expires_in\":3600,"
+	    + "\"refresh_token\":\"refresh\",\"scope\":\"email\"}";
+
+    private static final String	    PATIENT   = "{\"resourceType\":\"Patient\",\"gender\":\"female\",\"birthDate\":\"1970-01-01\","
+	    + "\"name\":{\"given\":\"Ada\",\"family\":\"Lovelace\"},\"telecom\":[{\"system\":\"email\",\"value\":\"ada@example.org\"}],"
+	    + "\"identifier\":[{\"system\":\"http://us.truenth.org/identity-codes/TrueNTH-identity\",\"value\":42}]}";
+
+    private static int		    failures;
+
+    public static void main(final String[] args) throws IOException {
+
+	final TrueNTHJsonBackend[] backends = { TrueNTHJsonBackends.jsonProcessing(), TrueNTHJsonBackends.jackson() };
+
+	for (final TrueNTHJsonBackend backend : backends) {
+	    final String name = backend.getClass().getSimpleName();
+	    valid(name, backend, backends[0]);
+	    malformed(name, backend);
+	    readFailure(name, backend);
+	    extractors(name, backend);
+	    service(name, backend);
+	}
+
+	System.out.println((failures == 0) ? "OK" : failures + " failure(s)");
+	if (failures != 0) {
+	    System.exit(1);
+	}
+    }
+
+    private static void check(final boolean condition, final String name, final String message) {
+
+	if (!condition) {
+	    failures++;
+	    System.out.println("FAIL " + name + ": " + message);
+	}
+    }
+
+    private static void extractors(final String name, final TrueNTHJsonBackend backend) {
+
+	final TrueNTHAccessToken token = new TrueNTHAccessTokenExtractorJSon(backend).extract(TOKEN);
+	check("abc".equals(token.getToken()), name, "access token: " + token);
+	check(token.getExpiresIn() == 3600, name, "access token expiration: " + token.getExpiresIn());
+	check("email".equals(token.getScope()), name, "access token scope: " + token.getScope());
+
+	final SSDemographicsExtractorJson extractor = new SSDemographicsExtractorJson(backend);
+	final SSDemographics demographics = extractor.extractDemographics(utf8(PATIENT));
+	check(demographics.getTrueNTHID() == 42, name, "demographics id: " + demographics.getTrueNTHID());
+	check("Ada".equals(demographics.getFirstName()), name, "demographics first name: " + demographics.getFirstName());
+	check("Lovelace".equals(demographics.getLastName()), name, "demographics last name: " + demographics.getLastName());
+	check("ada@example.org".equals(demographics.getEmail()), name, "demographics email: " + demographics.getEmail());
+    }
+
+    private static void malformed(final String name, final TrueNTHJsonBackend backend) {
+
+	for (final String document : MALFORMED) {
+	    final byte[] bytes = utf8(document);
+	    malformed(name + " string " + document, backend, document, null);
+	    malformed(name + " bytes " + document, backend, null, bytes);
+	    try {
+		backend.readObject(new ByteArrayInputStream(bytes));
+		check(false, name + " stream " + document, "no exception");
+	    } catch (final JsonException e) {
+		check(!(e.getCause() instanceof IOException) || (e instanceof JsonParsingException), name + " stream " + document,
+			"reported as a read failure: " + e);
+	    }
+	}
+    }
+
+    private static void malformed(final String name, final TrueNTHJsonBackend backend, final String string, final byte[] bytes) {
+
+	try {
+	    if (string != null) {
+		backend.readObject(string);
+	    } else {
+		backend.readObject(bytes, 0, bytes.length);
+	    }
+	    check(false, name, "no exception");
+	} catch (final JsonException e) {
+	    check(!(e.getCause() instanceof IOException) || (e instanceof JsonParsingException), name, "reported as a read failure: " + e);
+	}
+    }
+
+    private static void readFailure(final String name, final TrueNTHJsonBackend backend) {
+
+	final InputStream broken = new InputStream() {
+
+	    private int count;
+
+	    @Override
+	    public int read() throws IOException {
+
+		if (count < 5) { return "{\"a\":".charAt(count++); }
+		throw new IOException("connection reset");
+	    }
+	};
+
+	try {
+	    backend.readObject(broken);
+	    check(false, name + " read failure", "no exception");
+	} catch (final JsonException e) {
+	    check(!(e instanceof JsonParsingException) && (e.getCause() instanceof IOException), name + " read failure",
+		    "not reported as a read failure: " + e);
+	}
+    }
+
+    private static void service(final String name, final TrueNTHJsonBackend backend) throws IOException {
+
+	final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+	server.createContext("/api/valid", new Stub("{\"a\":1}"));
+	server.createContext("/api/malformed", new Stub("{\"a\":"));
+	server.start();
+
+	try {
+	    final String base = "http://127.0.0.1:" + server.getAddress().getPort();
+	    final TrueNTHOAuthService service = new TrueNTHServiceBuilder().provider(TrueNTHOAuthProvider.getDefault()).apiKey("key").apiSecret("secret")
+		    .callbackURL("https://example.org/login").baseURL(base).baseAuthorizationURL(base + "/oauth/authorize")
+		    .accessTokenEndpointURL(base + "/oauth/token").accessTokenStatusEndpointURL(base + "/oauth/token-status")
+		    .resourceURL(base + "/api").rolesURL(base + "/api/user/#userId/roles").jsonBackend(backend).build();
+	    final Token token = new Token("abc", "");
+
+	    final TrueNTHResult<JsonObject> valid = service.fetchResourceJson("valid", token);
+	    check(valid.isSuccess() && (valid.getValue().getInt("a") == 1), name + " service", "valid body: " + valid);
+
+	    final TrueNTHResult<JsonObject> malformed = service.fetchResourceJson("malformed", token);
+	    check(malformed.getKind() == TrueNTHResult.Kind.PARSE_FAILURE, name + " service", "malformed body: " + malformed);
+	    check(!malformed.isRetryable(), name + " service", "malformed body is retryable");
+	} finally {
+	    server.stop(0);
+	}
+    }
+
+    private static byte[] utf8(final String data) {
+
+	return data.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void valid(final String name, final TrueNTHJsonBackend backend, final TrueNTHJsonBackend reference) {
+
+	for (final String document : VALID) {
+	    try {
+		final JsonObject expected = reference.readObject(document);
+		final byte[] bytes = utf8(document);
+		final byte[] padded = utf8("xx" + document + "yy");
+
+		check(expected.equals(backend.readObject(document)), name, "string " + document);
+		check(expected.equals(backend.readObject(bytes, 0, bytes.length)), name, "bytes " + document);
+		check(expected.equals(backend.readObject(padded, 2, bytes.length)), name, "bytes at offset " + document);
+		check(expected.equals(backend.readObject(new ByteArrayInputStream(bytes))), name, "stream " + document);
+	    } catch (final JsonException e) {
+		check(false, name, document + ": " + e);
+	    }
+	}
+    }
+
+    private static final class Stub implements HttpHandler {
+
+	private final byte[] body;
+
+	Stub(final String body) {
+
+	    this.body = utf8(body);
+	}
+
+	@Override
+	public void handle(final HttpExchange exchange) throws IOException {
+
+	    exchange.getResponseHeaders().set("Content-Type", "application/json");
+	    exchange.sendResponseHeaders(200, body.length);
+	    try (OutputStream stream = exchange.getResponseBody()) {
+		stream.write(body);
+	    }
+	}
+    }
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * Signed request verification benchmark.
+ *
+ * <p>
+ * Compares, on the same fixed requests, a verifier created per request (what
+ * the {@link TrueNTHSignedRequest} constructors used to do), the constructors
+ * themselves (shared verifier, eager parsing) and a verifier held by the
+ * caller (lazy parsing). Each case runs warm-up rounds, then measured rounds;
+ * the median round is reported, in nanoseconds per request.
+ * </p>
+ *
+ * <p>
+ * Not run by {@code test/run.sh}, which compiles it; after running it:
+ * {@code java -cp test/target/classes:$DEPS edu.uw.cirg.truenth.oauth.model.TrueNTHSignedRequestBenchmark [requests per round]}
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public class TrueNTHSignedRequestBenchmark {
+
+    private static final String KEY	   = "benchmark-secret";
+    private static final int    REQUESTS	   = 64;
+    private static final int    WARMUP_ROUNDS = 5;
+    private static final int    ROUNDS	= 11;
+
+    /**
+     * Benchmark case: verifies one request.
+     */
+    private interface Case {
+
+	Object verify(String signedRequest) throws Exception;
+    }
+
+    private static long sink;
+
+    public static void main(final String[] args) throws Exception {
+
+	final int iterations = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+	final String[] requests = requests();
+
+	final TrueNTHSignedRequestVerifier held = new TrueNTHSignedRequestVerifier(KEY);
+
+	run("verifier per request", requests, iterations, new Case() {
+
+	    @Override
+	    public Object verify(final String signedRequest) throws Exception {
+
+		return new TrueNTHSignedRequestVerifier(KEY).verify(signedRequest).getData();
+	    }
+	});
+
+	run("constructor (shared verifier)", requests, iterations, new Case() {
+
+	    @Override
+	    public Object verify(final String signedRequest) throws Exception {
+
+		return new TrueNTHSignedRequest(signedRequest, KEY);
+	    }
+	});
+
+	run("held verifier, data parsed", requests, iterations, new Case() {
+
+	    @Override
+	    public Object verify(final String signedRequest) throws Exception {
+
+		return held.verify(signedRequest).getData();
+	    }
+	});
+
+	run("held verifier, data not read", requests, iterations, new Case() {
+
+	    @Override
+	    public Object verify(final String signedRequest) throws Exception {
+
+		return held.verify(signedRequest);
+	    }
+	});
+
+	System.out.println("(checksum " + sink + ")");
+    }
+
+    /**
+     * Builds the fixed requests: SS logout events, signed with the benchmark
+     * key.
+     */
+    private static String[] requests() throws Exception {
+
+	final Mac mac = Mac.getInstance("HmacSHA256");
+	mac.init(new SecretKeySpec(KEY.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+
+	final String[] requests = new String[REQUESTS];
+	for (int index = 0; index < REQUESTS; index++) {
+	    final String data = "{\"issued_at\":" + (1445489995 + index) + ",\"user_id\":" + (10000 + index)
+		    + ",\"event\":\"logout\",\"algorithm\":\"HMAC-SHA256\"}";
+	    final String payload = Base64.encodeBase64URLSafeString(data.getBytes(StandardCharsets.UTF_8));
+	    requests[index] = Base64.encodeBase64URLSafeString(mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII))) + "." + payload;
+	}
+	return requests;
+    }
+
+    private static void run(final String name, final String[] requests, final int iterations, final Case benchmark) throws Exception {
+
+	for (int round = 0; round < WARMUP_ROUNDS; round++) {
+	    round(requests, iterations, benchmark);
+	}
+
+	final long[] rounds = new long[ROUNDS];
+	for (int round = 0; round < ROUNDS; round++) {
+	    rounds[round] = round(requests, iterations, benchmark);
+	}
+	Arrays.sort(rounds);
+
+	System.out.println(String.format("%-32s %8d ns/request", name, rounds[ROUNDS / 2] / iterations));
+    }
+
+    private static long round(final String[] requests, final int iterations, final Case benchmark) throws Exception {
+
+	final long start = System.nanoTime();
+	for (int index = 0; index < iterations; index++) {
+	    sink += benchmark.verify(requests[index % requests.length]).hashCode();
+	}
+	return System.nanoTime() - start;
+    }
+}
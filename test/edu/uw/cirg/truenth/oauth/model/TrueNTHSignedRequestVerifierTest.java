@@ -0,0 +1,374 @@
+/*******************************************************************************
+ * Copyright (c) 2015, 2016, University of Washington, School of Nursing
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ *******************************************************************************/
+package edu.uw.cirg.truenth.oauth.model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+
+import edu.uw.cirg.truenth.oauth.json.TrueNTHJsonBackends;
+
+/**
+ * Signed request verifier tests.
+ *
+ * <p>
+ * Covers byte-level verification (valid requests, wrong keys, unsupported
+ * algorithms, base64 variants and errors, payload limits), key rings with
+ * hints and fallback, replay protection, and batch verification.
+ * </p>
+ *
+ * <p>
+ * Dependency free: run {@code test/run.sh}; exits with status 1 if any case
+ * fails.
+ * </p>
+ *
+ * @author Victor de Lima Soares
+ * @since Oct 19, 2026
+ */
+public class TrueNTHSignedRequestVerifierTest {
+
+    private static final String KEY	      = "test-secret";
+    private static final String OTHER_KEY = "other-secret";
+
+    private static int		failures;
+
+    public static void main(final String[] args) throws Exception {
+
+	valid();
+	wrongKey();
+	wrongAlgorithm();
+	encoding();
+	oversize();
+	keyRing();
+	replay();
+	batch();
+	members();
+
+	System.out.println((failures == 0) ? "OK" : failures + " failure(s)");
+	if (failures != 0) {
+	    System.exit(1);
+	}
+    }
+
+    private static void check(final boolean condition, final String name, final String message) {
+
+	if (!condition) {
+	    failures++;
+	    System.out.println("FAIL " + name + ": " + message);
+	}
+    }
+
+    private static void valid() throws Exception {
+
+	final TrueNTHSignedRequestVerifier verifier = new TrueNTHSignedRequestVerifier(KEY);
+	final String signedRequest = sign(KEY, logout(1445489995));
+
+	final TrueNTHSignedRequest request = verifier.verify(signedRequest);
+	check(request.getData().getInt("user_id") == 10015, "valid", "data: " + request.getData());
+	check(TrueNTHSignedRequestVerifier.DEFAULT_KEY_ID.equals(request.getKeyId()), "valid", "key id: " + request.getKeyId());
+	check(Arrays.equals(request.getSignatureBytes(), hmac(KEY, signedRequest.substring(signedRequest.indexOf('.') + 1))), "valid",
+		"signature bytes");
+	check(verifier.getMatchCount(TrueNTHSignedRequestVerifier.DEFAULT_KEY_ID) == 1, "valid", "match count");
+
+	final TrueNTHSignedRequest legacy = new TrueNTHSignedRequest(signedRequest, KEY);
+	check(legacy.getData().getInt("user_id") == 10015, "valid constructor", "data: " + legacy.getData());
+    }
+
+    private static void wrongKey() throws Exception {
+
+	final TrueNTHSignedRequestVerifier verifier = new TrueNTHSignedRequestVerifier(KEY);
+	final String signedRequest = sign(OTHER_KEY, logout(1445489995));
+
+	incorrect("wrong key", verifier, signedRequest);
+	check(verifier.getRejectionCount() == 1, "wrong key", "rejection count: " + verifier.getRejectionCount());
+
+	try {
+	    new TrueNTHSignedRequest(signedRequest, KEY);
+	    check(false, "wrong key constructor", "accepted");
+	} catch (final IllegalStateException e) {
+	    // Expected.
+	}
+
+	final String authentic = sign(KEY, logout(1445489995));
+	final String forged = sign(KEY, logout(1445489995).replace("10015", "10016"));
+	incorrect("tampered payload", verifier, authentic.substring(0, authentic.indexOf('.') + 1) + forged.substring(forged.indexOf('.') + 1));
+    }
+
+    private static void wrongAlgorithm() throws Exception {
+
+	final TrueNTHSignedRequestVerifier verifier = new TrueNTHSignedRequestVerifier(KEY);
+
+	rejected("HMAC-SHA1", verifier, sign(KEY, "{\"issued_at\":1445489995,\"algorithm\":\"HMAC-SHA1\"}"));
+	rejected("no algorithm", verifier, sign(KEY, "{\"issued_at\":1445489995}"));
+	rejected("algorithm prefix", verifier, sign(KEY, "{\"algorithm\":\"HMAC-SHA256X\"}"));
+    }
+
+    private static void encoding() throws Exception {
+
+	final TrueNTHSignedRequestVerifier verifier = new TrueNTHSignedRequestVerifier(KEY);
+	final String data = logout(1445489995);
+
+	// Standard alphabet ("+" and "/"), padded.
+	final String payload = Base64.encodeBase64String("{\"algorithm\":\"HMAC-SHA256\",\"note\":\"??>>\"}".getBytes(StandardCharsets.UTF_8));
+	final String padded = Base64.encodeBase64String(hmac(KEY, payload)) + "." + payload;
+	check((padded.indexOf('=') > 0) && (payload.indexOf('/') >= 0) && (payload.indexOf('+') >= 0), "padded", "not standard: " + padded);
+	accepted("padded, standard alphabet", verifier, padded);
+
+	final String signedRequest = sign(KEY, data);
+	final int separator = signedRequest.indexOf('.');
+	final String signature = signedRequest.substring(0, separator);
+	final String body = signedRequest.substring(separator + 1);
+
+	incorrect("no separator", verifier, signature + body);
+	incorrect("signature alphabet", verifier, "*" + signature.substring(1) + "." + body);
+	incorrect("payload alphabet", verifier, signature + "." + body.substring(0, body.length() - 1) + "*");
+	incorrect("non ASCII payload", verifier, signature + "." + body.substring(0, body.length() - 1) + "\u00e9");
+	incorrect("excess padding", verifier, signature + "===." + body);
+	incorrect("padding inside", verifier, signature.substring(0, 8) + "=" + signature.substring(9) + "." + body);
+	incorrect("dangling character", verifier, signature + "A." + body);
+	incorrect("short signature", verifier, signature.substring(0, 20) + "." + body);
+	incorrect("empty", verifier, ".");
+    }
+
+    private static void oversize() throws Exception {
+
+	final TrueNTHSignedRequestVerifier verifier = new TrueNTHSignedRequestVerifier(KEY, TrueNTHJsonBackends.getDefault(), 64);
+	final StringBuilder data = new StringBuilder("{\"algorithm\":\"HMAC-SHA256\",\"padding\":\"");
+	while (data.length() < 64) {
+	    data.append('x');
+	}
+	final String large = sign(KEY, data.append("\"}").toString());
+
+	try {
+	    verifier.verify(large);
+	    check(false, "oversize", "accepted");
+	} catch (final IllegalStateException e) {
+	    check(e.getMessage().contains("large"), "oversize", "unexpected rejection: " + e.getMessage());
+	} catch (final NoSuchAlgorithmException e) {
+	    check(false, "oversize", "rejected after decoding: " + e);
+	}
+
+	accepted("under the limit", verifier, sign(KEY, "{\"algorithm\":\"HMAC-SHA256\"}"));
+	check(verifier.getMaxPayloadLength() == 64, "oversize", "limit: " + verifier.getMaxPayloadLength());
+    }
+
+    private static void keyRing() throws Exception {
+
+	final Map<String, String> ring = new LinkedHashMap<String, String>();
+	ring.put("old", OTHER_KEY);
+	ring.put("new", KEY);
+	final TrueNTHSignedRequestVerifier verifier = new TrueNTHSignedRequestVerifier(ring, TrueNTHJsonBackends.getDefault(),
+		TrueNTHSignedRequestVerifier.DEFAULT_MAX_PAYLOAD_LENGTH);
+
+	check(Arrays.asList("old", "new").equals(verifier.getKeyIds()), "key ring", "key ids: " + verifier.getKeyIds());
+
+	keyId("no hint, second key", verifier, sign(KEY, "{\"algorithm\":\"HMAC-SHA256\"}"), "new");
+	keyId("no hint, first key", verifier, sign(OTHER_KEY, "{\"algorithm\":\"HMAC-SHA256\"}"), "old");
+	keyId("hint", verifier, sign(KEY, "{\"kid\":\"new\",\"algorithm\":\"HMAC-SHA256\"}"), "new");
+	keyId("wrong hint, fallback", verifier, sign(KEY, "{\"kid\":\"old\",\"algorithm\":\"HMAC-SHA256\"}"), "new");
+	keyId("unknown hint, fallback", verifier, sign(OTHER_KEY, "{\"kid\":\"newer\",\"algorithm\":\"HMAC-SHA256\"}"), "old");
+	keyId("nested hint ignored", verifier, sign(OTHER_KEY, "{\"x\":{\"kid\":\"new\"},\"algorithm\":\"HMAC-SHA256\"}"), "old");
+	incorrect("no key of the ring", verifier, sign("retired-secret", "{\"kid\":\"new\",\"algorithm\":\"HMAC-SHA256\"}"));
+
+	check(verifier.getMatchCount("new") == 3, "key ring", "matches of new: " + verifier.getMatchCount("new"));
+	check(verifier.getMatchCount("old") == 3, "key ring", "matches of old: " + verifier.getMatchCount("old"));
+	check(verifier.getRejectionCount() == 1, "key ring", "rejections: " + verifier.getRejectionCount());
+    }
+
+    private static void replay() throws Exception {
+
+	final long now = System.currentTimeMillis() / 1000;
+	final TrueNTHSignedRequestVerifier verifier = new TrueNTHSignedRequestVerifier(KEY);
+	final TrueNTHReplayGuard guard = new TrueNTHReplayGuard(5, TimeUnit.MINUTES);
+	verifier.setReplayGuard(guard);
+
+	final String fresh = sign(KEY, logout(now));
+	accepted("fresh", verifier, fresh);
+	replayed("replayed", verifier, fresh);
+	accepted("same time, other request", verifier, sign(KEY, logout(now).replace("10015", "10016")));
+
+	stale("stale", verifier, sign(KEY, logout(now - 3600)));
+	stale("future", verifier, sign(KEY, logout(now + 3600)));
+	stale("no issue time", verifier, sign(KEY, "{\"algorithm\":\"HMAC-SHA256\"}"));
+	stale("issue time not a number", verifier, sign(KEY, "{\"issued_at\":\"" + now + "\",\"algorithm\":\"HMAC-SHA256\"}"));
+
+	check(guard.getReplayCount() == 1, "replay", "replay count: " + guard.getReplayCount());
+	check(guard.getExpiredCount() == 2, "replay", "expired count: " + guard.getExpiredCount());
+
+	// Remembered signatures expire with the window.
+	final byte[] signature = hmac(KEY, "payload");
+	check(guard.check(now, signature, now) == TrueNTHReplayGuard.Verdict.FRESH, "replay window", "first check");
+	check(guard.check(now, signature, now + 60) == TrueNTHReplayGuard.Verdict.REPLAYED, "replay window", "inside the window");
+	check(guard.check(now, signature, now + 3600) == TrueNTHReplayGuard.Verdict.EXPIRED, "replay window", "after the window");
+    }
+
+    private static void batch() throws Exception {
+
+	final TrueNTHSignedRequestVerifier verifier = new TrueNTHSignedRequestVerifier(KEY);
+	verifier.setReplayGuard(new TrueNTHReplayGuard(5, TimeUnit.MINUTES));
+
+	final String valid = sign(KEY, logout(1445489995));
+	final List<String> requests = Arrays.asList(valid, sign(OTHER_KEY, logout(1445489995)),
+		sign(KEY, "{\"algorithm\":\"HMAC-SHA1\"}"), null, "no separator", "*." + valid.substring(valid.indexOf('.') + 1), valid);
+	final List<TrueNTHSignedRequestResult.Status> expected = Arrays.asList(TrueNTHSignedRequestResult.Status.VALID,
+		TrueNTHSignedRequestResult.Status.INVALID, TrueNTHSignedRequestResult.Status.INVALID, TrueNTHSignedRequestResult.Status.MALFORMED,
+		TrueNTHSignedRequestResult.Status.MALFORMED, TrueNTHSignedRequestResult.Status.MALFORMED, TrueNTHSignedRequestResult.Status.VALID);
+
+	final List<TrueNTHSignedRequestResult> results = verifier.verifyAll(requests);
+	check(results.size() == requests.size(), "batch", "result count: " + results.size());
+	for (int index = 0; index < results.size(); index++) {
+	    final TrueNTHSignedRequestResult result = results.get(index);
+	    check(result.getStatus() == expected.get(index), "batch " + index, "status: " + result);
+	    check(result.isValid() == (result.getRequest() != null), "batch " + index, "request of " + result);
+	}
+	check(results.get(0).getRequest().getData().getInt("user_id") == 10015, "batch", "data of the valid request");
+
+	check(verifier.getBatchMatchCount(TrueNTHSignedRequestVerifier.DEFAULT_KEY_ID) == 3, "batch", "batch matches: "
+		+ verifier.getBatchMatchCount(TrueNTHSignedRequestVerifier.DEFAULT_KEY_ID));
+	check(verifier.getBatchRejectionCount() == 3, "batch", "batch rejections: " + verifier.getBatchRejectionCount());
+	check(verifier.getMatchCount(TrueNTHSignedRequestVerifier.DEFAULT_KEY_ID) == 0, "batch", "live matches counted");
+	check(verifier.getRejectionCount() == 0, "batch", "live rejections counted");
+
+	// Large batches are split among workers; order is kept.
+	final List<String> large = new ArrayList<String>();
+	for (int index = 0; index < 1000; index++) {
+	    large.add(((index % 3) == 0) ? sign(OTHER_KEY, logout(index)) : sign(KEY, logout(index)));
+	}
+	final ForkJoinPool pool = new ForkJoinPool(4);
+	try {
+	    final List<TrueNTHSignedRequestResult> split = verifier.verifyAll(large, pool);
+	    for (int index = 0; index < split.size(); index++) {
+		check(split.get(index).isValid() == ((index % 3) != 0), "large batch " + index, "status: " + split.get(index));
+	    }
+	} finally {
+	    pool.shutdown();
+	}
+    }
+
+    /**
+     * Only top level members are claims: names appearing as values, inside
+     * strings or in nested objects are not.
+     */
+    private static void members() throws Exception {
+
+	final TrueNTHSignedRequestVerifier verifier = new TrueNTHSignedRequestVerifier(KEY);
+
+	accepted("name as a value", verifier, sign(KEY, "{\"event\":\"algorithm\",\"algorithm\":\"HMAC-SHA256\"}"));
+	accepted("name inside a string", verifier, sign(KEY, "{\"event\":\"\\\"algorithm\\\":\",\"algorithm\":\"HMAC-SHA256\"}"));
+	accepted("nested name", verifier, sign(KEY, "{\"extra\":{\"algorithm\":\"none\"},\"algorithm\":\"HMAC-SHA256\"}"));
+	rejected("nested algorithm only", verifier, sign(KEY, "{\"extra\":{\"algorithm\":\"HMAC-SHA256\"}}"));
+	rejected("algorithm as a value only", verifier, sign(KEY, "{\"event\":\"algorithm\",\"x\":\"HMAC-SHA256\"}"));
+
+	final long now = System.currentTimeMillis() / 1000;
+	final TrueNTHSignedRequestVerifier guarded = new TrueNTHSignedRequestVerifier(KEY);
+	guarded.setReplayGuard(new TrueNTHReplayGuard(5, TimeUnit.MINUTES));
+
+	stale("nested issued_at", guarded, sign(KEY, "{\"extra\":{\"issued_at\":" + now + "},\"issued_at\":" + (now - 3600)
+		+ ",\"algorithm\":\"HMAC-SHA256\"}"));
+	stale("issued_at as a value", guarded, sign(KEY, "{\"event\":\"issued_at\",\"x\":" + now + ",\"algorithm\":\"HMAC-SHA256\"}"));
+	accepted("top level issued_at after a nested one", guarded, sign(KEY, "{\"extra\":{\"issued_at\":" + (now - 3600) + "},\"issued_at\":"
+		+ now + ",\"algorithm\":\"HMAC-SHA256\"}"));
+    }
+
+    private static String logout(final long issuedAt) {
+
+	return "{\"issued_at\":" + issuedAt + ",\"user_id\":10015,\"event\":\"logout\",\"algorithm\":\"HMAC-SHA256\"}";
+    }
+
+    private static void accepted(final String name, final TrueNTHSignedRequestVerifier verifier, final String signedRequest) {
+
+	try {
+	    check(verifier.verify(signedRequest).getData() != null, name, "no data");
+	} catch (final Exception e) {
+	    check(false, name, "rejected: " + e);
+	}
+    }
+
+    private static void incorrect(final String name, final TrueNTHSignedRequestVerifier verifier, final String signedRequest)
+	    throws NoSuchAlgorithmException {
+
+	try {
+	    verifier.verify(signedRequest);
+	    check(false, name, "accepted");
+	} catch (final IllegalStateException e) {
+	    check(e.getMessage().contains("not correct"), name, "unexpected rejection: " + e.getMessage());
+	}
+    }
+
+    private static void keyId(final String name, final TrueNTHSignedRequestVerifier verifier, final String signedRequest, final String keyId)
+	    throws NoSuchAlgorithmException {
+
+	final String matched = verifier.verify(signedRequest).getKeyId();
+	check(keyId.equals(matched), name, "key id: " + matched);
+    }
+
+    private static void rejected(final String name, final TrueNTHSignedRequestVerifier verifier, final String signedRequest) {
+
+	try {
+	    verifier.verify(signedRequest);
+	    check(false, name, "accepted");
+	} catch (final NoSuchAlgorithmException e) {
+	    // Expected.
+	}
+    }
+
+    private static void replayed(final String name, final TrueNTHSignedRequestVerifier verifier, final String signedRequest) throws Exception {
+
+	try {
+	    verifier.verify(signedRequest);
+	    check(false, name, "accepted");
+	} catch (final IllegalStateException e) {
+	    check(e.getMessage().contains("replayed"), name, "unexpected rejection: " + e.getMessage());
+	}
+    }
+
+    private static void stale(final String name, final TrueNTHSignedRequestVerifier verifier, final String signedRequest) throws Exception {
+
+	try {
+	    verifier.verify(signedRequest);
+	    check(false, name, "accepted");
+	} catch (final IllegalStateException e) {
+	    check(e.getMessage().contains("fresh"), name, "unexpected rejection: " + e.getMessage());
+	}
+    }
+
+    private static byte[] hmac(final String key, final String payload) throws Exception {
+
+	final Mac mac = Mac.getInstance("HmacSHA256");
+	mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+	return mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Signs a payload as SS does: URL safe base64, without padding.
+     */
+    private static String sign(final String key, final String data) throws Exception {
+
+	final String payload = Base64.encodeBase64URLSafeString(data.getBytes(StandardCharsets.UTF_8));
+	return Base64.encodeBase64URLSafeString(hmac(key, payload)) + "." + payload;
+    }
+}
@@ -0,0 +1,29 @@
+#!/bin/sh
+#
+# Runs the dependency-free test harnesses under test/.
+#
+# Each harness is a class with a main method named *Conformance (or *Test)
+# that exits with a non-zero status on failure.
+# Benchmarks (*Benchmark) are compiled, not run; see their documentation.
+#
+# Usage:
+#   DEPS=scribe-1.3.0.jar:javax.json-1.0.4.jar:commons-codec-1.10.jar:jackson-core-2.9.10.jar ./run.sh
+
+set -e
+
+: "${DEPS:?DEPS must list the dependency jars, separated by ':'}"
+
+HERE=$(cd "$(dirname "$0")" && pwd)
+ROOT=$(dirname "$HERE")
+OUT=${OUT:-$HERE/target}
+
+rm -rf "$OUT"
+mkdir -p "$OUT/classes"
+
+javac -nowarn -encoding UTF-8 -proc:none -cp "$DEPS" -d "$OUT/classes" $(find "$ROOT/src" "$HERE" -name '*.java')
+
+for source in $(cd "$HERE" && find . \( -name '*Conformance.java' -o -name '*Test.java' \) | sort); do
+	class=$(echo "$source" | sed -e 's|^\./||' -e 's|\.java$||' -e 's|/|.|g')
+	echo "== $class"
+	java -cp "$OUT/classes:$DEPS" "$class"
+done